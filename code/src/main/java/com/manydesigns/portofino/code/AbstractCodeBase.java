@@ -11,21 +11,45 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.lang.ref.WeakReference;
 import java.net.URL;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 public abstract class AbstractCodeBase implements CodeBase {
 
     private static final Logger logger = LoggerFactory.getLogger(AbstractCodeBase.class);
+
+    /**
+     * Packages whose classes are never looked up in the code base itself, only in its parents and class loader.
+     */
+    public static final List<String> DEFAULT_EXCLUDED_PACKAGES = Collections.unmodifiableList(Arrays.asList(
+            "java.", "javax.", "jdk.", "sun.", "com.sun.", "groovy.", "org.codehaus.groovy.", "org.springframework.",
+            "org.apache.commons.", "org.slf4j.", "io.reactivex."));
+    protected static final Object NOT_LOCAL = new Object();
+
     protected CodeBase parent;
     protected final ConcurrentMap<String, WeakReference<Class>> knownClasses = new ConcurrentHashMap<>();
+    /**
+     * The outcome of looking up classes in this code base, if caching lookups is enabled: either the class, or
+     * {@link #NOT_LOCAL}. Cleared when the code base is cleared or a class is reloaded.
+     */
+    protected final ConcurrentMap<String, Object> localLookups = new ConcurrentHashMap<>();
     protected final Subject<Class> reloads = PublishSubject.create();
     protected FileObject root;
     protected ClassLoader classLoader;
+    protected volatile String[] excludedPackages = DEFAULT_EXCLUDED_PACKAGES.toArray(new String[0]);
+    /**
+     * Whether the outcome of looking up a class in this code base, found or not, is cached, without checking the code
+     * base for changes until it's cleared. Only suitable when the code does not change, i.e. in production: otherwise,
+     * a class whose source is added after a failed lookup would stay unresolvable. Classes in excluded packages are
+     * never looked up in the code base, regardless of this setting.
+     */
+    protected volatile boolean cacheLookups = false;
     private Disposable parentSubscription;
 
     public AbstractCodeBase(FileObject root) {
         this.root = root;
+        reloads.subscribe(c -> localLookups.clear());
     }
 
     public AbstractCodeBase(FileObject root, CodeBase parent, ClassLoader classLoader) {
@@ -60,7 +84,11 @@ public abstract class AbstractCodeBase implements CodeBase {
 
     @Override
     public Class loadClass(String className, SearchScope searchScope) throws IOException, ClassNotFoundException {
-        Class localClass = loadLocalClass(className);
+        Object lookup = localLookups.get(className);
+        if(lookup instanceof Class) {
+            return (Class) lookup;
+        }
+        Class localClass = lookup == null && !isExcluded(className) ? loadLocalClass(className) : null;
         if(localClass != null) {
             WeakReference<Class> oldClass = knownClasses.get(className);
             boolean shouldSignalReload = oldClass != null && oldClass.get() != localClass;
@@ -68,7 +96,12 @@ public abstract class AbstractCodeBase implements CodeBase {
             if(shouldSignalReload) {
                 reloads.onNext(localClass);
             }
+            if(cacheLookups) {
+                localLookups.put(className, localClass);
+            }
             return localClass;
+        } else if(lookup == null && cacheLookups) {
+            localLookups.put(className, NOT_LOCAL);
         }
         if(searchScope == SearchScope.LOCAL) {
             throw new ClassNotFoundException(className);
@@ -84,6 +117,36 @@ public abstract class AbstractCodeBase implements CodeBase {
 
     protected abstract Class loadLocalClass(String className) throws IOException, ClassNotFoundException;
 
+    protected boolean isExcluded(String className) {
+        for(String prefix : excludedPackages) {
+            if(className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public List<String> getExcludedPackages() {
+        return Collections.unmodifiableList(Arrays.asList(excludedPackages));
+    }
+
+    /**
+     * Sets the prefixes of the names of the classes that are never looked up in this code base.
+     */
+    public void setExcludedPackages(Collection<String> excludedPackages) {
+        this.excludedPackages = excludedPackages.toArray(new String[0]);
+        localLookups.clear();
+    }
+
+    public boolean isCacheLookups() {
+        return cacheLookups;
+    }
+
+    public void setCacheLookups(boolean cacheLookups) {
+        this.cacheLookups = cacheLookups;
+        localLookups.clear();
+    }
+
     @Override
     public URL findResource(String name) throws IOException {
         FileObject fileObject = getRoot().resolveFile(name);
@@ -113,6 +176,7 @@ public abstract class AbstractCodeBase implements CodeBase {
 
     @Override
     public void clear(boolean recursively) throws Exception {
+        localLookups.clear();
         if(recursively && parent != null) {
             parent.clear(recursively);
         }
@@ -0,0 +1,445 @@
+/*
+ * Copyright (C) 2016 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.portofino.code;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.VFS;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Index of the classes compiled from the Java sources of a code base, optionally persisted to a local directory
+ * together with the class files, so that they don't need to be compiled again after a restart.<br>
+ * For each source, the index records the hash of its content, the classes compiled from it and the classes of the
+ * code base it refers to, read from the constant pool of its class files. A source is stale when its content has
+ * changed; its dependents are the sources referring to any of its classes.<br>
+ * The persistent cache of a code base lives in a subdirectory named after a fingerprint of the Java version and of
+ * the class path, so that changing either of them invalidates it. Note that changes in the value of compile-time
+ * constants, which javac inlines, are not detected in dependent sources.
+ *
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class CompiledClassCache {
+
+    public static final String INDEX_FILE_NAME = "index.properties";
+    public static final String CLASSES_DIRECTORY_NAME = "classes";
+    protected static final Pattern CLASS_DESCRIPTOR = Pattern.compile("L([\\w/$]+);");
+
+    private static final Logger logger = LoggerFactory.getLogger(CompiledClassCache.class);
+
+    /**
+     * Where the cache is persisted, or null if it is kept in memory only.
+     */
+    protected final File directory;
+    protected final FileObject classesDirectory;
+    protected final Map<String, Entry> entries = new HashMap<>();
+
+    /**
+     * Creates a cache in memory.
+     */
+    public CompiledClassCache(FileObject classesDirectory) {
+        this.directory = null;
+        this.classesDirectory = classesDirectory;
+    }
+
+    /**
+     * Opens the persistent cache of the given code base, deleting the caches made obsolete by changes in the class
+     * path or Java version.
+     * @param cacheDirectory the directory where caches are stored; it may be shared by several code bases.
+     * @param root the root of the code base.
+     * @param classLoader the class loader used to compile and load the classes of the code base.
+     */
+    public CompiledClassCache(File cacheDirectory, FileObject root, ClassLoader classLoader) throws IOException {
+        File codeBaseDirectory = new File(cacheDirectory, hash(root.getName().getURI()));
+        String fingerprint = computeFingerprint(classLoader);
+        File[] obsolete = codeBaseDirectory.listFiles(f -> !f.getName().equals(fingerprint));
+        if(obsolete != null) {
+            for(File file : obsolete) {
+                logger.debug("Deleting obsolete compiled class cache {}", file);
+                FileUtils.deleteQuietly(file);
+            }
+        }
+        this.directory = new File(codeBaseDirectory, fingerprint);
+        File classes = new File(directory, CLASSES_DIRECTORY_NAME);
+        if(!classes.isDirectory() && !classes.mkdirs()) {
+            throw new IOException("Could not create directory " + classes);
+        }
+        this.classesDirectory = VFS.getManager().toFileObject(classes);
+        load();
+        logger.info("Using compiled class cache {} for code base {} ({} sources)", directory, root, entries.size());
+    }
+
+    //**************************************************************************
+    // Queries
+    //**************************************************************************
+
+    public Entry get(String sourceName) {
+        return entries.get(sourceName);
+    }
+
+    /**
+     * Returns whether the given source has been compiled and has not changed since.
+     */
+    public boolean isFresh(String sourceName, FileObject source) throws IOException {
+        Entry entry = entries.get(sourceName);
+        if(entry == null) {
+            return false;
+        }
+        long lastModified = source.getContent().getLastModifiedTime();
+        long size = source.getContent().getSize();
+        if(entry.lastModified == lastModified && entry.size == size) {
+            return true;
+        }
+        if(entry.hash.equals(hash(source))) {
+            //Touched, but not changed
+            entry.lastModified = lastModified;
+            entry.size = size;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the sources that, directly or indirectly, depend on the given ones, excluding the given ones.
+     */
+    public Set<String> getDependents(Collection<String> sourceNames) {
+        Set<String> dependents = new LinkedHashSet<>();
+        Deque<String> toVisit = new ArrayDeque<>(sourceNames);
+        Set<String> visited = new HashSet<>(sourceNames);
+        while (!toVisit.isEmpty()) {
+            Entry changed = entries.get(toVisit.pop());
+            if(changed == null) {
+                continue;
+            }
+            for(Map.Entry<String, Entry> candidate : entries.entrySet()) {
+                if(!visited.contains(candidate.getKey()) &&
+                   !Collections.disjoint(candidate.getValue().dependencies, changed.classes)) {
+                    visited.add(candidate.getKey());
+                    dependents.add(candidate.getKey());
+                    toVisit.push(candidate.getKey());
+                }
+            }
+        }
+        return dependents;
+    }
+
+    public Set<String> getSourceNames() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    public FileObject getClassesDirectory() {
+        return classesDirectory;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    //**************************************************************************
+    // Updates
+    //**************************************************************************
+
+    /**
+     * Records the result of a compilation.
+     * @param sources the compiled sources, by name.
+     * @param classes the names of the compiled classes, by source name.
+     */
+    public void update(Map<String, FileObject> sources, Map<String, Set<String>> classes) throws IOException {
+        for(Map.Entry<String, FileObject> source : sources.entrySet()) {
+            Entry entry = new Entry();
+            entry.hash = hash(source.getValue());
+            entry.lastModified = source.getValue().getContent().getLastModifiedTime();
+            entry.size = source.getValue().getContent().getSize();
+            entry.classes = classes.getOrDefault(source.getKey(), Collections.emptySet());
+            Entry previous = entries.put(source.getKey(), entry);
+            if(previous != null) {
+                for(String removed : previous.classes) {
+                    if(!entry.classes.contains(removed)) {
+                        getClassFile(removed).delete();
+                    }
+                }
+            }
+        }
+        Set<String> localClasses = new HashSet<>();
+        for(Entry entry : entries.values()) {
+            localClasses.addAll(entry.classes);
+        }
+        for(String sourceName : sources.keySet()) {
+            Entry entry = entries.get(sourceName);
+            entry.dependencies = new HashSet<>();
+            for(String className : entry.classes) {
+                FileObject classFile = getClassFile(className);
+                if(!classFile.exists()) {
+                    continue;
+                }
+                try(InputStream inputStream = classFile.getContent().getInputStream()) {
+                    for(String reference : readClassReferences(IOUtils.toByteArray(inputStream))) {
+                        if(localClasses.contains(reference) && !entry.classes.contains(reference)) {
+                            entry.dependencies.add(reference);
+                        }
+                    }
+                }
+            }
+        }
+        save();
+    }
+
+    public void remove(String sourceName) throws IOException {
+        Entry entry = entries.remove(sourceName);
+        if(entry != null) {
+            for(String className : entry.classes) {
+                getClassFile(className).delete();
+            }
+            save();
+        }
+    }
+
+    public void clear() throws IOException {
+        entries.clear();
+        classesDirectory.deleteAll();
+        classesDirectory.createFolder();
+        save();
+    }
+
+    public FileObject getClassFile(String className) throws FileSystemException {
+        return classesDirectory.resolveFile(JavaCodeBase.classNameToPath(className) + ".class");
+    }
+
+    //**************************************************************************
+    // Persistence
+    //**************************************************************************
+
+    protected void load() throws IOException {
+        File indexFile = new File(directory, INDEX_FILE_NAME);
+        if(!indexFile.exists()) {
+            return;
+        }
+        Properties index = new Properties();
+        try(InputStream inputStream = new FileInputStream(indexFile)) {
+            index.load(inputStream);
+        }
+        for(String sourceName : index.stringPropertyNames()) {
+            try {
+                Entry entry = Entry.parse(index.getProperty(sourceName));
+                boolean complete = true;
+                for(String className : entry.classes) {
+                    complete &= getClassFile(className).exists();
+                }
+                if(complete) {
+                    entries.put(sourceName, entry);
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Ignoring invalid compiled class cache entry for " + sourceName, e);
+            }
+        }
+    }
+
+    protected void save() throws IOException {
+        if(directory == null) {
+            return;
+        }
+        Properties index = new Properties();
+        for(Map.Entry<String, Entry> entry : entries.entrySet()) {
+            index.setProperty(entry.getKey(), entry.getValue().toString());
+        }
+        File indexFile = new File(directory, INDEX_FILE_NAME);
+        File temp = new File(directory, INDEX_FILE_NAME + ".tmp");
+        try(OutputStream outputStream = new FileOutputStream(temp)) {
+            index.store(outputStream, "Compiled class cache");
+        }
+        if(indexFile.exists() && !indexFile.delete() || !temp.renameTo(indexFile)) {
+            throw new IOException("Could not write " + indexFile);
+        }
+    }
+
+    //**************************************************************************
+    // Utilities
+    //**************************************************************************
+
+    /**
+     * Computes a fingerprint of the Java version and of the class path visible from the given class loader, including
+     * the size and modification time of its entries.
+     */
+    public static String computeFingerprint(ClassLoader classLoader) {
+        StringBuilder sb = new StringBuilder(System.getProperty("java.version"));
+        Set<String> entries = new LinkedHashSet<>();
+        for(ClassLoader cl = classLoader; cl != null; cl = cl.getParent()) {
+            if(cl instanceof URLClassLoader) {
+                for(URL url : ((URLClassLoader) cl).getURLs()) {
+                    entries.add(url.toString());
+                }
+            }
+        }
+        String classPath = System.getProperty("java.class.path", "");
+        for(String path : classPath.split(File.pathSeparator)) {
+            if(!path.isEmpty()) {
+                entries.add(new File(path).toURI().toString());
+            }
+        }
+        for(String entry : entries) {
+            sb.append('\n').append(entry);
+            if(entry.startsWith("file:")) {
+                try {
+                    File file = new File(new URL(entry).toURI());
+                    if(file.isFile()) {
+                        sb.append(' ').append(file.length()).append(' ').append(file.lastModified());
+                    }
+                } catch (Exception e) {
+                    logger.debug("Not a file: " + entry, e);
+                }
+            }
+        }
+        return hash(sb.toString());
+    }
+
+    /**
+     * Returns the binary names of the classes referenced by a class file.
+     */
+    public static Set<String> readClassReferences(byte[] classFile) throws IOException {
+        Set<String> references = new HashSet<>();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(classFile));
+        in.readInt(); //Magic
+        in.readUnsignedShort(); //Minor version
+        in.readUnsignedShort(); //Major version
+        int count = in.readUnsignedShort();
+        String[] strings = new String[count];
+        List<Integer> classNames = new ArrayList<>();
+        for(int i = 1; i < count; i++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case 1: //Utf8
+                    strings[i] = in.readUTF();
+                    break;
+                case 7: //Class
+                    classNames.add(in.readUnsignedShort());
+                    break;
+                case 8: case 16: case 19: case 20: //String, MethodType, Module, Package
+                    in.skipBytes(2);
+                    break;
+                case 15: //MethodHandle
+                    in.skipBytes(3);
+                    break;
+                case 3: case 4: case 9: case 10: case 11: case 12: case 17: case 18:
+                    in.skipBytes(4);
+                    break;
+                case 5: case 6: //Long, Double take two slots
+                    in.skipBytes(8);
+                    i++;
+                    break;
+                default:
+                    throw new IOException("Invalid constant pool tag " + tag);
+            }
+        }
+        for(int index : classNames) {
+            String name = strings[index];
+            if(name != null && !name.startsWith("[")) {
+                references.add(name.replace('/', '.'));
+            }
+        }
+        for(String string : strings) {
+            if(string != null && string.indexOf(';') > 0) {
+                Matcher matcher = CLASS_DESCRIPTOR.matcher(string);
+                while (matcher.find()) {
+                    references.add(matcher.group(1).replace('/', '.'));
+                }
+            }
+        }
+        return references;
+    }
+
+    public static String hash(FileObject fileObject) throws IOException {
+        try(InputStream inputStream = fileObject.getContent().getInputStream()) {
+            return hash(IOUtils.toByteArray(inputStream));
+        }
+    }
+
+    public static String hash(String string) {
+        return hash(string.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String hash(byte[] bytes) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new Error(e);
+        }
+        StringBuilder sb = new StringBuilder();
+        for(byte b : digest.digest(bytes)) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    public static class Entry {
+        protected String hash;
+        protected long lastModified;
+        protected long size;
+        protected Set<String> classes = Collections.emptySet();
+        protected Set<String> dependencies = Collections.emptySet();
+
+        public String getHash() {
+            return hash;
+        }
+
+        public Set<String> getClasses() {
+            return classes;
+        }
+
+        public Set<String> getDependencies() {
+            return dependencies;
+        }
+
+        @Override
+        public String toString() {
+            return hash + ";" + lastModified + ";" + size + ";" +
+                    String.join(",", classes) + ";" + String.join(",", dependencies);
+        }
+
+        protected static Entry parse(String string) {
+            String[] parts = string.split(";", -1);
+            Entry entry = new Entry();
+            entry.hash = parts[0];
+            entry.lastModified = Long.parseLong(parts[1]);
+            entry.size = Long.parseLong(parts[2]);
+            entry.classes = split(parts[3]);
+            entry.dependencies = split(parts[4]);
+            return entry;
+        }
+
+        protected static Set<String> split(String string) {
+            return string.isEmpty() ? new HashSet<>() : new HashSet<>(Arrays.asList(string.split(",")));
+        }
+    }
+}
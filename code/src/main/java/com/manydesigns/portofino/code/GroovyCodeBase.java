@@ -7,14 +7,19 @@ import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemException;
 import org.codehaus.groovy.control.CompilerConfiguration;
 import org.slf4j.Logger;
+import org.apache.commons.io.IOUtils;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static com.manydesigns.portofino.code.JavaCodeBase.classNameToPath;
 
@@ -24,6 +29,17 @@ import static com.manydesigns.portofino.code.JavaCodeBase.classNameToPath;
 public class GroovyCodeBase extends AbstractCodeBase {
     
     protected GroovyScriptEngine groovyScriptEngine;
+    /**
+     * In production mode, the directory of the classes compiled by the {@link GroovyPrecompiler}; null in
+     * development mode, where sources are compiled on demand and recompiled when they change.
+     */
+    protected FileObject precompiledDirectory;
+    /**
+     * The directory the paths of the precompiled sources are relative to, i.e. the application directory.
+     */
+    protected FileObject sourceRoot;
+    protected Map<String, List<String>> precompiledSources = Collections.emptyMap();
+    protected final ConcurrentMap<String, Class> precompiledClasses = new ConcurrentHashMap<>();
     private static final Logger logger = LoggerFactory.getLogger(GroovyCodeBase.class);
     
     public GroovyCodeBase(FileObject root) throws IOException {
@@ -45,10 +61,47 @@ public class GroovyCodeBase extends AbstractCodeBase {
         } catch (Exception e) {
             logger.debug("Could not set classpath", e);
         }
-        cc.setRecompileGroovySource(true);
+        boolean development = precompiledDirectory == null;
+        cc.setRecompileGroovySource(development);
         groovyScriptEngine = new GroovyScriptEngine(new URL[] { this.root.getURL() }, parent != null ? parent.asClassLoader() : getClassLoader());
         groovyScriptEngine.setConfig(cc);
-        groovyScriptEngine.getGroovyClassLoader().setShouldRecompile(Boolean.TRUE);
+        groovyScriptEngine.getGroovyClassLoader().setShouldRecompile(development);
+    }
+
+    /**
+     * Switches to production mode: sources compiled by the {@link GroovyPrecompiler} are loaded from the given
+     * directory, once, without checking them for changes. Other sources (e.g. actions created at runtime) are still
+     * compiled on demand, but never recompiled. Class lookups are cached in this code base and in its parents.
+     * @param sourceRoot the directory the precompiler was run on, i.e. the application directory.
+     * @param precompiledDirectory the output directory of the precompiler.
+     */
+    public void usePrecompiledClasses(FileObject sourceRoot, FileObject precompiledDirectory) throws IOException {
+        Properties index = new Properties();
+        try(InputStream inputStream = precompiledDirectory.resolveFile(GroovyPrecompiler.INDEX_FILE_NAME)
+                .getContent().getInputStream()) {
+            index.load(inputStream);
+        }
+        Map<String, List<String>> sources = new HashMap<>();
+        for(String path : index.stringPropertyNames()) {
+            sources.put(path, Arrays.asList(index.getProperty(path).split(",")));
+        }
+        logger.info("Using {} precompiled Groovy sources from {}", sources.size(), precompiledDirectory);
+        this.sourceRoot = sourceRoot;
+        this.precompiledDirectory = precompiledDirectory;
+        this.precompiledSources = sources;
+        precompiledClasses.clear();
+        //The code doesn't change in production, so lookups are cached down the whole chain, e.g. in the Java code
+        //base, which all the classes that are not local to Groovy go through
+        for(CodeBase codeBase = this; codeBase != null; codeBase = codeBase.getParent()) {
+            if(codeBase instanceof AbstractCodeBase) {
+                ((AbstractCodeBase) codeBase).setCacheLookups(true);
+            }
+        }
+        resetGroovyScriptEngine();
+    }
+
+    public boolean isProductionMode() {
+        return precompiledDirectory != null;
     }
 
     public GroovyCodeBase(FileObject root, CodeBase parent) throws IOException {
@@ -58,6 +111,10 @@ public class GroovyCodeBase extends AbstractCodeBase {
     @Override
     protected Class loadLocalClass(String className) throws IOException, ClassNotFoundException {
         String resourceName = classNameToPath(className);
+        if(precompiledDirectory != null) {
+            String path = getSourcePath(root.resolveFile(resourceName + ".groovy"));
+            return precompiledSources.containsKey(path) ? loadPrecompiledClass(path) : null;
+        }
         FileObject fileObject = root.resolveFile(resourceName + ".groovy");
         if(fileObject.exists()) {
             try {
@@ -72,9 +129,36 @@ public class GroovyCodeBase extends AbstractCodeBase {
     }
 
     public Class loadGroovyFile(FileObject fileObject) throws FileSystemException, ResourceException, ScriptException {
+        if(precompiledDirectory != null) {
+            String path = getSourcePath(fileObject);
+            if(precompiledSources.containsKey(path)) {
+                return loadPrecompiledClass(path);
+            }
+        }
         return groovyScriptEngine.loadScriptByName(fileObject.getURL().toString());
     }
 
+    protected String getSourcePath(FileObject fileObject) throws FileSystemException {
+        return sourceRoot.getName().getRelativeName(fileObject.getName());
+    }
+
+    protected Class loadPrecompiledClass(String path) {
+        Class precompiledClass = precompiledClasses.get(path);
+        if(precompiledClass != null) {
+            return precompiledClass;
+        }
+        //Not computeIfAbsent, as defining the class may load other precompiled classes (e.g. its superclass)
+        List<String> classNames = precompiledSources.get(path);
+        PrecompiledSourceClassLoader loader = new PrecompiledSourceClassLoader(path, classNames);
+        try {
+            precompiledClass = loader.loadClass(classNames.get(0));
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Invalid precompiled source " + path, e);
+        }
+        Class existing = precompiledClasses.putIfAbsent(path, precompiledClass);
+        return existing != null ? existing : precompiledClass;
+    }
+
     @Override
     public ClassLoader getClassLoader() {
         return classLoader != null ? classLoader : Thread.currentThread().getContextClassLoader();
@@ -83,6 +167,54 @@ public class GroovyCodeBase extends AbstractCodeBase {
     @Override
     public void clear(boolean recursively) throws Exception {
         super.clear(recursively);
+        precompiledClasses.clear();
         resetGroovyScriptEngine();
     }
+
+    /**
+     * Defines the classes compiled from a single source, delegating the others to the code base. Like
+     * {@link groovy.util.GroovyScriptEngine} does, each source has its own class loader, so that the classes of
+     * different sources may have the same name.
+     */
+    protected class PrecompiledSourceClassLoader extends ClassLoader {
+
+        protected final String path;
+        protected final Set<String> classNames;
+
+        public PrecompiledSourceClassLoader(String path, Collection<String> classNames) {
+            super(asClassLoader());
+            this.path = path;
+            this.classNames = new HashSet<>(classNames);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if(!classNames.contains(name)) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> c = findLoadedClass(name);
+                if(c == null) {
+                    c = findClass(name);
+                }
+                if(resolve) {
+                    resolveClass(c);
+                }
+                return c;
+            }
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            try {
+                FileObject classFile = precompiledDirectory.resolveFile(path + "/" + classNameToPath(name) + ".class");
+                try(InputStream inputStream = classFile.getContent().getInputStream()) {
+                    byte[] code = IOUtils.toByteArray(inputStream);
+                    return defineClass(name, code, 0, code.length);
+                }
+            } catch (IOException e) {
+                throw new ClassNotFoundException(name, e);
+            }
+        }
+    }
 }
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2016 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.portofino.code;
+
+import groovy.lang.GroovyClassLoader;
+import org.apache.commons.io.FileUtils;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.control.SourceUnit;
+import org.codehaus.groovy.tools.GroovyClass;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static com.manydesigns.portofino.code.JavaCodeBase.classNameToPath;
+
+/**
+ * Compiles ahead of time the Groovy sources of an application (e.g. Security.groovy and the actions), so that
+ * a {@link GroovyCodeBase} in production mode loads them without compiling them or checking them for changes.<br>
+ * Each source is compiled on its own, just like {@link groovy.util.GroovyScriptEngine} does, because sources in
+ * different directories (typically, action.groovy files) may declare classes with the same name. The classes of a
+ * source are written to a directory named after the path of the source relative to the application directory,
+ * e.g. <code>actions/welcome/action.groovy/Welcome.class</code>, and an index lists the classes of each source,
+ * the main one first.<br>
+ * The compiler is meant to be run at build time, e.g. with the exec-maven-plugin:
+ * <pre>GroovyPrecompiler &lt;application directory&gt; &lt;output directory&gt; [&lt;code base directory&gt;]</pre>
+ * where the code base directory, relative to the application directory, defaults to "classes".
+ *
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class GroovyPrecompiler {
+
+    public static final String INDEX_FILE_NAME = "index.properties";
+    public static final String DEFAULT_CODE_BASE_DIRECTORY = "classes";
+
+    private static final Logger logger = LoggerFactory.getLogger(GroovyPrecompiler.class);
+
+    protected final File sourceRoot;
+    protected final File codeBaseDirectory;
+    protected final ClassLoader classLoader;
+
+    public GroovyPrecompiler(File sourceRoot, File codeBaseDirectory, ClassLoader classLoader) {
+        this.sourceRoot = sourceRoot;
+        this.codeBaseDirectory = codeBaseDirectory;
+        this.classLoader = classLoader;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if(args.length < 2 || args.length > 3) {
+            System.err.println(
+                    "Usage: GroovyPrecompiler <application directory> <output directory> [<code base directory>]");
+            System.exit(1);
+        }
+        File sourceRoot = new File(args[0]);
+        File codeBaseDirectory = new File(sourceRoot, args.length > 2 ? args[2] : DEFAULT_CODE_BASE_DIRECTORY);
+        GroovyPrecompiler precompiler =
+                new GroovyPrecompiler(sourceRoot, codeBaseDirectory, Thread.currentThread().getContextClassLoader());
+        int count = precompiler.compile(new File(args[1]));
+        logger.info("Compiled {} Groovy sources from {} to {}", count, sourceRoot, args[1]);
+    }
+
+    /**
+     * Compiles all the Groovy sources in the application directory, replacing the contents of the output directory.
+     * @return the number of sources compiled.
+     */
+    public int compile(File outputDirectory) throws IOException {
+        if(outputDirectory.exists()) {
+            FileUtils.deleteDirectory(outputDirectory);
+        }
+        CompilerConfiguration configuration = new CompilerConfiguration(CompilerConfiguration.DEFAULT);
+        configuration.setSourceEncoding(StandardCharsets.UTF_8.name());
+        Properties index = new Properties();
+        try(GroovyClassLoader groovyClassLoader = new GroovyClassLoader(classLoader, configuration)) {
+            //Sources in the code base are found by class name, as they are at runtime
+            groovyClassLoader.addClasspath(codeBaseDirectory.getAbsolutePath());
+            for(File source : FileUtils.listFiles(sourceRoot, new String[] { "groovy" }, true)) {
+                String path = getRelativePath(source);
+                index.setProperty(path, String.join(",", compile(source, path, configuration, groovyClassLoader, outputDirectory)));
+            }
+        }
+        if(!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+            throw new IOException("Could not create " + outputDirectory);
+        }
+        try(OutputStream outputStream = new FileOutputStream(new File(outputDirectory, INDEX_FILE_NAME))) {
+            index.store(outputStream, "Precompiled Groovy sources");
+        }
+        return index.size();
+    }
+
+    protected List<String> compile(
+            File source, String path, CompilerConfiguration configuration, GroovyClassLoader groovyClassLoader,
+            File outputDirectory) throws IOException {
+        logger.debug("Compiling {}", path);
+        CompilationUnit compilationUnit = new CompilationUnit(configuration, null, groovyClassLoader);
+        SourceUnit sourceUnit = compilationUnit.addSource(source);
+        compilationUnit.compile(Phases.CLASS_GENERATION);
+        List<String> classNames = new ArrayList<>();
+        //Like GroovyClassLoader.parseClass, the main class is the first one declared in the source
+        for(ClassNode classNode : sourceUnit.getAST().getClasses()) {
+            classNames.add(classNode.getName());
+        }
+        File classesDirectory = new File(outputDirectory, path);
+        for(GroovyClass groovyClass : compilationUnit.getClasses()) {
+            //The unit also includes the other sources the compiler found on the classpath; they're compiled on their own
+            if(isDeclaredIn(groovyClass.getName(), classNames)) {
+                FileUtils.writeByteArrayToFile(
+                        new File(classesDirectory, classNameToPath(groovyClass.getName()) + ".class"),
+                        groovyClass.getBytes());
+                if(!classNames.contains(groovyClass.getName())) {
+                    classNames.add(groovyClass.getName());
+                }
+            }
+        }
+        return classNames;
+    }
+
+    /**
+     * Whether a generated class is one of the given top level classes or one of their inner classes and closures.
+     */
+    protected static boolean isDeclaredIn(String className, List<String> topLevelClassNames) {
+        for(String topLevelClassName : topLevelClassNames) {
+            if(className.equals(topLevelClassName) || className.startsWith(topLevelClassName + "$")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected String getRelativePath(File source) {
+        return sourceRoot.toPath().toAbsolutePath().relativize(source.toPath().toAbsolutePath())
+                .toString().replace(File.separatorChar, '/');
+    }
+}
@@ -37,6 +37,8 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.charset.Charset;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * @author Angelo Lupo          - angelo.lupo@manydesigns.com
@@ -51,6 +53,15 @@ public class JavaCodeBase extends AbstractCodeBase {
     protected InMemoryFileManager fileManager;
     protected VFSClassloader sourceClassloader;
     protected VFSClassloader compiledClassloader;
+    /**
+     * Directory where compiled classes are persisted across restarts, or null to keep them in memory.
+     */
+    protected final File cacheDirectory;
+    protected CompiledClassCache compiledClassCache;
+    /**
+     * The class or source file of the classes found in this code base, so that they are not searched again.
+     */
+    protected final ConcurrentMap<String, FileObject> resolvedFiles = new ConcurrentHashMap<>();
 
     private static final Logger logger = LoggerFactory.getLogger(JavaCodeBase.class);
 
@@ -59,18 +70,37 @@ public class JavaCodeBase extends AbstractCodeBase {
     }
 
     public JavaCodeBase(FileObject root, CodeBase parent, ClassLoader classLoader) throws IOException {
+        this(root, parent, classLoader, null);
+    }
+
+    /**
+     * Creates a code base that persists the classes compiled from Java sources in a subdirectory of the given
+     * directory, so that they are compiled again only when the sources or the class path change.
+     */
+    public JavaCodeBase(FileObject root, CodeBase parent, ClassLoader classLoader, File cacheDirectory)
+            throws IOException {
         super(root, parent, classLoader);
+        this.cacheDirectory = cacheDirectory;
         resetFileManagerAndClassLoader();
     }
 
-    public void resetFileManagerAndClassLoader() throws IOException {
+    public synchronized void resetFileManagerAndClassLoader() throws IOException {
         if(fileManager != null) {
             fileManager.close();
         }
+        if(cacheDirectory != null) {
+            if(compiledClassCache == null) {
+                compiledClassCache = new CompiledClassCache(cacheDirectory, root, getClassLoader());
+            }
+        } else {
+            compiledClassCache = new CompiledClassCache(VFS.getManager().resolveFile("ram://" + UUID.randomUUID()));
+        }
         if(compiler != null) {
-            fileManager = new InMemoryFileManager(compiler.getStandardFileManager(diagnosticCollector, null, null));
-            sourceClassloader = new VFSClassloader(fileManager.directory, getClassLoader());
+            fileManager = new InMemoryFileManager(
+                    compiler.getStandardFileManager(diagnosticCollector, null, null),
+                    compiledClassCache.getClassesDirectory());
         }
+        sourceClassloader = new VFSClassloader(compiledClassCache.getClassesDirectory(), getClassLoader());
         compiledClassloader = new VFSClassloader(root, getClassLoader());
     }
 
@@ -80,20 +110,28 @@ public class JavaCodeBase extends AbstractCodeBase {
     
     @Override
     protected Class loadLocalClass(String className) throws FileSystemException, ClassNotFoundException {
-        String resourceName = classNameToPath(className);
-        FileObject fileObject = root.resolveFile(resourceName + ".class");
-        if(fileObject.exists()) {
-            return compiledClassloader.loadClass(className);
-        }
-        fileObject = root.resolveFile(resourceName + ".java");
-        if(fileObject.exists()) {
-            if(compiler != null) {
-                return loadJavaFile(fileObject, className);
+        FileObject fileObject = resolvedFiles.get(className);
+        if(fileObject == null) {
+            String resourceName = classNameToPath(className);
+            fileObject = root.resolveFile(resourceName + ".class");
+            if(!fileObject.exists()) {
+                fileObject = root.resolveFile(resourceName + ".java");
+                if(!fileObject.exists()) {
+                    return null;
+                }
+            }
+            resolvedFiles.put(className, fileObject);
+        }
+        try {
+            if("class".equals(fileObject.getName().getExtension())) {
+                return compiledClassloader.loadClass(className);
             } else {
-                throw new ClassNotFoundException("Java compiler not available to compile " + fileObject.getName().getPath());
+                return loadJavaFile(fileObject, className);
             }
+        } catch (ClassNotFoundException e) {
+            resolvedFiles.remove(className);
+            throw e;
         }
-        return null;
     }
 
     public Class loadClassFile(FileObject location, String name) throws ClassNotFoundException {
@@ -107,22 +145,130 @@ public class JavaCodeBase extends AbstractCodeBase {
         }
     }
 
-    public Class loadJavaFile(final FileObject fileObject, final String name) throws ClassNotFoundException {
+    /**
+     * Loads the class defined by the given source, compiling it if it has changed since it was last compiled.
+     * Sources depending on it are compiled again as well.
+     */
+    public synchronized Class loadJavaFile(final FileObject fileObject, final String name) throws ClassNotFoundException {
         try {
-            JavaFileObject javaFile = new VFSJavaFileObject(JavaFileObject.Kind.SOURCE, fileObject, name);
-            JavaCompiler.CompilationTask task =
-                    compiler.getTask(null, fileManager, null, null, null, Collections.singletonList(javaFile));
-            if(task.call()) {
-                return sourceClassloader.loadClass(name);
-            } else {
-                logger.warn("Compilation errors");
-                //TODO log compilation errors
-                throw new ClassNotFoundException(name);
+            if(!compiledClassCache.isFresh(name, fileObject)) {
+                if(compiler == null) {
+                    throw new ClassNotFoundException(
+                            "Java compiler not available to compile " + fileObject.getName().getPath());
+                }
+                Map<String, FileObject> sources = new LinkedHashMap<>();
+                sources.put(name, fileObject);
+                for(String dependent : compiledClassCache.getDependents(sources.keySet())) {
+                    FileObject source = root.resolveFile(classNameToPath(dependent) + ".java");
+                    if(source.exists()) {
+                        sources.put(dependent, source);
+                    } else {
+                        compiledClassCache.remove(dependent);
+                    }
+                }
+                if(!compile(sources)) {
+                    throw new ClassNotFoundException(name);
+                }
             }
+            return sourceClassloader.loadClass(name);
+        } catch (ClassNotFoundException e) {
+            throw e;
         } catch (Exception e) {
             throw new ClassNotFoundException(name, e);
         }
     }
+
+    /**
+     * Compiles, in a single batch, all the Java sources in the code base that have not been compiled yet or have
+     * changed since they were last compiled, together with the sources depending on them.
+     * @return the number of compiled sources, or -1 if the compilation failed.
+     */
+    public synchronized int compileAll() throws IOException {
+        if(compiler == null) {
+            logger.debug("Java compiler not available, not compiling {}", root);
+            return 0;
+        }
+        Map<String, FileObject> sources = new LinkedHashMap<>();
+        FileObject[] javaFiles = root.findFiles(new FileExtensionSelector("java"));
+        Set<String> existing = new HashSet<>();
+        if(javaFiles != null) {
+            for(FileObject javaFile : javaFiles) {
+                String relativePath = root.getName().getRelativeName(javaFile.getName());
+                String name = FilenameUtils.removeExtension(relativePath).replace(FileName.SEPARATOR_CHAR, '.');
+                existing.add(name);
+                if(!compiledClassCache.isFresh(name, javaFile)) {
+                    sources.put(name, javaFile);
+                }
+            }
+        }
+        for(String removed : new ArrayList<>(compiledClassCache.getSourceNames())) {
+            if(!existing.contains(removed)) {
+                compiledClassCache.remove(removed);
+            }
+        }
+        for(String dependent : compiledClassCache.getDependents(new ArrayList<>(sources.keySet()))) {
+            if(existing.contains(dependent)) {
+                sources.put(dependent, root.resolveFile(classNameToPath(dependent) + ".java"));
+            }
+        }
+        if(sources.isEmpty()) {
+            logger.debug("All the Java sources in {} are up to date", root);
+            return 0;
+        }
+        long start = System.currentTimeMillis();
+        if(compile(sources)) {
+            logger.info("Compiled {} Java sources in {} ms", sources.size(), System.currentTimeMillis() - start);
+            return sources.size();
+        } else {
+            return -1;
+        }
+    }
+
+    /**
+     * Compiles the given sources with a single javac task. Must be called holding the lock on this code base.
+     */
+    protected boolean compile(Map<String, FileObject> sources) throws IOException {
+        List<JavaFileObject> javaFiles = new ArrayList<>(sources.size());
+        for(Map.Entry<String, FileObject> source : sources.entrySet()) {
+            try {
+                javaFiles.add(new VFSJavaFileObject(JavaFileObject.Kind.SOURCE, source.getValue(), source.getKey()));
+            } catch (URISyntaxException e) {
+                throw new IOException(e);
+            }
+        }
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        fileManager.compiledClasses.clear();
+        JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, null, null, javaFiles);
+        if(!task.call()) {
+            for(Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                if(diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                    logger.warn("Compilation error in {}, line {}: {}",
+                            diagnostic.getSource() != null ? diagnostic.getSource().getName() : root,
+                            diagnostic.getLineNumber(), diagnostic.getMessage(null));
+                }
+            }
+            return false;
+        }
+        //Sources compiled implicitly because the given ones refer to them are recorded as well
+        Map<String, FileObject> compiledSources = new LinkedHashMap<>(sources);
+        Map<String, Set<String>> classes = new HashMap<>();
+        boolean reload = false;
+        for(InMemoryFileManager.CompiledClass compiledClass : fileManager.compiledClasses) {
+            String sourceName = compiledClass.sourceName;
+            if(compiledClass.source != null) {
+                compiledSources.putIfAbsent(sourceName, compiledClass.source);
+            }
+            classes.computeIfAbsent(sourceName, k -> new HashSet<>()).add(compiledClass.name);
+            reload |= sourceClassloader.isLoaded(compiledClass.name);
+        }
+        compiledSources.keySet().remove(null);
+        compiledClassCache.update(compiledSources, classes);
+        if(reload) {
+            //Classes already defined cannot be redefined, so their new version is loaded by a new class loader
+            sourceClassloader = new VFSClassloader(compiledClassCache.getClassesDirectory(), getClassLoader());
+        }
+        return true;
+    }
     
     protected void listClassFiles(String packageName, Collection<JavaFileObject> list) throws IOException {
         Enumeration<URL> resources = getClassLoader().getResources(packageName.replace('.', '/'));
@@ -155,7 +301,7 @@ public class JavaCodeBase extends AbstractCodeBase {
                 if(child.getType() == FileType.FILE && "java".equalsIgnoreCase(child.getName().getExtension())) {
                     try {
                         String className = FilenameUtils.removeExtension(child.getName().getBaseName());
-                        String binaryName = packageName + "." + className;
+                        String binaryName = packageName.isEmpty() ? className : packageName + "." + className;
                         list.add(new VFSJavaFileObject(JavaFileObject.Kind.SOURCE, child, binaryName));
                     } catch (URISyntaxException e) {
                         throw new IOException(e);
@@ -181,6 +327,10 @@ public class JavaCodeBase extends AbstractCodeBase {
             this.fileObject = fileObject;
         }
 
+        public boolean isLoaded(String name) {
+            return findLoadedClass(name) != null;
+        }
+
         @Override
         protected Class<?> findClass(String name) throws ClassNotFoundException {
             synchronized (fileObject) {
@@ -249,6 +399,10 @@ public class JavaCodeBase extends AbstractCodeBase {
     public class InMemoryFileManager extends ForwardingJavaFileManager<JavaFileManager> {
 
         public final FileObject directory;
+        /**
+         * The classes written by the last compilation task.
+         */
+        public final List<CompiledClass> compiledClasses = new ArrayList<>();
 
         /**
          * Creates a new instance of ForwardingJavaFileManager.
@@ -256,9 +410,17 @@ public class JavaCodeBase extends AbstractCodeBase {
          * @throws IOException in the unlikely case of I/O errors accessing the RAM virtual filesystem.
          */
         public InMemoryFileManager(JavaFileManager fileManager) throws IOException {
+            this(fileManager, VFS.getManager().resolveFile("ram://" + UUID.randomUUID().toString()));
+        }
+
+        /**
+         * Creates a new instance of ForwardingJavaFileManager.
+         * @param fileManager delegate to this file manager
+         * @param directory where to write compiled classes.
+         */
+        public InMemoryFileManager(JavaFileManager fileManager, FileObject directory) {
             super(fileManager);
-            FileSystemManager fsManager = VFS.getManager();
-            directory = fsManager.resolveFile("ram://" + UUID.randomUUID().toString());
+            this.directory = directory;
         }
 
         @Override
@@ -302,7 +464,14 @@ public class JavaCodeBase extends AbstractCodeBase {
 
         @Override
         public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, javax.tools.FileObject sibling) throws IOException {
-            return new CompiledClass(super.getJavaFileForOutput(location, className, kind, sibling), className);
+            CompiledClass compiledClass =
+                    new CompiledClass(super.getJavaFileForOutput(location, className, kind, sibling), className);
+            if(sibling instanceof VFSJavaFileObject) {
+                compiledClass.source = ((VFSJavaFileObject) sibling).getSource();
+                compiledClass.sourceName = ((VFSJavaFileObject) sibling).getBinaryName();
+            }
+            compiledClasses.add(compiledClass);
+            return compiledClass;
         }
 
         @Override
@@ -313,6 +482,11 @@ public class JavaCodeBase extends AbstractCodeBase {
 
         public class CompiledClass extends ForwardingJavaFileObject<JavaFileObject> {
             public final String name;
+            /**
+             * The source this class was compiled from, if known.
+             */
+            public FileObject source;
+            public String sourceName;
 
             public CompiledClass(JavaFileObject fileObject, String name) {
                 super(fileObject);
@@ -357,8 +531,13 @@ public class JavaCodeBase extends AbstractCodeBase {
         }
     }
 
+    public CompiledClassCache getCompiledClassCache() {
+        return compiledClassCache;
+    }
+
     @Override
     public void clear(boolean recursively) throws Exception {
+        resolvedFiles.clear();
         super.clear(recursively);
         resetFileManagerAndClassLoader();
     }
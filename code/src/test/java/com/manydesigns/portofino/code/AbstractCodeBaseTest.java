@@ -0,0 +1,88 @@
+package com.manydesigns.portofino.code;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+public class AbstractCodeBaseTest {
+
+    @Test
+    public void testLookupsAreNotCachedByDefault() throws Exception {
+        CountingCodeBase codeBase = new CountingCodeBase();
+        codeBase.loadClass(String.class.getName());
+        assertTrue(codeBase.lookups.isEmpty());
+
+        codeBase.local = null;
+        try {
+            codeBase.loadClass("local.Local");
+            fail("Class found before its source exists");
+        } catch (ClassNotFoundException e) {
+            //Expected
+        }
+        codeBase.local = Local.class;
+        assertEquals(codeBase.loadClass("local.Local"), Local.class);
+        assertEquals(codeBase.loadClass("local.Local"), Local.class);
+        assertEquals(codeBase.lookups.size(), 3);
+        codeBase.close();
+    }
+
+    @Test
+    public void testLookupsAreCached() throws Exception {
+        CountingCodeBase codeBase = new CountingCodeBase();
+        codeBase.setCacheLookups(true);
+        for(int i = 0; i < 2; i++) {
+            codeBase.loadClass(AbstractCodeBaseTest.class.getName());
+            assertEquals(codeBase.lookups, Collections.singletonList(AbstractCodeBaseTest.class.getName()));
+        }
+        for(int i = 0; i < 2; i++) {
+            assertEquals(codeBase.loadClass("local.Local"), Local.class);
+        }
+        assertEquals(codeBase.lookups.size(), 2);
+
+        codeBase.getReloads().onNext(Local.class);
+        codeBase.loadClass(AbstractCodeBaseTest.class.getName());
+        assertEquals(codeBase.lookups.size(), 3);
+
+        codeBase.clear();
+        codeBase.loadClass("local.Local");
+        assertEquals(codeBase.lookups.size(), 4);
+        codeBase.close();
+    }
+
+    @Test
+    public void testExcludedPackages() throws Exception {
+        CountingCodeBase codeBase = new CountingCodeBase();
+        codeBase.setExcludedPackages(Collections.singletonList("local."));
+        try {
+            codeBase.loadClass("local.Local");
+            fail("Excluded class found");
+        } catch (ClassNotFoundException e) {
+            assertTrue(codeBase.lookups.isEmpty());
+        }
+        codeBase.loadClass(String.class.getName());
+        assertEquals(codeBase.lookups, Collections.singletonList(String.class.getName()));
+        codeBase.close();
+    }
+
+    public static class Local {}
+
+    protected static class CountingCodeBase extends AbstractCodeBase {
+        protected final List<String> lookups = new ArrayList<>();
+        protected Class local = Local.class;
+
+        public CountingCodeBase() {
+            super(null, null, AbstractCodeBaseTest.class.getClassLoader());
+        }
+
+        @Override
+        protected Class loadLocalClass(String className) {
+            lookups.add(className);
+            return className.equals("local.Local") ? local : null;
+        }
+    }
+
+}
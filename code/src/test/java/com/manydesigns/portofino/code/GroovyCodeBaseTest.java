@@ -0,0 +1,112 @@
+package com.manydesigns.portofino.code;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.VFS;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+public class GroovyCodeBaseTest {
+
+    protected File directory;
+
+    @BeforeMethod
+    public void createDirectory() throws Exception {
+        directory = Files.createTempDirectory("portofino-groovy").toFile();
+    }
+
+    @AfterMethod
+    public void deleteDirectory() throws Exception {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void testPrecompiledClasses() throws Exception {
+        File application = new File(directory, "application");
+        write(new File(application, "classes/lib/Greeter.groovy"),
+                "package lib\nclass Greeter { static String greet(String name) { [name].collect { \"Hello, $it\" }[0] } }");
+        write(new File(application, "actions/a/action.groovy"),
+                "class Action { String run() { lib.Greeter.greet('a') } }");
+        write(new File(application, "actions/b/action.groovy"),
+                "class Action { String run() { lib.Greeter.greet('b') } }");
+        File output = new File(directory, "precompiled");
+        GroovyPrecompiler precompiler = new GroovyPrecompiler(
+                application, new File(application, "classes"), getClass().getClassLoader());
+        assertEquals(precompiler.compile(output), 3);
+        assertTrue(new File(output, "actions/a/action.groovy/Action.class").isFile());
+
+        FileObject applicationRoot = VFS.getManager().toFileObject(application);
+        GroovyCodeBase codeBase = new GroovyCodeBase(applicationRoot.resolveFile("classes"));
+        codeBase.usePrecompiledClasses(applicationRoot, VFS.getManager().toFileObject(output));
+        assertTrue(codeBase.isProductionMode());
+        //Sources are not looked at anymore
+        FileUtils.deleteDirectory(new File(application, "classes"));
+
+        Class greeter = codeBase.loadClass("lib.Greeter");
+        assertSame(codeBase.loadClass("lib.Greeter"), greeter);
+        FileObject actionA = applicationRoot.resolveFile("actions/a/action.groovy");
+        Class a = codeBase.loadGroovyFile(actionA);
+        Class b = codeBase.loadGroovyFile(applicationRoot.resolveFile("actions/b/action.groovy"));
+        assertEquals(a.getName(), "Action");
+        assertNotSame(a, b);
+        assertSame(codeBase.loadGroovyFile(actionA), a);
+        assertEquals(a.getMethod("run").invoke(a.newInstance()), "Hello, a");
+        assertEquals(b.getMethod("run").invoke(b.newInstance()), "Hello, b");
+        assertSame(a.getClassLoader().loadClass("lib.Greeter"), greeter);
+
+        //Sources that were not precompiled are still compiled on demand
+        write(new File(application, "actions/c/action.groovy"), "class Other {}");
+        assertEquals(codeBase.loadGroovyFile(applicationRoot.resolveFile("actions/c/action.groovy")).getName(), "Other");
+        codeBase.close();
+    }
+
+    @Test
+    public void testProductionModeCachesLookupsInParents() throws Exception {
+        File application = new File(directory, "application");
+        write(new File(application, "classes/lib/Greeter.groovy"), "package lib\nclass Greeter {}");
+        File output = new File(directory, "precompiled");
+        new GroovyPrecompiler(application, new File(application, "classes"), getClass().getClassLoader())
+                .compile(output);
+
+        FileObject applicationRoot = VFS.getManager().toFileObject(application);
+        FileObject classes = applicationRoot.resolveFile("classes");
+        List<String> javaLookups = new ArrayList<>();
+        JavaCodeBase javaCodeBase = new JavaCodeBase(classes, null, getClass().getClassLoader()) {
+            @Override
+            protected Class loadLocalClass(String className) throws FileSystemException, ClassNotFoundException {
+                //Looking up a local class is what accesses the file system
+                javaLookups.add(className);
+                return super.loadLocalClass(className);
+            }
+        };
+        GroovyCodeBase codeBase = new GroovyCodeBase(classes, javaCodeBase);
+        assertFalse(javaCodeBase.isCacheLookups());
+        codeBase.usePrecompiledClasses(applicationRoot, VFS.getManager().toFileObject(output));
+        assertTrue(javaCodeBase.isCacheLookups());
+
+        //Neither local nor in an excluded package: it's found by the class loader, after the Java code base
+        String className = GroovyCodeBaseTest.class.getName();
+        for(int i = 0; i < 3; i++) {
+            assertSame(codeBase.loadClass(className), GroovyCodeBaseTest.class);
+            assertSame(codeBase.asClassLoader().loadClass(className), GroovyCodeBaseTest.class);
+        }
+        assertEquals(javaLookups, Collections.singletonList(className));
+        codeBase.close();
+    }
+
+    protected void write(File file, String source) throws Exception {
+        FileUtils.write(file, source, StandardCharsets.UTF_8);
+    }
+
+}
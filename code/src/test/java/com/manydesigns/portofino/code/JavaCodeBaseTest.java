@@ -0,0 +1,93 @@
+package com.manydesigns.portofino.code;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.VFS;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import static org.testng.Assert.*;
+
+public class JavaCodeBaseTest {
+
+    protected File sources;
+    protected File cache;
+
+    @BeforeMethod
+    public void createDirectories() throws Exception {
+        sources = Files.createTempDirectory("java-codebase").toFile();
+        cache = Files.createTempDirectory("java-codebase-cache").toFile();
+        write("test/A.java", "package test; public class A { public String get() { return new B().get(); } }");
+        write("test/B.java", "package test; public class B { public String get() { return \"b\"; } }");
+        write("test/C.java", "package test; public class C { public String get() { return \"c\"; } }");
+    }
+
+    @AfterMethod
+    public void deleteDirectories() throws Exception {
+        FileUtils.deleteDirectory(sources);
+        FileUtils.deleteDirectory(cache);
+    }
+
+    @Test
+    public void testCompiledClassesArePersisted() throws Exception {
+        FileObject root = VFS.getManager().toFileObject(sources);
+        JavaCodeBase codeBase = new JavaCodeBase(root, null, getClass().getClassLoader(), cache);
+        assertEquals(codeBase.compileAll(), 3);
+        assertEquals(invoke(codeBase.loadClass("test.A")), "b");
+        assertEquals(codeBase.getCompiledClassCache().get("test.A").getDependencies(), Collections.singleton("test.B"));
+        codeBase.close();
+
+        //After a restart, nothing needs to be compiled
+        codeBase = new JavaCodeBase(root, null, getClass().getClassLoader(), cache);
+        codeBase.compiler = null;
+        assertEquals(codeBase.compileAll(), 0);
+        assertEquals(invoke(codeBase.loadClass("test.A")), "b");
+        codeBase.close();
+
+        //Only the changed source and its dependents are compiled again
+        write("test/B.java", "package test; public class B { public String get() { return \"changed\"; } }");
+        codeBase = new JavaCodeBase(root, null, getClass().getClassLoader(), cache);
+        assertEquals(codeBase.compileAll(), 2);
+        assertEquals(invoke(codeBase.loadClass("test.A")), "changed");
+        codeBase.close();
+    }
+
+    @Test
+    public void testChangedSourcesAreReloaded() throws Exception {
+        FileObject root = VFS.getManager().toFileObject(sources);
+        JavaCodeBase codeBase = new JavaCodeBase(root, null, getClass().getClassLoader());
+        Class a = codeBase.loadClass("test.A");
+        assertEquals(invoke(a), "b");
+        codeBase.loadClass("test.C");
+        write("test/B.java", "package test; public class B { public String get() { return \"changed\"; } }");
+        Class reloaded = codeBase.loadClass("test.B");
+        assertEquals(invoke(reloaded), "changed");
+        Class reloadedA = codeBase.loadClass("test.A");
+        assertNotSame(reloadedA, a);
+        assertEquals(invoke(reloadedA), "changed");
+        assertEquals(invoke(codeBase.loadClass("test.C")), "c");
+        codeBase.close();
+    }
+
+    protected static Object invoke(Class theClass) throws Exception {
+        Object instance = theClass.getConstructor().newInstance();
+        return theClass.getMethod("get").invoke(instance);
+    }
+
+    protected void write(String path, String source) throws Exception {
+        File file = new File(sources, path);
+        long lastModified = file.exists() ? file.lastModified() : 0;
+        FileUtils.write(file, source, StandardCharsets.UTF_8);
+        //Make sure the change is visible even with a coarse file system timestamp resolution
+        if(file.lastModified() <= lastModified) {
+            assertTrue(file.setLastModified(lastModified + 1000));
+        }
+    }
+
+}
@@ -26,28 +26,71 @@ import org.apache.commons.vfs2.FileSystemException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 
 /**
+ * A ResourceResolver that caches the resources resolved by another resolver, as well as the files they are resolved
+ * from. Caches are bounded, evicting the least recently used entries. How stale entries are detected depends on
+ * the configured {@link StalenessCheck}.
+ *
  * @author Angelo Lupo          - angelo.lupo@manydesigns.com
  * @author Giampiero Granatella - giampiero.granatella@manydesigns.com
  * @author Emanuele Poggi       - emanuele.poggi@manydesigns.com
  * @author Alessio Stalla       - alessio.stalla@manydesigns.com
  */
-public class CachingResourceResolver implements ResourceResolver {
-    
-    private final ConcurrentMap<String, Cached> cache = new ConcurrentHashMap<>();
+public class CachingResourceResolver implements ResourceResolver, Closeable {
+
+    public static final int DEFAULT_MAX_SIZE = 1000;
+
+    /**
+     * Strategies to detect that a cached entry is stale.
+     */
+    public enum StalenessCheck {
+        /**
+         * Compare the last modified time of the file on every cache hit. Always accurate, but costs a file system
+         * access per hit.
+         */
+        POLL,
+        /**
+         * Invalidate entries when the file system reports a change to their files. Falls back to {@link #POLL} for
+         * files that cannot be watched, e.g. because they're not on the local file system.
+         */
+        WATCH,
+        /**
+         * Never check for changes. Entries are only reloaded after being evicted or when the cache is cleared.
+         */
+        NONE
+    }
+
+    private Map<String, Cached> cache;
+    private Map<String, Cached<FileObject>> locationCache;
     protected static final Logger logger = LoggerFactory.getLogger(CachingResourceResolver.class);
     protected ResourceResolver delegate;
-    
-    protected CachingResourceResolver() {}
+    protected StalenessCheck stalenessCheck = StalenessCheck.POLL;
+    protected int maxSize;
+    protected volatile FileWatcher fileWatcher;
+
+    protected CachingResourceResolver() {
+        setMaxSize(DEFAULT_MAX_SIZE);
+    }
     
     public CachingResourceResolver(ResourceResolver delegate) {
+        this();
         this.delegate = delegate;
     }
 
+    public CachingResourceResolver(ResourceResolver delegate, StalenessCheck stalenessCheck, int maxSize) {
+        this(delegate);
+        setStalenessCheck(stalenessCheck);
+        setMaxSize(maxSize);
+    }
+
     @Override
     public boolean supports(Class<?> type) {
         return delegate.supports(type);
@@ -69,29 +112,40 @@ public class CachingResourceResolver implements ResourceResolver {
         }
         String key = location.getName().getURI() + " " + type.getName();
         Cached<T> cached = cache.get(key);
-        if(cached == null) {
+        if(cached == null || isStale(location, cached)) {
             return cache(key, location, type).value;
         } else {
-            long lastModifiedTime = getLastModifiedTime(location);
-            if(lastModifiedTime > cached.timestamp) {
-                logger.debug("Timestamp for {} is {}, was cached with last-modified time {}", location, lastModifiedTime, cached.timestamp);
-                return cache(key, location, type).value;
-            } else {
-                return type.cast(cached.value);
-            }
+            return type.cast(cached.value);
         }
     }
 
     @Override
     public FileObject resolve(FileObject location) throws FileSystemException {
-        //TODO cache this too?
-        return delegate.resolve(location);
+        return resolve(location, (String) null);
     }
 
     @Override
     public FileObject resolve(FileObject location, String name) throws FileSystemException {
-        //TODO cache this too?
-        return delegate.resolve(location, name);
+        if(location == null) {
+            return null;
+        }
+        String key = name != null ? location.getName().getURI() + " " + name : location.getName().getURI();
+        Cached<FileObject> cached = locationCache.get(key);
+        if(cached == null || isLocationStale(location, cached)) {
+            if(cached != null && cached.version != FileWatcher.NOT_WATCHED) {
+                //File objects cache their type, which the file watcher knows to have changed
+                location.refresh();
+                if(cached.value != null) {
+                    cached.value.refresh();
+                }
+            }
+            long version = watch(location);
+            long timestamp = version == FileWatcher.NOT_WATCHED ? getLastModifiedTimeIfExists(location) : 0;
+            FileObject resolved = name != null ? delegate.resolve(location, name) : delegate.resolve(location);
+            cached = new Cached<>(resolved, timestamp, version);
+            locationCache.put(key, cached);
+        }
+        return cached.value;
     }
 
     @Override
@@ -99,10 +153,81 @@ public class CachingResourceResolver implements ResourceResolver {
         return resolve(resolve(location, name), type);
     }
 
+    protected boolean isStale(FileObject location, Cached<?> cached) throws FileSystemException {
+        if(stalenessCheck == StalenessCheck.NONE) {
+            return false;
+        } else if(cached.version != FileWatcher.NOT_WATCHED) {
+            if(getVersion(location) != cached.version) {
+                location.refresh();
+                return true;
+            } else {
+                return false;
+            }
+        }
+        long lastModifiedTime = getLastModifiedTime(location);
+        if(lastModifiedTime > cached.timestamp) {
+            logger.debug("Timestamp for {} is {}, was cached with last-modified time {}", location, lastModifiedTime, cached.timestamp);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    protected boolean isLocationStale(FileObject location, Cached<FileObject> cached) {
+        if(stalenessCheck == StalenessCheck.NONE) {
+            return false;
+        } else if(cached.version != FileWatcher.NOT_WATCHED) {
+            return getVersion(location) != cached.version;
+        } else {
+            //Files may have been created or deleted, so we don't only check if the timestamp has increased
+            return getLastModifiedTimeIfExists(location) != cached.timestamp;
+        }
+    }
+
     protected long getLastModifiedTime(FileObject location) throws FileSystemException {
         return location.getContent().getLastModifiedTime();
     }
 
+    protected long getLastModifiedTimeIfExists(FileObject location) {
+        try {
+            return getLastModifiedTime(location);
+        } catch (FileSystemException e) {
+            logger.trace("Could not read last-modified time of " + location, e);
+            return -1;
+        }
+    }
+
+    /**
+     * Starts watching the given location for changes, if the staleness check mode is {@link StalenessCheck#WATCH}.
+     * @return the current version of the location, or {@link FileWatcher#NOT_WATCHED}.
+     */
+    protected long watch(FileObject location) {
+        FileWatcher watcher = stalenessCheck == StalenessCheck.WATCH ? getFileWatcher() : null;
+        if(watcher != null) {
+            return watcher.watch(location);
+        } else {
+            return FileWatcher.NOT_WATCHED;
+        }
+    }
+
+    protected long getVersion(FileObject location) {
+        FileWatcher watcher = fileWatcher;
+        return watcher != null ? watcher.getVersion(location) : FileWatcher.NOT_WATCHED;
+    }
+
+    protected synchronized FileWatcher getFileWatcher() {
+        if(fileWatcher == null) {
+            try {
+                fileWatcher = new FileWatcher();
+            } catch (IOException e) {
+                logger.warn("File watching is not available, falling back to polling", e);
+                stalenessCheck = StalenessCheck.POLL;
+                return null;
+            }
+        }
+        return fileWatcher;
+    }
+
     protected <T> Cached<T> cache(String key, FileObject location, Class<T> type) throws Exception {
         Cached<T> value = resolveForCache(location, type);
         cache.put(key, value);
@@ -110,33 +235,93 @@ public class CachingResourceResolver implements ResourceResolver {
     }
 
     protected <T> Cached<T> resolveForCache(FileObject location, Class<T> type) throws Exception {
-        return new Cached<T>(doResolve(location, type), location.getContent().getLastModifiedTime());
+        long version = watch(location);
+        return new Cached<T>(doResolve(location, type), location.getContent().getLastModifiedTime(), version);
     }
 
     protected <T> T doResolve(FileObject location, Class<T> type) throws Exception {
         return delegate.resolve(location, type);
     }
 
+    public void clearCache() {
+        cache.clear();
+        locationCache.clear();
+    }
+
     public void clearCache(long maxAge) {
         long now = System.currentTimeMillis();
-        for(Map.Entry<String, Cached> entry : cache.entrySet()) {
+        List<Map.Entry<String, Cached>> entries;
+        synchronized (cache) {
+            entries = new ArrayList<>(cache.entrySet());
+        }
+        for(Map.Entry<String, Cached> entry : entries) {
             if(now - entry.getValue().timestamp > maxAge) {
                 removeCacheEntry(entry);
             }
         }
+        locationCache.clear();
     }
 
     protected Cached removeCacheEntry(Map.Entry<String, Cached> entry) {
         return cache.remove(entry.getKey());
     }
 
+    public StalenessCheck getStalenessCheck() {
+        return stalenessCheck;
+    }
+
+    public void setStalenessCheck(StalenessCheck stalenessCheck) {
+        this.stalenessCheck = stalenessCheck;
+        clearCache();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Sets the maximum number of entries of each cache, discarding their current contents.
+     */
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+        cache = newLruCache(maxSize);
+        locationCache = newLruCache(maxSize);
+    }
+
+    protected static <K, V> Map<K, V> newLruCache(int maxSize) {
+        return Collections.synchronizedMap(new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if(fileWatcher != null) {
+            fileWatcher.close();
+            fileWatcher = null;
+        }
+        clearCache();
+    }
+
     public static class Cached<T> {
         public final T value;
         public final long timestamp;
+        /**
+         * The version of the file according to the {@link FileWatcher}, or {@link FileWatcher#NOT_WATCHED}.
+         */
+        public final long version;
 
         public Cached(T value, long timestamp) {
+            this(value, timestamp, FileWatcher.NOT_WATCHED);
+        }
+
+        public Cached(T value, long timestamp, long version) {
             this.value = value;
             this.timestamp = timestamp;
+            this.version = version;
         }
     }
 }
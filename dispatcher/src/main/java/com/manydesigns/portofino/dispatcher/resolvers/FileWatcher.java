@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2016 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.portofino.dispatcher.resolvers;
+
+import org.apache.commons.vfs2.FileObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks changes to local files using the operating system's file watching facilities, so that caches can detect
+ * stale entries without touching the file system.<br>
+ * Every change is recorded by assigning a new version to the changed file and to its directory. A cache entry
+ * remembers the version of its file at the time it was loaded, and is stale if the current version is different.
+ * The version of a file includes the version of its directory, so that entries depending on the existence of
+ * sibling files (e.g. the resolution of a file by trying several extensions) are invalidated as well.
+ *
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class FileWatcher implements Closeable {
+
+    /**
+     * Version returned for files that cannot be watched.
+     */
+    public static final long NOT_WATCHED = -1;
+
+    protected static final Logger logger = LoggerFactory.getLogger(FileWatcher.class);
+
+    protected final WatchService watchService;
+    protected final Thread thread;
+    protected final Set<Path> watchedDirectories = ConcurrentHashMap.newKeySet();
+    protected final ConcurrentMap<Path, Long> versions = new ConcurrentHashMap<>();
+    protected final AtomicLong counter = new AtomicLong();
+    /**
+     * When the watch service loses events, everything is considered changed.
+     */
+    protected volatile long overflowVersion = 0;
+    protected volatile boolean closed = false;
+
+    public FileWatcher() throws IOException {
+        watchService = FileSystems.getDefault().newWatchService();
+        thread = new Thread(this::run, "Portofino file watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Starts watching the given file, if it is on the local file system.
+     * @param fileObject the file or directory to watch.
+     * @return the current version of the file, or {@link #NOT_WATCHED} if it cannot be watched.
+     */
+    public long watch(FileObject fileObject) {
+        Path path = toPath(fileObject);
+        if(path == null) {
+            return NOT_WATCHED;
+        }
+        //The version is read before registering, so that changes happening in the meantime make the entry stale.
+        long version = getVersion(path);
+        boolean watched;
+        if(Files.isDirectory(path)) {
+            //Changes to the directory itself (e.g. its deletion) also invalidate the watch key
+            watched = watchDirectory(path);
+        } else {
+            watched = watchDirectory(path.getParent());
+        }
+        return watched && !closed ? version : NOT_WATCHED;
+    }
+
+    /**
+     * Returns the current version of the given file, or {@link #NOT_WATCHED} if it cannot be watched. Does not
+     * access the file system.
+     */
+    public long getVersion(FileObject fileObject) {
+        Path path = toPath(fileObject);
+        return path != null ? getVersion(path) : NOT_WATCHED;
+    }
+
+    protected long getVersion(Path path) {
+        long version = Math.max(versions.getOrDefault(path, 0L), overflowVersion);
+        Path parent = path.getParent();
+        if(parent != null) {
+            version = Math.max(version, versions.getOrDefault(parent, 0L));
+        }
+        return version;
+    }
+
+    protected boolean watchDirectory(Path directory) {
+        if(directory == null) {
+            return false;
+        }
+        if(watchedDirectories.contains(directory)) {
+            return true;
+        }
+        try {
+            directory.register(
+                    watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            watchedDirectories.add(directory);
+            logger.debug("Watching directory {}", directory);
+            return true;
+        } catch (IOException | ClosedWatchServiceException e) {
+            logger.debug("Cannot watch directory " + directory, e);
+            return false;
+        }
+    }
+
+    protected Path toPath(FileObject fileObject) {
+        if(!"file".equals(fileObject.getName().getScheme())) {
+            return null;
+        }
+        try {
+            return Paths.get(fileObject.getURL().toURI()).toAbsolutePath().normalize();
+        } catch (Exception e) {
+            logger.debug("Not a local file: " + fileObject, e);
+            return null;
+        }
+    }
+
+    protected void changed(Path path) {
+        versions.put(path, counter.incrementAndGet());
+    }
+
+    protected void run() {
+        while (!closed) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                break;
+            }
+            Path directory = (Path) key.watchable();
+            for(WatchEvent<?> event : key.pollEvents()) {
+                if(event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    logger.debug("Watch events were lost, invalidating everything");
+                    overflowVersion = counter.incrementAndGet();
+                } else {
+                    Path changed = directory.resolve((Path) event.context());
+                    logger.trace("{}: {}", event.kind(), changed);
+                    changed(changed);
+                }
+            }
+            changed(directory);
+            if(!key.reset()) {
+                logger.debug("Directory {} is no longer watched", directory);
+                watchedDirectories.remove(directory);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        watchService.close();
+        thread.interrupt();
+    }
+}
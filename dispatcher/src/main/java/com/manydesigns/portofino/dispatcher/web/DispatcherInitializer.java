@@ -1,5 +1,6 @@
 package com.manydesigns.portofino.dispatcher.web;
 
+import com.manydesigns.portofino.code.AbstractCodeBase;
 import com.manydesigns.portofino.code.CodeBase;
 import com.manydesigns.portofino.code.JavaCodeBase;
 import com.manydesigns.portofino.dispatcher.Resource;
@@ -24,9 +25,12 @@ import org.slf4j.LoggerFactory;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Created by alessio on 28/07/16.
@@ -39,6 +43,33 @@ public class DispatcherInitializer implements ServletContextListener {
     private static final Logger logger = LoggerFactory.getLogger(DispatcherInitializer.class);
 
     public static final String CODE_BASE_ATTRIBUTE = "portofino.codebase";
+    /**
+     * How cached resources are checked for changes: watch (default), poll or none.
+     */
+    public static final String RESOURCES_CACHE_CHECK = "portofino.resources.cache.check";
+    public static final String RESOURCES_CACHE_SIZE = "portofino.resources.cache.size";
+    /**
+     * Where classes compiled from Java sources are cached across restarts. Defaults to a subdirectory of the
+     * temporary directory of the web application; "none" disables the cache.
+     */
+    public static final String CODE_CACHE_DIRECTORY = "portofino.code.cache.directory";
+    /**
+     * Whether to compile the new and changed Java sources at startup, in a single batch (default true).
+     */
+    public static final String CODE_PRECOMPILE = "portofino.code.precompile";
+    /**
+     * Additional package prefixes (e.g. "com.example.lib.") whose classes are never looked up in the code base.
+     */
+    public static final String CODE_EXCLUDED_PACKAGES = "portofino.code.excluded.packages";
+    /**
+     * The directory, relative to the application directory, of the Groovy classes compiled at build time. When it
+     * exists, Groovy code runs in production mode, without compiling sources or checking them for changes. Defaults
+     * to "groovy-classes"; "none" disables production mode.
+     */
+    public static final String CODE_GROOVY_PRECOMPILED_DIRECTORY = "portofino.code.groovy.precompiled.directory";
+    public static final String DEFAULT_GROOVY_PRECOMPILED_DIRECTORY = "groovy-classes";
+
+    protected ResourceResolvers resourceResolvers;
     
     @Override
     public void contextInitialized(ServletContextEvent sce) {
@@ -112,6 +143,7 @@ public class DispatcherInitializer implements ServletContextListener {
             CodeBase codeBase = createAndStoreCodeBase(servletContext);
             ResourceResolvers resourceResolver = new ResourceResolvers();
             configureResourceResolvers(resourceResolver, codeBase);
+            resourceResolvers = resourceResolver;
             DocumentedApiRoot.setRootFactory(() -> getRoot(actionsDirectory, resourceResolver));
         } catch (Exception e) {
             initializationFailed(e);
@@ -121,26 +153,85 @@ public class DispatcherInitializer implements ServletContextListener {
     protected CodeBase createAndStoreCodeBase(ServletContext servletContext) throws IOException {
         //TODO auto discovery?
         FileObject codeBaseRoot = getCodeBaseRoot();
-        JavaCodeBase javaCodeBase = new JavaCodeBase(codeBaseRoot, null, getClass().getClassLoader());
+        JavaCodeBase javaCodeBase = createJavaCodeBase(servletContext, codeBaseRoot);
         CodeBase codeBase = javaCodeBase;
         try {
             Class<?> gcb = Class.forName("com.manydesigns.portofino.code.GroovyCodeBase");
             Constructor<?> gcbConstructor = gcb.getConstructor(FileObject.class, CodeBase.class);
             codeBase = (CodeBase) gcbConstructor.newInstance(codeBaseRoot, javaCodeBase);
             logger.info("Groovy is available");
+            configureGroovyProductionMode(codeBase);
         } catch (Exception e) {
             logger.debug("Groovy not available", e);
         }
+        List<String> excludedPackages = configuration.getList(String.class, CODE_EXCLUDED_PACKAGES);
+        if(excludedPackages != null && !excludedPackages.isEmpty()) {
+            for(CodeBase cb = codeBase; cb != null; cb = cb.getParent()) {
+                if(cb instanceof AbstractCodeBase) {
+                    List<String> packages = new ArrayList<>(AbstractCodeBase.DEFAULT_EXCLUDED_PACKAGES);
+                    packages.addAll(excludedPackages);
+                    ((AbstractCodeBase) cb).setExcludedPackages(packages);
+                }
+            }
+        }
         servletContext.setAttribute(CODE_BASE_ATTRIBUTE, codeBase);
         return codeBase;
     }
 
+    protected void configureGroovyProductionMode(CodeBase groovyCodeBase) throws FileSystemException {
+        String path = configuration.getString(CODE_GROOVY_PRECOMPILED_DIRECTORY, DEFAULT_GROOVY_PRECOMPILED_DIRECTORY);
+        if("none".equalsIgnoreCase(path)) {
+            return;
+        }
+        FileObject precompiledDirectory = applicationRoot.resolveFile(path);
+        if(precompiledDirectory.getType() == FileType.FOLDER) {
+            try {
+                groovyCodeBase.getClass().getMethod("usePrecompiledClasses", FileObject.class, FileObject.class)
+                        .invoke(groovyCodeBase, applicationRoot, precompiledDirectory);
+                logger.info("Groovy code runs in production mode, using the classes in {}", precompiledDirectory);
+            } catch (Exception e) {
+                logger.warn("Could not use the precompiled Groovy classes in " + precompiledDirectory, e);
+            }
+        }
+    }
+
+    protected JavaCodeBase createJavaCodeBase(ServletContext servletContext, FileObject codeBaseRoot)
+            throws IOException {
+        JavaCodeBase javaCodeBase;
+        File cacheDirectory = getCodeCacheDirectory(servletContext);
+        try {
+            javaCodeBase = new JavaCodeBase(codeBaseRoot, null, getClass().getClassLoader(), cacheDirectory);
+        } catch (IOException e) {
+            logger.warn("Could not use compiled class cache " + cacheDirectory + ", classes will be compiled in memory", e);
+            javaCodeBase = new JavaCodeBase(codeBaseRoot, null, getClass().getClassLoader());
+        }
+        if(configuration.getBoolean(CODE_PRECOMPILE, true)) {
+            try {
+                javaCodeBase.compileAll();
+            } catch (IOException e) {
+                logger.warn("Could not compile Java sources in " + codeBaseRoot, e);
+            }
+        }
+        return javaCodeBase;
+    }
+
+    protected File getCodeCacheDirectory(ServletContext servletContext) {
+        String path = configuration.getString(CODE_CACHE_DIRECTORY);
+        if("none".equalsIgnoreCase(path)) {
+            return null;
+        } else if(path != null) {
+            return new File(path);
+        }
+        Object tempDir = servletContext.getAttribute("javax.servlet.context.tempdir");
+        return tempDir instanceof File ? new File((File) tempDir, "portofino-code") : null;
+    }
+
     protected FileObject getCodeBaseRoot() throws FileSystemException {
         return VFS.getManager().resolveFile("res:");
     }
 
     protected void configureResourceResolvers(ResourceResolvers resourceResolver, CodeBase codeBase) {
-        resourceResolver.resourceResolvers.add(new JavaResourceResolver(codeBase));
+        resourceResolver.resourceResolvers.add(configureCaching(new JavaResourceResolver(codeBase)));
         addResourceResolver(resourceResolver, "com.manydesigns.portofino.dispatcher.resolvers.GroovyResourceResolver", codeBase, false);
         addResourceResolver(resourceResolver, "com.manydesigns.portofino.dispatcher.resolvers.JacksonResourceResolver", codeBase, true);
     }
@@ -161,7 +252,7 @@ public class DispatcherInitializer implements ServletContextListener {
                 resolver = (ResourceResolver) resClass.getConstructor().newInstance();
             }
             if(caching) {
-                resolver = new CachingResourceResolver(resolver);
+                resolver = configureCaching(new CachingResourceResolver(resolver));
             }
             resourceResolver.resourceResolvers.add(resolver);
         } catch (Exception e) {
@@ -169,6 +260,18 @@ public class DispatcherInitializer implements ServletContextListener {
         }
     }
 
+    protected <T extends CachingResourceResolver> T configureCaching(T resolver) {
+        String check = configuration.getString(RESOURCES_CACHE_CHECK, CachingResourceResolver.StalenessCheck.WATCH.name());
+        try {
+            resolver.setStalenessCheck(CachingResourceResolver.StalenessCheck.valueOf(check.trim().toUpperCase()));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid value for " + RESOURCES_CACHE_CHECK + ": " + check + ", using watch");
+            resolver.setStalenessCheck(CachingResourceResolver.StalenessCheck.WATCH);
+        }
+        resolver.setMaxSize(configuration.getInt(RESOURCES_CACHE_SIZE, CachingResourceResolver.DEFAULT_MAX_SIZE));
+        return resolver;
+    }
+
     protected void initializationFailed(Exception e) {
         logger.error("Could not initialize application", e);
         throw new RuntimeException(e);
@@ -176,6 +279,16 @@ public class DispatcherInitializer implements ServletContextListener {
 
     @Override
     public void contextDestroyed(ServletContextEvent sce) {
+        if(resourceResolvers != null) {
+            for(ResourceResolver resolver : resourceResolvers.resourceResolvers) {
+                if(resolver instanceof Closeable) try {
+                    ((Closeable) resolver).close();
+                } catch (IOException e) {
+                    logger.warn("Could not close resource resolver " + resolver, e);
+                }
+            }
+            resourceResolvers = null;
+        }
         logger.info("Application destroyed.");
     }
 }
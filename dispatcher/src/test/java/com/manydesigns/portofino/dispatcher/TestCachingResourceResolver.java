@@ -0,0 +1,85 @@
+package com.manydesigns.portofino.dispatcher;
+
+import com.manydesigns.portofino.dispatcher.resolvers.CachingResourceResolver;
+import com.manydesigns.portofino.dispatcher.resolvers.JacksonResourceResolver;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.VFS;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+
+import static org.testng.AssertJUnit.*;
+
+public class TestCachingResourceResolver {
+
+    protected File directory;
+
+    @BeforeMethod
+    public void createDirectory() throws Exception {
+        directory = Files.createTempDirectory("portofino-resources").toFile();
+    }
+
+    @AfterMethod
+    public void deleteDirectory() throws Exception {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void watchedFilesAreReloaded() throws Exception {
+        try(CachingResourceResolver resolver = new CachingResourceResolver(
+                new JacksonResourceResolver(), CachingResourceResolver.StalenessCheck.WATCH, 10)) {
+            File file = new File(directory, "person.json");
+            write(file, "person");
+            FileObject root = VFS.getManager().toFileObject(directory);
+            Map person = resolver.resolve(root, "person", Map.class);
+            assertEquals("person", person.get("title"));
+            assertSame(person, resolver.resolve(root, "person", Map.class));
+
+            write(file, "changed");
+            long deadline = System.currentTimeMillis() + 30000;
+            while (person.get("title").equals("person") && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+                person = resolver.resolve(root, "person", Map.class);
+            }
+            assertEquals("changed", person.get("title"));
+
+            assertTrue(file.delete());
+            deadline = System.currentTimeMillis() + 30000;
+            while (person != null && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+                person = resolver.resolve(root, "person", Map.class);
+            }
+            assertNull(person);
+        }
+    }
+
+    @Test
+    public void uncheckedEntriesAreKeptUntilEvicted() throws Exception {
+        try(CachingResourceResolver resolver = new CachingResourceResolver(
+                new JacksonResourceResolver(), CachingResourceResolver.StalenessCheck.NONE, 1)) {
+            File file = new File(directory, "person.json");
+            write(file, "person");
+            FileObject root = VFS.getManager().toFileObject(directory);
+            FileObject person = root.resolveFile("person.json");
+            Map map = resolver.resolve(person, Map.class);
+            write(file, "changed");
+            assertTrue(file.setLastModified(System.currentTimeMillis() + 10000));
+            assertSame(map, resolver.resolve(person, Map.class));
+
+            write(new File(directory, "other.json"), "other");
+            assertEquals("other", resolver.resolve(root.resolveFile("other.json"), Map.class).get("title"));
+            assertEquals("changed", resolver.resolve(person, Map.class).get("title"));
+        }
+    }
+
+    protected void write(File file, String title) throws Exception {
+        FileUtils.write(file, "{ \"title\": \"" + title + "\" }", StandardCharsets.UTF_8);
+    }
+
+}
@@ -24,12 +24,19 @@ import com.manydesigns.elements.blobs.MultipartWrapper;
 import com.manydesigns.elements.i18n.TextProvider;
 import ognl.OgnlContext;
 
+import java.util.HashMap;
+
 import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-/*
-* @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
+/**
+ * The objects that Elements uses implicitly while handling a request: the text provider, the OGNL context, the
+ * servlet request and response, and the multipart wrapper. Each thread has its own current context, see
+ * {@link ElementsThreadLocals}; a context can be copied and installed on another thread to continue the work of a
+ * request there, e.g. in asynchronous resource methods.
+ *
+ * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
 * @author Angelo Lupo          - angelo.lupo@manydesigns.com
 * @author Giampiero Granatella - giampiero.granatella@manydesigns.com
 * @author Alessio Stalla       - alessio.stalla@manydesigns.com
@@ -50,6 +57,28 @@ public class ElementsContext {
     //**************************************************************************
     public ElementsContext() {}
 
+    /**
+     * Returns a copy of this context that can be used by another thread at the same time as this one. The OGNL
+     * context, which is not thread-safe, is copied; the other objects are shared. Note that servlet requests and
+     * responses must not be used once the request is complete, unless it was put in asynchronous mode.
+     */
+    public ElementsContext copy() {
+        ElementsContext copy = new ElementsContext();
+        copy.textProvider = textProvider;
+        copy.httpServletRequest = httpServletRequest;
+        copy.httpServletResponse = httpServletResponse;
+        copy.servletContext = servletContext;
+        copy.multipart = multipart;
+        if(ognlContext != null) {
+            OgnlContext ognlContextCopy = new OgnlContext(
+                    ognlContext.getMemberAccess(), ognlContext.getClassResolver(), ognlContext.getTypeConverter(),
+                    new HashMap(ognlContext.getValues()));
+            ognlContextCopy.setRoot(ognlContext.getRoot());
+            copy.ognlContext = ognlContextCopy;
+        }
+        return copy;
+    }
+
     //**************************************************************************
     // Getters/setters
     //**************************************************************************
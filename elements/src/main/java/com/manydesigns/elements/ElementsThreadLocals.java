@@ -33,6 +33,9 @@ import ognl.TypeConverter;
 import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 /*
 * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
@@ -148,6 +151,83 @@ public final class ElementsThreadLocals {
         threadLocalElementsContext.remove();
     }
 
+    //**************************************************************************
+    // Propagation to other threads
+    //**************************************************************************
+
+    /**
+     * Captures the current context, so that work started by the current thread (e.g. an asynchronous resource
+     * method or a CompletableFuture) can run with it on another thread.
+     * @return a copy of the current context, see {@link ElementsContext#copy()}.
+     */
+    public static ElementsContext capture() {
+        return getElementsContext().copy();
+    }
+
+    /**
+     * Makes the given context the current one for this thread.
+     * @return the previous context, to be passed to {@link #restore(ElementsContext)}.
+     */
+    public static ElementsContext install(ElementsContext elementsContext) {
+        ElementsContext previous = getElementsContext();
+        threadLocalElementsContext.set(elementsContext);
+        return previous;
+    }
+
+    public static void restore(ElementsContext previous) {
+        threadLocalElementsContext.set(previous);
+    }
+
+    public static <T> T callWith(ElementsContext elementsContext, Callable<T> callable) throws Exception {
+        ElementsContext previous = install(elementsContext);
+        try {
+            return callable.call();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    public static void runWith(ElementsContext elementsContext, Runnable runnable) {
+        ElementsContext previous = install(elementsContext);
+        try {
+            runnable.run();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    /**
+     * Wraps a task so that it runs with the context current at the time of wrapping, on whatever thread.
+     */
+    public static Runnable propagate(Runnable runnable) {
+        ElementsContext elementsContext = capture();
+        return () -> runWith(elementsContext, runnable);
+    }
+
+    public static <T> Callable<T> propagate(Callable<T> callable) {
+        ElementsContext elementsContext = capture();
+        return () -> callWith(elementsContext, callable);
+    }
+
+    public static <T> Supplier<T> propagateSupplier(Supplier<T> supplier) {
+        ElementsContext elementsContext = capture();
+        return () -> {
+            ElementsContext previous = install(elementsContext);
+            try {
+                return supplier.get();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    /**
+     * Returns an executor that runs each task with the context of the thread that submitted it.
+     */
+    public static Executor propagating(Executor executor) {
+        return runnable -> executor.execute(propagate(runnable));
+    }
+
     //**************************************************************************
     // i18n
     //**************************************************************************
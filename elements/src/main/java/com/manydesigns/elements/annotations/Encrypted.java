@@ -37,4 +37,10 @@ public @interface Encrypted {
 
     String value() default "com.manydesigns.elements.DefaultFieldEncrypter";
 
+    /**
+     * The name of an optional property that stores the blind index of the value, allowing searches by equality and
+     * prefix without decrypting. See {@link com.manydesigns.elements.crypto.BlindIndex}.
+     */
+    String blindIndex() default "";
+
 }
@@ -34,15 +34,25 @@ public class EncryptedImpl implements Encrypted {
             "Copyright (C) 2005-2020 ManyDesigns srl";
 
     private final String value;
+    private final String blindIndex;
 
     public EncryptedImpl(String value) {
+        this(value, "");
+    }
+
+    public EncryptedImpl(String value, String blindIndex) {
         this.value = value;
+        this.blindIndex = blindIndex;
     }
 
     public String value() {
         return value;
     }
 
+    public String blindIndex() {
+        return blindIndex;
+    }
+
     public Class<? extends Annotation> annotationType() {
         return Encrypted.class;
     }
@@ -55,6 +55,7 @@ public class Blob {
     public final static String REPOSITORY_ID_PROPERTY = "repository.id";
     public final static String ENCRYPTION_PROPERTY = "encryption.type";
     public final static String CUSTOM_DATA_PROPERTY = "custom.data";
+    public final static String CONTENT_DIGEST_PROPERTY = "content.digest";
 
     protected final DateTimeFormatter formatter = ISODateTimeFormat.dateTime();
 
@@ -70,6 +71,12 @@ public class Blob {
     protected String repository;
     protected String repositoryId;
     protected Map customData;
+    protected String contentDigest;
+    /**
+     * The upload holding the contents of the blob, if any, that the blob manager can move in place rather than
+     * copying it.
+     */
+    protected FileBean fileBean;
 
     public Blob(String code) {
         this.code = code;
@@ -98,6 +105,7 @@ public class Blob {
         safeSetProperty(metaProperties, REPOSITORY_ID_PROPERTY, repositoryId);
         safeSetProperty(metaProperties, ENCRYPTION_PROPERTY, encryptionType);
         safeSetProperty(metaProperties, CUSTOM_DATA_PROPERTY, getSerializedCustomData());
+        safeSetProperty(metaProperties, CONTENT_DIGEST_PROPERTY, contentDigest);
 
         return metaProperties;
     }
@@ -112,6 +120,7 @@ public class Blob {
         repositoryId = metaProperties.getProperty(REPOSITORY_ID_PROPERTY);
         encryptionType=metaProperties.getProperty(ENCRYPTION_PROPERTY);
         setCustomData(metaProperties.getProperty(CUSTOM_DATA_PROPERTY));
+        contentDigest = metaProperties.getProperty(CONTENT_DIGEST_PROPERTY);
         propertiesLoaded = true;
     }
 
@@ -216,6 +225,25 @@ public class Blob {
         this.repositoryId = repositoryId;
     }
 
+    /**
+     * Returns the digest of the contents, for blob managers that store them by digest; null otherwise.
+     */
+    public String getContentDigest() {
+        return contentDigest;
+    }
+
+    public void setContentDigest(String contentDigest) {
+        this.contentDigest = contentDigest;
+    }
+
+    public FileBean getFileBean() {
+        return fileBean;
+    }
+
+    public void setFileBean(FileBean fileBean) {
+        this.fileBean = fileBean;
+    }
+
     public Map getCustomData() {
         return customData;
     }
@@ -22,6 +22,7 @@ package com.manydesigns.elements.blobs;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collection;
 
 /**
  * @author Angelo Lupo          - angelo.lupo@manydesigns.com
@@ -35,6 +36,20 @@ public interface BlobManager {
 
     void loadMetadata(Blob blob) throws IOException;
 
+    /**
+     * Loads the metadata of several blobs at once, e.g. to display a table. The blobs whose metadata cannot be loaded
+     * are left as they are, so that loading them one at a time reports the error.
+     */
+    default void loadMetadata(Collection<Blob> blobs) {
+        for(Blob blob : blobs) {
+            try {
+                loadMetadata(blob);
+            } catch (IOException | RuntimeException e) {
+                //Left unloaded
+            }
+        }
+    }
+
     InputStream openStream(Blob blob) throws IOException;
 
     void save(Blob blob) throws IOException;
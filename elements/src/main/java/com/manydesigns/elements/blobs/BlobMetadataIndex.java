@@ -0,0 +1,300 @@
+/*
+ * Copyright (C) 2005-2020 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.elements.blobs;
+
+import org.apache.commons.io.input.CountingInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An index of the metadata of the blobs, kept in memory and persisted in a single file, so that the metadata of many
+ * blobs can be loaded without reading a file for each of them.<br>
+ * The file is a journal of additions and removals, read once when the index is opened and compacted when it holds
+ * more superseded records than live ones. The metadata files remain the reference: the index is a cache that
+ * {@link SimpleBlobManager} fills as it saves and reads blobs. Thus, tools that change the metadata files while the
+ * application is stopped must delete the index file. The file is locked while the index is open, so only one process
+ * at a time can use it; the index is only correct if that process is also the only one writing the blobs directory,
+ * as it knows nothing of the metadata files written by others (e.g. other nodes sharing the directory).
+ *
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class BlobMetadataIndex implements Closeable {
+    public static final String copyright =
+            "Copyright (C) 2005-2020 ManyDesigns srl";
+
+    public static final Logger logger =
+            LoggerFactory.getLogger(BlobMetadataIndex.class);
+
+    public static final String DEFAULT_FILE_NAME = "metadata.index";
+    protected static final byte PUT = 1;
+    protected static final byte REMOVE = 2;
+    protected static final int MIN_COMPACTION_GARBAGE = 1000;
+
+    protected final File file;
+    protected final ConcurrentMap<String, byte[]> entries = new ConcurrentHashMap<>();
+    protected FileChannel lockChannel;
+    protected FileLock lock;
+    protected DataOutputStream out;
+    protected long garbage;
+
+    protected BlobMetadataIndex(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Opens the index stored in the given file, creating it if it doesn't exist.
+     * @throws IOException if the file cannot be read, or it's in use by another process or another index.
+     */
+    public static BlobMetadataIndex open(File file) throws IOException {
+        BlobMetadataIndex index = new BlobMetadataIndex(file);
+        try {
+            index.lock();
+            try {
+                index.load();
+            } catch (IOException e) {
+                //The index is only a cache, it can be rebuilt
+                logger.warn("Discarding corrupted blob metadata index " + file, e);
+                index.entries.clear();
+                Files.deleteIfExists(file.toPath());
+            }
+            index.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        } catch (IOException | RuntimeException e) {
+            index.close();
+            throw e;
+        }
+        return index;
+    }
+
+    protected void lock() throws IOException {
+        File lockFile = new File(file.getPath() + ".lock");
+        lockChannel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            lock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if(lock == null) {
+            throw new IOException("The blob metadata index is in use: " + file);
+        }
+    }
+
+    protected void load() throws IOException {
+        if(!file.exists()) {
+            return;
+        }
+        long valid = 0;
+        long records = 0;
+        try(CountingInputStream counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(file)));
+            DataInputStream in = new DataInputStream(counter)) {
+            while(true) {
+                int op = in.read();
+                if(op < 0) {
+                    break;
+                }
+                String code = in.readUTF();
+                if(op == PUT) {
+                    byte[] entry = new byte[in.readInt()];
+                    in.readFully(entry);
+                    entries.put(code, entry);
+                } else if(op == REMOVE) {
+                    entries.remove(code);
+                } else {
+                    throw new IOException("Corrupted blob metadata index at " + valid + ": " + file);
+                }
+                valid = counter.getByteCount();
+                records++;
+            }
+        } catch (EOFException e) {
+            //The last record was not written completely
+            logger.warn("Truncating incomplete blob metadata index {} at {}", file, valid);
+            try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+            }
+        }
+        garbage = records - entries.size();
+        logger.info("Loaded {} entries from blob metadata index {}", entries.size(), file);
+    }
+
+    /**
+     * Returns the metadata of the blob with the given code, or null if it's not in the index.
+     */
+    public Properties get(String code) throws IOException {
+        byte[] entry = entries.get(code);
+        return entry != null ? decode(entry) : null;
+    }
+
+    /**
+     * Returns whether the index is open and can be used.
+     */
+    public boolean isOpen() {
+        return out != null;
+    }
+
+    public synchronized void put(String code, Properties properties) throws IOException {
+        byte[] entry = encode(properties);
+        ensureOpen();
+        append(PUT, code, entry);
+        if(entries.put(code, entry) != null) {
+            garbage++;
+        }
+        compactIfNeeded();
+    }
+
+    public synchronized void remove(String code) throws IOException {
+        if(!entries.containsKey(code)) {
+            return;
+        }
+        ensureOpen();
+        append(REMOVE, code, null);
+        entries.remove(code);
+        garbage += 2;
+        compactIfNeeded();
+    }
+
+    /**
+     * Writes a whole record at once, so that it's either written completely or not at all, except for I/O errors.
+     */
+    protected void append(byte op, String code, byte[] entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + (entry != null ? entry.length : 0));
+        try(DataOutputStream record = new DataOutputStream(bytes)) {
+            record.writeByte(op);
+            record.writeUTF(code);
+            if(entry != null) {
+                record.writeInt(entry.length);
+                record.write(entry);
+            }
+        }
+        try {
+            bytes.writeTo(out);
+            out.flush();
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    protected void ensureOpen() throws IOException {
+        if(out == null) {
+            throw new IOException("The blob metadata index is closed: " + file);
+        }
+    }
+
+    protected void compactIfNeeded() throws IOException {
+        if(garbage > Math.max(MIN_COMPACTION_GARBAGE, entries.size())) {
+            compact();
+        }
+    }
+
+    /**
+     * Rewrites the file with only the current entries.
+     */
+    public synchronized void compact() throws IOException {
+        ensureOpen();
+        File tempFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+        try {
+            try(DataOutputStream compacted =
+                        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                for(Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                    compacted.writeByte(PUT);
+                    compacted.writeUTF(entry.getKey());
+                    compacted.writeInt(entry.getValue().length);
+                    compacted.write(entry.getValue());
+                }
+            }
+            out.close();
+            out = null;
+            Files.move(tempFile.toPath(), file.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            if(tempFile.exists()) {
+                tempFile.delete();
+            }
+            if(out == null) {
+                out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+            }
+        }
+        garbage = 0;
+        logger.debug("Compacted blob metadata index {}", file);
+    }
+
+    protected static byte[] encode(Properties properties) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try(DataOutputStream data = new DataOutputStream(bytes)) {
+            data.writeShort(properties.size());
+            for(String key : properties.stringPropertyNames()) {
+                data.writeUTF(key);
+                data.writeUTF(properties.getProperty(key));
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    protected static Properties decode(byte[] entry) throws IOException {
+        Properties properties = new Properties();
+        try(DataInputStream data = new DataInputStream(new ByteArrayInputStream(entry))) {
+            int count = data.readUnsignedShort();
+            for(int i = 0; i < count; i++) {
+                properties.setProperty(data.readUTF(), data.readUTF());
+            }
+        }
+        return properties;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if(out != null) {
+                out.close();
+            }
+        } finally {
+            out = null;
+            try {
+                if(lock != null) {
+                    lock.release();
+                }
+            } finally {
+                if(lockChannel != null) {
+                    lockChannel.close();
+                }
+            }
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+}
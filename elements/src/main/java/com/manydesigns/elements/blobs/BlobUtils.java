@@ -9,9 +9,13 @@ import com.manydesigns.elements.forms.TableForm;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * @author Angelo Lupo          - angelo.lupo@manydesigns.com
@@ -29,6 +33,11 @@ public abstract class BlobUtils {
             LoggerFactory.getLogger(BlobUtils.class);
 
     public static void loadBlobs(Form form, BlobManager blobManager, boolean loadContents) {
+        List<Blob> blobs = new ArrayList<>();
+        for(FieldSet fieldSet : form) {
+            collectUnloadedBlobs(fieldSet, blobs);
+        }
+        blobManager.loadMetadata(blobs);
         for(FieldSet fieldSet : form) {
             loadBlobs(fieldSet, blobManager, loadContents);
         }
@@ -40,7 +49,15 @@ public abstract class BlobUtils {
         }
     }
 
+    /**
+     * Loads the blobs of all the rows, loading their metadata {@linkplain BlobManager#loadMetadata(Collection) at once}.
+     */
     public static void loadBlobs(TableForm form, BlobManager blobManager, boolean loadContents) {
+        List<Blob> blobs = new ArrayList<>();
+        for(TableForm.Row row : form.getRows()) {
+            collectUnloadedBlobs(row, blobs);
+        }
+        blobManager.loadMetadata(blobs);
         for(TableForm.Row row : form.getRows()) {
             loadBlobs(row, blobManager, loadContents);
         }
@@ -59,6 +76,21 @@ public abstract class BlobUtils {
         }
     }
 
+    /**
+     * Adds to the list the blobs of the fields whose metadata has not been loaded yet. Blobs stored in the database
+     * have no code and are not included.
+     */
+    protected static void collectUnloadedBlobs(Iterable<? extends FormElement> fields, List<Blob> blobs) {
+        for(FormElement field : fields) {
+            if(AbstractBlobField.class.isInstance(field)) {
+                Blob blob = AbstractBlobField.class.cast(field).getValue();
+                if(blob != null && blob.getCode() != null && !blob.isPropertiesLoaded()) {
+                    blobs.add(blob);
+                }
+            }
+        }
+    }
+
     public static void saveBlobs(Form form, BlobManager blobManager) throws IOException {
         for(FieldSet fieldSet : form) {
             saveBlobs(fieldSet, blobManager);
@@ -79,7 +111,7 @@ public abstract class BlobUtils {
 
     public static InputStream encrypt( InputStream decryptedInputStream, String type ){
         try {
-            logger.debug("Decrypting encryptedInputStream");
+            logger.debug("Encrypting decryptedInputStream");
             return CryptoService.getInstance().encrypt(decryptedInputStream);
         } catch (GeneralSecurityException | IOException e) {
             logger.error("Error encrypting input stream", e);
@@ -97,8 +129,26 @@ public abstract class BlobUtils {
         return encryptedInputStream;
     }
 
+    /**
+     * Returns a stream over a range of the decrypted contents of an encrypted file. Only the chunks that the range
+     * spans are decrypted, unless the file was encrypted by a version that didn't support it.
+     * @param offset the position of the first byte to read.
+     * @param length the number of bytes to read at most.
+     */
+    public static InputStream decrypt(File encryptedFile, long offset, long length, String type) throws IOException {
+        try {
+            logger.debug("Decrypting range {}+{} of {}", offset, length, encryptedFile);
+            return CryptoService.getInstance().decrypt(encryptedFile, offset, length);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Error decrypting " + encryptedFile, e);
+        }
+    }
+
+    /**
+     * Returns the size of the contents of the blob once encrypted.
+     */
     public static Long calculatePaddingSize(Blob blob) {
         logger.debug("Calculating padding size");
-        return CryptoService.getInstance().getFileSize(blob.getSize());
+        return CryptoService.getInstance().getEncryptedSize(blob.getSize());
     }
 }
@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) 2005-2020 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.elements.blobs;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Properties;
+
+/**
+ * A {@link HierarchicalBlobManager} that stores the contents of blobs only once, however many blobs have the same
+ * contents. The contents are stored under the {@value #CONTENTS_DIRECTORY} directory, named after their SHA-256
+ * digest, which is computed while saving them; the metadata of each blob holds the digest of its contents, and a
+ * reference count is kept next to each file, so that the file is deleted when the last blob referencing it is
+ * deleted.<br>
+ * Encrypted blobs and blobs stored in a {@link Repository} are handled as in {@link HierarchicalBlobManager}, as
+ * are the blobs saved before switching to this manager; {@link HierarchicalToDeduplicatingConverter} converts the
+ * latter. Reference counts are kept consistent among the threads of a single process; the blobs directory must not
+ * be shared with other processes.
+ *
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class DeduplicatingBlobManager extends HierarchicalBlobManager {
+    public static final String copyright =
+            "Copyright (C) 2005-2020 ManyDesigns srl";
+
+    public static final Logger logger =
+            LoggerFactory.getLogger(DeduplicatingBlobManager.class);
+
+    public static final String CONTENTS_DIRECTORY = "contents";
+    protected static final int LOCK_STRIPES = 64;
+
+    protected final File contentsDir;
+    protected final Object[] locks = new Object[LOCK_STRIPES];
+
+    public DeduplicatingBlobManager(File blobsDir, String metaFileNamePattern, String dataFileNamePattern) {
+        super(blobsDir, metaFileNamePattern, dataFileNamePattern);
+        contentsDir = new File(blobsDir, CONTENTS_DIRECTORY);
+        for(int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Returns whether the contents of the blob are stored by digest.
+     */
+    public boolean isDeduplicated(Blob blob) {
+        return !blob.isEncrypted() && blob.getRepository() == null;
+    }
+
+    protected File getContentFile(String digest) {
+        return new File(getContentSubdir(digest), digest + ".data");
+    }
+
+    protected File getReferencesFile(String digest) {
+        return new File(getContentSubdir(digest), digest + ".refs");
+    }
+
+    protected File getContentSubdir(String digest) {
+        return new File(new File(contentsDir, digest.substring(0, 2)), digest.substring(2, 4));
+    }
+
+    protected Object getLock(String digest) {
+        return locks[Math.floorMod(digest.hashCode(), locks.length)];
+    }
+
+    @Override
+    protected File getDataFile(Blob blob) throws IOException {
+        if(!blob.isPropertiesLoaded()) {
+            loadMetadata(blob);
+        }
+        String digest = blob.getContentDigest();
+        return digest != null ? getContentFile(digest) : super.getDataFile(blob);
+    }
+
+    @Override
+    public void save(Blob blob) throws IOException {
+        if(!isDeduplicated(blob)) {
+            //The blob may have been stored by digest before
+            ensureValidCode(blob.getCode());
+            String previousDigest = getStoredDigest(blob.getCode());
+            blob.setContentDigest(null);
+            super.save(blob);
+            if(previousDigest != null) {
+                release(previousDigest);
+            }
+            return;
+        }
+        ensureValidCode(blob.getCode());
+        String previousDigest = getStoredDigest(blob.getCode());
+        blob.setContentDigest(storeContents(blob));
+        writeMetaFile(blob);
+        if(previousDigest != null) {
+            release(previousDigest);
+        }
+        blob.dispose();
+    }
+
+    /**
+     * Stores the contents of the blob, unless they're already stored, and adds a reference to them.
+     * @return the digest of the contents.
+     */
+    protected String storeContents(Blob blob) throws IOException {
+        if(!contentsDir.isDirectory()) {
+            contentsDir.mkdirs();
+        }
+        MessageDigest messageDigest = DigestUtils.getSha256Digest();
+        FileBean fileBean = blob.getFileBean();
+        File upload = fileBean != null ? fileBean.getFile() : null;
+        File tempFile = null;
+        try {
+            if(upload != null) {
+                //The upload is in a file already: read it to compute the digest, and move it in place if it's new
+                if(blob.getInputStream() != null) {
+                    blob.getInputStream().close();
+                }
+                try(InputStream in = new DigestInputStream(new FileInputStream(upload), messageDigest)) {
+                    blob.setSize(IOUtils.copyLarge(in, NullOutputStream.NULL_OUTPUT_STREAM));
+                }
+            } else {
+                tempFile = File.createTempFile("blob", ".tmp", contentsDir);
+                try(InputStream in = new DigestInputStream(blob.getInputStream(), messageDigest);
+                    OutputStream out = new FileOutputStream(tempFile)) {
+                    blob.setSize(IOUtils.copyLarge(in, out));
+                }
+            }
+            String digest = Hex.encodeHexString(messageDigest.digest());
+            File contentFile = getContentFile(digest);
+            synchronized (getLock(digest)) {
+                long references = readReferences(digest);
+                if(references > 0 && contentFile.exists()) {
+                    logger.debug("Contents of blob {} already stored as {}", blob.getCode(), digest);
+                } else {
+                    references = 0;
+                    contentFile.getParentFile().mkdirs();
+                    if(upload != null && !fileBean.moveTo(contentFile)) {
+                        tempFile = File.createTempFile("blob", ".tmp", contentsDir);
+                        FileUtils.copyFile(upload, tempFile);
+                    }
+                    if(tempFile != null) {
+                        moveAtomically(tempFile, contentFile);
+                    }
+                }
+                writeReferences(digest, references + 1);
+            }
+            return digest;
+        } finally {
+            if(tempFile != null && tempFile.exists() && !tempFile.delete()) {
+                logger.warn("Could not delete temporary file {}", tempFile);
+            }
+        }
+    }
+
+    /**
+     * Removes a reference to the contents with the given digest, deleting them if it was the last one.
+     */
+    protected void release(String digest) throws IOException {
+        synchronized (getLock(digest)) {
+            long references = readReferences(digest) - 1;
+            if(references > 0) {
+                writeReferences(digest, references);
+            } else {
+                logger.debug("Deleting unreferenced contents {}", digest);
+                File contentFile = getContentFile(digest);
+                if(contentFile.exists() && !contentFile.delete()) {
+                    throw new IOException("Could not delete " + contentFile);
+                }
+                File referencesFile = getReferencesFile(digest);
+                if(referencesFile.exists() && !referencesFile.delete()) {
+                    throw new IOException("Could not delete " + referencesFile);
+                }
+            }
+        }
+    }
+
+    public long readReferences(String digest) throws IOException {
+        File referencesFile = getReferencesFile(digest);
+        if(!referencesFile.exists()) {
+            return 0;
+        }
+        String references = FileUtils.readFileToString(referencesFile, StandardCharsets.UTF_8).trim();
+        try {
+            return Long.parseLong(references);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid reference count in " + referencesFile + ": " + references, e);
+        }
+    }
+
+    protected void writeReferences(String digest, long references) throws IOException {
+        File referencesFile = getReferencesFile(digest);
+        File tempFile = File.createTempFile(referencesFile.getName(), ".tmp", referencesFile.getParentFile());
+        try {
+            FileUtils.writeStringToFile(tempFile, Long.toString(references), StandardCharsets.UTF_8);
+            moveAtomically(tempFile, referencesFile);
+        } finally {
+            if(tempFile.exists()) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Returns the digest recorded in the metadata of the blob with the given code, if it's already stored.
+     */
+    protected String getStoredDigest(String code) throws IOException {
+        Properties metaProperties = getIndexedMetaProperties(code);
+        if(metaProperties == null) {
+            File metaFile = getMetaFile(code);
+            if(!metaFile.exists()) {
+                return null;
+            }
+            metaProperties = loadMetaProperties(metaFile);
+        }
+        return metaProperties.getProperty(Blob.CONTENT_DIGEST_PROPERTY);
+    }
+
+    @Override
+    public boolean delete(Blob blob) {
+        ensureValidCode(blob.getCode());
+        if(!blob.isPropertiesLoaded()) {
+            try {
+                loadMetadata(blob);
+            } catch (IOException e) {
+                logger.warn("Could not load metadata", e);
+            }
+        }
+        String digest = blob.getContentDigest();
+        if(digest == null) {
+            return super.delete(blob);
+        }
+        if(!deleteMetaFile(blob.getCode())) {
+            logger.warn("Could not delete meta file {}", getMetaFile(blob.getCode()));
+            return false;
+        }
+        try {
+            release(digest);
+            return true;
+        } catch (IOException e) {
+            logger.warn("Could not release contents " + digest, e);
+            return false;
+        }
+    }
+}
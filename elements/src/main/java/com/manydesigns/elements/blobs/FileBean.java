@@ -15,6 +15,8 @@
 package com.manydesigns.elements.blobs;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 
 /**
  * <p>Represents a file that was submitted as part of an HTTP POST request.  Provides methods for
@@ -183,6 +185,34 @@ public class FileBean {
         }
     }
 
+    /**
+     * Moves the uploaded file to the location on disk represented by File with an atomic rename, replacing any
+     * existing file. Unlike {@link #save(File)}, it never copies the file, so it fails if the two locations are on
+     * different file systems.
+     *
+     * @param toFile a File object representing a location
+     * @return whether the file was moved; if not, the uploaded file is left where it is.
+     */
+    public boolean moveTo(File toFile) {
+        if (this.file == null || this.saved) {
+            return false;
+        }
+        try {
+            Files.move(this.file.toPath(), toFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            this.saved = true;
+        } catch (IOException e) {
+            //Not on the same file system, or not supported by the file system
+        }
+        return this.saved;
+    }
+
+    /**
+     * Returns the temporary file holding the upload, or null if the upload is not stored in a file.
+     */
+    public File getFile() {
+        return file;
+    }
+
     /**
      * Attempts to save the uploaded file to the specified file by performing a stream
      * based copy. This is only used when a rename cannot be executed, e.g. because the
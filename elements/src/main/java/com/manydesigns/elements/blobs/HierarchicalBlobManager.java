@@ -41,7 +41,7 @@ public class HierarchicalBlobManager extends SimpleBlobManager {
             Repository repository = RepositoryRegistry.getInstance().getRepository(blob.getRepository());
             repository.load(blob);
         } else {
-            FileInputStream fileInputStream = new FileInputStream(getDataFile(blob.getCode()));
+            FileInputStream fileInputStream = new FileInputStream(getDataFile(blob));
             if(blob.isEncrypted()) {
                 blob.setInputStream(BlobUtils.decrypt(fileInputStream, blob.getEncryptionType()));
             } else {
@@ -59,12 +59,8 @@ public class HierarchicalBlobManager extends SimpleBlobManager {
             Repository repository=RepositoryRegistry.getInstance().getRepository(blob.getRepository());
             repository.save(blob);
 
-            File metaFile = getMetaFile(blob.getCode());
-            if(!metaFile.getParentFile().isDirectory()) {
-                metaFile.getParentFile().mkdirs();
-            }
-            try(FileOutputStream out = new FileOutputStream(metaFile)) {
-                blob.getMetaProperties().store(out, "Remote Blob code #" + blob.getCode()); //TODO aggiungere altre info in commento
+            try {
+                writeMetaFile(blob, "Remote Blob code #" + blob.getCode()); //TODO aggiungere altre info in commento
             } finally {
                 blob.dispose();
             }
@@ -84,7 +80,6 @@ public class HierarchicalBlobManager extends SimpleBlobManager {
         if( blob.getRepository() != null ){
             String code = blob.getCode();
             ensureValidCode(code);
-            File metaFile = getMetaFile(code);
             boolean success;
             try {
                 Repository repository=RepositoryRegistry.getInstance().getRepository(blob.getRepository());
@@ -94,7 +89,7 @@ public class HierarchicalBlobManager extends SimpleBlobManager {
                 success = false;
             }
             try {
-                success = success && metaFile.delete();
+                success = success && deleteMetaFile(code);
             } catch (Exception e) {
                 logger.warn("Cound not delete meta file", e);
                 success = false;
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2005-2020 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.elements.blobs;
+
+import java.io.File;
+import java.io.FileInputStream;
+
+/**
+ * Moves the contents of the blobs saved by a {@link HierarchicalBlobManager} to the content store of a
+ * {@link DeduplicatingBlobManager}, so that equal contents are stored only once. Encrypted blobs and blobs stored in
+ * a repository are left as they are. The application must not be running during the conversion.
+ *
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class HierarchicalToDeduplicatingConverter {
+
+    public static void main(String[] args) {
+        if(args.length != 1) {
+            System.err.println("Usage: HierarchicalToDeduplicatingConverter <directory>");
+            System.exit(-1);
+        }
+        File directory = new File(args[0]);
+        if(!directory.isDirectory()) {
+            System.err.println("Not a directory: " + directory);
+            System.exit(-2);
+        }
+        System.exit(convert(directory));
+    }
+
+    public static int convert(File directory) {
+        String metaFilenamePattern = "blob-{0}.properties";
+        String dataFilenamePattern = "blob-{0}.data";
+        HierarchicalBlobManager hierarchical = new HierarchicalBlobManager(directory, metaFilenamePattern, dataFilenamePattern);
+        DeduplicatingBlobManager deduplicating = new DeduplicatingBlobManager(directory, metaFilenamePattern, dataFilenamePattern);
+        int converted = 0;
+        //Blobs are stored in three levels of directories named after the first six characters of their code
+        for(File level1 : listSubdirectories(directory)) {
+            for(File level2 : listSubdirectories(level1)) {
+                for(File level3 : listSubdirectories(level2)) {
+                    File[] files = level3.listFiles((dir, name) -> name.startsWith("blob-") && name.endsWith(".properties"));
+                    if(files == null) {
+                        continue;
+                    }
+                    for(File file : files) {
+                        String blobCode = file.getName().substring("blob-".length(), file.getName().length() - ".properties".length());
+                        Blob blob = new Blob(blobCode);
+                        try {
+                            deduplicating.loadMetadata(blob);
+                            if(blob.getContentDigest() != null || !deduplicating.isDeduplicated(blob)) {
+                                continue;
+                            }
+                            File dataFile = hierarchical.getDataFile(blobCode);
+                            blob.setInputStream(new FileInputStream(dataFile));
+                            deduplicating.save(blob);
+                            if(!dataFile.delete()) {
+                                System.err.println("Could not delete: " + dataFile);
+                            }
+                            converted++;
+                        } catch (Exception e) {
+                            blob.dispose();
+                            System.err.println("Could not convert: " + blobCode + " because: " + e);
+                        }
+                    }
+                }
+            }
+        }
+        //The metadata index no longer matches the files, it will be rebuilt
+        File metadataIndex = new File(directory, BlobMetadataIndex.DEFAULT_FILE_NAME);
+        if(converted > 0 && metadataIndex.exists() && !metadataIndex.delete()) {
+            System.err.println("Could not delete: " + metadataIndex);
+        }
+        return converted;
+    }
+
+    protected static File[] listSubdirectories(File directory) {
+        File[] subdirectories = directory.listFiles(file -> file.isDirectory() && file.getName().length() == 2);
+        return subdirectories != null ? subdirectories : new File[0];
+    }
+
+}
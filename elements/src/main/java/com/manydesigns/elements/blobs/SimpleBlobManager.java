@@ -22,11 +22,16 @@ package com.manydesigns.elements.blobs;
 
 import com.manydesigns.elements.util.RandomUtil;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.commons.io.input.CountingInputStream;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Properties;
 
 /**
@@ -53,6 +58,7 @@ public class SimpleBlobManager implements BlobManager {
     protected File blobsDir;
     protected String metaFileNamePattern;
     protected String dataFileNamePattern;
+    protected BlobMetadataIndex metadataIndex;
 
     //**************************************************************************
     // Constructors and initialization
@@ -81,6 +87,13 @@ public class SimpleBlobManager implements BlobManager {
         return RandomUtil.getCodeFile(blobsDir, dataFileNamePattern, code);
     }
 
+    /**
+     * Returns the file holding the contents of the given blob.
+     */
+    protected File getDataFile(Blob blob) throws IOException {
+        return getDataFile(blob.getCode());
+    }
+
     public void ensureValidCode(String code) {
         if (!StringUtils.isAlphanumeric(code)) {
             throw new IllegalArgumentException(
@@ -91,7 +104,20 @@ public class SimpleBlobManager implements BlobManager {
     @Override
     public void loadMetadata(Blob blob) throws IOException {
         ensureValidCode(blob.getCode());
-        blob.setMetaProperties(loadMetaProperties(getMetaFile(blob.getCode())));
+        blob.setMetaProperties(loadMetaProperties(blob.getCode()));
+    }
+
+    /**
+     * Loads the metadata of the blob with the given code from the index, if it's there, or else from the meta file,
+     * adding it to the index.
+     */
+    protected Properties loadMetaProperties(String code) throws IOException {
+        Properties metaProperties = getIndexedMetaProperties(code);
+        if(metaProperties == null) {
+            metaProperties = loadMetaProperties(getMetaFile(code));
+            indexMetaProperties(code, metaProperties);
+        }
+        return metaProperties;
     }
 
     public Properties loadMetaProperties(File metaFile) throws IOException {
@@ -105,10 +131,37 @@ public class SimpleBlobManager implements BlobManager {
     @Override
     public InputStream openStream(Blob blob) throws IOException {
         ensureValidCode(blob.getCode());
-        blob.setInputStream(new FileInputStream(getDataFile(blob.getCode())));
+        blob.setInputStream(new FileInputStream(getDataFile(blob)));
         return blob.getInputStream();
     }
 
+    /**
+     * Opens a stream over a range of the contents of the blob. If the blob is encrypted, only the part of the data
+     * file that holds the range is decrypted. The blob's metadata must have been loaded.
+     * @param offset the position of the first byte to read.
+     * @param length the number of bytes to read at most.
+     */
+    public InputStream openStream(Blob blob, long offset, long length) throws IOException {
+        ensureValidCode(blob.getCode());
+        File dataFile = getDataFile(blob);
+        if(blob.isEncrypted()) {
+            return BlobUtils.decrypt(dataFile, offset, length, blob.getEncryptionType());
+        }
+        InputStream inputStream = new FileInputStream(dataFile);
+        try {
+            IOUtils.skip(inputStream, offset);
+        } catch (IOException e) {
+            inputStream.close();
+            throw e;
+        }
+        return new BoundedInputStream(inputStream, length);
+    }
+
+    /**
+     * Saves the blob. Unencrypted uploads are moved in place if possible, e.g. if they're on the same file system as
+     * the blobs; otherwise, the contents are written (and encrypted, if required) in a single pass to a temporary
+     * file, which then replaces the data file atomically.
+     */
     @Override
     public void save(Blob blob) throws IOException {
         ensureValidCode(blob.getCode());
@@ -116,35 +169,147 @@ public class SimpleBlobManager implements BlobManager {
         if(!dataFile.getParentFile().isDirectory()) {
             dataFile.getParentFile().mkdirs();
         }
-        InputStream encryptInputStream;
-        try(FileOutputStream out = new FileOutputStream(dataFile)) {
-            InputStream inputStream = blob.getInputStream();
-            if(blob.isEncrypted()){
-                 encryptInputStream = BlobUtils.encrypt(inputStream,blob.getEncryptionType());
-                IOUtils.copyLarge(encryptInputStream, out);
-            } else {
-                blob.setSize(IOUtils.copyLarge(inputStream, out));
-            }
+        if(blob.isEncrypted() || !moveUpload(blob, dataFile)) {
+            writeDataFile(blob, dataFile);
         }
+        writeMetaFile(blob);
+        blob.dispose();
+    }
+
+    protected void writeMetaFile(Blob blob) throws IOException {
+        writeMetaFile(blob, "Blob code #" + blob.getCode());
+    }
+
+    protected void writeMetaFile(Blob blob, String comment) throws IOException {
         File metaFile = getMetaFile(blob.getCode());
         if(!metaFile.getParentFile().isDirectory()) {
             metaFile.getParentFile().mkdirs();
         }
+        Properties metaProperties = blob.getMetaProperties();
         try(OutputStream out = new FileOutputStream(metaFile)) {
-            blob.getMetaProperties().store(out, "Blob code #" + blob.getCode());
+            metaProperties.store(out, comment);
+        }
+        indexMetaProperties(blob.getCode(), metaProperties);
+    }
+
+    protected boolean deleteMetaFile(String code) {
+        unindexMetaProperties(code);
+        return getMetaFile(code).delete();
+    }
+
+    //**************************************************************************
+    // Metadata index
+    //**************************************************************************
+
+    protected Properties getIndexedMetaProperties(String code) {
+        if(metadataIndex == null || !metadataIndex.isOpen()) {
+            return null;
+        }
+        try {
+            return metadataIndex.get(code);
+        } catch (IOException e) {
+            logger.warn("Could not read the metadata of blob " + code + " from the index", e);
+            return null;
+        }
+    }
+
+    protected void indexMetaProperties(String code, Properties metaProperties) {
+        if(metadataIndex == null || !metadataIndex.isOpen()) {
+            return;
+        }
+        try {
+            metadataIndex.put(code, metaProperties);
+        } catch (IOException e) {
+            logger.warn("Could not add the metadata of blob " + code + " to the index", e);
+            unindexMetaProperties(code);
+        }
+    }
+
+    protected void unindexMetaProperties(String code) {
+        if(metadataIndex == null || !metadataIndex.isOpen()) {
+            return;
+        }
+        try {
+            metadataIndex.remove(code);
+        } catch (IOException e) {
+            logger.warn("Could not remove the metadata of blob " + code + " from the index", e);
+        }
+    }
+
+    /**
+     * Closes the metadata index, if any.
+     */
+    public void close() throws IOException {
+        if(metadataIndex != null) {
+            metadataIndex.close();
+        }
+    }
+
+    /**
+     * Moves the uploaded file holding the contents of the blob, if any, to the data file.
+     * @return whether the file was moved.
+     */
+    protected boolean moveUpload(Blob blob, File dataFile) throws IOException {
+        FileBean fileBean = blob.getFileBean();
+        if(fileBean == null || fileBean.getFile() == null) {
+            return false;
+        }
+        //Some platforms don't allow to rename open files
+        if(blob.getInputStream() != null) {
+            blob.getInputStream().close();
+        }
+        if(fileBean.moveTo(dataFile)) {
+            logger.debug("Moved upload {} to {}", fileBean.getFile(), dataFile);
+            blob.setInputStream(null);
+            blob.setSize(dataFile.length());
+            return true;
+        } else {
+            blob.setInputStream(fileBean.getInputStream());
+            return false;
+        }
+    }
+
+    protected void writeDataFile(Blob blob, File dataFile) throws IOException {
+        File tempFile = File.createTempFile(dataFile.getName(), ".tmp", dataFile.getParentFile());
+        try {
+            try(OutputStream out = new FileOutputStream(tempFile)) {
+                InputStream inputStream = blob.getInputStream();
+                if(blob.isEncrypted()) {
+                    CountingInputStream counter = new CountingInputStream(inputStream);
+                    IOUtils.copyLarge(BlobUtils.encrypt(counter, blob.getEncryptionType()), out);
+                    blob.setSize(counter.getByteCount());
+                } else {
+                    blob.setSize(IOUtils.copyLarge(inputStream, out));
+                }
+            }
+            moveAtomically(tempFile, dataFile);
+        } finally {
+            if(tempFile.exists() && !tempFile.delete()) {
+                logger.warn("Could not delete temporary file {}", tempFile);
+            }
+        }
+    }
+
+    /**
+     * Moves a file replacing the target, atomically if the file system supports it.
+     */
+    protected static void moveAtomically(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
         }
-        blob.dispose();
     }
 
     @Override
     public boolean delete(Blob blob) {
         String code = blob.getCode();
         ensureValidCode(code);
-        File metaFile = getMetaFile(code);
         File dataFile = getDataFile(code);
         boolean success;
         try {
-            success = metaFile.delete();
+            success = deleteMetaFile(code);
         } catch (Exception e) {
             logger.warn("Cound not delete meta file", e);
             success = false;
@@ -186,4 +351,16 @@ public class SimpleBlobManager implements BlobManager {
     public void setDataFileNamePattern(String dataFileNamePattern) {
         this.dataFileNamePattern = dataFileNamePattern;
     }
+
+    public BlobMetadataIndex getMetadataIndex() {
+        return metadataIndex;
+    }
+
+    /**
+     * Sets the index used to load the metadata of blobs without reading their meta files. The index must be
+     * {@linkplain BlobMetadataIndex#open(File) open}; it's closed together with this manager.
+     */
+    public void setMetadataIndex(BlobMetadataIndex metadataIndex) {
+        this.metadataIndex = metadataIndex;
+    }
 }
@@ -50,6 +50,11 @@ public class SimpleToHierarchicalConverter {
                 System.err.println("Could not convert: " + blobCode + " because: " + e);
             }
         }
+        //The metadata index no longer matches the files, it will be rebuilt
+        File metadataIndex = new File(directory, BlobMetadataIndex.DEFAULT_FILE_NAME);
+        if(converted > 0 && metadataIndex.exists() && !metadataIndex.delete()) {
+            System.err.println("Could not delete: " + metadataIndex);
+        }
         return converted;
     }
 
@@ -37,7 +37,9 @@ import java.util.regex.Pattern;
 import static org.apache.commons.io.FileUtils.openOutputStream;
 
 /**
- * MultipartWrapper implementation that uses the streaming API of Commons Fileupload, avoiding the use of files.
+ * MultipartWrapper implementation that uses the streaming API of Commons Fileupload, spooling each uploaded file
+ * once to the temporary directory. Blob managers can then move the file in place, so if the temporary directory is on
+ * the same file system as the blobs, uploads are written to disk only once.
  *
  * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
  * @author Angelo Lupo          - angelo.lupo@manydesigns.com
@@ -63,9 +65,9 @@ public class StreamingCommonsMultipartWrapper implements MultipartWrapper {
         public final String fileName;
         public final String contentType;
         public final File contents;
-        public final int size;
+        public final long size;
 
-        public FileItem(String fileName, String contentType, File contents, int size) {
+        public FileItem(String fileName, String contentType, File contents, long size) {
             this.fileName = fileName;
             this.contentType = contentType;
             this.contents = contents;
@@ -89,6 +91,9 @@ public class StreamingCommonsMultipartWrapper implements MultipartWrapper {
     @SuppressWarnings("unchecked")
     public void build(HttpServletRequest request, File tempDir, long maxPostSize)
             throws IOException, FileUploadLimitExceededException {
+        if(tempDir != null && !tempDir.isDirectory() && !tempDir.mkdirs()) {
+            throw new IOException("Could not create the directory for uploads: " + tempDir);
+        }
         try {
             this.charset = request.getCharacterEncoding();
             DiskFileItemFactory factory = new DiskFileItemFactory();
@@ -107,9 +112,10 @@ public class StreamingCommonsMultipartWrapper implements MultipartWrapper {
                         List<String> values = params.computeIfAbsent(item.getFieldName(), k -> new ArrayList<>());
                         values.add(charset == null ? IOUtils.toString(stream) : IOUtils.toString(stream, charset));
                     } else {
-                        // Else store the file param
-                        File tempFile = File.createTempFile("portofino-temp-" + item.getName(), ".temp");
-                        int size = copyInputStreamToFile(stream, tempFile);
+                        // Else store the file param. Size and content type are recorded now, so that
+                        // the file can be moved to its final location without reading it again.
+                        File tempFile = File.createTempFile("portofino-upload-", ".temp", tempDir);
+                        long size = copyInputStreamToFile(stream, tempFile);
                         FileItem fileItem = new FileItem(item.getName(), item.getContentType(), tempFile, size);
                         files.put(item.getFieldName(), fileItem);
                     }
@@ -131,9 +137,21 @@ public class StreamingCommonsMultipartWrapper implements MultipartWrapper {
 
     }
 
-    public static int copyInputStreamToFile(InputStream source, File destination) throws IOException {
+    public static long copyInputStreamToFile(InputStream source, File destination) throws IOException {
         try(InputStream input = source; FileOutputStream output = openOutputStream(destination)) {
-            return IOUtils.copy(input, output);
+            return IOUtils.copyLarge(input, output);
+        }
+    }
+
+    /**
+     * Deletes the temporary files of the uploads that have not been moved elsewhere, e.g. by a
+     * {@link BlobManager}. To be called when the request has been processed.
+     */
+    public void deleteTemporaryFiles() {
+        for (FileItem item : files.values()) {
+            if (item.contents.exists() && !item.contents.delete()) {
+                item.contents.deleteOnExit();
+            }
         }
     }
 
@@ -197,24 +215,12 @@ public class StreamingCommonsMultipartWrapper implements MultipartWrapper {
                 }
             }
 
-            // Use an anonymous inner subclass of FileBean that overrides all the
-            // methods that rely on having a File present, to use the FileItem
-            // created by commons upload instead.
-            return new FileBean(null, item.contentType, filename, this.charset) {
+            // The size was recorded while spooling the file
+            return new FileBean(item.contents, item.contentType, filename, this.charset) {
                 @Override
                 public long getSize() {
                     return item.size;
                 }
-
-                @Override
-                public InputStream getInputStream() throws IOException {
-                    return new FileInputStream(item.contents);
-                }
-
-                @Override
-                public void delete() throws IOException {
-                    item.contents.delete();
-                }
             };
         }
     }
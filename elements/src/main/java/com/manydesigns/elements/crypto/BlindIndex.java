@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2005-2020 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.elements.crypto;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Locale;
+
+/**
+ * Computes keyed hashes of sensitive values, to be stored in a column next to the encrypted value so that the
+ * database can search it with an index.<br>
+ * The index of a value is the concatenation of a short HMAC of each of its prefixes (up to
+ * {@link #DEFAULT_MAX_PREFIX_LENGTH} characters), followed by a longer HMAC of the whole value if it is longer than
+ * that. Thus, equality is tested comparing indexes, and a prefix search is an index lookup for the values whose
+ * index starts with the index of the prefix. Values are compared ignoring case.<br>
+ * Note that the index reveals which values are equal or share a prefix, though not the values themselves.
+ *
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class BlindIndex {
+    public static final String copyright =
+            "Copyright (C) 2005-2020 ManyDesigns srl";
+
+    public static final int DEFAULT_MAX_PREFIX_LENGTH = 32;
+    public static final String MAC_ALGORITHM = "HmacSHA256";
+    protected static final int PREFIX_HASH_BYTES = 2;
+    protected static final int VALUE_HASH_BYTES = 8;
+    protected static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static volatile BlindIndex single;
+
+    protected final SecretKey key;
+    protected final int maxPrefixLength;
+
+    public BlindIndex(SecretKey key, int maxPrefixLength) {
+        this.key = key;
+        this.maxPrefixLength = maxPrefixLength;
+    }
+
+    /**
+     * Returns the blind index keyed with a key derived from the one of the {@link KeyManager}, so that the same key is
+     * never used both to encrypt and to hash.
+     */
+    public static BlindIndex getInstance() throws GeneralSecurityException {
+        BlindIndex blindIndex = single;
+        if (blindIndex == null) {
+            SecretKey encryptionKey = KeyManager.getInstance().getSimmK();
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(new SecretKeySpec(encryptionKey.getEncoded(), MAC_ALGORITHM));
+            byte[] derivedKey = mac.doFinal("blind-index".getBytes(StandardCharsets.UTF_8));
+            blindIndex = new BlindIndex(new SecretKeySpec(derivedKey, MAC_ALGORITHM), DEFAULT_MAX_PREFIX_LENGTH);
+            single = blindIndex;
+        }
+        return blindIndex;
+    }
+
+    /**
+     * Computes the index of a value.
+     * @param value the plaintext value.
+     * @return the index, or null if the value is null.
+     */
+    public String compute(String value) throws GeneralSecurityException {
+        if (value == null) {
+            return null;
+        }
+        String normalized = normalize(value);
+        StringBuilder sb = computePrefixes(normalized);
+        if (normalized.length() > maxPrefixLength) {
+            sb.append('-');
+            appendHash(sb, hash(normalized), VALUE_HASH_BYTES);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Computes the beginning of the index shared by all the values starting with the given prefix. Characters beyond
+     * the maximum prefix length are not significant.
+     * @param prefix the plaintext prefix.
+     * @return the start of the index, or null if the prefix is null.
+     */
+    public String computePrefix(String prefix) throws GeneralSecurityException {
+        if (prefix == null) {
+            return null;
+        }
+        return computePrefixes(normalize(prefix)).toString();
+    }
+
+    protected StringBuilder computePrefixes(String normalized) throws GeneralSecurityException {
+        int length = Math.min(normalized.length(), maxPrefixLength);
+        StringBuilder sb = new StringBuilder(length * PREFIX_HASH_BYTES * 2 + VALUE_HASH_BYTES * 2 + 1);
+        Mac mac = newMac();
+        for (int i = 1; i <= length; i++) {
+            appendHash(sb, mac.doFinal(normalized.substring(0, i).getBytes(StandardCharsets.UTF_8)), PREFIX_HASH_BYTES);
+        }
+        return sb;
+    }
+
+    protected byte[] hash(String normalized) throws GeneralSecurityException {
+        return newMac().doFinal(normalized.getBytes(StandardCharsets.UTF_8));
+    }
+
+    protected Mac newMac() throws GeneralSecurityException {
+        Mac mac = Mac.getInstance(MAC_ALGORITHM);
+        mac.init(key);
+        return mac;
+    }
+
+    protected static void appendHash(StringBuilder sb, byte[] hash, int bytes) {
+        for (int i = 0; i < bytes; i++) {
+            sb.append(HEX[(hash[i] >> 4) & 0xF]).append(HEX[hash[i] & 0xF]);
+        }
+    }
+
+    protected static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    public int getMaxPrefixLength() {
+        return maxPrefixLength;
+    }
+}
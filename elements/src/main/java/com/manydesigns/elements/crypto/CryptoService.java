@@ -1,33 +1,82 @@
 package com.manydesigns.elements.crypto;
 
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+
 import javax.crypto.*;
-import java.io.IOException;
-import java.io.InputStream;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.util.Base64;
-
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Encrypts and decrypts values and streams with the key of the {@link KeyManager}. It's thread-safe: ciphers are
+ * reused by each thread rather than requested to the provider for each operation.<br>
+ * Values are encrypted with {@link #getTypeAlgo()}, which is deterministic, so that encrypted values can be searched
+ * by equality. Streams are encrypted with {@link SegmentedEncryption}, using a key derived from the one of the
+ * {@link KeyManager}, so they can be decrypted in ranges or in parallel; streams encrypted with
+ * {@link #getTypeAlgo()} by previous versions are recognized and still decrypted.
+ */
 public class CryptoService {
 
   //Affect resulting file size
-  private String typeAlgo = "AES";
-  private static CryptoService single;
+  public static final String LEGACY_ALGORITHM = "AES";
+  private final String typeAlgo = LEGACY_ALGORITHM;
+  private static final CryptoService single = new CryptoService();
+  private static final ThreadLocal<Map<String, Cipher>> ciphers = ThreadLocal.withInitial(HashMap::new);
+
+  private volatile SecretKey streamKey;
 
   public String getTypeAlgo(){
     return typeAlgo;
   }
 
   public static CryptoService getInstance() {
-    if (single == null)
-      single = new CryptoService();
     return single;
   }
 
+  /**
+   * Returns the cipher of the current thread for the given algorithm. It must be initialized before each use, and
+   * must not be shared with other threads or kept across calls, e.g. in a {@link CipherInputStream}.
+   */
+  public static Cipher getCipher(String algorithm) throws NoSuchAlgorithmException, NoSuchPaddingException {
+    Map<String, Cipher> threadCiphers = ciphers.get();
+    Cipher cipher = threadCiphers.get(algorithm);
+    if (cipher == null) {
+      cipher = Cipher.getInstance(algorithm);
+      threadCiphers.put(algorithm, cipher);
+    }
+    return cipher;
+  }
+
   private SecretKey getkey() throws GeneralSecurityException, IOException {
     return KeyManager.getInstance().getSimmK();
   }
 
+  /**
+   * Returns the key used to encrypt streams, derived from the one of the {@link KeyManager} so that the same key is
+   * never used both with {@link #getTypeAlgo()} and with {@link SegmentedEncryption}.
+   */
+  protected SecretKey getStreamKey() throws GeneralSecurityException, IOException {
+    SecretKey key = streamKey;
+    if (key == null) {
+      Mac mac = Mac.getInstance("HmacSHA256");
+      mac.init(new SecretKeySpec(getkey().getEncoded(), "HmacSHA256"));
+      byte[] derivedKey = mac.doFinal("segmented-encryption".getBytes(StandardCharsets.UTF_8));
+      key = new SecretKeySpec(derivedKey, 0, 16, "AES");
+      streamKey = key;
+    }
+    return key;
+  }
+
   public String encrypt(String decrypted)
     throws GeneralSecurityException, IOException {
     return new String(Base64.getEncoder().encode(encrypt(decrypted.getBytes())));
@@ -50,29 +99,90 @@ public class CryptoService {
 
   public InputStream encrypt(InputStream decrypted)
     throws GeneralSecurityException, IOException {
-    return encrypt(decrypted, typeAlgo, getkey());
+    return SegmentedEncryption.encrypt(decrypted, getStreamKey());
   }
 
+  /**
+   * Decrypts a stream, be it encrypted with {@link SegmentedEncryption} or with {@link #getTypeAlgo()}.
+   */
   public InputStream decrypt(InputStream encrypted)
     throws GeneralSecurityException, IOException {
+    if (!encrypted.markSupported()) {
+      encrypted = new BufferedInputStream(encrypted);
+    }
+    if (SegmentedEncryption.isSegmented(encrypted)) {
+      return SegmentedEncryption.decrypt(encrypted, getStreamKey());
+    }
     return decrypt(encrypted, typeAlgo, getkey());
   }
 
+  /**
+   * Returns a stream over a range of the decrypted contents of a file. Files encrypted with
+   * {@link SegmentedEncryption} are decrypted only in the chunks that the range spans; legacy ones are decrypted
+   * sequentially up to the end of the range.
+   * @param offset the position of the first byte of plaintext to read.
+   * @param length the number of bytes to read at most.
+   */
+  public InputStream decrypt(File encrypted, long offset, long length)
+    throws GeneralSecurityException, IOException {
+    if (isSegmented(encrypted)) {
+      FileChannel channel = FileChannel.open(encrypted.toPath(), StandardOpenOption.READ);
+      try {
+        return SegmentedEncryption.decrypt(channel, getStreamKey(), offset, length);
+      } catch (GeneralSecurityException | IOException | RuntimeException e) {
+        channel.close();
+        throw e;
+      }
+    }
+    InputStream decrypted = decrypt(new FileInputStream(encrypted), typeAlgo, getkey());
+    try {
+      IOUtils.skip(decrypted, offset);
+    } catch (IOException | RuntimeException e) {
+      decrypted.close();
+      throw e;
+    }
+    return new BoundedInputStream(decrypted, length);
+  }
+
+  /**
+   * Decrypts a whole file to the given stream. Files encrypted with {@link SegmentedEncryption} are decrypted
+   * <code>parallelism</code> chunks at a time with the given executor; legacy ones are decrypted sequentially.
+   */
+  public void decrypt(File encrypted, OutputStream out, ExecutorService executor, int parallelism)
+    throws GeneralSecurityException, IOException {
+    if (isSegmented(encrypted)) {
+      try(FileChannel channel = FileChannel.open(encrypted.toPath(), StandardOpenOption.READ)) {
+        SegmentedEncryption.decrypt(channel, getStreamKey(), out, executor, parallelism);
+      }
+    } else {
+      try(InputStream in = decrypt(new FileInputStream(encrypted), typeAlgo, getkey())) {
+        IOUtils.copyLarge(in, out);
+      }
+    }
+  }
+
+  protected static boolean isSegmented(File file) throws IOException {
+    try(InputStream in = new BufferedInputStream(new FileInputStream(file), SegmentedEncryption.HEADER_LENGTH)) {
+      return SegmentedEncryption.isSegmented(in);
+    }
+  }
+
   public static byte[] encrypt(byte[] decrypted, String algorithm, SecretKey key)
     throws BadPaddingException, IllegalBlockSizeException, InvalidKeyException, NoSuchPaddingException, NoSuchAlgorithmException {
-    Cipher cipher = Cipher.getInstance(algorithm);
+    Cipher cipher = getCipher(algorithm);
     cipher.init(Cipher.ENCRYPT_MODE, key);
     return cipher.doFinal(decrypted);
   }
 
   public static byte[] decrypt(byte[] encrypted, String algorithm, SecretKey key)
     throws BadPaddingException, IllegalBlockSizeException, InvalidKeyException, NoSuchPaddingException, NoSuchAlgorithmException {
-    Cipher cipher = Cipher.getInstance(algorithm);
+    Cipher cipher = getCipher(algorithm);
     cipher.init(Cipher.DECRYPT_MODE, key);
     return cipher.doFinal(encrypted);
   }
 
   public static InputStream decrypt(InputStream encryptedInputStream, String algorithm, SecretKey key) throws NoSuchPaddingException, NoSuchAlgorithmException, InvalidKeyException {
+    //The stream keeps the cipher, so it cannot be the one of the thread
     Cipher cipher = Cipher.getInstance(algorithm);
     cipher.init(Cipher.DECRYPT_MODE, key);
     return new CipherInputStream(encryptedInputStream, cipher);
@@ -84,9 +194,19 @@ public class CryptoService {
     return new CipherInputStream(decryptedInputStream, cipher);
   }
 
+  /**
+   * Returns the size of a file of <code>originalSize</code> bytes encrypted with {@link #getTypeAlgo()}.
+   */
   public long getFileSize( Long originalSize ){
     //if( typeAlgo ...
     double value = Math.ceil(originalSize.doubleValue()/16d)*16;
     return (long) value;
   }
+
+  /**
+   * Returns the size of a stream of <code>originalSize</code> bytes encrypted with {@link #encrypt(InputStream)}.
+   */
+  public long getEncryptedSize(long originalSize) {
+    return SegmentedEncryption.getEncryptedSize(originalSize, SegmentedEncryption.DEFAULT_CHUNK_SIZE);
+  }
 }
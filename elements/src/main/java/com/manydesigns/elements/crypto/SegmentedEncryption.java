@@ -0,0 +1,448 @@
+/*
+ * Copyright (C) 2005-2020 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.elements.crypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Encrypts streams as a sequence of fixed-size chunks, each encrypted on its own with AES-GCM, so that encrypted
+ * data is authenticated and can be decrypted starting from any chunk, or in parallel.<br>
+ * The encrypted data starts with a header made of {@link #MAGIC}, the version of the format, the size of the chunks
+ * and a random nonce prefix. The nonce of each chunk is the prefix followed by the index of the chunk, and the last
+ * chunk is authenticated as such, so that chunks cannot be reordered and the data cannot be truncated without
+ * failing the decryption. Every chunk but the last holds exactly {@link Header#getChunkSize()} bytes of plaintext,
+ * followed by the {@value #TAG_LENGTH} bytes of the authentication tag; the last one may be empty.
+ *
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class SegmentedEncryption {
+    public static final String copyright =
+            "Copyright (C) 2005-2020 ManyDesigns srl";
+
+    public static final String ALGORITHM = "AES/GCM/NoPadding";
+    public static final byte[] MAGIC = { 'P', 'F', 'S', 'E' };
+    public static final byte VERSION = 1;
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    public static final int NONCE_PREFIX_LENGTH = 8;
+    public static final int HEADER_LENGTH = MAGIC.length + 1 + 4 + NONCE_PREFIX_LENGTH;
+    public static final int TAG_LENGTH = 16;
+
+    protected static final SecureRandom random = new SecureRandom();
+
+    /**
+     * Returns whether the given data starts with the header of this format. The stream must support mark/reset;
+     * its position is not changed.
+     */
+    public static boolean isSegmented(InputStream inputStream) throws IOException {
+        inputStream.mark(MAGIC.length + 1);
+        try {
+            byte[] start = new byte[MAGIC.length + 1];
+            return readFully(inputStream, start, 0, start.length) == start.length &&
+                    Arrays.equals(Arrays.copyOf(start, MAGIC.length), MAGIC) && start[MAGIC.length] == VERSION;
+        } finally {
+            inputStream.reset();
+        }
+    }
+
+    /**
+     * Returns a stream that encrypts the given one, reading it a chunk at a time.
+     */
+    public static InputStream encrypt(InputStream decrypted, SecretKey key, int chunkSize) {
+        byte[] noncePrefix = new byte[NONCE_PREFIX_LENGTH];
+        random.nextBytes(noncePrefix);
+        return new EncryptingInputStream(decrypted, key, new Header(chunkSize, noncePrefix));
+    }
+
+    public static InputStream encrypt(InputStream decrypted, SecretKey key) {
+        return encrypt(decrypted, key, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Returns a stream that decrypts the given one sequentially, a chunk at a time.
+     */
+    public static InputStream decrypt(InputStream encrypted, SecretKey key) throws IOException {
+        return new DecryptingInputStream(encrypted, key, Header.read(encrypted));
+    }
+
+    /**
+     * Returns a stream over a range of the decrypted contents of a file, decrypting only the chunks that the range
+     * spans. Closing the stream closes the channel.
+     * @param offset the position of the first byte of plaintext to read.
+     * @param length the number of bytes to read at most.
+     */
+    public static InputStream decrypt(FileChannel channel, SecretKey key, long offset, long length)
+            throws IOException {
+        Header header = Header.read(channel);
+        long size = header.getDecryptedSize(channel.size());
+        long end = Math.min(size, offset + Math.min(length, Long.MAX_VALUE - offset));
+        return new RangeInputStream(channel, key, header, Math.min(offset, end), end);
+    }
+
+    /**
+     * Decrypts a whole file to the given stream, decrypting up to <code>parallelism</code> chunks at the same time
+     * with the given executor.
+     */
+    public static void decrypt(
+            FileChannel channel, SecretKey key, OutputStream out, ExecutorService executor, int parallelism)
+            throws IOException {
+        Header header = Header.read(channel);
+        long encryptedSize = channel.size();
+        long chunks = header.getChunkCount(encryptedSize);
+        Deque<Future<byte[]>> pending = new ArrayDeque<>();
+        try {
+            for (long chunk = 0; chunk < chunks || !pending.isEmpty(); ) {
+                while (chunk < chunks && pending.size() < Math.max(1, parallelism)) {
+                    long index = chunk++;
+                    pending.add(executor.submit(() -> decryptChunk(channel, key, header, index, encryptedSize)));
+                }
+                out.write(pending.remove().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Decryption interrupted");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ?
+                    (IOException) e.getCause() : new IOException(e.getCause());
+        } finally {
+            for (Future<byte[]> future : pending) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Returns the size of the encrypted form of <code>size</code> bytes of plaintext.
+     */
+    public static long getEncryptedSize(long size, int chunkSize) {
+        long chunks = Math.max(1, (size + chunkSize - 1) / chunkSize);
+        return HEADER_LENGTH + size + chunks * TAG_LENGTH;
+    }
+
+    protected static byte[] decryptChunk(
+            FileChannel channel, SecretKey key, Header header, long index, long encryptedSize) throws IOException {
+        long position = header.getChunkPosition(index);
+        int length = (int) Math.min(header.getChunkSize() + TAG_LENGTH, encryptedSize - position);
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Truncated chunk " + index);
+            }
+        }
+        boolean last = index == header.getChunkCount(encryptedSize) - 1;
+        return header.process(Cipher.DECRYPT_MODE, key, index, last, buffer.array(), length);
+    }
+
+    protected static int readFully(InputStream in, byte[] buffer, int offset, int length) throws IOException {
+        int total = 0;
+        while (total < length) {
+            int read = in.read(buffer, offset + total, length - total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    protected static boolean atEnd(PushbackInputStream in) throws IOException {
+        int next = in.read();
+        if (next < 0) {
+            return true;
+        }
+        in.unread(next);
+        return false;
+    }
+
+    //**************************************************************************
+    // Header
+    //**************************************************************************
+
+    public static class Header {
+        protected final int chunkSize;
+        protected final byte[] noncePrefix;
+
+        public Header(int chunkSize, byte[] noncePrefix) {
+            if (chunkSize <= 0) {
+                throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+            }
+            if (noncePrefix.length != NONCE_PREFIX_LENGTH) {
+                throw new IllegalArgumentException("Invalid nonce prefix length: " + noncePrefix.length);
+            }
+            this.chunkSize = chunkSize;
+            this.noncePrefix = noncePrefix.clone();
+        }
+
+        public static Header read(InputStream in) throws IOException {
+            byte[] bytes = new byte[HEADER_LENGTH];
+            if (readFully(in, bytes, 0, HEADER_LENGTH) < HEADER_LENGTH) {
+                throw new EOFException("Truncated header");
+            }
+            return parse(ByteBuffer.wrap(bytes));
+        }
+
+        public static Header read(FileChannel channel) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, buffer.position()) < 0) {
+                    throw new EOFException("Truncated header");
+                }
+            }
+            buffer.flip();
+            return parse(buffer);
+        }
+
+        protected static Header parse(ByteBuffer buffer) throws IOException {
+            byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+            byte version = buffer.get();
+            if (!Arrays.equals(magic, MAGIC) || version != VERSION) {
+                throw new IOException("Not encrypted with " + SegmentedEncryption.class.getSimpleName());
+            }
+            int chunkSize = buffer.getInt();
+            if (chunkSize <= 0) {
+                throw new IOException("Invalid chunk size: " + chunkSize);
+            }
+            byte[] noncePrefix = new byte[NONCE_PREFIX_LENGTH];
+            buffer.get(noncePrefix);
+            return new Header(chunkSize, noncePrefix);
+        }
+
+        public byte[] toByteArray() {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH);
+            buffer.put(MAGIC).put(VERSION).putInt(chunkSize).put(noncePrefix);
+            return buffer.array();
+        }
+
+        public long getChunkCount(long encryptedSize) throws IOException {
+            long body = encryptedSize - HEADER_LENGTH;
+            if (body < TAG_LENGTH) {
+                throw new IOException("Truncated encrypted data");
+            }
+            long encryptedChunkSize = chunkSize + TAG_LENGTH;
+            long chunks = (body + encryptedChunkSize - 1) / encryptedChunkSize;
+            if (body - (chunks - 1) * encryptedChunkSize < TAG_LENGTH) {
+                throw new IOException("Truncated encrypted data");
+            }
+            return chunks;
+        }
+
+        public long getDecryptedSize(long encryptedSize) throws IOException {
+            return encryptedSize - HEADER_LENGTH - getChunkCount(encryptedSize) * TAG_LENGTH;
+        }
+
+        public long getChunkPosition(long index) {
+            return HEADER_LENGTH + index * (chunkSize + TAG_LENGTH);
+        }
+
+        /**
+         * Encrypts or decrypts a chunk with the cipher of the current thread.
+         */
+        public byte[] process(int mode, SecretKey key, long index, boolean last, byte[] input, int length)
+                throws IOException {
+            if (index > 0xFFFFFFFFL) {
+                throw new IOException("Too many chunks");
+            }
+            byte[] nonce = Arrays.copyOf(noncePrefix, NONCE_PREFIX_LENGTH + 4);
+            ByteBuffer.wrap(nonce, NONCE_PREFIX_LENGTH, 4).putInt((int) index);
+            try {
+                Cipher cipher = CryptoService.getCipher(ALGORITHM);
+                cipher.init(mode, key, new GCMParameterSpec(TAG_LENGTH * 8, nonce));
+                cipher.updateAAD(new byte[] { (byte) (last ? 1 : 0) });
+                return cipher.doFinal(input, 0, length);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Could not " + (mode == Cipher.ENCRYPT_MODE ? "encrypt" : "decrypt") +
+                        " chunk " + index, e);
+            }
+        }
+
+        public int getChunkSize() {
+            return chunkSize;
+        }
+    }
+
+    //**************************************************************************
+    // Streams
+    //**************************************************************************
+
+    /**
+     * Base class of the streams that return the processed chunks one after the other.
+     */
+    protected abstract static class ChunkInputStream extends InputStream {
+        protected byte[] chunk = new byte[0];
+        protected int position = 0;
+        protected boolean finished = false;
+
+        /**
+         * Loads the next chunk, setting <code>finished</code> if there are no more.
+         */
+        protected abstract void nextChunk() throws IOException;
+
+        protected boolean ensureAvailable() throws IOException {
+            while (position >= chunk.length) {
+                if (finished) {
+                    return false;
+                }
+                nextChunk();
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return ensureAvailable() ? chunk[position++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!ensureAvailable()) {
+                return -1;
+            }
+            int count = Math.min(len, chunk.length - position);
+            System.arraycopy(chunk, position, b, off, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return chunk.length - position;
+        }
+    }
+
+    protected static class EncryptingInputStream extends ChunkInputStream {
+        protected final PushbackInputStream in;
+        protected final SecretKey key;
+        protected final Header header;
+        protected final byte[] buffer;
+        protected long index = 0;
+
+        public EncryptingInputStream(InputStream in, SecretKey key, Header header) {
+            this.in = new PushbackInputStream(in, 1);
+            this.key = key;
+            this.header = header;
+            this.buffer = new byte[header.getChunkSize()];
+            this.chunk = header.toByteArray();
+        }
+
+        @Override
+        protected void nextChunk() throws IOException {
+            int length = readFully(in, buffer, 0, buffer.length);
+            boolean last = length < buffer.length || atEnd(in);
+            chunk = header.process(Cipher.ENCRYPT_MODE, key, index++, last, buffer, length);
+            position = 0;
+            finished = last;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    protected static class DecryptingInputStream extends ChunkInputStream {
+        protected final PushbackInputStream in;
+        protected final SecretKey key;
+        protected final Header header;
+        protected final byte[] buffer;
+        protected long index = 0;
+
+        public DecryptingInputStream(InputStream in, SecretKey key, Header header) {
+            this.in = new PushbackInputStream(in, 1);
+            this.key = key;
+            this.header = header;
+            this.buffer = new byte[header.getChunkSize() + TAG_LENGTH];
+        }
+
+        @Override
+        protected void nextChunk() throws IOException {
+            int length = readFully(in, buffer, 0, buffer.length);
+            if (length < TAG_LENGTH) {
+                throw new IOException("Truncated encrypted data");
+            }
+            boolean last = length < buffer.length || atEnd(in);
+            chunk = header.process(Cipher.DECRYPT_MODE, key, index++, last, buffer, length);
+            position = 0;
+            finished = last;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    protected static class RangeInputStream extends ChunkInputStream {
+        protected final FileChannel channel;
+        protected final SecretKey key;
+        protected final Header header;
+        protected final long encryptedSize;
+        protected final long end;
+        protected long index;
+        protected long chunkStart;
+        protected long start;
+
+        public RangeInputStream(FileChannel channel, SecretKey key, Header header, long start, long end)
+                throws IOException {
+            this.channel = channel;
+            this.key = key;
+            this.header = header;
+            this.encryptedSize = channel.size();
+            this.start = start;
+            this.end = end;
+            this.index = start / header.getChunkSize();
+            this.chunkStart = index * header.getChunkSize();
+            this.finished = start >= end;
+        }
+
+        @Override
+        protected void nextChunk() throws IOException {
+            byte[] decrypted = decryptChunk(channel, key, header, index++, encryptedSize);
+            int from = (int) (start - chunkStart);
+            int to = (int) Math.min(decrypted.length, end - chunkStart);
+            chunk = from == 0 && to == decrypted.length ? decrypted : Arrays.copyOfRange(decrypted, from, to);
+            position = 0;
+            chunkStart += header.getChunkSize();
+            start = chunkStart;
+            finished = chunkStart >= end;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
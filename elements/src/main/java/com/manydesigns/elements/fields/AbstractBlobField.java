@@ -304,6 +304,7 @@ public abstract class AbstractBlobField extends AbstractField<Blob> implements M
             }
         };
         blob.setInputStream(fileBean.getInputStream());
+        blob.setFileBean(fileBean);
         blob.setFilename(fileBean.getFileName());
         blob.setContentType(fileBean.getContentType());
         blob.setCreateTimestamp(new DateTime());
@@ -36,6 +36,8 @@ import org.joda.time.format.DateTimeFormatter;
 
 import javax.servlet.http.HttpServletRequest;
 import java.text.MessageFormat;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /*
 * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
@@ -47,6 +49,11 @@ public abstract class AbstractDateField<T> extends AbstractTextField<T> {
     public static final String copyright =
             "Copyright (C) 2005-2020 ManyDesigns srl";
 
+    /**
+     * Formatters are immutable and thread safe, so all the fields with the same pattern share the same one.
+     */
+    protected static final ConcurrentMap<String, DateTimeFormatter> dateTimeFormatters = new ConcurrentHashMap<>();
+
     //**************************************************************************
     // Fields
     //**************************************************************************
@@ -79,7 +86,7 @@ public abstract class AbstractDateField<T> extends AbstractTextField<T> {
             Configuration elementsConfiguration = ElementsProperties.getConfiguration();
             datePattern = elementsConfiguration.getString(ElementsProperties.FIELDS_DATE_FORMAT);
         }
-        dateTimeFormatter = DateTimeFormat.forPattern(datePattern);
+        dateTimeFormatter = getDateTimeFormatter(datePattern);
         setSize(dateTimeFormatter.getParser().estimateParsedLength());
 
         containsTime = datePattern.contains("HH")
@@ -223,6 +230,10 @@ public abstract class AbstractDateField<T> extends AbstractTextField<T> {
         updateStringValue();
     }
 
+    public static DateTimeFormatter getDateTimeFormatter(String pattern) {
+        return dateTimeFormatters.computeIfAbsent(pattern, DateTimeFormat::forPattern);
+    }
+
     protected abstract T toDate(@NotNull Number millisSince1970);
     
     protected abstract T toDate(@NotNull DateTime dateTime);
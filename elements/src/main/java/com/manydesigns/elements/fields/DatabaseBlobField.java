@@ -36,9 +36,12 @@ import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.sql.rowset.serial.SerialBlob;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.sql.SQLException;
 
 /**
  * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
@@ -56,6 +59,20 @@ public class DatabaseBlobField extends AbstractBlobField {
     protected final PropertyAccessor fileNameAccessor;
     protected final PropertyAccessor timestampAccessor;
 
+    /**
+     * The LOB read from the object, if the property is a {@link java.sql.Blob}, and the blob that wraps it. As long
+     * as the blob is not replaced, the same LOB is written back to the object, so that it's not updated.
+     */
+    protected java.sql.Blob lob;
+    protected Blob lobBlob;
+
+    /**
+     * Creates the LOB to write to a {@link java.sql.Blob} property when a new blob is uploaded. The persistence layer
+     * should provide one that streams the contents to the database, such as Hibernate's LobHelper; without it, the
+     * contents are copied in memory.
+     */
+    protected LobFactory lobFactory;
+
     public DatabaseBlobField(
             @NotNull ClassAccessor classAccessor, @NotNull PropertyAccessor accessor, @NotNull Mode mode,
             @Nullable String prefix) throws NoSuchFieldException {
@@ -88,13 +105,28 @@ public class DatabaseBlobField extends AbstractBlobField {
         if (obj == null) {
             forgetBlob();
         } else {
-            byte[] value = (byte[]) accessor.get(obj);
+            Object value = accessor.get(obj);
             if(value == null) {
                 forgetBlob();
             } else {
                 blob = new Blob(null);
-                blob.setSize(value.length);
-                blob.setInputStream(new ByteArrayInputStream(value));
+                lob = null;
+                lobBlob = null;
+                if(value instanceof java.sql.Blob) {
+                    //Only the locator has been fetched: the contents are streamed when the blob is downloaded
+                    lob = (java.sql.Blob) value;
+                    lobBlob = blob;
+                    try {
+                        blob.setSize(lob.length());
+                    } catch (SQLException e) {
+                        logger.warn("Could not read the length of the blob", e);
+                    }
+                    blob.setInputStream(new LobInputStream(lob));
+                } else {
+                    byte[] bytes = (byte[]) value;
+                    blob.setSize(bytes.length);
+                    blob.setInputStream(new ByteArrayInputStream(bytes));
+                }
                 if(fileNameAccessor != null) {
                     blob.setFilename((String) fileNameAccessor.get(obj));
                 } else {
@@ -119,10 +151,16 @@ public class DatabaseBlobField extends AbstractBlobField {
         if (blob == null) {
             writeToObject(obj, null);
         } else {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
             try {
-                IOUtils.copyLarge(blob.getInputStream(), baos);
-                writeToObject(obj, baos.toByteArray());
+                if(!java.sql.Blob.class.isAssignableFrom(accessor.getType())) {
+                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                    IOUtils.copyLarge(blob.getInputStream(), baos);
+                    writeToObject(obj, baos.toByteArray());
+                } else if(blob == lobBlob) {
+                    writeToObject(obj, lob);
+                } else {
+                    writeToObject(obj, createLob(blob));
+                }
                 if(fileNameAccessor != null) {
                     writeToObject(fileNameAccessor, obj, blob.getFilename());
                 }
@@ -136,7 +174,7 @@ public class DatabaseBlobField extends AbstractBlobField {
                     }
                     writeToObject(timestampAccessor, obj, ts);
                 }
-            } catch (IOException e) {
+            } catch (IOException | SQLException e) {
                 logger.error("Could not save blob", e);
                 blobError = getText("elements.error.field.databaseblob.couldntSaveBlob");
             }
@@ -153,6 +191,21 @@ public class DatabaseBlobField extends AbstractBlobField {
         }
     }
 
+    protected java.sql.Blob createLob(Blob blob) throws IOException, SQLException {
+        if(lobFactory != null) {
+            return lobFactory.createBlob(blob.getInputStream(), blob.getSize());
+        } else {
+            return new SerialBlob(IOUtils.toByteArray(blob.getInputStream()));
+        }
+    }
+
+    @Override
+    protected void forgetBlob() {
+        super.forgetBlob();
+        lob = null;
+        lobBlob = null;
+    }
+
     @Override
     public String generateNewCode() {
         return RandomUtil.createRandomId(25);
@@ -165,4 +218,69 @@ public class DatabaseBlobField extends AbstractBlobField {
     public PropertyAccessor getFileNameAccessor() {
         return fileNameAccessor;
     }
+
+    public LobFactory getLobFactory() {
+        return lobFactory;
+    }
+
+    public void setLobFactory(LobFactory lobFactory) {
+        this.lobFactory = lobFactory;
+    }
+
+    /**
+     * Creates a LOB that the JDBC driver reads from a stream when the statement is executed.
+     */
+    public interface LobFactory {
+        java.sql.Blob createBlob(InputStream inputStream, long length) throws SQLException;
+    }
+
+    /**
+     * Opens the stream of a LOB the first time it's read, e.g. when the blob is downloaded.
+     */
+    protected static class LobInputStream extends InputStream {
+        protected final java.sql.Blob lob;
+        protected InputStream inputStream;
+
+        public LobInputStream(java.sql.Blob lob) {
+            this.lob = lob;
+        }
+
+        protected InputStream getInputStream() throws IOException {
+            if(inputStream == null) {
+                try {
+                    inputStream = lob.getBinaryStream();
+                } catch (SQLException e) {
+                    throw new IOException("Could not read the blob", e);
+                }
+            }
+            return inputStream;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return getInputStream().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return getInputStream().read(b, off, len);
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            return getInputStream().skip(n);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return inputStream != null ? inputStream.available() : 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if(inputStream != null) {
+                inputStream.close();
+            }
+        }
+    }
 }
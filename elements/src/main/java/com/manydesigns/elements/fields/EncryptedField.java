@@ -20,11 +20,16 @@
 
 package com.manydesigns.elements.fields;
 
+import com.manydesigns.elements.DefaultFieldEncrypter;
 import com.manydesigns.elements.FieldEncrypter;
 import com.manydesigns.elements.Mode;
+import com.manydesigns.elements.crypto.BlindIndex;
 import com.manydesigns.elements.reflection.PropertyAccessor;
 import com.manydesigns.elements.xml.XhtmlBuffer;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 /*
 * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
 * @author Angelo Lupo          - angelo.lupo@manydesigns.com
@@ -35,20 +40,53 @@ public class EncryptedField extends TextField {
     public static final String copyright =
             "Copyright (C) 2005-2020 ManyDesigns srl";
 
-    private FieldEncrypter encrypter;
+    /**
+     * Encrypters are stateless and shared by all the fields using the same class, so that building a table of
+     * encrypted values doesn't instantiate an encrypter per cell.
+     */
+    protected static final ConcurrentMap<String, FieldEncrypter> encrypters = new ConcurrentHashMap<>();
+
+    private final FieldEncrypter encrypter;
+    private final PropertyAccessor blindIndexAccessor;
 
     //**************************************************************************
     // Constructors
     //**************************************************************************
 
     public EncryptedField(PropertyAccessor accessor, Mode mode, String prefix , String classPath) {
+        this(accessor, mode, prefix, getEncrypter(classPath), null);
+    }
+
+    public EncryptedField(PropertyAccessor accessor, Mode mode, String prefix,
+                          FieldEncrypter encrypter, PropertyAccessor blindIndexAccessor) {
         super(accessor, mode, prefix);
-        try {
-            Class<?> clazz = Class.forName(classPath);
-            encrypter = (FieldEncrypter)clazz.newInstance();
-        } catch (ClassNotFoundException | InstantiationException | IllegalAccessException e) {
-            logger.error(e.getMessage(),e);
+        this.encrypter = encrypter;
+        this.blindIndexAccessor = blindIndexAccessor;
+    }
+
+    /**
+     * Returns the shared encrypter of the given class, instantiating it the first time.
+     * @param classPath the name of the class; if null, {@link DefaultFieldEncrypter} is used.
+     * @return the encrypter, or null if it cannot be instantiated.
+     */
+    public static FieldEncrypter getEncrypter(String classPath) {
+        if(classPath == null) {
+            classPath = DefaultFieldEncrypter.class.getName();
         }
+        FieldEncrypter encrypter = encrypters.get(classPath);
+        if(encrypter == null) {
+            try {
+                Class<?> clazz = Class.forName(classPath);
+                encrypter = (FieldEncrypter) clazz.newInstance();
+                FieldEncrypter existing = encrypters.putIfAbsent(classPath, encrypter);
+                if(existing != null) {
+                    encrypter = existing;
+                }
+            } catch (ClassNotFoundException | InstantiationException | IllegalAccessException e) {
+                logger.error(e.getMessage(),e);
+            }
+        }
+        return encrypter;
     }
 
     @Override
@@ -64,5 +102,20 @@ public class EncryptedField extends TextField {
     @Override
     public void writeToObject(Object obj) {
         writeToObject(obj, encrypter.encrypt(stringValue));
+        if(blindIndexAccessor != null) {
+            try {
+                writeToObject(blindIndexAccessor, obj, BlindIndex.getInstance().compute(stringValue));
+            } catch (Exception e) {
+                throw new RuntimeException("Could not compute the blind index of " + accessor.getName(), e);
+            }
+        }
+    }
+
+    public FieldEncrypter getEncrypter() {
+        return encrypter;
+    }
+
+    public PropertyAccessor getBlindIndexAccessor() {
+        return blindIndexAccessor;
     }
 }
@@ -37,7 +37,9 @@ import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.text.NumberFormat;
 import java.text.ParsePosition;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 
 /*
 * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
@@ -49,9 +51,29 @@ public class NumericField extends AbstractTextField<BigDecimal> {
     public static final String copyright =
             "Copyright (C) 2005-2020 ManyDesigns srl";
 
+    public static final String MEMORY_FORMAT = "#,##0";
+
+    protected static final BigDecimal MIN_BYTE_VALUE = new BigDecimal(Byte.MIN_VALUE);
+    protected static final BigDecimal MAX_BYTE_VALUE = new BigDecimal(Byte.MAX_VALUE);
+    protected static final BigDecimal MIN_SHORT_VALUE = new BigDecimal(Short.MIN_VALUE);
+    protected static final BigDecimal MAX_SHORT_VALUE = new BigDecimal(Short.MAX_VALUE);
+    protected static final BigDecimal MIN_INTEGER_VALUE = new BigDecimal(Integer.MIN_VALUE);
+    protected static final BigDecimal MAX_INTEGER_VALUE = new BigDecimal(Integer.MAX_VALUE);
+    protected static final BigDecimal MIN_LONG_VALUE = new BigDecimal(Long.MIN_VALUE);
+    protected static final BigDecimal MAX_LONG_VALUE = new BigDecimal(Long.MAX_VALUE);
+
+    /**
+     * Decimal formats are not thread safe, so each thread has its own copy of each format it uses. The formats
+     * returned by {@link #getDecimalFormat()} must not be modified.
+     */
+    protected static final ThreadLocal<Map<String, DecimalFormat>> decimalFormats =
+            ThreadLocal.withInitial(HashMap::new);
+
     protected BigDecimal decimalValue;
 
     protected DecimalFormat decimalFormat;
+    protected String decimalFormatPattern;
+    protected int decimalFormatMultiplier = 1;
     protected int precision;
     protected int scale;
     protected BigDecimal minValue;
@@ -66,17 +88,17 @@ public class NumericField extends AbstractTextField<BigDecimal> {
 
         Class type = accessor.getType();
         if (type == Byte.class || type == Byte.TYPE) {
-            minValue = new BigDecimal(Byte.MIN_VALUE);
-            maxValue = new BigDecimal(Byte.MAX_VALUE);
+            minValue = MIN_BYTE_VALUE;
+            maxValue = MAX_BYTE_VALUE;
         } else if (type == Short.class || type == Short.TYPE) {
-            minValue = new BigDecimal(Short.MIN_VALUE);
-            maxValue = new BigDecimal(Short.MAX_VALUE);
+            minValue = MIN_SHORT_VALUE;
+            maxValue = MAX_SHORT_VALUE;
         } else if (type == Integer.class || type == Integer.TYPE) {
-            minValue = new BigDecimal(Integer.MIN_VALUE);
-            maxValue = new BigDecimal(Integer.MAX_VALUE);
+            minValue = MIN_INTEGER_VALUE;
+            maxValue = MAX_INTEGER_VALUE;
         } else if (type == Long.class || type == Long.TYPE) {
-            minValue = new BigDecimal(Long.MIN_VALUE);
-            maxValue = new BigDecimal(Long.MAX_VALUE);
+            minValue = MIN_LONG_VALUE;
+            maxValue = MAX_LONG_VALUE;
         }
         if (type.isPrimitive()) {
             setRequired(true);
@@ -116,19 +138,16 @@ public class NumericField extends AbstractTextField<BigDecimal> {
             maxValue = new BigDecimal(maxIntValue);
         }
 
+        //Only the pattern is kept: the format is shared among the fields of all the rows of a table
         if (accessor.isAnnotationPresent(com.manydesigns.elements.annotations.Memory.class)) {
-            Locale locale = ElementsThreadLocals.getHttpServletRequest().getLocale();
-            DecimalFormatSymbols decimalFormatSymbols = new DecimalFormatSymbols(locale);
-            decimalFormat = new DecimalFormat("#,##0", decimalFormatSymbols);
+            decimalFormatPattern = MEMORY_FORMAT;
         }
 
         com.manydesigns.elements.annotations.DecimalFormat decimalFormatAnnotation =
                 accessor.getAnnotation(com.manydesigns.elements.annotations.DecimalFormat.class);
         if (decimalFormatAnnotation != null) {
-            Locale locale = ElementsThreadLocals.getHttpServletRequest().getLocale();
-            DecimalFormatSymbols decimalFormatSymbols = new DecimalFormatSymbols(locale);
-            decimalFormat = new DecimalFormat(decimalFormatAnnotation.value(), decimalFormatSymbols);
-            decimalFormat.setMultiplier(decimalFormatAnnotation.multiplier());
+            decimalFormatPattern = decimalFormatAnnotation.value();
+            decimalFormatMultiplier = decimalFormatAnnotation.multiplier();
         }
     }
 
@@ -182,19 +201,35 @@ public class NumericField extends AbstractTextField<BigDecimal> {
             return decimalFormat;
         } else {
             Locale locale = ElementsThreadLocals.getHttpServletRequest().getLocale();
-            String text = ElementsThreadLocals.getTextProvider().getTextOrNull(ElementsProperties.FIELDS_DECIMAL_FORMAT);
-            if(text != null) {
-                DecimalFormatSymbols decimalFormatSymbols = new DecimalFormatSymbols(locale);
-                return new DecimalFormat(text, decimalFormatSymbols);
+            String pattern = decimalFormatPattern;
+            if(pattern == null) {
+                pattern = ElementsThreadLocals.getTextProvider().getTextOrNull(ElementsProperties.FIELDS_DECIMAL_FORMAT);
+            }
+            return getDecimalFormat(pattern, decimalFormatMultiplier, locale);
+        }
+    }
+
+    /**
+     * Returns the current thread's copy of the format with the given pattern, multiplier and locale.
+     * @param pattern the pattern, or null for the default format of the locale.
+     */
+    public static DecimalFormat getDecimalFormat(String pattern, int multiplier, Locale locale) {
+        String key = multiplier + ":" + locale.toLanguageTag() + ":" + pattern;
+        return decimalFormats.get().computeIfAbsent(key, k -> {
+            DecimalFormat decimalFormat;
+            if(pattern != null) {
+                decimalFormat = new DecimalFormat(pattern, new DecimalFormatSymbols(locale));
             } else {
                 NumberFormat numberFormat = DecimalFormat.getInstance(locale);
                 if(numberFormat instanceof DecimalFormat) {
-                    return (DecimalFormat) numberFormat;
+                    decimalFormat = (DecimalFormat) numberFormat;
                 } else {
-                    return new DecimalFormat();
+                    decimalFormat = new DecimalFormat();
                 }
             }
-        }
+            decimalFormat.setMultiplier(multiplier);
+            return decimalFormat;
+        });
     }
 
     public void readFromObject(Object obj) {
@@ -224,7 +259,8 @@ public class NumericField extends AbstractTextField<BigDecimal> {
             return;
         }
 
-        DecimalFormat decimaFormat = getDecimalFormat();
+        //The format is shared: configure a copy to parse big decimals
+        DecimalFormat decimaFormat = (DecimalFormat) getDecimalFormat().clone();
         decimaFormat.setParseBigDecimal(true);
         ParsePosition parsePos = new ParsePosition(0);
         BigDecimal tmpValue;
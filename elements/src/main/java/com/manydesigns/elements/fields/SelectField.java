@@ -316,18 +316,18 @@ public class SelectField extends AbstractField<Object> {
         xb.addAttribute("class", EDITABLE_FIELD_CSS_CLASS);
 
         boolean checked = (value == null);
+        //The options are shared with other fields, so we skip the null option rather than removing it
+        boolean skipNullOption = false;
         if (comboLabel != null && !options.isEmpty()) {
-            SelectionModel.Option option = options.remove(null);
-            if(options.isEmpty()) {
-                //Uh-oh, wrong decision
-                options.put(null, option);
-            } else {
+            //Unless it's the only option
+            skipNullOption = options.size() > 1 || !options.containsKey(null);
+            if(skipNullOption) {
                 xb.writeOption("", checked, comboLabel);
             }
         }
 
         for (Map.Entry<Object,SelectionModel.Option> option : options.entrySet()) {
-            if(!option.getValue().active) {
+            if(!option.getValue().active || (skipNullOption && option.getKey() == null)) {
                 continue;
             }
             Object optionValue = option.getKey();
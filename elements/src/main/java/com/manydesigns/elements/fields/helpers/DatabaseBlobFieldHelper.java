@@ -45,7 +45,8 @@ public class DatabaseBlobFieldHelper implements FieldHelper {
                                        PropertyAccessor propertyAccessor,
                                        Mode mode,
                                        String prefix) {
-        if (byte[].class.isAssignableFrom(propertyAccessor.getType())) {
+        if (byte[].class.isAssignableFrom(propertyAccessor.getType()) ||
+            java.sql.Blob.class.isAssignableFrom(propertyAccessor.getType())) {
             try {
                 return new DatabaseBlobField(classAccessor, propertyAccessor, mode, prefix);
             } catch (NoSuchFieldException e) {
@@ -46,7 +46,9 @@ public class EncryptedFieldHelper implements FieldHelper {
         Encrypted encrypted = propertyAccessor.getAnnotation(Encrypted.class);
         if (encrypted != null &&
                 String.class.isAssignableFrom(propertyAccessor.getType())) {
-            EncryptedField field = new EncryptedField(propertyAccessor, mode, prefix, encrypted.value());
+            EncryptedField field = new EncryptedField(
+                    propertyAccessor, mode, prefix, EncryptedField.getEncrypter(encrypted.value()),
+                    getBlindIndexAccessor(classAccessor, encrypted));
             return field;
         }
 
@@ -58,12 +60,29 @@ public class EncryptedFieldHelper implements FieldHelper {
                                                    String prefix) {
         Encrypted encrypted = propertyAccessor.getAnnotation(Encrypted.class);
         if (encrypted != null  && String.class.isAssignableFrom(propertyAccessor.getType())) {
-            EncryptedTextSearchField textSearchField =
-                    new EncryptedTextSearchField(propertyAccessor, prefix,encrypted.value());
+            PropertyAccessor blindIndexAccessor = getBlindIndexAccessor(classAccessor, encrypted);
+            EncryptedTextSearchField textSearchField = new EncryptedTextSearchField(
+                    propertyAccessor, prefix, EncryptedField.getEncrypter(encrypted.value()), blindIndexAccessor);
             textSearchField.setShowMatchMode(false);
-            textSearchField.setMatchMode(TextMatchMode.EQUALS);
+            if(blindIndexAccessor != null) {
+                textSearchField.setMatchMode(TextMatchMode.STARTS_WITH);
+            } else {
+                textSearchField.setMatchMode(TextMatchMode.EQUALS);
+            }
             return textSearchField;
         }
         return null;
     }
+
+    protected PropertyAccessor getBlindIndexAccessor(ClassAccessor classAccessor, Encrypted encrypted) {
+        String blindIndex = encrypted.blindIndex();
+        if(blindIndex == null || blindIndex.isEmpty()) {
+            return null;
+        }
+        try {
+            return classAccessor.getProperty(blindIndex);
+        } catch (NoSuchFieldException e) {
+            throw new IllegalArgumentException("Blind index property not found: " + blindIndex, e);
+        }
+    }
 }
@@ -33,6 +33,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /*
 * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
@@ -63,6 +67,8 @@ public class FieldsManager implements FieldHelper {
     //**************************************************************************
 
     protected final ArrayList<FieldHelper> helperList;
+    protected final Map<Object, Map<Mode, FormPlan>> formPlans =
+            Collections.synchronizedMap(new WeakHashMap<>());
 
 
     //**************************************************************************
@@ -114,6 +120,7 @@ public class FieldsManager implements FieldHelper {
             logger.debug("Failed to add field helper: {}", helperClassName);
         } else {
             helperList.add(helper);
+            formPlans.clear();
             logger.debug("Added field helper: {}", helper);
         }
     }
@@ -126,6 +133,9 @@ public class FieldsManager implements FieldHelper {
                                   PropertyAccessor propertyAccessor,
                                   Mode mode,
                                   String prefix) {
+        if (classAccessor != null) {
+            return getFormPlan(classAccessor, mode).instantiateField(classAccessor, propertyAccessor, prefix);
+        }
         for (FieldHelper current : helperList) {
             Field result = current.tryToInstantiateField(classAccessor,
                     propertyAccessor, mode, prefix);
@@ -136,6 +146,24 @@ public class FieldsManager implements FieldHelper {
         return null;
     }
 
+    /**
+     * Returns the plan to build the fields of a class in the given mode. The key is usually the class accessor;
+     * callers that create equivalent accessors over and over, e.g. once per request, can pass a longer-lived key
+     * such as their configuration. Plans are kept as long as their key is in use, and discarded when helpers are
+     * added or when {@link #discardFormPlans(Object)} is called.
+     */
+    public FormPlan getFormPlan(Object key, Mode mode) {
+        Map<Mode, FormPlan> plans;
+        synchronized (formPlans) {
+            plans = formPlans.computeIfAbsent(key, k -> new ConcurrentHashMap<>());
+        }
+        return plans.computeIfAbsent(mode, m -> new FormPlan(this, m));
+    }
+
+    public void discardFormPlans(Object key) {
+        formPlans.remove(key);
+    }
+
     public SearchField tryToInstantiateSearchField(
             ClassAccessor classAccessor,
             PropertyAccessor propertyAccessor,
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2005-2020 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.manydesigns.elements.fields.helpers;
+
+import com.manydesigns.elements.Mode;
+import com.manydesigns.elements.fields.Field;
+import com.manydesigns.elements.reflection.ClassAccessor;
+import com.manydesigns.elements.reflection.PropertyAccessor;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Records which {@link FieldHelper} instantiates the field of each property of a class, in a given mode, so that
+ * building the fields of a form, or of each row of a table, doesn't go through the whole chain of helpers every
+ * time. The helper is chosen the first time a field is built for the property, and it's reused as long as it
+ * instantiates a field for it.<br>
+ * Plans are obtained from {@link FieldsManager#getFormPlan(Object, Mode)}, which caches them as long as their key,
+ * by default the class accessor, is in use.
+ *
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class FormPlan {
+    public static final String copyright =
+            "Copyright (C) 2005-2020 ManyDesigns srl";
+
+    protected final FieldsManager manager;
+    protected final Mode mode;
+    protected final ConcurrentMap<String, FieldHelper> helpers = new ConcurrentHashMap<>();
+
+    //The class accessor is not kept, so that the plan doesn't prevent it from being garbage collected
+    public FormPlan(FieldsManager manager, Mode mode) {
+        this.manager = manager;
+        this.mode = mode;
+    }
+
+    public Field instantiateField(ClassAccessor classAccessor, PropertyAccessor propertyAccessor, String prefix) {
+        FieldHelper helper = helpers.get(propertyAccessor.getName());
+        if (helper != null) {
+            Field field = helper.tryToInstantiateField(classAccessor, propertyAccessor, mode, prefix);
+            if (field != null) {
+                return field;
+            }
+        }
+        for (FieldHelper current : manager.getHelperList()) {
+            Field field = current.tryToInstantiateField(classAccessor, propertyAccessor, mode, prefix);
+            if (field != null) {
+                helpers.put(propertyAccessor.getName(), current);
+                return field;
+            }
+        }
+        return null;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+}
@@ -22,13 +22,13 @@ package com.manydesigns.elements.fields.search;
 
 import com.manydesigns.elements.ElementsProperties;
 import com.manydesigns.elements.annotations.DateFormat;
+import com.manydesigns.elements.fields.AbstractDateField;
 import com.manydesigns.elements.reflection.PropertyAccessor;
 import com.manydesigns.elements.util.Util;
 import com.manydesigns.elements.xml.XhtmlBuffer;
 import org.apache.commons.configuration2.Configuration;
 import org.apache.commons.lang.StringEscapeUtils;
 import org.joda.time.DateTime;
-import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -74,7 +74,7 @@ public abstract class AbstractDateSearchField extends RangeSearchField {
             Configuration elementsConfiguration = ElementsProperties.getConfiguration();
             datePattern = elementsConfiguration.getString(ElementsProperties.FIELDS_DATE_FORMAT);
         }
-        dateTimeFormatter = DateTimeFormat.forPattern(datePattern);
+        dateTimeFormatter = AbstractDateField.getDateTimeFormatter(datePattern);
         setSize(dateTimeFormatter.getParser().estimateParsedLength());
 
         containsTime = datePattern.contains("HH")
@@ -22,6 +22,8 @@ package com.manydesigns.elements.fields.search;
 
 import com.manydesigns.elements.FieldEncrypter;
 import com.manydesigns.elements.annotations.MaxLength;
+import com.manydesigns.elements.crypto.BlindIndex;
+import com.manydesigns.elements.fields.EncryptedField;
 import com.manydesigns.elements.reflection.PropertyAccessor;
 import com.manydesigns.elements.xml.XhtmlBuffer;
 import org.apache.commons.lang.StringUtils;
@@ -39,7 +41,8 @@ public class EncryptedTextSearchField extends TextSearchField {
     public static final String copyright =
             "Copyright (C) 2005-2020 ManyDesigns srl";
 
-    private FieldEncrypter encrypter;
+    private final FieldEncrypter encrypter;
+    private final PropertyAccessor blindIndexAccessor;
 
     //**************************************************************************
     // Costruttori
@@ -47,17 +50,21 @@ public class EncryptedTextSearchField extends TextSearchField {
 
     public EncryptedTextSearchField(PropertyAccessor accessor) {
         this(accessor, null,null);
-    }//TODO default encrypter
+    }
 
     public EncryptedTextSearchField(PropertyAccessor accessor, String prefix, String classPath) {
-        super(accessor, prefix);
+        this(accessor, prefix, EncryptedField.getEncrypter(classPath), null);
+    }
 
-        try {
-            Class<?> clazz = Class.forName(classPath);
-            encrypter = (FieldEncrypter)clazz.newInstance();
-        } catch (ClassNotFoundException | InstantiationException | IllegalAccessException e) {
-            logger.error(e.getMessage(),e);
-        }
+    /**
+     * @param blindIndexAccessor if not null, searches are performed on the blind index of the value stored in this
+     *                           property, rather than on the encrypted value.
+     */
+    public EncryptedTextSearchField(PropertyAccessor accessor, String prefix,
+                                    FieldEncrypter encrypter, PropertyAccessor blindIndexAccessor) {
+        super(accessor, prefix);
+        this.encrypter = encrypter;
+        this.blindIndexAccessor = blindIndexAccessor;
     }
 
     //**************************************************************************
@@ -66,7 +73,34 @@ public class EncryptedTextSearchField extends TextSearchField {
 
     @Override
     public void readFromRequest(HttpServletRequest req) {
-        value = encrypter.encrypt(StringUtils.trimToNull(req.getParameter(inputName)));
+        String plaintext = StringUtils.trimToNull(req.getParameter(inputName));
+        if(blindIndexAccessor != null) {
+            value = plaintext;
+        } else {
+            value = encrypter.encrypt(plaintext);
+        }
+    }
+
+    @Override
+    public void configureCriteria(Criteria criteria) {
+        if (value == null || blindIndexAccessor == null) {
+            super.configureCriteria(criteria);
+            return;
+        }
+        try {
+            BlindIndex blindIndex = BlindIndex.getInstance();
+            if(matchMode == TextMatchMode.EQUALS) {
+                criteria.eq(blindIndexAccessor, blindIndex.compute(value));
+            } else {
+                criteria.like(blindIndexAccessor, blindIndex.computePrefix(value), TextMatchMode.STARTS_WITH);
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Could not compute the blind index of " + accessor.getName(), e);
+        }
+    }
+
+    public PropertyAccessor getBlindIndexAccessor() {
+        return blindIndexAccessor;
     }
 
 }
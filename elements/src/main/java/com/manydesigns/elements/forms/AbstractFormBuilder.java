@@ -26,6 +26,7 @@ import com.manydesigns.elements.blobs.BlobManager;
 import com.manydesigns.elements.fields.Field;
 import com.manydesigns.elements.fields.SelectField;
 import com.manydesigns.elements.fields.helpers.FieldsManager;
+import com.manydesigns.elements.fields.helpers.FormPlan;
 import com.manydesigns.elements.options.SelectionProvider;
 import com.manydesigns.elements.reflection.ClassAccessor;
 import com.manydesigns.elements.reflection.PropertyAccessor;
@@ -54,6 +55,8 @@ public class AbstractFormBuilder {
 
     protected String prefix;
     protected Mode mode = Mode.EDIT;
+    protected FormPlan formPlan;
+    protected Object formPlanKey;
 
     //**************************************************************************
     // Logging
@@ -109,9 +112,16 @@ public class AbstractFormBuilder {
         return true;
     }
 
+    protected FormPlan getFormPlan() {
+        if (formPlan == null || formPlan.getMode() != mode) {
+            formPlan = manager.getFormPlan(formPlanKey != null ? formPlanKey : classAccessor, mode);
+        }
+        return formPlan;
+    }
+
     protected Field buildField(PropertyAccessor propertyAccessor, Field field, String prefix) {
         if (field == null) {
-            field = manager.tryToInstantiateField(classAccessor, propertyAccessor, mode, prefix);
+            field = getFormPlan().instantiateField(classAccessor, propertyAccessor, prefix);
         }
         if (field == null) {
             logger.warn("Cannot instantiate field for property {}", propertyAccessor);
@@ -137,6 +137,12 @@ public class FormBuilder extends AbstractFormBuilder {
         return this;
     }
 
+    public FormBuilder configFormPlanKey(Object formPlanKey) {
+        this.formPlanKey = formPlanKey;
+        formPlan = null;
+        return this;
+    }
+
     public FormBuilder configReflectiveFields() {
         logger.debug("configReflectiveFields");
 
@@ -26,6 +26,9 @@ import com.manydesigns.elements.annotations.Help;
 import com.manydesigns.elements.composites.AbstractCompositeElement;
 import com.manydesigns.elements.fields.Field;
 import com.manydesigns.elements.fields.FieldUtils;
+import com.manydesigns.elements.fields.SelectField;
+import com.manydesigns.elements.options.DefaultSelectionProvider;
+import com.manydesigns.elements.options.SelectionModel;
 import com.manydesigns.elements.reflection.PropertyAccessor;
 import com.manydesigns.elements.text.TextFormat;
 import com.manydesigns.elements.util.RandomUtil;
@@ -36,9 +39,8 @@ import org.jetbrains.annotations.NotNull;
 
 import javax.servlet.http.HttpServletRequest;
 import java.lang.reflect.Array;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.function.IntFunction;
 
 /*
 * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
@@ -180,6 +182,7 @@ public class TableForm implements Element {
                 Object currentObj = Array.get(obj, i);
                 rows[i].readFromObject(currentObj);
             }
+            lookupSelectOptions(i -> i < arrayLength ? Array.get(obj, i) : null);
 
             // Scorre le rimanenti righe del table form,
             // passano null come ottetto di bind.
@@ -190,18 +193,55 @@ public class TableForm implements Element {
             // Tratta obj come collection
             Collection collection = (Collection)obj;
 
+            Object[] objects = new Object[rows.length];
             int i = 0;
             for (Object currentObj : collection) {
                 rows[i].readFromObject(currentObj);
+                objects[i] = currentObj;
                 i++;
             }
 
             for (; i < rows.length; i++) {
                 rows[i].readFromObject(null);
             }
+            lookupSelectOptions(index -> objects[index]);
         }
     }
 
+    /**
+     * Looks up the options of the values of the select fields in view mode, with a single lookup for each
+     * selection provider, rather than letting the field of each row load all the options to find its label.
+     * @param objects the object read by each row.
+     */
+    protected void lookupSelectOptions(IntFunction<Object> objects) {
+        Map<DefaultSelectionProvider, Set<Object>> values = new IdentityHashMap<>();
+        for (int i = 0; i < rows.length; i++) {
+            Object obj = objects.apply(i);
+            if(obj == null) {
+                continue;
+            }
+            for (Field field : rows[i]) {
+                if(!(field instanceof SelectField)) {
+                    continue;
+                }
+                SelectField selectField = (SelectField) field;
+                SelectionModel selectionModel = selectField.getSelectionModel();
+                if(selectionModel == null ||
+                   !(selectionModel.getSelectionProvider() instanceof DefaultSelectionProvider) ||
+                   !selectField.getMode().isView(selectField.isInsertable(), selectField.isUpdatable())) {
+                    continue;
+                }
+                Object value = selectField.getPropertyAccessor().get(obj);
+                if(value != null) {
+                    values.computeIfAbsent(
+                            (DefaultSelectionProvider) selectionModel.getSelectionProvider(),
+                            selectionProvider -> new HashSet<>()).add(value);
+                }
+            }
+        }
+        values.forEach(DefaultSelectionProvider::lookupOptions);
+    }
+
     public void writeToObject(Object obj) {
         Class clazz = obj.getClass();
         if (clazz.isArray()) { // Tratta obj come un array
@@ -119,6 +119,12 @@ public class TableFormBuilder extends AbstractFormBuilder {
         return this;
     }
 
+    public TableFormBuilder configFormPlanKey(Object formPlanKey) {
+        this.formPlanKey = formPlanKey;
+        formPlan = null;
+        return this;
+    }
+
     public TableFormBuilder configSelectionProvider(SelectionProvider selectionProvider,
                                             String... fieldNames) {
         selectionProviders.put(fieldNames, selectionProvider);
@@ -220,13 +226,24 @@ public class TableFormBuilder extends AbstractFormBuilder {
     }
 
     protected void setupRows(TableForm tableForm) {
+        //Which columns are select fields doesn't change from row to row
+        boolean[] selectColumns = new boolean[propertyAccessors.size()];
+        for (int i = 0; i < selectColumns.length; i++) {
+            selectColumns[i] = isSelectField(propertyAccessors.get(i));
+        }
         int index = 0;
         for (TableForm.Row row : tableForm.getRows()) {
             String rowPrefix =
                     StringUtils.join(new Object[]{prefix, "row", index, "_"});
 
-            for (PropertyAccessor propertyAccessor : propertyAccessors) {
-                Field field = buildField(propertyAccessor, rowPrefix);
+            for (int i = 0; i < selectColumns.length; i++) {
+                PropertyAccessor propertyAccessor = propertyAccessors.get(i);
+                Field field;
+                if (selectColumns[i]) {
+                    field = buildSelectField(propertyAccessor, null, rowPrefix);
+                } else {
+                    field = buildField(propertyAccessor, null, rowPrefix);
+                }
                 if (field == null) {
                     logger.warn("Cannot instantiate field for property {}",
                             propertyAccessor);
@@ -286,16 +303,20 @@ public class TableFormBuilder extends AbstractFormBuilder {
 
     protected Field buildField(PropertyAccessor propertyAccessor, String rowPrefix) {
         Field field = null;
+        if (isSelectField(propertyAccessor)) {
+            field = buildSelectField(propertyAccessor, null, rowPrefix);
+        }
+        return buildField(propertyAccessor, field, rowPrefix);
+    }
+
+    protected boolean isSelectField(PropertyAccessor propertyAccessor) {
         String fieldName = propertyAccessor.getName();
-        for (Map.Entry<String[], SelectionProvider> current : selectionProviders.entrySet()) {
-            String[] fieldNames = current.getKey();
-            int index = ArrayUtils.indexOf(fieldNames, fieldName);
-            if (index >= 0) {
-                field = buildSelectField(propertyAccessor, null, rowPrefix);
-                break;
+        for (String[] fieldNames : selectionProviders.keySet()) {
+            if (ArrayUtils.indexOf(fieldNames, fieldName) >= 0) {
+                return true;
             }
         }
-        return buildField(propertyAccessor, field, rowPrefix);
+        return false;
     }
 
     public List<PropertyAccessor> getPropertyAccessors() {
@@ -62,6 +62,19 @@ public class DefaultSelectionProvider implements SelectionProvider {
     protected String createNewValueHref;
     protected String createNewValueText;
 
+    /**
+     * The options found by {@link #lookupOptions(Collection)}, by value. Values without an option map to
+     * {@link #MISSING_OPTION}.
+     */
+    protected Map<Object, OptionProvider.Option> lookedUpOptions;
+    protected static final OptionProvider.Option MISSING_OPTION =
+            new OptionProvider.Option(new Object[0], new String[0], false);
+
+    /**
+     * The options indexed by value, built once for each list of options and shared by all the selection models.
+     */
+    protected OptionIndex optionIndex;
+
     public final static Logger logger =
             LoggerFactory.getLogger(DefaultSelectionProvider.class);
     public static final String NON_WORD_CHARACTERS =
@@ -105,6 +118,20 @@ public class DefaultSelectionProvider implements SelectionProvider {
         return optionProvider.getOptions();
     }
 
+    /**
+     * Returns the index of the current options, building it if the options have been loaded again or changed since
+     * it was last built.
+     */
+    protected OptionIndex getOptionIndex() {
+        List<OptionProvider.Option> options = getOptions();
+        OptionIndex index = optionIndex;
+        if(index == null || !index.isIndexOf(options)) {
+            index = new OptionIndex(options, fieldCount);
+            optionIndex = index;
+        }
+        return index;
+    }
+
     //**************************************************************************
     // SelectionProvider implementation
     //**************************************************************************
@@ -131,6 +158,8 @@ public class DefaultSelectionProvider implements SelectionProvider {
             throw new IllegalArgumentException("Field count mismatch");
         }
         getOptions().add(option);
+        optionIndex = null;
+        lookedUpOptions = null;
     }
 
     @Deprecated
@@ -153,35 +182,67 @@ public class DefaultSelectionProvider implements SelectionProvider {
     }
 
     public void ensureActive(Object... values) {
-        OptionProvider.Option option = null;
-        ListIterator<OptionProvider.Option> iterator = getOptions().listIterator();
-        while(iterator.hasNext()) {
-            OptionProvider.Option current = iterator.next();
-            boolean found = true;
-            for(int i = 0; i < fieldCount; i++) {
-                if(!ObjectUtils.equals(values[i], current.getValues()[i])) {
-                    found = false;
-                    break;
-                }
-            }
-            if(found) {
-                option = new OptionProvider.Option(values, current.getLabels(), true);
-                iterator.set(option);
-                break;
+        List<OptionProvider.Option> options = getOptions();
+        Integer position = getOptionIndex().getPosition(values);
+        if(position != null) {
+            OptionProvider.Option current = options.get(position);
+            if(current.isActive()) {
+                return;
             }
-        }
-        if(option == null) {
+            options.set(position, new OptionProvider.Option(values, current.getLabels(), true));
+        } else {
             String[] labels = new String[fieldCount];
             for(int i = 0; i < fieldCount; i++) {
                 labels[i] = ObjectUtils.toString(values[i]);
             }
-            option = new OptionProvider.Option(values, labels, true);
-            getOptions().add(option);
+            options.add(new OptionProvider.Option(values, labels, true));
+        }
+        optionIndex = null;
+        lookedUpOptions = null;
+    }
+
+    /**
+     * Looks up the options with the given values, so that the selection models can find the labels of those values
+     * without loading all the options. Useful to display many values at once, e.g. in a table. Does nothing if this
+     * provider has more than one field, or its option provider cannot look up options.
+     * @param values the values to look up.
+     */
+    public void lookupOptions(Collection<?> values) {
+        if(fieldCount != 1) {
+            return;
+        }
+        Set<Object> toLookUp = new LinkedHashSet<>();
+        for(Object value : values) {
+            if(value != null && (lookedUpOptions == null || !lookedUpOptions.containsKey(value))) {
+                toLookUp.add(value);
+            }
+        }
+        if(toLookUp.isEmpty()) {
+            return;
+        }
+        List<OptionProvider.Option> options = optionProvider.lookupOptions(toLookUp);
+        if(options == null) {
+            return;
+        }
+        Map<Object, OptionProvider.Option> found = new HashMap<>();
+        for(OptionProvider.Option option : options) {
+            OptionProvider.Option previous = found.get(option.values[0]);
+            if(previous == null || !previous.active) {
+                found.put(option.values[0], option);
+            }
+        }
+        if(lookedUpOptions == null) {
+            lookedUpOptions = new HashMap<>();
+        }
+        for(Object value : toLookUp) {
+            lookedUpOptions.put(value, found.getOrDefault(value, MISSING_OPTION));
         }
+        logger.debug("Selection provider {}: looked up {} values, found {}", name, toLookUp.size(), found.size());
     }
 
     public void sortByLabel() {
         getOptions().sort(OPTION_COMPARATOR_BY_LABEL);
+        optionIndex = null;
     }
 
     private static class StaticOptionProvider implements OptionProvider {
@@ -197,6 +258,127 @@ public class DefaultSelectionProvider implements SelectionProvider {
         }
     }
 
+    //**************************************************************************
+    // Option index
+    //**************************************************************************
+
+    /**
+     * An immutable index of a list of options. For each level of the cascade, it maps the values of the previous
+     * levels to the options available at that level, so that selection models can find their options and validate
+     * their values without scanning the whole list.
+     */
+    protected static class OptionIndex {
+        protected final List<OptionProvider.Option> options;
+        protected final int size;
+        protected final int fieldCount;
+        /**
+         * The position in the list of the first option with the given values.
+         */
+        protected final Map<List<Object>, Integer> positions;
+        /**
+         * For each level, the options at that level by the values of the previous levels.
+         */
+        protected final List<Map<List<Object>, OptionLevel>> levels;
+
+        public OptionIndex(List<OptionProvider.Option> options, int fieldCount) {
+            this.options = options;
+            this.size = options.size();
+            this.fieldCount = fieldCount;
+            positions = new HashMap<>();
+            levels = new ArrayList<>(fieldCount);
+            for(int j = 0; j < fieldCount; j++) {
+                levels.add(new HashMap<>());
+            }
+            for(int i = 0; i < size; i++) {
+                OptionProvider.Option option = options.get(i);
+                List<Object> values = key(option.getValues(), fieldCount);
+                positions.putIfAbsent(values, i);
+                for(int j = 0; j < fieldCount; j++) {
+                    List<Object> prefix = values.subList(0, j);
+                    OptionLevel level = levels.get(j).get(prefix);
+                    if(level == null) {
+                        level = new OptionLevel();
+                        levels.get(j).put(new ArrayList<>(prefix), level);
+                    }
+                    Object value = values.get(j);
+                    level.add(value, option.getLabels()[j], option.isActive());
+                    if(value == null) {
+                        //No selected value is null, so the following levels are unreachable
+                        break;
+                    }
+                }
+            }
+        }
+
+        protected static List<Object> key(Object[] values, int length) {
+            return Arrays.asList(values.length == length ? values : Arrays.copyOf(values, length));
+        }
+
+        public boolean isIndexOf(List<OptionProvider.Option> options) {
+            return this.options == options && size == options.size();
+        }
+
+        public Integer getPosition(Object[] values) {
+            return positions.get(key(values, fieldCount));
+        }
+
+        /**
+         * @param index the level.
+         * @param prefix the values of the levels before index.
+         * @return the options at the given level that follow the given values, or null if there are none.
+         */
+        public OptionLevel getLevel(int index, List<Object> prefix) {
+            return levels.get(index).get(prefix);
+        }
+    }
+
+    protected static class OptionLevel {
+        /**
+         * All the values at this level, including those of options without a label.
+         */
+        protected final Set<Object> values = new HashSet<>();
+        /**
+         * The options with a label, in order, for filtering by label.
+         */
+        protected final List<SelectionModel.Option> entries = new ArrayList<>();
+        protected final Map<Object, SelectionModel.Option> options = new LinkedHashMap<>();
+        protected final Map<Object, SelectionModel.Option> optionsView = Collections.unmodifiableMap(options);
+
+        protected void add(Object value, String label, boolean active) {
+            values.add(value);
+            //#163 label != null
+            if(label != null) {
+                SelectionModel.Option option = new SelectionModel.Option(value, label, active);
+                entries.add(option);
+                put(options, option);
+            }
+        }
+
+        public boolean contains(Object value) {
+            return values.contains(value);
+        }
+
+        public Map<Object, SelectionModel.Option> getOptions(String labelSearch) {
+            if(labelSearch == null || labelSearch.length() == 0) {
+                return optionsView;
+            }
+            Map<Object, SelectionModel.Option> matching = new LinkedHashMap<>();
+            for(SelectionModel.Option option : entries) {
+                if(matchLabel(option.label, labelSearch)) {
+                    put(matching, option);
+                }
+            }
+            return matching;
+        }
+
+        protected static void put(Map<Object, SelectionModel.Option> options, SelectionModel.Option option) {
+            SelectionModel.Option current = options.get(option.value);
+            if(current == null || !current.active) {
+                options.put(option.value, option);
+            }
+        }
+    }
+
     //**************************************************************************
     // inner class
     //**************************************************************************
@@ -216,9 +398,6 @@ public class DefaultSelectionProvider implements SelectionProvider {
             labelSearches = new String[fieldCount];
             //noinspection unchecked
             optionsArray = new Map[fieldCount];
-            for (int i = 0; i < fieldCount; i++) {
-                optionsArray[i] = new LinkedHashMap<>();
-            }
             needsValidation = true;
         }
 
@@ -232,7 +411,12 @@ public class DefaultSelectionProvider implements SelectionProvider {
 
         public Object getValue(int index) {
             if(values[index] != null) {
-                validate(); //Potentially, this will set it this.values[index] to null, but it will never set it to a non-null value
+                OptionProvider.Option lookedUp = needsValidation ? getLookedUpOption(values[index]) : null;
+                if(lookedUp == MISSING_OPTION) {
+                    values[index] = null;
+                } else if(lookedUp == null) {
+                    validate(); //Potentially, this will set it this.values[index] to null, but it will never set it to a non-null value
+                }
             }
             return values[index];
         }
@@ -258,6 +442,15 @@ public class DefaultSelectionProvider implements SelectionProvider {
         }
 
         public String getOption(int index, Object value, boolean includeInactive) {
+            if(value == null) {
+                return null;
+            }
+            OptionProvider.Option lookedUp = getLookedUpOption(value);
+            if(lookedUp == MISSING_OPTION) {
+                return null;
+            } else if(lookedUp != null) {
+                return lookedUp.active || includeInactive ? lookedUp.labels[0] : null;
+            }
             Map<Object, SelectionModel.Option> options = getOptions(index);
             SelectionModel.Option option = options.get(value);
             if(option != null) {
@@ -268,6 +461,17 @@ public class DefaultSelectionProvider implements SelectionProvider {
             return null;
         }
 
+        /**
+         * @return the option looked up by the provider for the given value, {@link #MISSING_OPTION} if it has none,
+         * or null if the value was not looked up, or the options must be filtered by label.
+         */
+        private OptionProvider.Option getLookedUpOption(Object value) {
+            if(lookedUpOptions == null || value == null || labelSearches[0] != null) {
+                return null;
+            }
+            return lookedUpOptions.get(value);
+        }
+
         private void validate() {
             if (!needsValidation) {
                 return;
@@ -276,14 +480,50 @@ public class DefaultSelectionProvider implements SelectionProvider {
 
             // normalize null in values (only null values after first null)
             boolean foundNull = false;
+            boolean multipleValues = false;
             for (int j = 0; j < fieldCount; j++) {
                 if (foundNull) {
                     values[j] = null;
                 } else if (values[j] == null) {
                     foundNull = true;
                 }
-                // clean options
-                optionsArray[j].clear();
+                multipleValues |= values[j] instanceof Object[];
+            }
+
+            if(multipleValues) {
+                validateByScan();
+                return;
+            }
+
+            OptionIndex index = getOptionIndex();
+            int maxMatchingIndex = -1;
+            for (int j = 0; j < fieldCount; j++) {
+                OptionLevel level = null;
+                if (maxMatchingIndex == j - 1) {
+                    level = index.getLevel(j, Arrays.asList(values).subList(0, j));
+                }
+                if (level != null) {
+                    optionsArray[j] = level.getOptions(labelSearches[j]);
+                    if (values[j] != null && level.contains(values[j])) {
+                        maxMatchingIndex = j;
+                    }
+                } else {
+                    optionsArray[j] = Collections.emptyMap();
+                }
+            }
+
+            for (int i = maxMatchingIndex + 1; i < fieldCount; i++) {
+                values[i] = null;
+            }
+        }
+
+        /**
+         * Validates by scanning all the options. Used when some level has multiple values selected, so the options of
+         * the following levels cannot be looked up in the index.
+         */
+        private void validateByScan() {
+            for (int j = 0; j < fieldCount; j++) {
+                optionsArray[j] = new LinkedHashMap<>();
             }
 
             int maxMatchingIndex = -1;
@@ -325,7 +565,7 @@ public class DefaultSelectionProvider implements SelectionProvider {
         }
     }
 
-    private boolean matchLabel(String cellLabel, String labelSearch2) {
+    private static boolean matchLabel(String cellLabel, String labelSearch2) {
         if (labelSearch2 == null || labelSearch2.length() == 0) {
             return true;
         }
@@ -1,5 +1,6 @@
 package com.manydesigns.elements.options;
 
+import java.util.Collection;
 import java.util.List;
 
 public class MemoizingOptionProvider implements OptionProvider {
@@ -18,4 +19,10 @@ public class MemoizingOptionProvider implements OptionProvider {
         }
         return options;
     }
+
+    @Override
+    public List<Option> lookupOptions(Collection<?> values) {
+        //Once all the options are loaded, there's nothing to gain
+        return options == null ? delegate.lookupOptions(values) : null;
+    }
 }
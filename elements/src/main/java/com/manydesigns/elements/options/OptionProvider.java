@@ -1,11 +1,22 @@
 package com.manydesigns.elements.options;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface OptionProvider {
 
     List<Option> getOptions();
 
+    /**
+     * Returns only the options with the given values, for providers of options with a single value. Providers that
+     * can find them without loading all the options (e.g. with a query) override this method.
+     * @param values the values to look up.
+     * @return the options with those values, or null if this provider cannot look them up.
+     */
+    default List<Option> lookupOptions(Collection<?> values) {
+        return null;
+    }
+
     class Option {
         final Object[] values;
         final String[] labels;
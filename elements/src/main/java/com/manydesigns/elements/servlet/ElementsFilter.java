@@ -52,6 +52,12 @@ public class ElementsFilter implements Filter {
     public static final String REQUEST_OGNL_ATTRIBUTE = "request";
     public static final String SESSION_OGNL_ATTRIBUTE = "session";
     public static final String SERVLET_CONTEXT_OGNL_ATTRIBUTE = "servletContext";
+    /**
+     * Servlet context attribute holding the directory (a File) where uploaded files are stored while processing
+     * the request. If it's on the same file system as the blobs, uploaded blobs are moved in place rather than
+     * copied. By default, the servlet container's temporary directory is used.
+     */
+    public static final String UPLOAD_DIRECTORY_ATTRIBUTE = "com.manydesigns.elements.upload.directory";
 
     //--------------------------------------------------------------------------
     // Fields
@@ -106,6 +112,7 @@ public class ElementsFilter implements Filter {
                                 FilterChain filterChain)
             throws IOException, ServletException {
         ServletContext context = filterConfig.getServletContext();
+        MultipartWrapper multipartWrapper = null;
 
         try {
             logger.debug("Setting up default OGNL context");
@@ -132,7 +139,7 @@ public class ElementsFilter implements Filter {
             String contentType = req.getContentType();
             if (contentType != null && contentType.startsWith("multipart/form-data")) {
                 try {
-                    MultipartWrapper multipartWrapper = buildMultipart(req);
+                    multipartWrapper = buildMultipart(req);
                     ElementsThreadLocals.setMultipart(multipartWrapper);
                     req = multipartWrapper.wrapRequest(req);
                 } catch (FileUploadLimitExceededException e) {
@@ -146,6 +153,9 @@ public class ElementsFilter implements Filter {
 
             filterChain.doFilter(req, res);
         } finally {
+            if (multipartWrapper instanceof StreamingCommonsMultipartWrapper) {
+                ((StreamingCommonsMultipartWrapper) multipartWrapper).deleteTemporaryFiles();
+            }
             ElementsThreadLocals.removeElementsContext();
         }
     }
@@ -153,7 +163,10 @@ public class ElementsFilter implements Filter {
     protected MultipartWrapper buildMultipart(HttpServletRequest request) throws IOException, FileUploadLimitExceededException {
         StreamingCommonsMultipartWrapper multipart = new StreamingCommonsMultipartWrapper();
         // Figure out where the temp directory is, and store that info
-        File tempDir = (File) servletContext.getAttribute("javax.servlet.context.tempdir");
+        File tempDir = (File) servletContext.getAttribute(UPLOAD_DIRECTORY_ATTRIBUTE);
+        if (tempDir == null) {
+            tempDir = (File) servletContext.getAttribute("javax.servlet.context.tempdir");
+        }
         if (tempDir == null) {
             String tmpDir = System.getProperty("java.io.tmpdir");
             if (tmpDir != null) {
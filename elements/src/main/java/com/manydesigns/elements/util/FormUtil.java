@@ -35,6 +35,7 @@ import com.manydesigns.elements.fields.Field;
 import com.manydesigns.elements.fields.TextField;
 import com.manydesigns.elements.forms.FieldSet;
 import com.manydesigns.elements.forms.Form;
+import com.manydesigns.elements.forms.TableForm;
 import com.manydesigns.elements.json.JsonKeyValueAccessor;
 import org.apache.commons.lang.ObjectUtils;
 import org.joda.time.DateTime;
@@ -61,13 +62,22 @@ public class FormUtil {
     public static final String JSON_VALUE = "value";
     public static final String JSON_TYPE = "type";
 
+    public static final String JSON_ROW_KEY = "__rowKey";
+
+    /**
+     * Same as {@link #fieldsToJson(JSONWriter, Collection)}; kept for code compiled against this signature.
+     */
+    public static void fieldsToJson(JSONStringer js, Collection<Field> fields) throws JSONException {
+        fieldsToJson((JSONWriter) js, fields);
+    }
+
     /**
      * Writes a collection of fields as properties of a JSON object.
-     * @param js the JSONStringer to write to. Must have a JSON object open for writing.
+     * @param js the JSONWriter to write to. Must have a JSON object open for writing.
      * @param fields the fields to output
      * @throws org.json.JSONException if the JSON can not be generated.
      */
-    public static void fieldsToJson(JSONStringer js, Collection<Field> fields) throws JSONException {
+    public static void fieldsToJson(JSONWriter js, Collection<Field> fields) throws JSONException {
         for (Field field : fields) {
             Object value = field.getValue();
             if(value instanceof Date) {
@@ -139,12 +149,41 @@ public class FormUtil {
         return js.toString();
     }
 
+    /**
+     * Same as {@link #writeToJson(Form, JSONWriter)}; kept for code compiled against this signature.
+     */
     public static void writeToJson(Form form, JSONStringer js) {
+        writeToJson(form, (JSONWriter) js);
+    }
+
+    public static void writeToJson(Form form, JSONWriter js) {
         List<Field> fields = new ArrayList<>();
         collectVisibleFields(form, fields);
         fieldsToJson(js, fields);
     }
 
+    public static String writeToJson(TableForm tableForm) {
+        JSONStringer js = new JSONStringer();
+        writeToJson(tableForm, js);
+        return js.toString();
+    }
+
+    /**
+     * Writes the rows of a table form as a JSON array of objects, each with the key of the row and its fields.
+     * @param tableForm the table form.
+     * @param js the JSONWriter to write to.
+     * @throws org.json.JSONException if the JSON can not be generated.
+     */
+    public static void writeToJson(TableForm tableForm, JSONWriter js) throws JSONException {
+        js.array();
+        for (TableForm.Row row : tableForm.getRows()) {
+            js.object().key(JSON_ROW_KEY).value(row.getKey());
+            fieldsToJson(js, row);
+            js.endObject();
+        }
+        js.endArray();
+    }
+
     public static Form readFromJson(Form form, JSONObject jsonObject) {
         JsonKeyValueAccessor kv = new JsonKeyValueAccessor(jsonObject) {
             @Override
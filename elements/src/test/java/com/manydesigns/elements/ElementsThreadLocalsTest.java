@@ -0,0 +1,56 @@
+package com.manydesigns.elements;
+
+import com.manydesigns.elements.text.OgnlTextFormat;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+@Test
+public class ElementsThreadLocalsTest extends AbstractElementsTest {
+
+    public String message = "You have mail";
+
+    public void testContextIsPropagatedToOtherThreads() throws Exception {
+        ElementsThreadLocals.getOgnlContext().put("name", "John");
+        OgnlTextFormat format = OgnlTextFormat.create("Hello %{#name}. %{message}");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CompletableFuture<String> text = CompletableFuture.supplyAsync(
+                    ElementsThreadLocals.propagateSupplier(() -> {
+                        assertSame(ElementsThreadLocals.getHttpServletRequest(), req);
+                        //The copied OGNL context can be modified without affecting the original one
+                        ElementsThreadLocals.getOgnlContext().put("other", "value");
+                        return format.format(this);
+                    }), executor);
+            assertEquals(text.get(10, TimeUnit.SECONDS), "Hello John. You have mail");
+            assertNull(ElementsThreadLocals.getOgnlContext().get("other"));
+
+            //The worker thread's own context is restored afterwards
+            assertNull(executor.submit(ElementsThreadLocals::getHttpServletRequest).get(10, TimeUnit.SECONDS));
+
+            ElementsThreadLocals.getOgnlContext().put("name", "Jane");
+            String later = CompletableFuture.supplyAsync(
+                    () -> format.format(this), ElementsThreadLocals.propagating(executor)).get(10, TimeUnit.SECONDS);
+            assertEquals(later, "Hello Jane. You have mail");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testInstallAndRestore() throws Exception {
+        ElementsContext captured = ElementsThreadLocals.capture();
+        ElementsContext other = new ElementsContext();
+        ElementsContext previous = ElementsThreadLocals.install(other);
+        assertSame(ElementsThreadLocals.getElementsContext(), other);
+        ElementsThreadLocals.restore(previous);
+        assertSame(ElementsThreadLocals.getHttpServletRequest(), req);
+        assertEquals(ElementsThreadLocals.callWith(captured, ElementsThreadLocals::getHttpServletRequest), req);
+        assertNotSame(captured.getOgnlContext(), ElementsThreadLocals.getOgnlContext());
+    }
+
+}
@@ -0,0 +1,106 @@
+package com.manydesigns.elements.blobs;
+
+import com.manydesigns.elements.util.RandomUtil;
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import static org.testng.Assert.*;
+
+public class BlobMetadataIndexTest {
+
+    protected File blobsDir;
+    protected File indexFile;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        blobsDir = Files.createTempDirectory("blobs").toFile();
+        indexFile = new File(blobsDir, BlobMetadataIndex.DEFAULT_FILE_NAME);
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(blobsDir);
+    }
+
+    @Test
+    public void testPersistence() throws IOException {
+        try(BlobMetadataIndex index = BlobMetadataIndex.open(indexFile)) {
+            index.put("a", properties("filename", "a.txt"));
+            index.put("b", properties("filename", "b.txt"));
+            index.put("a", properties("filename", "a2.txt"));
+            index.remove("b");
+            index.put("c", properties("filename", "c.txt"));
+            try {
+                BlobMetadataIndex.open(indexFile);
+                fail("The index should be locked");
+            } catch (IOException e) {
+                //Expected
+            }
+        }
+        //Cut the last record in half
+        try(RandomAccessFile file = new RandomAccessFile(indexFile, "rw")) {
+            file.setLength(file.length() - 3);
+        }
+        try(BlobMetadataIndex index = BlobMetadataIndex.open(indexFile)) {
+            assertEquals(index.size(), 1);
+            assertEquals(index.get("a").getProperty("filename"), "a2.txt");
+            assertNull(index.get("b"));
+            assertNull(index.get("c"));
+            index.put("c", properties("filename", "c.txt"));
+            index.compact();
+            index.put("d", properties("filename", "d.txt"));
+        }
+        try(BlobMetadataIndex index = BlobMetadataIndex.open(indexFile)) {
+            assertEquals(index.size(), 3);
+            assertEquals(index.get("c").getProperty("filename"), "c.txt");
+            assertEquals(index.get("d").getProperty("filename"), "d.txt");
+        }
+    }
+
+    @Test
+    public void testMetadataIsLoadedFromTheIndex() throws IOException {
+        HierarchicalBlobManager manager =
+                new HierarchicalBlobManager(blobsDir, "blob-{0}.properties", "blob-{0}.data");
+        manager.setMetadataIndex(BlobMetadataIndex.open(indexFile));
+        try {
+            Blob saved = new Blob(RandomUtil.createRandomId());
+            saved.setFilename("test.txt");
+            saved.setInputStream(new ByteArrayInputStream("Indexed".getBytes(StandardCharsets.UTF_8)));
+            manager.save(saved);
+            //The index is the only source of metadata now
+            assertTrue(manager.getMetaFile(saved.getCode()).delete());
+
+            Blob blob = new Blob(saved.getCode());
+            Blob missing = new Blob(RandomUtil.createRandomId());
+            List<Blob> blobs = Arrays.asList(blob, missing);
+            manager.loadMetadata(blobs);
+            assertTrue(blob.isPropertiesLoaded());
+            assertEquals(blob.getFilename(), "test.txt");
+            assertEquals(blob.getSize(), "Indexed".length());
+            assertFalse(missing.isPropertiesLoaded());
+
+            manager.delete(blob);
+            assertNull(manager.getMetadataIndex().get(blob.getCode()));
+        } finally {
+            manager.close();
+        }
+    }
+
+    protected static Properties properties(String key, String value) {
+        Properties properties = new Properties();
+        properties.setProperty(key, value);
+        return properties;
+    }
+}
@@ -0,0 +1,162 @@
+package com.manydesigns.elements.blobs;
+
+import com.manydesigns.elements.util.RandomUtil;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.testng.Assert.*;
+
+public class DeduplicatingBlobManagerTest {
+
+    public static final String META_FILE_NAME_PATTERN = "blob-{0}.properties";
+    public static final String DATA_FILE_NAME_PATTERN = "blob-{0}.data";
+
+    protected File blobsDir;
+    protected DeduplicatingBlobManager manager;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        blobsDir = Files.createTempDirectory("blobs").toFile();
+        manager = new DeduplicatingBlobManager(blobsDir, META_FILE_NAME_PATTERN, DATA_FILE_NAME_PATTERN);
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(blobsDir);
+    }
+
+    @Test
+    public void testEqualContentsAreStoredOnce() throws IOException {
+        Blob blob1 = save(manager, "Same content");
+        Blob blob2 = save(manager, "Same content");
+        Blob other = save(manager, "Other content");
+        assertNotNull(blob1.getContentDigest());
+        assertEquals(blob2.getContentDigest(), blob1.getContentDigest());
+        assertNotEquals(other.getContentDigest(), blob1.getContentDigest());
+        assertEquals(blob1.getSize(), "Same content".length());
+        assertEquals(manager.readReferences(blob1.getContentDigest()), 2);
+        assertFalse(manager.getDataFile(blob1.getCode()).exists());
+
+        Blob loaded = new Blob(blob2.getCode());
+        assertEquals(read(loaded), "Same content");
+        assertEquals(loaded.getContentDigest(), blob1.getContentDigest());
+
+        File contentFile = manager.getContentFile(blob1.getContentDigest());
+        assertTrue(manager.delete(new Blob(blob1.getCode())));
+        assertTrue(contentFile.exists());
+        assertEquals(manager.readReferences(blob1.getContentDigest()), 1);
+        assertTrue(manager.delete(new Blob(blob2.getCode())));
+        assertFalse(contentFile.exists());
+        assertEquals(manager.readReferences(blob1.getContentDigest()), 0);
+        assertEquals(read(new Blob(other.getCode())), "Other content");
+    }
+
+    @Test
+    public void testUploadIsMovedOnlyIfNew() throws IOException {
+        save(manager, "Uploaded");
+        File upload = File.createTempFile("upload", ".temp", blobsDir);
+        FileUtils.writeStringToFile(upload, "Uploaded", StandardCharsets.UTF_8);
+        FileBean fileBean = new FileBean(upload, "text/plain", "upload.txt");
+        Blob blob = new Blob(RandomUtil.createRandomId());
+        blob.setInputStream(fileBean.getInputStream());
+        blob.setFileBean(fileBean);
+        manager.save(blob);
+        assertTrue(upload.exists());
+        assertEquals(manager.readReferences(blob.getContentDigest()), 2);
+
+        FileUtils.writeStringToFile(upload, "Uploaded, new", StandardCharsets.UTF_8);
+        fileBean = new FileBean(upload, "text/plain", "upload.txt");
+        blob = new Blob(RandomUtil.createRandomId());
+        blob.setInputStream(fileBean.getInputStream());
+        blob.setFileBean(fileBean);
+        manager.save(blob);
+        assertFalse(upload.exists());
+        assertEquals(read(new Blob(blob.getCode())), "Uploaded, new");
+    }
+
+    @Test
+    public void testResavingOutsideTheContentsReleasesThem() throws IOException {
+        Map<String, byte[]> remote = new HashMap<>();
+        RepositoryRegistry.getInstance().put(new Repository() {
+            @Override
+            public String save(Blob blob) throws IOException {
+                remote.put(blob.getCode(), IOUtils.toByteArray(blob.getInputStream()));
+                return blob.getCode();
+            }
+
+            @Override
+            public InputStream load(Blob blob) {
+                return new ByteArrayInputStream(remote.get(blob.getCode()));
+            }
+
+            @Override
+            public Boolean delete(Blob blob) {
+                return remote.remove(blob.getCode()) != null;
+            }
+
+            @Override
+            public String getId() {
+                return "dedup-test";
+            }
+        });
+        Blob blob = save(manager, "Moved to a repository");
+        String digest = blob.getContentDigest();
+        File contentFile = manager.getContentFile(digest);
+        assertTrue(contentFile.exists());
+
+        Blob remoteBlob = new Blob(blob.getCode());
+        remoteBlob.setFilename("test.txt");
+        remoteBlob.setRepository("dedup-test");
+        remoteBlob.setInputStream(new ByteArrayInputStream("Remote".getBytes(StandardCharsets.UTF_8)));
+        manager.save(remoteBlob);
+        assertEquals(manager.readReferences(digest), 0);
+        assertFalse(contentFile.exists());
+        assertEquals(new String(remote.get(blob.getCode()), StandardCharsets.UTF_8), "Remote");
+        assertNull(manager.getStoredDigest(blob.getCode()));
+    }
+
+    @Test
+    public void testConversion() throws IOException {
+        HierarchicalBlobManager hierarchical =
+                new HierarchicalBlobManager(blobsDir, META_FILE_NAME_PATTERN, DATA_FILE_NAME_PATTERN);
+        Blob blob1 = save(hierarchical, "Duplicated");
+        Blob blob2 = save(hierarchical, "Duplicated");
+        //Saved before switching manager
+        assertEquals(read(new Blob(blob1.getCode())), "Duplicated");
+
+        assertEquals(HierarchicalToDeduplicatingConverter.convert(blobsDir), 2);
+        assertEquals(HierarchicalToDeduplicatingConverter.convert(blobsDir), 0);
+        assertFalse(hierarchical.getDataFile(blob1.getCode()).exists());
+        assertFalse(hierarchical.getDataFile(blob2.getCode()).exists());
+        Blob converted = new Blob(blob1.getCode());
+        assertEquals(read(converted), "Duplicated");
+        assertEquals(manager.readReferences(converted.getContentDigest()), 2);
+    }
+
+    protected Blob save(BlobManager blobManager, String content) throws IOException {
+        Blob blob = new Blob(RandomUtil.createRandomId());
+        blob.setFilename("test.txt");
+        blob.setInputStream(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+        blobManager.save(blob);
+        return blob;
+    }
+
+    protected String read(Blob blob) throws IOException {
+        manager.loadMetadata(blob);
+        try(InputStream in = manager.openStream(blob)) {
+            return IOUtils.toString(in, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -22,6 +22,7 @@ package com.manydesigns.elements.blobs;
 
 import com.manydesigns.elements.AbstractElementsTest;
 import com.manydesigns.elements.util.RandomUtil;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
@@ -30,6 +31,8 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Properties;
 
 import static org.testng.Assert.*;
@@ -140,4 +143,26 @@ public class SimpleBlobManagerTest extends AbstractElementsTest {
         assertNotSame(blob, blob2);
         assertEquals(blob, blob2);
     }
+
+    @Test
+    public void testUploadIsMoved() throws IOException {
+        File upload = File.createTempFile("upload", ".temp", blobsDir);
+        FileUtils.writeStringToFile(upload, sampleContent, StandardCharsets.UTF_8);
+        FileBean fileBean = new FileBean(upload, sampleContentType, sampleFilename);
+        Blob blob = new Blob(RandomUtil.createRandomId());
+        blob.setInputStream(fileBean.getInputStream());
+        blob.setFileBean(fileBean);
+        blob.setFilename(sampleFilename);
+        manager.save(blob);
+        fileBean.delete();
+
+        assertFalse(upload.exists());
+        File dataFile = manager.getDataFile(blob.getCode());
+        assertEquals(FileUtils.readFileToString(dataFile, StandardCharsets.UTF_8), sampleContent);
+        assertEquals(blob.getSize(), sampleContent.length());
+        try(InputStream in = manager.openStream(blob, 5, 2)) {
+            assertEquals(IOUtils.toString(in, StandardCharsets.UTF_8), "is");
+        }
+        assertTrue(manager.delete(blob));
+    }
 }
@@ -0,0 +1,124 @@
+package com.manydesigns.elements.crypto;
+
+import org.apache.commons.io.IOUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.testng.Assert.*;
+
+public class SegmentedEncryptionTest {
+
+    protected static final int CHUNK_SIZE = 100;
+    protected final SecretKey key = new SecretKeySpec(new byte[16], "AES");
+    protected File file;
+
+    @BeforeMethod
+    public void createFile() throws IOException {
+        file = File.createTempFile("segmented", ".data");
+    }
+
+    @AfterMethod
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        for (int size : new int[] { 0, 1, CHUNK_SIZE - 1, CHUNK_SIZE, CHUNK_SIZE + 1, 10 * CHUNK_SIZE, 1234 }) {
+            byte[] data = randomData(size);
+            byte[] encrypted = encrypt(data);
+            assertEquals(encrypted.length, SegmentedEncryption.getEncryptedSize(size, CHUNK_SIZE));
+            assertTrue(SegmentedEncryption.isSegmented(new ByteArrayInputStream(encrypted)));
+            assertEquals(decrypt(encrypted), data, "Size " + size);
+        }
+        //The nonce prefix is random, so encrypting twice gives different results
+        byte[] data = randomData(10);
+        assertFalse(Arrays.equals(encrypt(data), encrypt(data)));
+    }
+
+    @Test
+    public void testRangesAndParallelDecryption() throws Exception {
+        byte[] data = randomData(1234);
+        Files.write(file.toPath(), encrypt(data));
+        int[][] ranges = { { 0, 1234 }, { 0, 10 }, { 50, 100 }, { 99, 2 }, { 100, 100 }, { 250, 800 }, { 1200, 1000 },
+                { 1234, 10 }, { 2000, 10 } };
+        for (int[] range : ranges) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                 InputStream in = SegmentedEncryption.decrypt(channel, key, range[0], range[1])) {
+                int from = Math.min(range[0], data.length);
+                int to = Math.min(data.length, range[0] + range[1]);
+                assertEquals(IOUtils.toByteArray(in), Arrays.copyOfRange(data, from, to), Arrays.toString(range));
+            }
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            SegmentedEncryption.decrypt(channel, key, out, executor, 4);
+            assertEquals(out.toByteArray(), data);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testTamperingIsDetected() throws Exception {
+        byte[] encrypted = encrypt(randomData(350));
+        byte[] modified = encrypted.clone();
+        modified[SegmentedEncryption.HEADER_LENGTH + 150] ^= 1;
+        assertDecryptionFails(modified);
+        //Truncated at a chunk boundary
+        assertDecryptionFails(Arrays.copyOf(encrypted, SegmentedEncryption.HEADER_LENGTH + 2 * (CHUNK_SIZE + 16)));
+        //Chunks swapped
+        byte[] swapped = encrypted.clone();
+        int chunk = CHUNK_SIZE + 16;
+        System.arraycopy(encrypted, SegmentedEncryption.HEADER_LENGTH, swapped,
+                SegmentedEncryption.HEADER_LENGTH + chunk, chunk);
+        System.arraycopy(encrypted, SegmentedEncryption.HEADER_LENGTH + chunk, swapped,
+                SegmentedEncryption.HEADER_LENGTH, chunk);
+        assertDecryptionFails(swapped);
+    }
+
+    @Test
+    public void testLegacyDataIsRecognized() throws Exception {
+        byte[] legacy = CryptoService.encrypt(randomData(100), CryptoService.LEGACY_ALGORITHM, key);
+        assertFalse(SegmentedEncryption.isSegmented(new ByteArrayInputStream(legacy)));
+        InputStream in = new BufferedInputStream(new ByteArrayInputStream(legacy));
+        assertFalse(SegmentedEncryption.isSegmented(in));
+        assertEquals(IOUtils.toByteArray(in), legacy);
+    }
+
+    protected void assertDecryptionFails(byte[] encrypted) {
+        try {
+            decrypt(encrypted);
+            fail("Decryption should have failed");
+        } catch (IOException e) {
+            //Expected
+        }
+    }
+
+    protected byte[] encrypt(byte[] data) throws IOException {
+        return IOUtils.toByteArray(SegmentedEncryption.encrypt(new ByteArrayInputStream(data), key, CHUNK_SIZE));
+    }
+
+    protected byte[] decrypt(byte[] encrypted) throws IOException {
+        return IOUtils.toByteArray(SegmentedEncryption.decrypt(new ByteArrayInputStream(encrypted), key));
+    }
+
+    protected static byte[] randomData(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+}
@@ -0,0 +1,94 @@
+package com.manydesigns.elements.fields;
+
+import com.manydesigns.elements.AbstractElementsTest;
+import com.manydesigns.elements.blobs.Blob;
+import com.manydesigns.elements.forms.Form;
+import com.manydesigns.elements.forms.FormBuilder;
+import org.apache.commons.io.IOUtils;
+import org.testng.annotations.Test;
+
+import javax.sql.rowset.serial.SerialBlob;
+import javax.sql.rowset.serial.SerialException;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+
+import static org.testng.Assert.*;
+
+public class DatabaseBlobFieldTest extends AbstractElementsTest {
+
+    @Test
+    public void testLobIsStreamed() throws Exception {
+        Form form = new FormBuilder(LobBean.class).build();
+        DatabaseBlobField field = (DatabaseBlobField) form.findFieldByPropertyName("contents");
+        LobBean bean = new LobBean();
+        CountingLob lob = new CountingLob("Contents".getBytes(StandardCharsets.UTF_8));
+        bean.contents = lob;
+
+        form.readFromObject(bean);
+        Blob blob = field.getValue();
+        assertEquals(blob.getSize(), "Contents".length());
+        assertEquals(lob.streamsOpened, 0);
+        //Unchanged: the same LOB is written back
+        form.writeToObject(bean);
+        assertSame(bean.contents, lob);
+        assertEquals(lob.streamsOpened, 0);
+        try(InputStream in = blob.getInputStream()) {
+            assertEquals(IOUtils.toString(in, StandardCharsets.UTF_8), "Contents");
+        }
+        assertEquals(lob.streamsOpened, 1);
+
+        Blob upload = new Blob(null);
+        InputStream uploadStream = new ByteArrayInputStream("Uploaded".getBytes(StandardCharsets.UTF_8));
+        upload.setInputStream(uploadStream);
+        upload.setSize("Uploaded".length());
+        field.setValue(upload);
+        form.writeToObject(bean);
+        assertNotSame(bean.contents, lob);
+        try(InputStream in = bean.contents.getBinaryStream()) {
+            assertEquals(IOUtils.toString(in, StandardCharsets.UTF_8), "Uploaded");
+        }
+    }
+
+    @Test
+    public void testUploadsUseTheLobFactory() throws Exception {
+        Form form = new FormBuilder(LobBean.class).build();
+        DatabaseBlobField field = (DatabaseBlobField) form.findFieldByPropertyName("contents");
+        java.sql.Blob created = new SerialBlob(new byte[0]);
+        InputStream[] streams = new InputStream[1];
+        field.setLobFactory((inputStream, length) -> {
+            assertEquals(length, "Uploaded".length());
+            streams[0] = inputStream;
+            return created;
+        });
+
+        Blob upload = new Blob(null);
+        InputStream uploadStream = new ByteArrayInputStream("Uploaded".getBytes(StandardCharsets.UTF_8));
+        upload.setInputStream(uploadStream);
+        upload.setSize("Uploaded".length());
+        field.setValue(upload);
+        LobBean bean = new LobBean();
+        form.writeToObject(bean);
+        assertSame(bean.contents, created);
+        assertSame(streams[0], uploadStream);
+    }
+
+    public static class LobBean {
+        public java.sql.Blob contents;
+    }
+
+    public static class CountingLob extends SerialBlob {
+        public int streamsOpened;
+
+        public CountingLob(byte[] bytes) throws SQLException {
+            super(bytes);
+        }
+
+        @Override
+        public InputStream getBinaryStream() throws SerialException {
+            streamsOpened++;
+            return super.getBinaryStream();
+        }
+    }
+}
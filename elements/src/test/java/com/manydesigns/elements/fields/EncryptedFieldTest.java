@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2005-2020 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.elements.fields;
+
+import com.manydesigns.elements.AbstractElementsTest;
+import com.manydesigns.elements.Mode;
+import com.manydesigns.elements.annotations.Encrypted;
+import com.manydesigns.elements.crypto.BlindIndex;
+import com.manydesigns.elements.fields.helpers.FieldsManager;
+import com.manydesigns.elements.reflection.ClassAccessor;
+import com.manydesigns.elements.reflection.JavaClassAccessor;
+import org.testng.annotations.Test;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.testng.Assert.*;
+
+/*
+* @author Alessio Stalla       - alessio.stalla@manydesigns.com
+*/
+@Test
+public class EncryptedFieldTest extends AbstractElementsTest {
+    public static final String copyright =
+            "Copyright (C) 2005-2020 ManyDesigns srl";
+
+    @Encrypted("com.manydesigns.elements.TestEncrypter")
+    public String secret;
+
+    public void testEncrypterIsShared() throws Exception {
+        ClassAccessor classAccessor = JavaClassAccessor.getClassAccessor(getClass());
+        secret = "Encrypted";
+        EncryptedField field1 = (EncryptedField) FieldsManager.getManager().tryToInstantiateField(
+                classAccessor, classAccessor.getProperty("secret"), Mode.EDIT, null);
+        EncryptedField field2 = (EncryptedField) FieldsManager.getManager().tryToInstantiateField(
+                classAccessor, classAccessor.getProperty("secret"), Mode.EDIT, null);
+        assertSame(field1.getEncrypter(), field2.getEncrypter());
+        field1.readFromObject(this);
+        assertEquals(field1.getStringValue(), "Decrypted");
+        field1.writeToObject(this);
+        assertEquals(secret, "Encrypted");
+    }
+
+    public void testBlindIndex() throws Exception {
+        BlindIndex blindIndex = new BlindIndex(new SecretKeySpec(new byte[32], BlindIndex.MAC_ALGORITHM), 4);
+        String index = blindIndex.compute("Secret");
+        assertEquals(index, blindIndex.compute(" secret"));
+        assertNotEquals(index, blindIndex.compute("Secrets"));
+        assertTrue(index.startsWith(blindIndex.computePrefix("SEC")));
+        assertFalse(index.startsWith(blindIndex.computePrefix("sed")));
+        //Beyond the maximum prefix length, only equality is exact
+        assertTrue(index.startsWith(blindIndex.computePrefix("secrets")));
+        assertNull(blindIndex.compute(null));
+
+        BlindIndex otherKey = new BlindIndex(new SecretKeySpec(new byte[] { 1 }, BlindIndex.MAC_ALGORITHM), 4);
+        assertNotEquals(index, otherKey.compute("Secret"));
+    }
+
+}
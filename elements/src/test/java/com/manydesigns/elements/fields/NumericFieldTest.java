@@ -154,4 +154,19 @@ public class NumericFieldTest extends AbstractElementsTest {
         assertEquals(decimalField.getValue(), new BigDecimal("123.4"));
     }
 
+    public void testFormatIsShared() throws NoSuchFieldException {
+        ClassAccessor classAccessor =
+                JavaClassAccessor.getClassAccessor(this.getClass());
+        PropertyAccessor myPropertyAccessor = classAccessor.getProperty("myFormattedDecimalWithModifiers");
+        NumericField field1 = new NumericField(myPropertyAccessor, Mode.EDIT, "row0_");
+        NumericField field2 = new NumericField(myPropertyAccessor, Mode.EDIT, "row1_");
+        assertSame(field1.getDecimalFormat(), field2.getDecimalFormat());
+        assertNotSame(field1.getDecimalFormat(), decimalField.getDecimalFormat());
+        field1.setStringValue("aaa1,234.5bbb");
+        assertEquals(field1.getValue(), new BigDecimal("123.4"));
+        assertFalse(field2.getDecimalFormat().isParseBigDecimal());
+        field2.setValue(new BigDecimal("12.5"));
+        assertEquals(field2.getStringValue(), "aaa125.00bbb");
+    }
+
 }
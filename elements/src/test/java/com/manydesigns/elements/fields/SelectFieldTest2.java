@@ -231,6 +231,41 @@ public class SelectFieldTest2 extends AbstractElementsTest {
         assertEquals("ciop", options1.get(4).label);
     }
 
+    public void testOptionsAreShared() {
+        SelectionModel other = selectionProvider.createSelectionModel();
+        selectionModel.setValue(0, 1);
+        other.setValue(0, 1);
+        assertSame(selectionModel.getOptions(0), other.getOptions(0));
+        assertSame(selectionModel.getOptions(1), other.getOptions(1));
+        assertEquals(3, other.getOptions(1).size());
+
+        other.setValue(0, 2);
+        Map<Object, SelectionModel.Option> options1 = other.getOptions(1);
+        assertEquals(1, options1.size());
+        assertEquals("ciop", options1.get(4).label);
+        assertEquals(3, selectionModel.getOptions(1).size());
+
+        other.setValue(1, 1);
+        assertNull(other.getValue(1));
+        assertEquals(2, other.getValue(0));
+    }
+
+    public void testEnsureActive() {
+        selectionProvider.appendOption(new Object[] { 3, 5 }, new String[] { "pluto", "rex" }, false);
+        selectionModel.setValue(0, 3);
+        assertFalse(selectionModel.getOptions(0).get(3).active);
+
+        selectionProvider.ensureActive(3, 5);
+        selectionProvider.ensureActive(3, 6);
+        SelectionModel model = selectionProvider.createSelectionModel();
+        model.setValue(0, 3);
+        model.setValue(1, 6);
+        assertTrue(model.getOptions(0).get(3).active);
+        assertEquals("rex", model.getOptions(1).get(5).label);
+        assertEquals("6", model.getOptions(1).get(6).label);
+        assertEquals(6, model.getValue(1));
+    }
+
     public static class Bean {
         @Required
         public Integer p1;
@@ -21,8 +21,13 @@
 package com.manydesigns.elements.forms;
 
 import com.manydesigns.elements.AbstractElementsTest;
+import com.manydesigns.elements.Mode;
 import com.manydesigns.elements.fields.*;
 import com.manydesigns.elements.fields.helpers.FieldsManager;
+import com.manydesigns.elements.fields.helpers.FormPlan;
+import com.manydesigns.elements.reflection.ClassAccessor;
+import com.manydesigns.elements.reflection.FilteredClassAccessor;
+import com.manydesigns.elements.reflection.JavaClassAccessor;
 import com.manydesigns.elements.util.Util;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
@@ -295,5 +300,39 @@ public class FormBuilderTest extends AbstractElementsTest {
                 text);
     }
 
+    public void testFormPlanIsShared() {
+        FieldsManager fieldsManager = FieldsManager.getManager();
+        ClassAccessor classAccessor = JavaClassAccessor.getClassAccessor(AllDefaultFieldsBean.class);
+        FormPlan plan = fieldsManager.getFormPlan(classAccessor, Mode.EDIT);
+        assertSame(plan, fieldsManager.getFormPlan(classAccessor, Mode.EDIT));
+        assertNotSame(plan, fieldsManager.getFormPlan(classAccessor, Mode.VIEW));
+
+        TableForm tableForm = new TableFormBuilder(classAccessor).configNRows(3).build();
+        Form form = formBuilder1.build();
+        for (TableForm.Row row : tableForm.getRows()) {
+            assertEquals(form.get(0).size(), row.size());
+            for (int i = 0; i < row.size(); i++) {
+                assertEquals(form.get(0).get(i).getClass(), row.get(i).getClass());
+            }
+        }
+    }
+
+    public void testFormPlanIsSharedByKey() {
+        //E.g. a CRUD action, which wraps its accessor anew for each request, but keys its plans with its configuration
+        Object key = new Object();
+        ClassAccessor classAccessor = JavaClassAccessor.getClassAccessor(AllDefaultFieldsBean.class);
+        FormBuilder first = new FormBuilder(FilteredClassAccessor.exclude(classAccessor)).configFormPlanKey(key);
+        FormBuilder second = new FormBuilder(FilteredClassAccessor.exclude(classAccessor)).configFormPlanKey(key);
+        assertNotSame(first.classAccessor, second.classAccessor);
+        first.build();
+        second.build();
+        assertSame(first.getFormPlan(), second.getFormPlan());
+        assertSame(first.getFormPlan(), FieldsManager.getManager().getFormPlan(key, Mode.EDIT));
+        assertNotSame(
+                new FormBuilder(FilteredClassAccessor.exclude(classAccessor)).getFormPlan(), first.getFormPlan());
+
+        FieldsManager.getManager().discardFormPlans(key);
+        assertNotSame(first.getFormPlan(), FieldsManager.getManager().getFormPlan(key, Mode.EDIT));
+    }
 
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2005-2020 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.elements.forms;
+
+import com.manydesigns.elements.AbstractElementsTest;
+import com.manydesigns.elements.Mode;
+import com.manydesigns.elements.fields.SelectField;
+import com.manydesigns.elements.options.DefaultSelectionProvider;
+import com.manydesigns.elements.options.OptionProvider;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+/*
+* @author Alessio Stalla       - alessio.stalla@manydesigns.com
+*/
+@Test
+public class TableFormLookupTest extends AbstractElementsTest {
+    public static final String copyright =
+            "Copyright (C) 2005-2020 ManyDesigns srl";
+
+    CountingOptionProvider optionProvider;
+    DefaultSelectionProvider selectionProvider;
+
+    @Override
+    @BeforeMethod
+    public void setUp() throws Exception {
+        super.setUp();
+        optionProvider = new CountingOptionProvider();
+        selectionProvider = new DefaultSelectionProvider("selectionProvider", 1, optionProvider);
+    }
+
+    public void testViewLooksUpShownValuesOnly() {
+        TableForm tableForm = new TableFormBuilder(Bean.class)
+                .configSelectionProvider(selectionProvider, "p1")
+                .configNRows(4)
+                .configMode(Mode.VIEW)
+                .build();
+        List<Bean> beans = new ArrayList<>();
+        beans.add(new Bean(1));
+        beans.add(new Bean(2));
+        beans.add(new Bean(1));
+        beans.add(new Bean(99));
+        tableForm.readFromObject(beans);
+
+        assertEquals(label(tableForm, 0), "one");
+        assertEquals(label(tableForm, 1), "two");
+        assertEquals(label(tableForm, 2), "one");
+        assertNull(label(tableForm, 3));
+        assertNull(((SelectField) tableForm.getRows()[3].get(0)).getValue());
+
+        assertEquals(optionProvider.lookups, 1);
+        assertEquals(optionProvider.lookedUp.size(), 3);
+        assertEquals(optionProvider.loads, 0);
+    }
+
+    public void testEditLoadsAllOptions() {
+        TableForm tableForm = new TableFormBuilder(Bean.class)
+                .configSelectionProvider(selectionProvider, "p1")
+                .configNRows(1)
+                .configMode(Mode.EDIT)
+                .build();
+        List<Bean> beans = new ArrayList<>();
+        beans.add(new Bean(2));
+        tableForm.readFromObject(beans);
+
+        assertEquals(label(tableForm, 0), "two");
+        assertEquals(optionProvider.lookups, 0);
+        assertEquals(optionProvider.loads, 1);
+    }
+
+    protected String label(TableForm tableForm, int row) {
+        SelectField field = (SelectField) tableForm.getRows()[row].get(0);
+        return field.getStringValue();
+    }
+
+    public static class Bean {
+        public Integer p1;
+
+        public Bean(Integer p1) {
+            this.p1 = p1;
+        }
+    }
+
+    static class CountingOptionProvider implements OptionProvider {
+        final Object[] values = { 1, 2, 3 };
+        final String[] labels = { "one", "two", "three" };
+        final List<Object> lookedUp = new ArrayList<>();
+        int loads;
+        int lookups;
+
+        @Override
+        public List<Option> getOptions() {
+            loads++;
+            List<Option> options = new ArrayList<>();
+            for(int i = 0; i < values.length; i++) {
+                options.add(new Option(new Object[] { values[i] }, new String[] { labels[i] }, true));
+            }
+            return options;
+        }
+
+        @Override
+        public List<Option> lookupOptions(Collection<?> values) {
+            lookups++;
+            lookedUp.addAll(values);
+            List<Option> options = new ArrayList<>();
+            for(int i = 0; i < this.values.length; i++) {
+                if(values.contains(this.values[i])) {
+                    options.add(new Option(new Object[] { this.values[i] }, new String[] { labels[i] }, true));
+                }
+            }
+            return options;
+        }
+    }
+}
@@ -94,6 +94,9 @@ public class MailModule implements Module {
 
     @PreDestroy
     public void destroy() {
+        if(mailQueueSetup != null) {
+            mailQueueSetup.destroy();
+        }
         status = ModuleStatus.DESTROYED;
     }
 
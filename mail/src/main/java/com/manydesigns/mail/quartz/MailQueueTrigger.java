@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2005-2020 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.mail.quartz;
+
+import com.manydesigns.mail.queue.MailQueueListener;
+import org.quartz.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs a mail sending job as soon as an email is enqueued, rather than waiting for its next scheduled execution.
+ * Notifications received before the job has started are coalesced in a single execution.
+ *
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class MailQueueTrigger implements MailQueueListener {
+    public static final String copyright =
+            "Copyright (C) 2005-2020 ManyDesigns srl";
+
+    public static final String TRIGGER_KEY = "mail.queue.trigger";
+
+    public static final Logger logger = LoggerFactory.getLogger(MailQueueTrigger.class);
+
+    protected final Scheduler scheduler;
+    protected final JobKey jobKey;
+    protected final AtomicBoolean requested = new AtomicBoolean();
+
+    public MailQueueTrigger(Scheduler scheduler, JobKey jobKey) {
+        this.scheduler = scheduler;
+        this.jobKey = jobKey;
+    }
+
+    public void emailEnqueued(String id) {
+        if(requested.compareAndSet(false, true)) {
+            JobDataMap jobDataMap = new JobDataMap();
+            jobDataMap.put(TRIGGER_KEY, this);
+            try {
+                scheduler.triggerJob(jobKey, jobDataMap);
+            } catch (SchedulerException e) {
+                requested.set(false);
+                logger.warn("Could not trigger job " + jobKey + ", email " + id + " will be sent at the next poll", e);
+            }
+        }
+    }
+
+    /**
+     * To be called by jobs when they start, before they look at the queue.
+     */
+    public static void jobStarted(JobExecutionContext context) {
+        Object trigger = context.getMergedJobDataMap().get(TRIGGER_KEY);
+        if(trigger instanceof MailQueueTrigger) {
+            ((MailQueueTrigger) trigger).requested.set(false);
+        }
+    }
+}
@@ -20,6 +20,8 @@
 
 package com.manydesigns.mail.quartz;
 
+import com.manydesigns.mail.queue.MailQueue;
+import com.manydesigns.mail.queue.NotifyingMailQueue;
 import com.manydesigns.mail.setup.MailProperties;
 import com.manydesigns.mail.setup.MailQueueSetup;
 import org.apache.commons.configuration2.Configuration;
@@ -40,6 +42,11 @@ public class MailScheduler {
 
     public static final Logger logger = LoggerFactory.getLogger(MailScheduler.class);
     public static final int DEFAULT_POLL_INTERVAL = 1000;
+    /**
+     * Default poll interval when the job is also triggered by the queue as soon as an email is enqueued. Polling then
+     * only serves as a safety net, e.g. for emails enqueued by other processes or not sent because of errors.
+     */
+    public static final int DEFAULT_SAFETY_NET_POLL_INTERVAL = 60000;
 
     public static void setupMailScheduler(MailQueueSetup mailQueueSetup) {
         String group = "portofino-mail";
@@ -62,8 +69,8 @@ public class MailScheduler {
                             .usingJobData(URLInvokeJob.URL_KEY, serverUrl)
                             .build();
 
-                    int pollInterval = mailConfiguration.getInt(
-                            MailProperties.MAIL_SENDER_POLL_INTERVAL, DEFAULT_POLL_INTERVAL);
+                    MailQueue mailQueue = mailQueueSetup.getMailQueue();
+                    int pollInterval = getPollInterval(mailConfiguration, mailQueue);
 
                     Trigger trigger = TriggerBuilder.newTrigger()
                         .withIdentity("mail.sender.trigger", group)
@@ -74,6 +81,7 @@ public class MailScheduler {
                         .build();
 
                     scheduler.scheduleJob(job, trigger);
+                    triggerOnEnqueue(mailQueue, scheduler, job.getKey());
                 } catch (Exception e) {
                     logger.error("Could not schedule mail sender job", e);
                 }
@@ -82,4 +90,20 @@ public class MailScheduler {
             }
         }
     }
+
+    public static int getPollInterval(Configuration mailConfiguration, MailQueue mailQueue) {
+        int defaultPollInterval =
+                mailQueue instanceof NotifyingMailQueue ? DEFAULT_SAFETY_NET_POLL_INTERVAL : DEFAULT_POLL_INTERVAL;
+        return mailConfiguration.getInt(MailProperties.MAIL_SENDER_POLL_INTERVAL, defaultPollInterval);
+    }
+
+    /**
+     * Makes the given job run as soon as an email is enqueued, if the queue supports notifications.
+     */
+    public static void triggerOnEnqueue(MailQueue mailQueue, Scheduler scheduler, JobKey jobKey) {
+        if(mailQueue instanceof NotifyingMailQueue) {
+            ((NotifyingMailQueue) mailQueue).addListener(new MailQueueTrigger(scheduler, jobKey));
+            logger.info("Job {} will be triggered when emails are enqueued", jobKey);
+        }
+    }
 }
@@ -20,8 +20,8 @@
 
 package com.manydesigns.mail.quartz;
 
+import com.manydesigns.mail.queue.MailQueue;
 import com.manydesigns.mail.sender.MailSender;
-import com.manydesigns.mail.setup.MailProperties;
 import org.apache.commons.configuration2.Configuration;
 import org.quartz.*;
 import org.quartz.impl.StdSchedulerFactory;
@@ -49,6 +49,7 @@ public class MailSenderJob implements Job {
     public static final Logger logger = LoggerFactory.getLogger(MailSenderJob.class);
 
     public void execute(JobExecutionContext jobExecutionContext) throws JobExecutionException {
+        MailQueueTrigger.jobStarted(jobExecutionContext);
         JobDataMap jobDataMap = jobExecutionContext.getJobDetail().getJobDataMap();
         MailSender sender;
         try {
@@ -77,14 +78,23 @@ public class MailSenderJob implements Job {
      */
     public static void schedule(MailSender mailSender, Configuration mailConfiguration, String group)
             throws SchedulerException {
+        schedule(mailSender, null, mailConfiguration, group);
+    }
+
+    /**
+     * Utility method to schedule the job at a fixed interval and, if the queue supports it, as soon as an email is
+     * enqueued.
+     */
+    public static void schedule(
+            MailSender mailSender, MailQueue mailQueue, Configuration mailConfiguration, String group)
+            throws SchedulerException {
         Scheduler scheduler = StdSchedulerFactory.getDefaultScheduler();
         JobDetail job = JobBuilder
                 .newJob(MailSenderJob.class)
                 .withIdentity("mail.sender", group)
                 .build();
 
-        int pollInterval = mailConfiguration.getInt(
-                MailProperties.MAIL_SENDER_POLL_INTERVAL, MailScheduler.DEFAULT_POLL_INTERVAL);
+        int pollInterval = MailScheduler.getPollInterval(mailConfiguration, mailQueue);
 
         Trigger trigger = TriggerBuilder.newTrigger()
             .withIdentity("mail.sender.trigger", group)
@@ -96,5 +106,6 @@ public class MailSenderJob implements Job {
 
         scheduler.getContext().put(MailSenderJob.MAIL_SENDER_KEY, mailSender);
         scheduler.scheduleJob(job, trigger);
+        MailScheduler.triggerOnEnqueue(mailQueue, scheduler, job.getKey());
     }
 }
@@ -42,6 +42,7 @@ public class URLInvokeJob implements Job {
     public static final String URL_KEY = "url";
 
     public void execute(JobExecutionContext jobExecutionContext) throws JobExecutionException {
+        MailQueueTrigger.jobStarted(jobExecutionContext);
         String urlToInvoke = null;
         try {
             urlToInvoke = jobExecutionContext.getMergedJobDataMap().get(URL_KEY).toString();
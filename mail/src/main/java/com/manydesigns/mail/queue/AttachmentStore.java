@@ -0,0 +1,391 @@
+/*
+ * Copyright (C) 2005-2020 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.mail.queue;
+
+import com.manydesigns.elements.util.ElementsFileUtils;
+import com.manydesigns.elements.util.RandomUtil;
+import com.manydesigns.mail.queue.model.Attachment;
+import com.manydesigns.mail.queue.model.Email;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed storage for the attachments of queued emails. The content of an attachment is stored once, in a
+ * file named after its SHA-256 digest, no matter how many emails refer to it.
+ * <p>Every queued email holding a reference to some content is recorded with an empty marker file, named after the
+ * id of the email, in a directory next to the content; {@link StoredAttachment}s obtained by applications to enqueue
+ * many emails with the same attachment are counted in memory instead. When the last reference is removed, the content
+ * is deleted. References left behind by a crash are cleaned up by {@link #collectGarbage(Predicate)}, which mail
+ * queues call at startup.</p>
+ *
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class AttachmentStore {
+    public static final String copyright =
+            "Copyright (C) 2005-2020 ManyDesigns srl";
+
+    public static final String DIGEST_ALGORITHM = "SHA-256";
+    protected static final Pattern DIGEST_PATTERN = Pattern.compile("[0-9a-f]{64}");
+    protected static final String CONTENT_SUFFIX = ".bin";
+    protected static final String REFERENCES_SUFFIX = ".refs";
+    protected static final String TEMP_PREFIX = "tmp-";
+
+    protected final File directory;
+    protected final Map<String, Integer> pinned = new HashMap<>();
+
+    protected static final Logger logger = LoggerFactory.getLogger(AttachmentStore.class);
+
+    public AttachmentStore(File directory) {
+        this.directory = directory;
+        if(!ElementsFileUtils.ensureDirectoryExistsAndWritable(directory)) {
+            logger.warn("Directory does not exist or is not writable: {}", directory);
+        }
+    }
+
+    //**************************************************************************
+    // Storing and referencing content
+    //**************************************************************************
+
+    /**
+     * Stores some content, if not already present, and keeps it until the returned reference is released.
+     */
+    public StoredAttachment store(InputStream content) throws QueueException {
+        try {
+            TempContent temp = writeTemp(content);
+            synchronized (this) {
+                moveToStore(temp);
+                pinned.merge(temp.digest, 1, Integer::sum);
+            }
+            return new StoredAttachment(temp.digest, temp.size);
+        } catch (IOException e) {
+            throw new QueueException("Couldn't store attachment", e);
+        }
+    }
+
+    /**
+     * Releases a reference obtained with {@link #store(InputStream)}. The content is deleted if no queued email
+     * refers to it.
+     */
+    public synchronized void release(StoredAttachment attachment) {
+        if(attachment.released) {
+            return;
+        }
+        attachment.released = true;
+        String digest = attachment.getDigest();
+        Integer count = pinned.get(digest);
+        if(count == null) {
+            logger.warn("Releasing unknown attachment {}", digest);
+            return;
+        }
+        if(count > 1) {
+            pinned.put(digest, count - 1);
+        } else {
+            pinned.remove(digest);
+            deleteIfUnreferenced(digest);
+        }
+    }
+
+    /**
+     * Makes an attachment of a queued email refer to the store. If the attachment has an input stream, its content is
+     * stored; otherwise, the attachment must have the digest of content already in the store. In both cases, the
+     * digest and the file path of the attachment are updated to point to the stored content, and the input stream,
+     * which has been consumed, is cleared.
+     * @param attachment the attachment.
+     * @param owner the id of the email.
+     */
+    public void addReference(Attachment attachment, String owner) throws QueueException {
+        try {
+            if(attachment.getInputStream() != null) {
+                TempContent temp;
+                try(InputStream inputStream = attachment.getInputStream()) {
+                    temp = writeTemp(inputStream);
+                }
+                synchronized (this) {
+                    moveToStore(temp);
+                    addReference(temp.digest, owner);
+                }
+                attachment.setDigest(temp.digest);
+                attachment.setInputStream(null);
+            } else if(attachment.getDigest() != null) {
+                addReference(attachment.getDigest(), owner);
+            } else {
+                throw new QueueException("Attachment " + attachment.getName() + " has neither content nor digest");
+            }
+            attachment.setFilePath(getContentFile(attachment.getDigest()).getAbsolutePath());
+        } catch (IOException e) {
+            throw new QueueException("Couldn't store attachment " + attachment.getName(), e);
+        }
+    }
+
+    protected synchronized void addReference(String digest, String owner) throws QueueException, IOException {
+        if(!contains(digest)) {
+            throw new QueueException("Attachment " + digest + " is not in the store");
+        }
+        File references = getReferencesDirectory(digest);
+        checkDirectory(references);
+        File marker = new File(references, owner);
+        if(!marker.exists() && !marker.createNewFile()) {
+            throw new IOException("Couldn't create " + marker);
+        }
+    }
+
+    /**
+     * Removes the reference of a queued email to some content, deleting the content if it was the last one.
+     */
+    public synchronized void removeReference(String digest, String owner) {
+        if(!isValidDigest(digest)) {
+            return;
+        }
+        File marker = new File(getReferencesDirectory(digest), owner);
+        if(marker.exists() && !marker.delete()) {
+            logger.warn("Couldn't delete attachment reference {}", marker);
+        }
+        deleteIfUnreferenced(digest);
+    }
+
+    /**
+     * Removes all the references held by queued emails for which the given predicate is false, and deletes the
+     * content no longer referenced, as well as leftover temporary files. Meant to be called at startup, before
+     * attachments are stored.
+     * @param isQueued tells whether the email with the given id is still in the queue.
+     * @return the number of deleted contents.
+     */
+    public synchronized int collectGarbage(Predicate<String> isQueued) {
+        int deleted = 0;
+        File[] children = directory.listFiles();
+        if(children == null) {
+            return 0;
+        }
+        for(File child : children) {
+            if(child.getName().startsWith(TEMP_PREFIX)) {
+                FileUtils.deleteQuietly(child);
+                continue;
+            }
+            File[] files = child.listFiles();
+            if(files == null) {
+                continue;
+            }
+            for(File file : files) {
+                if(file.getName().endsWith(REFERENCES_SUFFIX)) {
+                    File[] markers = file.listFiles();
+                    if(markers != null) {
+                        for(File marker : markers) {
+                            if(!isQueued.test(marker.getName())) {
+                                logger.debug("Removing reference of email {}, no longer in the queue", marker.getName());
+                                FileUtils.deleteQuietly(marker);
+                            }
+                        }
+                    }
+                }
+            }
+            for(File file : files) {
+                String name = file.getName();
+                String digest;
+                if(name.endsWith(CONTENT_SUFFIX)) {
+                    digest = name.substring(0, name.length() - CONTENT_SUFFIX.length());
+                } else if(name.endsWith(REFERENCES_SUFFIX)) {
+                    digest = name.substring(0, name.length() - REFERENCES_SUFFIX.length());
+                } else {
+                    continue;
+                }
+                if(isValidDigest(digest) && deleteIfUnreferenced(digest)) {
+                    deleted++;
+                }
+            }
+        }
+        if(deleted > 0) {
+            logger.info("Deleted {} unreferenced attachments", deleted);
+        }
+        return deleted;
+    }
+
+    /**
+     * Copies the stored attachments of an email outside the store, as hard links when the file system supports it,
+     * and updates their file paths. Used to archive sent or failed emails, since the store only keeps attachments as
+     * long as queued emails refer to them.
+     * @return true if the email had any stored attachment.
+     */
+    public boolean copyAttachments(Email email, File destination) throws IOException {
+        boolean copied = false;
+        for(Attachment attachment : email.getAttachments()) {
+            String digest = attachment.getDigest();
+            if(!contains(digest)) {
+                continue;
+            }
+            if(!ElementsFileUtils.ensureDirectoryExistsAndWritable(destination)) {
+                throw new IOException("Invalid directory " + destination.getAbsolutePath());
+            }
+            File file = new File(destination, digest + CONTENT_SUFFIX);
+            if(!file.exists()) {
+                Path source = getContentFile(digest).toPath();
+                try {
+                    Files.createLink(file.toPath(), source);
+                } catch (UnsupportedOperationException | IOException e) {
+                    logger.debug("Couldn't link " + source + ", copying it", e);
+                    Files.copy(source, file.toPath());
+                }
+            }
+            attachment.setFilePath(file.getAbsolutePath());
+            copied = true;
+        }
+        return copied;
+    }
+
+    /**
+     * Removes the references of a queued email to the content of its attachments.
+     */
+    public void removeReferences(Email email, String owner) {
+        for(Attachment attachment : email.getAttachments()) {
+            removeReference(attachment.getDigest(), owner);
+        }
+    }
+
+    public synchronized int getReferenceCount(String digest) {
+        if(!isValidDigest(digest)) {
+            return 0;
+        }
+        String[] markers = getReferencesDirectory(digest).list();
+        return (markers != null ? markers.length : 0) + pinned.getOrDefault(digest, 0);
+    }
+
+    public boolean contains(String digest) {
+        return isValidDigest(digest) && getContentFile(digest).isFile();
+    }
+
+    public File getContentFile(String digest) {
+        if(!isValidDigest(digest)) {
+            throw new IllegalArgumentException("Invalid digest: " + digest);
+        }
+        return new File(getBucket(digest), digest + CONTENT_SUFFIX);
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    //**************************************************************************
+    // Implementation
+    //**************************************************************************
+
+    protected TempContent writeTemp(InputStream content) throws IOException {
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new Error(e);
+        }
+        File temp = new File(directory, TEMP_PREFIX + RandomUtil.createRandomId(20));
+        long size;
+        try(DigestInputStream in = new DigestInputStream(content, messageDigest);
+            OutputStream out = new FileOutputStream(temp)) {
+            size = IOUtils.copyLarge(in, out);
+        } catch (IOException e) {
+            FileUtils.deleteQuietly(temp);
+            throw e;
+        }
+        return new TempContent(temp, toHex(messageDigest.digest()), size);
+    }
+
+    protected void moveToStore(TempContent temp) throws IOException, QueueException {
+        File content = getContentFile(temp.digest);
+        if(content.isFile()) {
+            logger.debug("Attachment {} is already stored", temp.digest);
+            FileUtils.deleteQuietly(temp.file);
+        } else {
+            checkDirectory(content.getParentFile());
+            Files.move(temp.file.toPath(), content.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    protected boolean deleteIfUnreferenced(String digest) {
+        if(pinned.containsKey(digest)) {
+            return false;
+        }
+        File references = getReferencesDirectory(digest);
+        if(references.exists()) {
+            try(DirectoryStream<Path> stream = Files.newDirectoryStream(references.toPath())) {
+                if(stream.iterator().hasNext()) {
+                    return false;
+                }
+            } catch (IOException e) {
+                logger.warn("Couldn't list references of attachment " + digest, e);
+                return false;
+            }
+            FileUtils.deleteQuietly(references);
+        }
+        File content = getContentFile(digest);
+        if(content.exists()) {
+            logger.debug("Deleting unreferenced attachment {}", digest);
+            return content.delete();
+        }
+        return false;
+    }
+
+    protected File getBucket(String digest) {
+        return new File(directory, digest.substring(0, 2));
+    }
+
+    protected File getReferencesDirectory(String digest) {
+        return new File(getBucket(digest), digest + REFERENCES_SUFFIX);
+    }
+
+    protected static boolean isValidDigest(String digest) {
+        return digest != null && DIGEST_PATTERN.matcher(digest).matches();
+    }
+
+    protected static void checkDirectory(File file) throws QueueException {
+        if(!ElementsFileUtils.ensureDirectoryExistsAndWritable(file)) {
+            throw new QueueException("Invalid directory " + file.getAbsolutePath());
+        }
+    }
+
+    protected static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for(byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    protected static class TempContent {
+        protected final File file;
+        protected final String digest;
+        protected final long size;
+
+        protected TempContent(File file, String digest, long size) {
+            this.file = file;
+            this.digest = digest;
+            this.size = size;
+        }
+    }
+}
@@ -26,7 +26,6 @@ import com.manydesigns.mail.queue.model.Attachment;
 import com.manydesigns.mail.queue.model.Email;
 import com.manydesigns.mail.queue.model.Recipient;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -35,7 +34,6 @@ import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -54,6 +52,7 @@ public class FileSystemMailQueue implements MailQueue {
             "Copyright (C) 2005-2020 ManyDesigns srl";
 
     protected final File queuedDirectory, sentDirectory, failedDirectory;
+    protected final AttachmentStore attachmentStore;
     protected final JAXBContext jaxbContext;
     protected boolean keepSent;
 
@@ -63,6 +62,7 @@ public class FileSystemMailQueue implements MailQueue {
         this.queuedDirectory = new File(directory, "queue");
         this.sentDirectory = new File(directory, "sent");
         this.failedDirectory = new File(directory, "failed");
+        this.attachmentStore = new AttachmentStore(new File(directory, "attachments"));
 
         if(!ElementsFileUtils.ensureDirectoryExistsAndWritable(this.queuedDirectory)) {
             logger.warn("Directory does not exist or is not writable: {}", this.queuedDirectory);
@@ -78,6 +78,7 @@ public class FileSystemMailQueue implements MailQueue {
         } catch (JAXBException e) {
             throw new Error("Couldn't create jaxb context", e);
         }
+        attachmentStore.collectGarbage(id -> getEmailFile(id).exists());
     }
 
     protected void checkDirectory(File file) throws QueueException {
@@ -93,28 +94,21 @@ public class FileSystemMailQueue implements MailQueue {
     }
 
     public String enqueue(Email email) throws QueueException {
+        String emailId = RandomUtil.createRandomId(20);
         try {
             Marshaller marshaller = jaxbContext.createMarshaller();
             marshaller.setProperty(javax.xml.bind.Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
-            String emailId = RandomUtil.createRandomId(20);
             File destinationFile = getEmailFile(emailId);
             checkDirectory(queuedDirectory);
-            if(!email.getAttachments().isEmpty()) {
-                File attachDir = getEmailAttachmentsDirectory(emailId);
-                checkDirectory(attachDir);
-                for(Attachment attachment : email.getAttachments()) {
-                    String attachmentId = RandomUtil.createRandomId(20);
-                    File attachmentFile = new File(attachDir, attachmentId + ".bin");
-                    try(InputStream inputStream = attachment.getInputStream();
-                        FileOutputStream fos = new FileOutputStream(attachmentFile)) {
-                        IOUtils.copy(inputStream, fos);
-                    }
-                    attachment.setFilePath(attachmentFile.getAbsolutePath());
-                }
+            for(Attachment attachment : email.getAttachments()) {
+                attachmentStore.addReference(attachment, emailId);
             }
             marshaller.marshal(email, destinationFile);
             return emailId;
         } catch (Exception e) {
+            for(Attachment attachment : email.getAttachments()) {
+                attachmentStore.removeReference(attachment.getDigest(), emailId);
+            }
             throw new QueueException("Couldn't enqueue mail", e);
         }
     }
@@ -165,10 +159,11 @@ public class FileSystemMailQueue implements MailQueue {
         try {
             File emailFile = getEmailFile(id);
             if(emailFile.exists()) {
+                Email email = loadEmailQuietly(id);
                 File attachmentsDir = getEmailAttachmentsDirectory(id);
                 if(keepSent) {
                     logger.info("Moving email with id {} to sent directory", id);
-                    FileUtils.moveToDirectory(emailFile, sentDirectory, false);
+                    archive(id, email, sentDirectory);
                     if(attachmentsDir.exists()) {
                         FileUtils.moveToDirectory(attachmentsDir, sentDirectory, false);
                     }
@@ -185,6 +180,7 @@ public class FileSystemMailQueue implements MailQueue {
                         throw new QueueException("Couldn't mark mail as sent");
                     }
                 }
+                releaseAttachments(id, email);
             } else {
                 logger.debug("Not marking email with id {} as sent", id);
             }
@@ -198,12 +194,14 @@ public class FileSystemMailQueue implements MailQueue {
         try {
             File emailFile = getEmailFile(id);
             if(emailFile.exists()) {
+                Email email = loadEmailQuietly(id);
                 File attachmentsDir = getEmailAttachmentsDirectory(id);
                 logger.info("Marking email with id {} as failed", id);
-                FileUtils.moveToDirectory(emailFile, failedDirectory, false);
+                archive(id, email, failedDirectory);
                 if(attachmentsDir.exists()) {
                     FileUtils.moveToDirectory(attachmentsDir, failedDirectory, false);
                 }
+                releaseAttachments(id, email);
             } else {
                 logger.debug("Not marking email with id {} as failed", id);
             }
@@ -212,6 +210,51 @@ public class FileSystemMailQueue implements MailQueue {
         }
     }
 
+    public StoredAttachment storeAttachment(InputStream content) throws QueueException {
+        return attachmentStore.store(content);
+    }
+
+    public void releaseAttachment(StoredAttachment attachment) {
+        attachmentStore.release(attachment);
+    }
+
+    protected Email loadEmailQuietly(String id) {
+        try {
+            return loadEmail(id);
+        } catch (QueueException e) {
+            logger.debug("Couldn't load email with id " + id + ", its attachments will be released at the next startup", e);
+            return null;
+        }
+    }
+
+    /**
+     * Moves an email to the given directory, together with its stored attachments.
+     */
+    protected void archive(String id, Email email, File directory) throws IOException {
+        File emailFile = getEmailFile(id);
+        File attachmentsDir = RandomUtil.getCodeFile(directory, "email-{0}-attachments", id);
+        if(email == null || !attachmentStore.copyAttachments(email, attachmentsDir)) {
+            FileUtils.moveToDirectory(emailFile, directory, false);
+            return;
+        }
+        try {
+            Marshaller marshaller = jaxbContext.createMarshaller();
+            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+            marshaller.marshal(email, RandomUtil.getCodeFile(directory, "email-{0}.xml", id));
+        } catch (JAXBException e) {
+            throw new IOException("Couldn't write email " + id, e);
+        }
+        if(!emailFile.delete()) {
+            throw new IOException("Couldn't delete " + emailFile);
+        }
+    }
+
+    protected void releaseAttachments(String id, Email email) {
+        if(email != null) {
+            attachmentStore.removeReferences(email, id);
+        }
+    }
+
     public File getQueuedDirectory() {
         return queuedDirectory;
     }
@@ -224,6 +267,10 @@ public class FileSystemMailQueue implements MailQueue {
         return failedDirectory;
     }
 
+    public AttachmentStore getAttachmentStore() {
+        return attachmentStore;
+    }
+
     public boolean isKeepSent() {
         return keepSent;
     }
@@ -0,0 +1,703 @@
+/*
+ * Copyright (C) 2005-2020 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.mail.queue;
+
+import com.manydesigns.elements.util.ElementsFileUtils;
+import com.manydesigns.elements.util.RandomUtil;
+import com.manydesigns.mail.queue.model.Attachment;
+import com.manydesigns.mail.queue.model.Email;
+import com.manydesigns.mail.queue.model.Recipient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * A mail queue that stores emails in an append-only journal, split in segments, rather than in a file per email.
+ * A record is appended when an email is enqueued, and another one when it is marked as sent or failed; the ids of
+ * pending emails and the position of their records are kept in memory, so listing the queue never touches the disk.
+ * At startup, the index is rebuilt by replaying the journal; a partially written record at the end of the journal
+ * (e.g. after a crash) is discarded.
+ * <p>Records are written in a compact binary format: the length of the record, its type, the id of the email, the
+ * email itself for enqueue records, and a CRC32 checksum. Unless sync is disabled, every operation returns only after
+ * its record has been forced to disk; concurrent operations share the same fsync.</p>
+ * <p>When the oldest segment contains mostly sent or failed emails, the pending ones are copied at the end of the
+ * journal and the segment is deleted. Attachments are kept in an {@link AttachmentStore}; sent (if keepSent is true)
+ * and failed emails are archived in the same XML format used by {@link FileSystemMailQueue}.</p>
+ *
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class JournalMailQueue implements MailQueue, Closeable {
+    public static final String copyright =
+            "Copyright (C) 2005-2020 ManyDesigns srl";
+
+    public static final long DEFAULT_MAX_SEGMENT_SIZE = 16 * 1024 * 1024;
+    /**
+     * The oldest segment is compacted when less than this fraction of its emails are still pending.
+     */
+    public static final double DEFAULT_COMPACTION_THRESHOLD = 0.5;
+
+    protected static final byte ENQUEUED = 1;
+    protected static final byte SENT = 2;
+    protected static final byte FAILED = 3;
+    protected static final int LENGTH_SIZE = 4;
+    protected static final int CHECKSUM_SIZE = 4;
+    protected static final String SEGMENT_PREFIX = "segment-";
+    protected static final String SEGMENT_SUFFIX = ".log";
+
+    protected final File journalDirectory, sentDirectory, failedDirectory;
+    protected final AttachmentStore attachmentStore;
+    protected final JAXBContext jaxbContext;
+    protected final NavigableMap<Long, Segment> segments = new TreeMap<>();
+    protected final LinkedHashMap<String, RecordLocation> pending = new LinkedHashMap<>();
+    protected volatile Segment activeSegment;
+    protected long maxSegmentSize = DEFAULT_MAX_SEGMENT_SIZE;
+    protected double compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+    protected boolean sync = true;
+    protected boolean keepSent;
+    protected boolean closed;
+
+    protected final Object syncLock = new Object();
+    protected volatile long writtenSequence;
+    protected long syncedSequence;
+
+    protected static final Logger logger = LoggerFactory.getLogger(JournalMailQueue.class);
+
+    public JournalMailQueue(File directory) throws QueueException {
+        this.journalDirectory = new File(directory, "journal");
+        this.sentDirectory = new File(directory, "sent");
+        this.failedDirectory = new File(directory, "failed");
+        this.attachmentStore = new AttachmentStore(new File(directory, "attachments"));
+        for(File dir : new File[] { journalDirectory, attachmentStore.getDirectory(), sentDirectory, failedDirectory }) {
+            if(!ElementsFileUtils.ensureDirectoryExistsAndWritable(dir)) {
+                throw new QueueException("Invalid directory " + dir.getAbsolutePath());
+            }
+        }
+        try {
+            jaxbContext = JAXBContext.newInstance(Email.class, Recipient.class);
+        } catch (JAXBException e) {
+            throw new Error("Couldn't create jaxb context", e);
+        }
+        try {
+            recover();
+        } catch (IOException e) {
+            close();
+            throw new QueueException("Couldn't read mail queue journal in " + journalDirectory.getAbsolutePath(), e);
+        }
+    }
+
+    //**************************************************************************
+    // MailQueue implementation
+    //**************************************************************************
+
+    public String enqueue(Email email) throws QueueException {
+        String emailId = RandomUtil.createRandomId(20);
+        long sequence;
+        try {
+            for(Attachment attachment : email.getAttachments()) {
+                attachmentStore.addReference(attachment, emailId);
+            }
+            byte[] record = encodeRecord(ENQUEUED, emailId, email);
+            synchronized (this) {
+                checkOpen();
+                RecordLocation location = append(record);
+                location.segment.enqueued++;
+                location.segment.live++;
+                pending.put(emailId, location);
+                sequence = writtenSequence;
+            }
+        } catch (Exception e) {
+            attachmentStore.removeReferences(email, emailId);
+            if(e instanceof QueueException) {
+                throw (QueueException) e;
+            }
+            throw new QueueException("Couldn't enqueue mail", e);
+        }
+        commit(sequence);
+        return emailId;
+    }
+
+    public synchronized List<String> getEnqueuedEmailIds() throws QueueException {
+        checkOpen();
+        return new ArrayList<>(pending.keySet());
+    }
+
+    @Override
+    public synchronized List<String> getEnqueuedEmailIds(int maxCount) throws QueueException {
+        checkOpen();
+        List<String> ids = new ArrayList<>(Math.min(maxCount, pending.size()));
+        Iterator<String> iterator = pending.keySet().iterator();
+        while (ids.size() < maxCount && iterator.hasNext()) {
+            ids.add(iterator.next());
+        }
+        return ids;
+    }
+
+    public synchronized Email loadEmail(String id) throws QueueException {
+        checkOpen();
+        RecordLocation location = pending.get(id);
+        if(location == null) {
+            logger.debug("Email with id {} not found", id);
+            return null;
+        }
+        byte[] record;
+        try {
+            record = read(location);
+        } catch (IOException e) {
+            throw new QueueException("Couldn't load email", e);
+        }
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(record, 1, record.length - 1));
+            readString(in); //id
+            return readEmail(in);
+        } catch (IOException | RuntimeException e) {
+            throw new MailParseException("Couldn't parse email", e);
+        }
+    }
+
+    public void markSent(String id) throws QueueException {
+        Email email = loadEmailQuietly(id);
+        if(!remove(id, SENT)) {
+            logger.debug("Not marking email with id {} as sent", id);
+            return;
+        }
+        try {
+            if(keepSent && email != null) {
+                logger.info("Moving email with id {} to sent directory", id);
+                archive(id, email, sentDirectory);
+            } else {
+                logger.info("Deleting sent email with id {}", id);
+            }
+        } catch (IOException e) {
+            logger.warn("Couldn't archive sent email with id " + id, e);
+        } finally {
+            releaseAttachments(id, email);
+        }
+    }
+
+    public void markFailed(String id) throws QueueException {
+        Email email = loadEmailQuietly(id);
+        if(!remove(id, FAILED)) {
+            logger.debug("Not marking email with id {} as failed", id);
+            return;
+        }
+        logger.info("Marking email with id {} as failed", id);
+        try {
+            if(email != null) {
+                archive(id, email, failedDirectory);
+            }
+        } catch (IOException e) {
+            throw new QueueException("Couldn't mark mail as failed", e);
+        } finally {
+            releaseAttachments(id, email);
+        }
+    }
+
+    public StoredAttachment storeAttachment(InputStream content) throws QueueException {
+        return attachmentStore.store(content);
+    }
+
+    public void releaseAttachment(StoredAttachment attachment) {
+        attachmentStore.release(attachment);
+    }
+
+    public boolean isKeepSent() {
+        return keepSent;
+    }
+
+    public void setKeepSent(boolean keepSent) {
+        this.keepSent = keepSent;
+    }
+
+    //**************************************************************************
+    // Journal management
+    //**************************************************************************
+
+    protected boolean remove(String id, byte type) throws QueueException {
+        long sequence;
+        synchronized (this) {
+            checkOpen();
+            RecordLocation location = pending.get(id);
+            if(location == null) {
+                return false;
+            }
+            try {
+                append(encodeRecord(type, id, null));
+                pending.remove(id);
+                location.segment.live--;
+                sequence = writtenSequence;
+                compact(false);
+            } catch (IOException e) {
+                throw new QueueException("Couldn't update mail queue journal", e);
+            }
+        }
+        commit(sequence);
+        return true;
+    }
+
+    /**
+     * Rewrites all the segments except the active one, copying the pending emails at the end of the journal.
+     */
+    public synchronized void compact() throws QueueException {
+        checkOpen();
+        try {
+            compact(true);
+        } catch (IOException e) {
+            throw new QueueException("Couldn't compact mail queue journal", e);
+        }
+    }
+
+    protected void compact(boolean force) throws IOException {
+        //Only the oldest segment is ever removed. Its sent and failed records can only refer to emails enqueued in
+        //the same segment, so removing it can't bring back emails enqueued in other segments.
+        //A segment may have no pending emails because it only holds sent and failed records: that one goes too.
+        long lastSegment = activeSegment.number;
+        Segment oldest = segments.firstEntry().getValue();
+        while (oldest.number < lastSegment &&
+               (force || oldest.live == 0 || oldest.live < oldest.enqueued * compactionThreshold)) {
+            int copied = 0;
+            for(Map.Entry<String, RecordLocation> entry : pending.entrySet()) {
+                RecordLocation location = entry.getValue();
+                if(location.segment == oldest) {
+                    RecordLocation copy = append(read(location));
+                    copy.segment.enqueued++;
+                    copy.segment.live++;
+                    entry.setValue(copy);
+                    copied++;
+                }
+            }
+            if(copied > 0) {
+                forceActiveSegment();
+            }
+            logger.debug("Compacted journal segment {}, {} pending emails copied", oldest.number, copied);
+            segments.remove(oldest.number);
+            oldest.channel.close();
+            if(!oldest.file.delete()) {
+                logger.warn("Couldn't delete journal segment {}", oldest.file);
+            }
+            oldest = segments.firstEntry().getValue();
+        }
+    }
+
+    protected RecordLocation append(byte[] record) throws IOException {
+        int recordSize = LENGTH_SIZE + record.length + CHECKSUM_SIZE;
+        Segment segment = activeSegment;
+        if(segment.size > 0 && segment.size + recordSize > maxSegmentSize) {
+            segment = rotate();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        ByteBuffer buffer = ByteBuffer.allocate(recordSize);
+        buffer.putInt(record.length).put(record).putInt((int) crc.getValue());
+        buffer.flip();
+        long position = segment.size;
+        while (buffer.hasRemaining()) {
+            segment.channel.write(buffer, position + buffer.position());
+        }
+        segment.size += recordSize;
+        writtenSequence++;
+        return new RecordLocation(segment, position, record.length);
+    }
+
+    protected byte[] read(RecordLocation location) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(location.length);
+        long position = location.position + LENGTH_SIZE;
+        while (buffer.hasRemaining()) {
+            if(location.segment.channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of journal segment " + location.segment.file);
+            }
+        }
+        return buffer.array();
+    }
+
+    protected Segment rotate() throws IOException {
+        Segment previous = activeSegment;
+        synchronized (syncLock) {
+            if(sync) {
+                previous.channel.force(false);
+            }
+            syncedSequence = writtenSequence;
+        }
+        Segment segment = openSegment(previous.number + 1);
+        segments.put(segment.number, segment);
+        activeSegment = segment;
+        logger.debug("Started journal segment {}", segment.number);
+        return segment;
+    }
+
+    /**
+     * Waits until the record with the given sequence number is on disk. A single fsync covers all the records written
+     * up to the moment it starts, so concurrent writers share it.
+     */
+    protected void commit(long sequence) throws QueueException {
+        if(!sync) {
+            return;
+        }
+        synchronized (syncLock) {
+            if(syncedSequence >= sequence) {
+                return;
+            }
+            try {
+                forceActiveSegment();
+            } catch (IOException e) {
+                throw new QueueException("Couldn't sync mail queue journal", e);
+            }
+        }
+    }
+
+    protected void forceActiveSegment() throws IOException {
+        synchronized (syncLock) {
+            long target = writtenSequence;
+            if(sync) {
+                activeSegment.channel.force(false);
+            }
+            syncedSequence = Math.max(syncedSequence, target);
+        }
+    }
+
+    protected void recover() throws IOException {
+        File[] files = journalDirectory.listFiles(
+                (dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        SortedMap<Long, File> segmentFiles = new TreeMap<>();
+        if(files != null) {
+            for(File file : files) {
+                String name = file.getName();
+                try {
+                    long number = Long.parseLong(
+                            name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                    segmentFiles.put(number, file);
+                } catch (NumberFormatException e) {
+                    logger.warn("Ignoring unknown file in mail queue journal: {}", file);
+                }
+            }
+        }
+        for(long number : segmentFiles.keySet()) {
+            Segment segment = openSegment(number);
+            segments.put(number, segment);
+            replay(segment, number == segmentFiles.lastKey());
+        }
+        if(segments.isEmpty()) {
+            segments.put(1L, openSegment(1));
+        }
+        activeSegment = segments.lastEntry().getValue();
+        compact(false);
+        attachmentStore.collectGarbage(pending::containsKey);
+        logger.info("Mail queue journal recovered: {} segments, {} pending emails", segments.size(), pending.size());
+    }
+
+    protected void replay(Segment segment, boolean last) throws IOException {
+        long length = segment.channel.size();
+        long position = 0;
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment.file)))) {
+            while (position + LENGTH_SIZE + CHECKSUM_SIZE <= length) {
+                int recordLength = in.readInt();
+                if(recordLength <= 0 || position + LENGTH_SIZE + recordLength + CHECKSUM_SIZE > length) {
+                    break;
+                }
+                byte[] record = new byte[recordLength];
+                in.readFully(record);
+                int checksum = in.readInt();
+                CRC32 crc = new CRC32();
+                crc.update(record);
+                if(checksum != (int) crc.getValue()) {
+                    break;
+                }
+                apply(new RecordLocation(segment, position, recordLength), record);
+                position += LENGTH_SIZE + recordLength + CHECKSUM_SIZE;
+            }
+        }
+        if(position < length) {
+            if(last) {
+                logger.warn("Discarding incomplete record at the end of journal segment {} (offset {})",
+                        segment.file, position);
+                segment.channel.truncate(position);
+            } else {
+                logger.error("Journal segment {} is corrupted at offset {}, ignoring the rest of the segment",
+                        segment.file, position);
+            }
+        }
+        segment.size = position;
+    }
+
+    protected void apply(RecordLocation location, byte[] record) throws IOException {
+        String id = readString(new DataInputStream(new ByteArrayInputStream(record, 1, record.length - 1)));
+        byte type = record[0];
+        if(type == ENQUEUED) {
+            location.segment.enqueued++;
+            location.segment.live++;
+            RecordLocation previous = pending.put(id, location);
+            if(previous != null) { //Copied by a compaction that did not complete
+                previous.segment.live--;
+            }
+        } else if(type == SENT || type == FAILED) {
+            RecordLocation previous = pending.remove(id);
+            if(previous != null) {
+                previous.segment.live--;
+            }
+        } else {
+            logger.warn("Unknown record type {} in journal segment {}", type, location.segment.file);
+        }
+    }
+
+    protected Segment openSegment(long number) throws IOException {
+        File file = new File(journalDirectory, String.format("%s%019d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+        FileChannel channel = FileChannel.open(
+                file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new Segment(number, file, channel);
+    }
+
+    protected void checkOpen() throws QueueException {
+        if(closed) {
+            throw new QueueException("The mail queue has been closed");
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for(Segment segment : segments.values()) {
+            try {
+                if(sync && segment == activeSegment) {
+                    segment.channel.force(false);
+                }
+                segment.channel.close();
+            } catch (IOException e) {
+                logger.warn("Couldn't close journal segment " + segment.file, e);
+            }
+        }
+        segments.clear();
+        pending.clear();
+    }
+
+    //**************************************************************************
+    // Attachments and archiving
+    //**************************************************************************
+
+    protected Email loadEmailQuietly(String id) throws QueueException {
+        try {
+            return loadEmail(id);
+        } catch (MailParseException e) {
+            logger.debug("Corrupted email with id " + id + " will not be archived", e);
+            return null;
+        }
+    }
+
+    protected void releaseAttachments(String id, Email email) {
+        if(email != null) {
+            attachmentStore.removeReferences(email, id);
+        }
+    }
+
+    protected void archive(String id, Email email, File directory) throws IOException {
+        attachmentStore.copyAttachments(email, RandomUtil.getCodeFile(directory, "email-{0}-attachments", id));
+        try {
+            Marshaller marshaller = jaxbContext.createMarshaller();
+            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+            marshaller.marshal(email, RandomUtil.getCodeFile(directory, "email-{0}.xml", id));
+        } catch (JAXBException e) {
+            throw new IOException("Couldn't write email " + id, e);
+        }
+    }
+
+    //**************************************************************************
+    // Record format
+    //**************************************************************************
+
+    protected byte[] encodeRecord(byte type, String id, Email email) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(email != null ? 1024 : 32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(type);
+        writeString(out, id);
+        if(email != null) {
+            writeEmail(out, email);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    protected void writeEmail(DataOutput out, Email email) throws IOException {
+        writeString(out, email.getFrom());
+        writeString(out, email.getSubject());
+        writeString(out, email.getTextBody());
+        writeString(out, email.getHtmlBody());
+        out.writeInt(email.getRecipients().size());
+        for(Recipient recipient : email.getRecipients()) {
+            out.writeByte(recipient.getType().ordinal());
+            writeString(out, recipient.getAddress());
+        }
+        out.writeInt(email.getAttachments().size());
+        for(Attachment attachment : email.getAttachments()) {
+            writeString(out, attachment.getName());
+            writeString(out, attachment.getDescription());
+            writeString(out, attachment.getDisposition());
+            writeString(out, attachment.getContentId());
+            out.writeBoolean(attachment.isEmbedded());
+            writeString(out, attachment.getFilePath());
+            writeString(out, attachment.getDigest());
+        }
+    }
+
+    protected Email readEmail(DataInput in) throws IOException {
+        Email email = new Email();
+        email.setFrom(readString(in));
+        email.setSubject(readString(in));
+        email.setTextBody(readString(in));
+        email.setHtmlBody(readString(in));
+        int recipients = in.readInt();
+        for(int i = 0; i < recipients; i++) {
+            Recipient.Type type = Recipient.Type.values()[in.readByte()];
+            email.getRecipients().add(new Recipient(type, readString(in)));
+        }
+        int attachments = in.readInt();
+        for(int i = 0; i < attachments; i++) {
+            Attachment attachment = new Attachment();
+            attachment.setName(readString(in));
+            attachment.setDescription(readString(in));
+            attachment.setDisposition(readString(in));
+            attachment.setContentId(readString(in));
+            attachment.setEmbedded(in.readBoolean());
+            attachment.setFilePath(readString(in));
+            attachment.setDigest(readString(in));
+            email.getAttachments().add(attachment);
+        }
+        return email;
+    }
+
+    protected static void writeString(DataOutput out, String string) throws IOException {
+        if(string == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    protected static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if(length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    //**************************************************************************
+    // Getters/setters
+    //**************************************************************************
+
+    public long getMaxSegmentSize() {
+        return maxSegmentSize;
+    }
+
+    public void setMaxSegmentSize(long maxSegmentSize) {
+        this.maxSegmentSize = maxSegmentSize;
+    }
+
+    public double getCompactionThreshold() {
+        return compactionThreshold;
+    }
+
+    public void setCompactionThreshold(double compactionThreshold) {
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    public boolean isSync() {
+        return sync;
+    }
+
+    /**
+     * Sets whether operations wait for their records to be forced to disk. Without sync, a crash of the operating
+     * system may lose the most recent operations.
+     */
+    public void setSync(boolean sync) {
+        this.sync = sync;
+    }
+
+    public File getJournalDirectory() {
+        return journalDirectory;
+    }
+
+    public File getSentDirectory() {
+        return sentDirectory;
+    }
+
+    public File getFailedDirectory() {
+        return failedDirectory;
+    }
+
+    public AttachmentStore getAttachmentStore() {
+        return attachmentStore;
+    }
+
+    //**************************************************************************
+    // Inner classes
+    //**************************************************************************
+
+    protected static class Segment {
+        protected final long number;
+        protected final File file;
+        protected final FileChannel channel;
+        protected long size;
+        /**
+         * Number of enqueue records in the segment.
+         */
+        protected int enqueued;
+        /**
+         * Number of enqueue records in the segment whose email is still pending.
+         */
+        protected int live;
+
+        protected Segment(long number, File file, FileChannel channel) {
+            this.number = number;
+            this.file = file;
+            this.channel = channel;
+        }
+    }
+
+    protected static class RecordLocation {
+        protected final Segment segment;
+        /**
+         * Position of the record in the segment.
+         */
+        protected final long position;
+        /**
+         * Length of the record, excluding the length prefix and the checksum.
+         */
+        protected final int length;
+
+        protected RecordLocation(Segment segment, long position, int length) {
+            this.segment = segment;
+            this.position = position;
+            this.length = length;
+        }
+    }
+}
@@ -22,6 +22,7 @@ package com.manydesigns.mail.queue;
 
 import com.manydesigns.mail.queue.model.Email;
 
+import java.io.InputStream;
 import java.util.List;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -61,6 +62,16 @@ public class LockingMailQueue implements MailQueue {
         }
     }
 
+    @Override
+    public List<String> getEnqueuedEmailIds(int maxCount) throws QueueException {
+        lock.readLock().lock();
+        try {
+            return mailQueue.getEnqueuedEmailIds(maxCount);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
     public Email loadEmail(String id) throws QueueException {
         lock.readLock().lock();
         try {
@@ -92,6 +103,16 @@ public class LockingMailQueue implements MailQueue {
         mailQueue.setKeepSent(keepSent);
     }
 
+    @Override
+    public StoredAttachment storeAttachment(InputStream content) throws QueueException {
+        return mailQueue.storeAttachment(content);
+    }
+
+    @Override
+    public void releaseAttachment(StoredAttachment attachment) throws QueueException {
+        mailQueue.releaseAttachment(attachment);
+    }
+
     public boolean isKeepSent() {
         return mailQueue.isKeepSent();
     }
@@ -22,6 +22,7 @@ package com.manydesigns.mail.queue;
 
 import com.manydesigns.mail.queue.model.Email;
 
+import java.io.InputStream;
 import java.util.List;
 
 /**
@@ -38,11 +39,34 @@ public interface MailQueue {
 
     List<String> getEnqueuedEmailIds() throws QueueException;
 
+    /**
+     * Returns the ids of at most maxCount enqueued emails, oldest first when the implementation keeps track of the
+     * order. Implementations that index the queue in memory don't need to list the whole queue.
+     */
+    default List<String> getEnqueuedEmailIds(int maxCount) throws QueueException {
+        List<String> ids = getEnqueuedEmailIds();
+        return ids.size() > maxCount ? ids.subList(0, maxCount) : ids;
+    }
+
     Email loadEmail(String id) throws QueueException;
 
     void markSent(String id) throws QueueException;
     void markFailed(String id) throws QueueException;
 
+    /**
+     * Stores the content of an attachment once, so that any number of emails can refer to it by setting
+     * {@link com.manydesigns.mail.queue.model.Attachment#setDigest(String)} instead of an input stream. The content is
+     * kept until the returned reference is released and no queued email refers to it anymore.
+     */
+    default StoredAttachment storeAttachment(InputStream content) throws QueueException {
+        throw new QueueException("This mail queue does not support stored attachments");
+    }
+
+    /**
+     * Releases a reference obtained with {@link #storeAttachment(InputStream)}.
+     */
+    default void releaseAttachment(StoredAttachment attachment) throws QueueException {}
+
 
     boolean isKeepSent();
 
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2005-2020 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.mail.queue;
+
+/**
+ * Receives notifications from a {@link NotifyingMailQueue}.
+ *
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public interface MailQueueListener {
+    public static final String copyright =
+            "Copyright (C) 2005-2020 ManyDesigns srl";
+
+    /**
+     * Called after an email has been enqueued, in the thread that enqueued it. Implementations should return quickly,
+     * typically waking up a sender.
+     * @param id the id of the new email.
+     */
+    void emailEnqueued(String id);
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2005-2020 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.mail.queue;
+
+import com.manydesigns.mail.queue.model.Email;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A mail queue that signals senders running in the same JVM when an email is enqueued, so that they don't have to
+ * wait for their next poll. Senders can either register a {@link MailQueueListener} or wait with
+ * {@link #awaitEnqueued(long, long)}.
+ *
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class NotifyingMailQueue implements MailQueue, Closeable {
+    public static final String copyright =
+            "Copyright (C) 2005-2020 ManyDesigns srl";
+
+    protected final MailQueue mailQueue;
+    protected final List<MailQueueListener> listeners = new CopyOnWriteArrayList<>();
+    protected final Object monitor = new Object();
+    protected long enqueuedCount;
+
+    public static final Logger logger = LoggerFactory.getLogger(NotifyingMailQueue.class);
+
+    public NotifyingMailQueue(MailQueue mailQueue) {
+        this.mailQueue = mailQueue;
+    }
+
+    public String enqueue(Email email) throws QueueException {
+        String id = mailQueue.enqueue(email);
+        synchronized (monitor) {
+            enqueuedCount++;
+            monitor.notifyAll();
+        }
+        for(MailQueueListener listener : listeners) {
+            try {
+                listener.emailEnqueued(id);
+            } catch (RuntimeException e) {
+                logger.warn("Mail queue listener " + listener + " failed", e);
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Returns the number of emails enqueued so far, to be passed to {@link #awaitEnqueued(long, long)}.
+     */
+    public long getEnqueuedCount() {
+        synchronized (monitor) {
+            return enqueuedCount;
+        }
+    }
+
+    /**
+     * Waits until some email is enqueued or the timeout expires.
+     * @param enqueuedCount the value of {@link #getEnqueuedCount()} read before the sender last looked at the queue.
+     *                      If other emails have been enqueued since then, this method returns immediately.
+     * @param timeout the maximum time to wait, in milliseconds.
+     * @return true if some email has been enqueued, false if the timeout expired.
+     */
+    public boolean awaitEnqueued(long enqueuedCount, long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        synchronized (monitor) {
+            long remaining = timeout;
+            while (this.enqueuedCount == enqueuedCount && remaining > 0) {
+                monitor.wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+            return this.enqueuedCount != enqueuedCount;
+        }
+    }
+
+    public void addListener(MailQueueListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(MailQueueListener listener) {
+        listeners.remove(listener);
+    }
+
+    public List<String> getEnqueuedEmailIds() throws QueueException {
+        return mailQueue.getEnqueuedEmailIds();
+    }
+
+    @Override
+    public List<String> getEnqueuedEmailIds(int maxCount) throws QueueException {
+        return mailQueue.getEnqueuedEmailIds(maxCount);
+    }
+
+    public Email loadEmail(String id) throws QueueException {
+        return mailQueue.loadEmail(id);
+    }
+
+    public void markSent(String id) throws QueueException {
+        mailQueue.markSent(id);
+    }
+
+    public void markFailed(String id) throws QueueException {
+        mailQueue.markFailed(id);
+    }
+
+    @Override
+    public StoredAttachment storeAttachment(InputStream content) throws QueueException {
+        return mailQueue.storeAttachment(content);
+    }
+
+    @Override
+    public void releaseAttachment(StoredAttachment attachment) throws QueueException {
+        mailQueue.releaseAttachment(attachment);
+    }
+
+    public boolean isKeepSent() {
+        return mailQueue.isKeepSent();
+    }
+
+    public void setKeepSent(boolean keepSent) {
+        mailQueue.setKeepSent(keepSent);
+    }
+
+    @Override
+    public void close() throws IOException {
+        listeners.clear();
+        if(mailQueue instanceof Closeable) {
+            ((Closeable) mailQueue).close();
+        }
+    }
+
+    public MailQueue getMailQueue() {
+        return mailQueue;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2005-2020 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.mail.queue;
+
+/**
+ * A reference to the content of an attachment in an {@link AttachmentStore}, obtained with
+ * {@link MailQueue#storeAttachment(java.io.InputStream)}. Emails refer to it by setting
+ * {@link com.manydesigns.mail.queue.model.Attachment#setDigest(String)}; the content is kept at least until the
+ * reference is released.
+ *
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class StoredAttachment {
+    public static final String copyright =
+            "Copyright (C) 2005-2020 ManyDesigns srl";
+
+    protected final String digest;
+    protected final long size;
+    protected boolean released;
+
+    public StoredAttachment(String digest, long size) {
+        this.digest = digest;
+        this.size = size;
+    }
+
+    public String getDigest() {
+        return digest;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public boolean isReleased() {
+        return released;
+    }
+
+    @Override
+    public String toString() {
+        return "StoredAttachment{" + digest + "}";
+    }
+}
@@ -30,7 +30,7 @@ import java.io.InputStream;
  * @author Alessio Stalla       - alessio.stalla@manydesigns.com
  */
 @XmlAccessorType(XmlAccessType.NONE)
-@XmlType(propOrder = {"name","description","disposition","contentId","embedded","filePath"})
+@XmlType(propOrder = {"name","description","disposition","contentId","embedded","filePath","digest"})
 public class Attachment {
     public static final String copyright =
             "Copyright (C) 2005-2020 ManyDesigns srl";
@@ -44,6 +44,7 @@ public class Attachment {
 
     protected InputStream inputStream;
     protected String filePath;
+    protected String digest;
 
     public Attachment() {}
 
@@ -109,4 +110,18 @@ public class Attachment {
     public void setFilePath(String filePath) {
         this.filePath = filePath;
     }
+
+    /**
+     * The digest of the content of the attachment in the store of the mail queue. When enqueueing an email, it can be
+     * set instead of the input stream to refer to content already stored with
+     * {@link com.manydesigns.mail.queue.MailQueue#storeAttachment(InputStream)}.
+     */
+    @XmlAttribute
+    public String getDigest() {
+        return digest;
+    }
+
+    public void setDigest(String digest) {
+        this.digest = digest;
+    }
 }
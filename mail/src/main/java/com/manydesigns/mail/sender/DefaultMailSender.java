@@ -58,6 +58,10 @@ public class DefaultMailSender implements MailSender {
     protected boolean tls = false;
     protected String login;
     protected String password;
+    /**
+     * Maximum number of emails sent by each run.
+     */
+    protected int batchSize = Integer.MAX_VALUE;
 
     public static final Logger logger = LoggerFactory.getLogger(DefaultMailSender.class);
 
@@ -68,7 +72,7 @@ public class DefaultMailSender implements MailSender {
     public int runOnce(Set<String> idsToMarkAsSent) {
         List<String> ids;
         try {
-            ids = queue.getEnqueuedEmailIds();
+            ids = queue.getEnqueuedEmailIds(batchSize);
         } catch (Throwable e) {
             logger.error("Couldn't read email queue", e);
             return -1;
@@ -258,6 +262,14 @@ public class DefaultMailSender implements MailSender {
         this.login = login;
     }
 
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
     public String getPassword() {
         return password;
     }
@@ -20,6 +20,7 @@
 
 package com.manydesigns.mail.sender;
 
+import com.manydesigns.mail.queue.NotifyingMailQueue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,14 +38,24 @@ public class MailSenderRunnable implements Runnable {
             "Copyright (C) 2005-2020 ManyDesigns srl";
 
     protected final MailSender sender;
+    /**
+     * If not null, the queue used by the sender, which wakes it up when an email is enqueued. In that case, the poll
+     * interval is only a safety net, e.g. for emails enqueued by other processes.
+     */
+    protected final NotifyingMailQueue queue;
 
-    protected boolean alive;
+    protected volatile boolean alive;
     protected long pollInterval = 1000;
 
     public static final Logger logger = LoggerFactory.getLogger(MailSenderRunnable.class);
 
     public MailSenderRunnable(MailSender sender) {
+        this(sender, null);
+    }
+
+    public MailSenderRunnable(MailSender sender, NotifyingMailQueue queue) {
         this.sender = sender;
+        this.queue = queue;
     }
 
     public void run() {
@@ -62,6 +73,8 @@ public class MailSenderRunnable implements Runnable {
         byte pollIntervalMultiplier = 1;
         while (alive) {
             long now = System.currentTimeMillis();
+            //Read before looking at the queue, so that emails enqueued while sending are not missed
+            long enqueuedCount = queue != null ? queue.getEnqueuedCount() : 0;
             int serverErrors = sender.runOnce(idsToMarkAsSent);
             if(serverErrors < 0) {
                 continue;
@@ -77,8 +90,14 @@ public class MailSenderRunnable implements Runnable {
             }
             long sleep = pollInterval * pollIntervalMultiplier - (System.currentTimeMillis() - now);
             if(sleep > 0) {
-                logger.debug("Sleeping for {}ms", sleep);
-                Thread.sleep(sleep);
+                if(queue != null && pollIntervalMultiplier == 1) {
+                    logger.debug("Waiting for new emails for at most {}ms", sleep);
+                    queue.awaitEnqueued(enqueuedCount, sleep);
+                } else {
+                    //Don't retry as soon as an email is enqueued if the server is failing
+                    logger.debug("Sleeping for {}ms", sleep);
+                    Thread.sleep(sleep);
+                }
             }
         }
     }
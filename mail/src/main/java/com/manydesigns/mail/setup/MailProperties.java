@@ -39,6 +39,13 @@ public class MailProperties {
     public static final String MAIL_SMTP_PASSWORD = "mail.smtp.password";
     public static final String MAIL_KEEP_SENT = "mail.keep.sent";
     public static final String MAIL_QUEUE_LOCATION = "mail.queue.location";
+    /**
+     * The storage of the queue: "filesystem" (a file per email, the default) or "journal".
+     */
+    public static final String MAIL_QUEUE_TYPE = "mail.queue.type";
+    public static final String MAIL_QUEUE_JOURNAL_SYNC = "mail.queue.journal.sync";
+    public static final String MAIL_QUEUE_JOURNAL_SEGMENT_SIZE = "mail.queue.journal.segment.size";
+    public static final String MAIL_SENDER_BATCH_SIZE = "mail.sender.batch.size";
 
     public static final String MAIL_SENDER_POLL_INTERVAL = "mail.sender.poll.interval";
     public static final String MAIL_SENDER_SERVER_URL = "mail.sender.server_url";
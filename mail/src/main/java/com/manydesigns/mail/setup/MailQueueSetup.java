@@ -21,15 +21,20 @@
 package com.manydesigns.mail.setup;
 
 import com.manydesigns.mail.queue.FileSystemMailQueue;
+import com.manydesigns.mail.queue.JournalMailQueue;
 import com.manydesigns.mail.queue.LockingMailQueue;
 import com.manydesigns.mail.queue.MailQueue;
+import com.manydesigns.mail.queue.NotifyingMailQueue;
+import com.manydesigns.mail.queue.QueueException;
 import com.manydesigns.mail.sender.DefaultMailSender;
 import com.manydesigns.mail.sender.MailSender;
 import org.apache.commons.configuration2.Configuration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.File;
+import java.io.IOException;
 
 /**
  * Performs standard setup using a Configuration.
@@ -59,8 +64,8 @@ public class MailQueueSetup {
             String mailQueueLocation = mailConfiguration.getString(MailProperties.MAIL_QUEUE_LOCATION);
             boolean keepSent = mailConfiguration.getBoolean(MailProperties.MAIL_KEEP_SENT, false);
             logger.info("Mail queue location: {}", mailQueueLocation);
-            //TODO rendere configurabile
-            mailQueue = new LockingMailQueue(new FileSystemMailQueue(new File(mailQueueLocation)));
+            //Senders in this JVM are woken up as soon as an email is enqueued
+            mailQueue = new NotifyingMailQueue(createMailQueue(new File(mailQueueLocation)));
             mailQueue.setKeepSent(keepSent);
             String mailHost = mailConfiguration.getString(MailProperties.MAIL_SMTP_HOST);
             if (null == mailHost) {
@@ -78,7 +83,10 @@ public class MailQueueSetup {
                 String password = mailConfiguration.getString(
                         MailProperties.MAIL_SMTP_PASSWORD);
                 
-                mailSender = new DefaultMailSender(mailQueue);
+                DefaultMailSender defaultMailSender = new DefaultMailSender(mailQueue);
+                defaultMailSender.setBatchSize(
+                        mailConfiguration.getInt(MailProperties.MAIL_SENDER_BATCH_SIZE, Integer.MAX_VALUE));
+                mailSender = defaultMailSender;
                 mailSender.setServer(mailHost);
                 mailSender.setLogin(login);
                 mailSender.setPassword(password);
@@ -93,6 +101,41 @@ public class MailQueueSetup {
         }
     }
 
+    protected MailQueue createMailQueue(File location) {
+        String type = mailConfiguration.getString(MailProperties.MAIL_QUEUE_TYPE, "filesystem");
+        if("journal".equalsIgnoreCase(type)) {
+            logger.info("Using journal mail queue");
+            try {
+                JournalMailQueue journalMailQueue = new JournalMailQueue(location);
+                journalMailQueue.setSync(mailConfiguration.getBoolean(MailProperties.MAIL_QUEUE_JOURNAL_SYNC, true));
+                journalMailQueue.setMaxSegmentSize(mailConfiguration.getLong(
+                        MailProperties.MAIL_QUEUE_JOURNAL_SEGMENT_SIZE, JournalMailQueue.DEFAULT_MAX_SEGMENT_SIZE));
+                //The journal queue is thread safe by itself
+                return journalMailQueue;
+            } catch (QueueException e) {
+                throw new RuntimeException("Couldn't open mail queue in " + location.getAbsolutePath(), e);
+            }
+        } else {
+            if(!"filesystem".equalsIgnoreCase(type)) {
+                logger.warn("Unknown mail queue type {}, using filesystem", type);
+            }
+            return new LockingMailQueue(new FileSystemMailQueue(location));
+        }
+    }
+
+    /**
+     * Releases the resources held by the mail queue.
+     */
+    public void destroy() {
+        if(mailQueue instanceof Closeable) {
+            try {
+                ((Closeable) mailQueue).close();
+            } catch (IOException e) {
+                logger.warn("Couldn't close mail queue", e);
+            }
+        }
+    }
+
     public MailQueue getMailQueue() {
         return mailQueue;
     }
@@ -0,0 +1,124 @@
+package com.manydesigns.mail.queue;
+
+import com.manydesigns.mail.queue.model.Attachment;
+import com.manydesigns.mail.queue.model.Email;
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+public class AttachmentStoreTest {
+
+    protected File directory;
+
+    @BeforeMethod
+    public void createDirectory() throws Exception {
+        directory = Files.createTempDirectory("mail-queue").toFile();
+    }
+
+    @AfterMethod
+    public void deleteDirectory() throws Exception {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void testFileSystemQueueSharesAttachments() throws Exception {
+        FileSystemMailQueue queue = new FileSystemMailQueue(directory);
+        testSharedAttachments(queue, queue.getAttachmentStore(), queue.getSentDirectory());
+    }
+
+    @Test
+    public void testJournalQueueSharesAttachments() throws Exception {
+        JournalMailQueue queue = new JournalMailQueue(directory);
+        testSharedAttachments(queue, queue.getAttachmentStore(), queue.getSentDirectory());
+        queue.close();
+    }
+
+    protected void testSharedAttachments(MailQueue queue, AttachmentStore store, File sentDirectory) throws Exception {
+        StoredAttachment stored = queue.storeAttachment(content("campaign"));
+        File content = store.getContentFile(stored.getDigest());
+        assertTrue(content.isFile());
+        assertEquals(stored.getSize(), 8);
+
+        List<String> ids = new ArrayList<>();
+        for(int i = 0; i < 10; i++) {
+            Email email = JournalMailQueueTest.email("email " + i);
+            Attachment attachment = new Attachment();
+            attachment.setName("campaign.txt");
+            attachment.setDigest(stored.getDigest());
+            email.getAttachments().add(attachment);
+            ids.add(queue.enqueue(email));
+        }
+        //Same content passed as a stream is deduplicated as well
+        Email email = JournalMailQueueTest.email("streamed");
+        Attachment attachment = new Attachment();
+        attachment.setName("campaign.txt");
+        attachment.setInputStream(content("campaign"));
+        email.getAttachments().add(attachment);
+        ids.add(queue.enqueue(email));
+        assertEquals(store.getReferenceCount(stored.getDigest()), 12);
+
+        Email loaded = queue.loadEmail(ids.get(0));
+        assertEquals(loaded.getAttachments().get(0).getFilePath(), content.getAbsolutePath());
+
+        for(String id : ids) {
+            queue.markSent(id);
+        }
+        //Still pinned by the application
+        assertTrue(content.isFile());
+        queue.releaseAttachment(stored);
+        assertFalse(content.exists());
+
+        queue.setKeepSent(true);
+        attachment = new Attachment();
+        attachment.setName("kept.txt");
+        attachment.setInputStream(content("kept"));
+        email = JournalMailQueueTest.email("kept");
+        email.getAttachments().add(attachment);
+        String id = queue.enqueue(email);
+        queue.markSent(id);
+        assertFalse(store.contains(attachment.getDigest()));
+        File archived = new File(sentDirectory, "email-" + id + "-attachments/" + attachment.getDigest() + ".bin");
+        assertEquals(FileUtils.readFileToString(archived, StandardCharsets.UTF_8), "kept");
+
+        Attachment missing = new Attachment();
+        missing.setName("missing.txt");
+        missing.setDigest(stored.getDigest());
+        email = JournalMailQueueTest.email("missing");
+        email.getAttachments().add(missing);
+        try {
+            queue.enqueue(email);
+            fail("Enqueued an email referring to a released attachment");
+        } catch (QueueException e) {
+            //Expected
+        }
+    }
+
+    @Test
+    public void testReferencesOfDequeuedEmailsAreCollected() throws Exception {
+        AttachmentStore store = new AttachmentStore(directory);
+        Attachment attachment = new Attachment();
+        attachment.setInputStream(content("content"));
+        store.addReference(attachment, "queued");
+        store.addReference(attachment, "sent");
+        assertEquals(store.getReferenceCount(attachment.getDigest()), 2);
+        assertEquals(store.collectGarbage("queued"::equals), 0);
+        assertEquals(store.getReferenceCount(attachment.getDigest()), 1);
+        assertEquals(store.collectGarbage(id -> false), 1);
+        assertFalse(store.contains(attachment.getDigest()));
+    }
+
+    protected static ByteArrayInputStream content(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
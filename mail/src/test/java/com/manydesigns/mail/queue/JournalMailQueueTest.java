@@ -0,0 +1,190 @@
+package com.manydesigns.mail.queue;
+
+import com.manydesigns.mail.queue.model.Attachment;
+import com.manydesigns.mail.queue.model.Email;
+import com.manydesigns.mail.queue.model.Recipient;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.SkipException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+public class JournalMailQueueTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(JournalMailQueueTest.class);
+
+    protected File directory;
+
+    @BeforeMethod
+    public void createDirectory() throws Exception {
+        directory = Files.createTempDirectory("mail-queue").toFile();
+    }
+
+    @AfterMethod
+    public void deleteDirectory() throws Exception {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void testEnqueueLoadAndMark() throws Exception {
+        JournalMailQueue queue = new JournalMailQueue(directory);
+        Email email = email("first");
+        Attachment attachment = new Attachment();
+        attachment.setName("attachment.txt");
+        attachment.setInputStream(new ByteArrayInputStream("content".getBytes(StandardCharsets.UTF_8)));
+        email.getAttachments().add(attachment);
+        String id1 = queue.enqueue(email);
+        String id2 = queue.enqueue(email("second"));
+        String id3 = queue.enqueue(email("third"));
+        assertEquals(queue.getEnqueuedEmailIds(), asList(id1, id2, id3));
+        assertEquals(queue.getEnqueuedEmailIds(2), asList(id1, id2));
+
+        Email loaded = queue.loadEmail(id1);
+        assertEquals(loaded.getSubject(), "first");
+        assertEquals(loaded.getRecipients().get(1).getType(), Recipient.Type.CC);
+        assertEquals(loaded.getRecipients().get(1).getAddress(), "cc@example.com");
+        assertNull(loaded.getHtmlBody());
+        File attachmentFile = new File(loaded.getAttachments().get(0).getFilePath());
+        assertEquals(FileUtils.readFileToString(attachmentFile, StandardCharsets.UTF_8), "content");
+
+        queue.markSent(id1);
+        queue.markFailed(id2);
+        assertFalse(attachmentFile.exists());
+        assertNull(queue.loadEmail(id1));
+        assertTrue(new File(queue.getFailedDirectory(), "email-" + id2 + ".xml").exists());
+        queue.close();
+
+        queue = new JournalMailQueue(directory);
+        assertEquals(queue.getEnqueuedEmailIds(), asList(id3));
+        assertEquals(queue.loadEmail(id3).getTextBody(), "Body of third");
+        queue.close();
+    }
+
+    @Test
+    public void testIncompleteRecordIsDiscarded() throws Exception {
+        JournalMailQueue queue = new JournalMailQueue(directory);
+        String id = queue.enqueue(email("first"));
+        queue.enqueue(email("second"));
+        queue.close();
+
+        File segment = queue.getJournalDirectory().listFiles()[0];
+        try(RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.setLength(file.length() - 3);
+        }
+        queue = new JournalMailQueue(directory);
+        assertEquals(queue.getEnqueuedEmailIds(), asList(id));
+        String id3 = queue.enqueue(email("third"));
+        queue.close();
+
+        queue = new JournalMailQueue(directory);
+        assertEquals(queue.getEnqueuedEmailIds(), asList(id, id3));
+        queue.close();
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        JournalMailQueue queue = new JournalMailQueue(directory);
+        queue.setMaxSegmentSize(1024);
+        String kept = queue.enqueue(email("kept"));
+        for(int i = 0; i < 50; i++) {
+            queue.markSent(queue.enqueue(email("sent " + i)));
+        }
+        int segments = queue.getJournalDirectory().list().length;
+        assertTrue(segments < 5, segments + " segments");
+        assertEquals(queue.loadEmail(kept).getSubject(), "kept");
+        queue.compact();
+        queue.close();
+
+        queue = new JournalMailQueue(directory);
+        assertEquals(queue.getEnqueuedEmailIds(), asList(kept));
+        assertEquals(queue.loadEmail(kept).getSubject(), "kept");
+        queue.close();
+    }
+
+    @Test
+    public void testSegmentsWithOnlySentRecordsAreDeleted() throws Exception {
+        JournalMailQueue queue = new JournalMailQueue(directory);
+        queue.setMaxSegmentSize(1024);
+        List<String> ids = new java.util.ArrayList<>();
+        for(int i = 0; i < 40; i++) {
+            ids.add(queue.enqueue(email("email " + i)));
+        }
+        List<String> enqueueSegments = asList(queue.getJournalDirectory().list());
+        //Latest first, so that the first segment is not compacted until the end, and the sent records fill
+        //segments on their own in the meantime
+        java.util.Collections.reverse(ids);
+        for(String id : ids) {
+            queue.markSent(id);
+        }
+        //All the segments but the active one must be gone, including those with only sent records
+        String[] segments = queue.getJournalDirectory().list();
+        assertEquals(segments.length, 1, java.util.Arrays.toString(segments));
+        assertFalse(enqueueSegments.contains(segments[0]));
+        queue.close();
+
+        queue = new JournalMailQueue(directory);
+        assertTrue(queue.getEnqueuedEmailIds().isEmpty());
+        queue.close();
+    }
+
+    /**
+     * Compares the time needed to enqueue, list and send emails with the journal and with a file per email.
+     * Skipped unless run with e.g. -Dmail.queue.benchmark.size=100000.
+     */
+    @Test
+    public void benchmark() throws Exception {
+        Integer size = Integer.getInteger("mail.queue.benchmark.size");
+        if(size == null) {
+            throw new SkipException("Benchmark; run with -Dmail.queue.benchmark.size=<number of emails>");
+        }
+        JournalMailQueue journalMailQueue = new JournalMailQueue(new File(directory, "journal-queue"));
+        benchmark("journal", journalMailQueue, size);
+        journalMailQueue.close();
+        benchmark("file system", new FileSystemMailQueue(new File(directory, "fs-queue")), size);
+    }
+
+    protected void benchmark(String name, MailQueue queue, int size) throws Exception {
+        long start = System.nanoTime();
+        for(int i = 0; i < size; i++) {
+            queue.enqueue(email("email " + i));
+        }
+        long enqueued = System.nanoTime();
+        List<String> ids = queue.getEnqueuedEmailIds();
+        long listed = System.nanoTime();
+        assertEquals(ids.size(), size);
+        for(String id : ids) {
+            assertNotNull(queue.loadEmail(id));
+            queue.markSent(id);
+        }
+        long sent = System.nanoTime();
+        assertTrue(queue.getEnqueuedEmailIds().isEmpty());
+        logger.info("{} queue, {} emails: enqueue {}ms, list {}ms, load and mark sent {}ms", name, size,
+                (enqueued - start) / 1000000, (listed - enqueued) / 1000000, (sent - listed) / 1000000);
+    }
+
+    protected static List<String> asList(String... ids) {
+        return java.util.Arrays.asList(ids);
+    }
+
+    protected static Email email(String subject) {
+        Email email = new Email();
+        email.setFrom("sender@example.com");
+        email.setSubject(subject);
+        email.setTextBody("Body of " + subject);
+        email.getRecipients().add(new Recipient(Recipient.Type.TO, "to@example.com"));
+        email.getRecipients().add(new Recipient(Recipient.Type.CC, "cc@example.com"));
+        return email;
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.manydesigns.mail.queue;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.testng.Assert.*;
+
+public class NotifyingMailQueueTest {
+
+    protected File directory;
+
+    @BeforeMethod
+    public void createDirectory() throws Exception {
+        directory = Files.createTempDirectory("mail-queue").toFile();
+    }
+
+    @AfterMethod
+    public void deleteDirectory() throws Exception {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void testSendersAreWokenUpOnEnqueue() throws Exception {
+        NotifyingMailQueue queue = new NotifyingMailQueue(new JournalMailQueue(directory));
+        List<String> notified = new CopyOnWriteArrayList<>();
+        queue.addListener(notified::add);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            long enqueuedCount = queue.getEnqueuedCount();
+            assertFalse(queue.awaitEnqueued(enqueuedCount, 10));
+            Future<Boolean> woken = executor.submit(() -> queue.awaitEnqueued(enqueuedCount, 60000));
+            Thread.sleep(100);
+            String id = queue.enqueue(JournalMailQueueTest.email("first"));
+            assertTrue(woken.get(10, TimeUnit.SECONDS));
+            assertEquals(notified.size(), 1);
+            assertEquals(notified.get(0), id);
+            //An email enqueued before waiting is not missed
+            assertTrue(queue.awaitEnqueued(enqueuedCount, 60000));
+        } finally {
+            executor.shutdownNow();
+            queue.close();
+        }
+    }
+
+}
@@ -1,6 +1,7 @@
 package com.manydesigns.portofino.microservices.launcher;
 
 import org.apache.catalina.LifecycleException;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 
 import java.io.*;
@@ -10,14 +11,48 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
-import java.util.ArrayList;
-import java.util.Enumeration;
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
+/**
+ * Launches the war file it's packaged in with an embedded Tomcat.<br>
+ * The war is extracted, together with the Tomcat libraries in WEB-INF/lib-provided, into a cache directory named
+ * after a checksum of the war's contents, computed from the CRCs in its table of contents. Restarts of the same war
+ * reuse the extracted files; a new war is extracted in parallel, in a temporary directory that is renamed when
+ * complete, and the caches of older wars are deleted, except for the most recently used ones.<br>
+ * Note that the application runs from the extracted directory, so files it writes in its own directory are kept
+ * across restarts, as with a regular Tomcat deployment.<br>
+ * System properties:
+ * <ul>
+ *     <li>{@value #CACHE_DIRECTORY_PROPERTY}: the cache directory, by default portofino-launcher in the system's
+ *     temporary directory;</li>
+ *     <li>{@value #CACHE_KEEP_PROPERTY}: how many extracted wars to keep, including the current one (default
+ *     {@value #DEFAULT_CACHE_KEEP}).</li>
+ * </ul>
+ */
 public class WarFileLauncher {
 
+    public static final String CACHE_DIRECTORY_PROPERTY = "portofino.launcher.cache.directory";
+    public static final String CACHE_KEEP_PROPERTY = "portofino.launcher.cache.keep";
+    public static final int DEFAULT_CACHE_KEEP = 2;
+    public static final String WAR_DIRECTORY = "war";
+    public static final String TOMCAT_LIBS_DIRECTORY = "tomcat-libs";
+    protected static final String EXTRACTED_PREFIX = "war-";
+    protected static final String TEMP_SUFFIX = ".tmp";
+    protected static final long STALE_TEMP_DIRECTORY_AGE = 60 * 60 * 1000;
+    protected static final String LIB_PROVIDED = "WEB-INF/lib-provided/";
+
     public static void main (String[] args) throws URISyntaxException, IOException, LifecycleException, ClassNotFoundException, NoSuchMethodException, InvocationTargetException, IllegalAccessException {
         URI uri = WarFileLauncher.class.getProtectionDomain().getCodeSource().getLocation().toURI();
         String pathFromUri;
@@ -37,23 +72,163 @@ public class WarFileLauncher {
             System.exit(1);
         }
         int port = 8080;
-        File tempDir = createTempDir(port);
-        JarFile jarFile = new JarFile(warFile);
-        Enumeration<JarEntry> entries = jarFile.entries();
+        File cacheDir = getCacheDir();
+        File extractedDir;
+        try(JarFile jarFile = new JarFile(warFile)) {
+            extractedDir = extract(jarFile, cacheDir);
+        }
+        deleteStaleCaches(cacheDir, extractedDir, Integer.getInteger(CACHE_KEEP_PROPERTY, DEFAULT_CACHE_KEEP));
+        File tempDir = createTempDir(cacheDir, port);
+
         List<URL> tomcatLibs = new ArrayList<>();
-        File tomcatLibDir = new File(tempDir, "tomcat-libs");
-        tomcatLibDir.mkdir();
+        File tomcatLibDir = new File(extractedDir, TOMCAT_LIBS_DIRECTORY);
+        File[] jars = tomcatLibDir.listFiles((dir, name) -> name.endsWith(".jar"));
+        if(jars != null) {
+            for(File jar : jars) {
+                tomcatLibs.add(jar.toURI().toURL());
+            }
+        }
+        tomcatLibs.add(tomcatLibDir.toURI().toURL());
+        URLClassLoader tomcatClassLoader = new URLClassLoader(tomcatLibs.toArray(new URL[0]));
+
+        Class<?> launcherClass = tomcatClassLoader.loadClass(TomcatLauncher.class.getName());
+        Method launcherMethod = launcherClass.getMethod("launch", File.class, String.class, Integer.TYPE);
+        launcherMethod.invoke(null, tempDir, new File(extractedDir, WAR_DIRECTORY).getAbsolutePath(), port);
+    }
+
+    public static File getCacheDir() {
+        String path = System.getProperty(CACHE_DIRECTORY_PROPERTY);
+        return path != null ? new File(path) : new File(System.getProperty("java.io.tmpdir"), "portofino-launcher");
+    }
+
+    /**
+     * Returns the directory where the given war is extracted, extracting it if it's not in the cache.
+     */
+    public static File extract(JarFile jarFile, File cacheDir) throws IOException {
+        File extractedDir = new File(cacheDir, EXTRACTED_PREFIX + computeChecksum(jarFile));
+        if(extractedDir.isDirectory()) {
+            extractedDir.setLastModified(System.currentTimeMillis());
+            return extractedDir;
+        }
+        long start = System.currentTimeMillis();
+        File tempDir = new File(cacheDir, extractedDir.getName() + "." + UUID.randomUUID() + TEMP_SUFFIX);
+        try {
+            extractEntries(jarFile, tempDir);
+            try {
+                Files.move(tempDir.toPath(), extractedDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException | AtomicMoveNotSupportedException e) {
+                if(!extractedDir.isDirectory()) {
+                    throw e;
+                }
+                //Another instance extracted the same war in the meantime
+            }
+        } finally {
+            if(tempDir.exists()) {
+                FileUtils.deleteQuietly(tempDir);
+            }
+        }
+        System.err.println(
+                "Extracted " + jarFile.getName() + " to " + extractedDir + " in " +
+                (System.currentTimeMillis() - start) + " ms");
+        return extractedDir;
+    }
+
+    /**
+     * Computes a checksum of the contents of the war from its table of contents, without reading the entries.
+     */
+    public static String computeChecksum(JarFile jarFile) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        Enumeration<JarEntry> entries = jarFile.entries();
         while(entries.hasMoreElements()) {
             JarEntry entry = entries.nextElement();
-            if(entry.getName().startsWith("WEB-INF/lib-provided") && entry.getName().endsWith(".jar")) {
-                File outFile = new File(tomcatLibDir, entry.getName().substring("WEB-INF/lib-provided/".length()));
-                try(InputStream in = jarFile.getInputStream(entry);
-                    OutputStream out = new FileOutputStream(outFile)) {
-                    IOUtils.copy(in, out);
+            digest.update(entry.getName().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update((entry.getCrc() + ":" + entry.getSize() + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        StringBuilder sb = new StringBuilder();
+        byte[] hash = digest.digest();
+        for(int i = 0; i < 16; i++) {
+            sb.append(String.format("%02x", hash[i]));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Extracts the war and its Tomcat libraries into the given directory, using a thread per processor.
+     */
+    protected static void extractEntries(JarFile jarFile, File targetDir) throws IOException {
+        File warDir = new File(targetDir, WAR_DIRECTORY);
+        File tomcatLibDir = new File(targetDir, TOMCAT_LIBS_DIRECTORY);
+        Map<File, JarEntry> files = new LinkedHashMap<>();
+        Set<File> directories = new HashSet<>();
+        directories.add(warDir);
+        directories.add(tomcatLibDir);
+        Enumeration<JarEntry> entries = jarFile.entries();
+        while(entries.hasMoreElements()) {
+            JarEntry entry = entries.nextElement();
+            String name = entry.getName();
+            File outFile = resolve(warDir, name);
+            if(entry.isDirectory()) {
+                if(!name.startsWith(LIB_PROVIDED)) {
+                    directories.add(outFile);
+                }
+                continue;
+            }
+            if(name.startsWith(LIB_PROVIDED)) {
+                //Provided libraries are only needed by Tomcat, not by the web application
+                if(name.endsWith(".jar") && name.indexOf('/', LIB_PROVIDED.length()) < 0) {
+                    files.put(new File(tomcatLibDir, name.substring(LIB_PROVIDED.length())), entry);
                 }
-                tomcatLibs.add(outFile.toURI().toURL());
+            } else {
+                files.put(outFile, entry);
+                directories.add(outFile.getParentFile());
+            }
+        }
+        for(File directory : directories) {
+            if(!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Could not create " + directory);
+            }
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for(Map.Entry<File, JarEntry> file : files.entrySet()) {
+                futures.add(executor.submit(() -> {
+                    try(InputStream in = jarFile.getInputStream(file.getValue());
+                        OutputStream out = new BufferedOutputStream(new FileOutputStream(file.getKey()))) {
+                        IOUtils.copy(in, out);
+                    }
+                    return null;
+                }));
+            }
+            for(Future<?> future : futures) {
+                future.get();
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Extraction interrupted");
+        } catch (java.util.concurrent.ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
         }
+        copyTomcatLauncher(tomcatLibDir);
+    }
+
+    protected static File resolve(File directory, String entryName) throws IOException {
+        File file = new File(directory, entryName);
+        if(!file.getCanonicalPath().startsWith(directory.getCanonicalPath() + File.separator)) {
+            throw new IOException("Invalid entry in war file: " + entryName);
+        }
+        return file;
+    }
+
+    protected static void copyTomcatLauncher(File tomcatLibDir) throws IOException {
         File pkgFile = tomcatLibDir;
         String packageName = TomcatLauncher.class.getPackage().getName();
         for(String pkg : packageName.split("\\.")) {
@@ -65,22 +240,46 @@ public class WarFileLauncher {
             OutputStream out = new FileOutputStream(outFile)) {
             IOUtils.copy(in, out);
         }
-        tomcatLibs.add(tomcatLibDir.toURI().toURL());
-        URLClassLoader tomcatClassLoader = new URLClassLoader(tomcatLibs.toArray(new URL[0]));
+    }
 
-        Class<?> launcherClass = tomcatClassLoader.loadClass(TomcatLauncher.class.getName());
-        Method launcherMethod = launcherClass.getMethod("launch", File.class, String.class, Integer.TYPE);
-        launcherMethod.invoke(null, tempDir, warPath, port);
+    /**
+     * Deletes the least recently used extracted wars, keeping the current one, and the leftovers of interrupted
+     * extractions.
+     */
+    public static void deleteStaleCaches(File cacheDir, File current, int keep) {
+        File[] extracted = cacheDir.listFiles((dir, name) -> name.startsWith(EXTRACTED_PREFIX));
+        if(extracted == null) {
+            return;
+        }
+        List<File> caches = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for(File file : extracted) {
+            if(file.getName().endsWith(TEMP_SUFFIX)) {
+                if(now - file.lastModified() > STALE_TEMP_DIRECTORY_AGE) {
+                    FileUtils.deleteQuietly(file);
+                }
+            } else if(!file.equals(current)) {
+                caches.add(file);
+            }
+        }
+        caches.sort(Comparator.comparingLong(File::lastModified).reversed());
+        for(File stale : caches.subList(Math.min(caches.size(), Math.max(0, keep - 1)), caches.size())) {
+            System.err.println("Deleting stale extracted war " + stale);
+            FileUtils.deleteQuietly(stale);
+        }
     }
 
     /**
-     * Returns the absolute path to the temp directory.
+     * Returns Tomcat's base directory for the given port, emptied of the files of the previous run.
      */
-    public static File createTempDir(int port) throws IOException {
-        File tempDir = File.createTempFile("portofino.tomcat.", "." + port);
-        tempDir.delete();
-        tempDir.mkdir();
-        tempDir.deleteOnExit();
+    public static File createTempDir(File cacheDir, int port) throws IOException {
+        File tempDir = new File(cacheDir, "tomcat." + port);
+        if(tempDir.exists()) {
+            FileUtils.deleteDirectory(tempDir);
+        }
+        if(!tempDir.mkdirs()) {
+            throw new IOException("Could not create " + tempDir);
+        }
         return tempDir;
     }
 
@@ -0,0 +1,131 @@
+package com.manydesigns.portofino.microservices.launcher;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+import static org.testng.Assert.*;
+
+public class WarFileLauncherTest {
+
+    protected File directory;
+    protected File cacheDir;
+
+    @BeforeMethod
+    public void createDirectory() throws Exception {
+        directory = Files.createTempDirectory("launcher").toFile();
+        cacheDir = new File(directory, "cache");
+    }
+
+    @AfterMethod
+    public void deleteDirectory() throws Exception {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void testExtractionIsCached() throws Exception {
+        File war = war("first.war", "<html>first</html>");
+        File extracted;
+        try(JarFile jarFile = new JarFile(war)) {
+            extracted = WarFileLauncher.extract(jarFile, cacheDir);
+        }
+        assertEquals(read(new File(extracted, "war/index.html")), "<html>first</html>");
+        assertTrue(new File(extracted, "war/WEB-INF/web.xml").isFile());
+        assertFalse(new File(extracted, "war/WEB-INF/lib-provided").exists());
+        assertTrue(new File(extracted, "tomcat-libs/tomcat.jar").isFile());
+        assertTrue(new File(extracted,
+                "tomcat-libs/com/manydesigns/portofino/microservices/launcher/TomcatLauncher.class").isFile());
+
+        //Hit: the same contents, even in another file, are not extracted again
+        File marker = new File(extracted, "war/marker.txt");
+        FileUtils.write(marker, "written by the application", StandardCharsets.UTF_8);
+        File copy = war("copy.war", "<html>first</html>");
+        try(JarFile jarFile = new JarFile(copy)) {
+            assertEquals(WarFileLauncher.extract(jarFile, cacheDir), extracted);
+        }
+        assertTrue(marker.exists());
+
+        //Miss: different contents are extracted in their own directory
+        File other = war("other.war", "<html>other</html>");
+        File otherExtracted;
+        try(JarFile jarFile = new JarFile(other)) {
+            otherExtracted = WarFileLauncher.extract(jarFile, cacheDir);
+        }
+        assertNotEquals(otherExtracted, extracted);
+        assertEquals(read(new File(otherExtracted, "war/index.html")), "<html>other</html>");
+        assertEquals(read(new File(extracted, "war/index.html")), "<html>first</html>");
+        String[] leftovers = cacheDir.list((dir, name) -> name.endsWith(WarFileLauncher.TEMP_SUFFIX));
+        assertEquals(leftovers.length, 0);
+    }
+
+    @Test
+    public void testChecksum() throws Exception {
+        try(JarFile first = new JarFile(war("first.war", "first"));
+            JarFile copy = new JarFile(war("copy.war", "first"));
+            JarFile other = new JarFile(war("other.war", "other"))) {
+            assertEquals(WarFileLauncher.computeChecksum(first), WarFileLauncher.computeChecksum(copy));
+            assertNotEquals(WarFileLauncher.computeChecksum(first), WarFileLauncher.computeChecksum(other));
+        }
+    }
+
+    @Test
+    public void testStaleCachesAreDeleted() throws Exception {
+        long now = System.currentTimeMillis();
+        File oldest = cache("war-oldest", now - 30000);
+        File recent = cache("war-recent", now - 20000);
+        File current = cache("war-current", now - 40000);
+        File staleTemp = cache("war-failed.1234" + WarFileLauncher.TEMP_SUFFIX, now - 2 * 60 * 60 * 1000);
+        File activeTemp = cache("war-extracting.5678" + WarFileLauncher.TEMP_SUFFIX, now);
+        File unrelated = cache("tomcat.8080", now - 50000);
+
+        WarFileLauncher.deleteStaleCaches(cacheDir, current, 2);
+        assertTrue(current.exists());
+        assertTrue(recent.exists());
+        assertFalse(oldest.exists());
+        assertFalse(staleTemp.exists());
+        assertTrue(activeTemp.exists());
+        assertTrue(unrelated.exists());
+
+        WarFileLauncher.deleteStaleCaches(cacheDir, current, 1);
+        assertTrue(current.exists());
+        assertFalse(recent.exists());
+    }
+
+    protected File war(String name, String index) throws IOException {
+        File war = new File(directory, name);
+        try(JarOutputStream out = new JarOutputStream(new FileOutputStream(war))) {
+            out.putNextEntry(new JarEntry("index.html"));
+            out.write(index.getBytes(StandardCharsets.UTF_8));
+            out.putNextEntry(new JarEntry("WEB-INF/"));
+            out.putNextEntry(new JarEntry("WEB-INF/web.xml"));
+            out.write("<web-app/>".getBytes(StandardCharsets.UTF_8));
+            out.putNextEntry(new JarEntry("WEB-INF/lib-provided/"));
+            out.putNextEntry(new JarEntry("WEB-INF/lib-provided/tomcat.jar"));
+            out.write(new byte[] { 1, 2, 3 });
+        }
+        return war;
+    }
+
+    protected File cache(String name, long lastModified) throws IOException {
+        File file = new File(cacheDir, name);
+        FileUtils.forceMkdir(file);
+        FileUtils.write(new File(file, "file.txt"), name, StandardCharsets.UTF_8);
+        assertTrue(file.setLastModified(lastModified));
+        return file;
+    }
+
+    protected static String read(File file) throws IOException {
+        return FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+    }
+
+}
@@ -44,6 +44,13 @@ public final class PortofinoProperties {
 
     //App properties
     public static final String BLOBS_DIR_PATH = "blobs.dir.path";
+    public static final String BLOBS_DEDUPLICATE = "blobs.deduplicate";
+    /**
+     * Whether to keep an index of the metadata of the blobs in memory and in a file in the blobs directory (default
+     * false). Only enable it when a single process writes the blobs directory: the index does not see the metadata
+     * files written by other nodes or processes sharing the directory, so it would return stale metadata.
+     */
+    public static final String BLOBS_METADATA_INDEX = "blobs.metadata.index";
     public static final String APP_NAME = "app.name";
     public static final String APP_VERSION = "app.version";
     public static final String LOGIN_PATH = "login.path";
@@ -60,6 +67,12 @@ public final class PortofinoProperties {
     public static final String GROOVY_PRELOAD_PAGES = "groovy.preloadPages";
     public static final String GROOVY_PRELOAD_CLASSES = "groovy.preloadClasses";
 
+    //Warm-up
+    public static final String WARMUP_THREADS = "portofino.warmup.threads";
+    //A local file where the actions used by the application are recorded; when it exists, only those are preloaded
+    public static final String WARMUP_PROFILE = "portofino.warmup.profile";
+    public static final String WARMUP_PROFILE_MAX_AGE_DAYS = "portofino.warmup.profile.maxAgeDays";
+
     private PortofinoProperties() {}
 
 }
@@ -28,11 +28,14 @@ import com.manydesigns.portofino.code.CodeBase;
 import com.manydesigns.portofino.dispatcher.ResourceResolver;
 import com.manydesigns.portofino.modules.Module;
 import com.manydesigns.portofino.modules.ModuleStatus;
+import com.manydesigns.portofino.resourceactions.TrafficProfile;
+import com.manydesigns.portofino.resourceactions.WarmUp;
 import com.manydesigns.portofino.resourceactions.custom.CustomAction;
 import com.manydesigns.portofino.resourceactions.form.FormAction;
 import com.manydesigns.portofino.resourceactions.form.TableFormAction;
 import com.manydesigns.portofino.resourceactions.registry.ActionRegistry;
 import com.manydesigns.portofino.rest.PortofinoApplicationRoot;
+import com.manydesigns.portofino.security.SecurityLogic;
 import com.manydesigns.portofino.shiro.SecurityClassRealm;
 import com.manydesigns.portofino.shiro.SelfRegisteringShiroFilter;
 import com.manydesigns.portofino.spring.PortofinoSpringConfiguration;
@@ -43,7 +46,6 @@ import org.apache.commons.configuration2.ex.ConfigurationException;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemException;
-import org.apache.commons.vfs2.FileType;
 import org.apache.shiro.mgt.RealmSecurityManager;
 import org.apache.shiro.util.LifecycleUtils;
 import org.apache.shiro.web.env.EnvironmentLoader;
@@ -60,7 +62,13 @@ import org.springframework.context.annotation.Bean;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.servlet.ServletContext;
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import static com.manydesigns.portofino.spring.PortofinoSpringConfiguration.APPLICATION_DIRECTORY;
 import static com.manydesigns.portofino.spring.PortofinoSpringConfiguration.PORTOFINO_CONFIGURATION;
@@ -75,6 +83,7 @@ public class ResourceActionsModule implements Module, ApplicationContextAware {
     public static final String copyright =
             "Copyright (C) 2005-2020 ManyDesigns srl";
     public static final String ACTIONS_DIRECTORY = "actionsDirectory";
+    public static final long TRAFFIC_PROFILE_SAVE_INTERVAL_MINUTES = 5;
 
     //**************************************************************************
     // Fields
@@ -106,6 +115,10 @@ public class ResourceActionsModule implements Module, ApplicationContextAware {
 
     protected ModuleStatus status = ModuleStatus.CREATED;
 
+    protected final WarmUp warmUp = new WarmUp();
+    protected TrafficProfile trafficProfile;
+    protected ScheduledExecutorService trafficProfileSaver;
+
     //**************************************************************************
     // Logging
     //**************************************************************************
@@ -132,20 +145,8 @@ public class ResourceActionsModule implements Module, ApplicationContextAware {
         logger.info("Actions directory: " + actionsDirectory);
         //TODO ElementsFileUtils.ensureDirectoryExistsAndWarnIfNotWritable(actionsDirectory);
 
-        if(configuration.getBoolean(PortofinoProperties.GROOVY_PRELOAD_PAGES, false)) {
-            logger.info("Preloading actions");
-            try {
-                ResourceResolver resourceResolver =
-                        PortofinoApplicationRoot.getRootFactory().createRoot().getResourceResolver();
-                preloadResourceActions(actionsDirectory, resourceResolver);
-            } catch (Exception e) {
-                logger.warn("Could not preload actions", e);
-            }
-        }
-        if(configuration.getBoolean(PortofinoProperties.GROOVY_PRELOAD_CLASSES, false)) {
-            logger.info("Preloading Groovy classes");
-            preloadClasses(codeBase.getRoot());
-        }
+        setupTrafficProfile(actionsDirectory);
+        startWarmUp(actionsDirectory);
 
         cacheResetListenerRegistry.getCacheResetListeners().add(new ConfigurationCacheResetListener());
 
@@ -204,51 +205,79 @@ public class ResourceActionsModule implements Module, ApplicationContextAware {
         return applicationDirectory.resolveFile(actionsDirectory);
     }
 
-    protected void preloadResourceActions(FileObject directory, ResourceResolver resourceResolver) throws FileSystemException {
-        for(FileObject child : directory.getChildren()) {
-            logger.debug("visit {}", child);
-            if(child.getType() == FileType.FOLDER) {
-                if(!child.equals(directory) && !child.equals(directory.getParent())) {
-                    try {
-                        resourceResolver.resolve(child, Class.class).getConstructor().newInstance();
-                    } catch(Throwable t) {
-                        logger.warn("ResourceAction preload failed for actionDescriptor " + child.getName().getPath(), t);
-                    }
-                    preloadResourceActions(child, resourceResolver);
-                }
-            }
+    @Bean
+    public WarmUp getWarmUp() {
+        return warmUp;
+    }
+
+    protected void setupTrafficProfile(FileObject actionsDirectory) {
+        String path = configuration.getString(PortofinoProperties.WARMUP_PROFILE);
+        if(StringUtils.isBlank(path)) {
+            return;
         }
+        trafficProfile = new TrafficProfile(new File(path), actionsDirectory);
+        try {
+            trafficProfile.load(TimeUnit.DAYS.toMillis(
+                    configuration.getInt(PortofinoProperties.WARMUP_PROFILE_MAX_AGE_DAYS, 7)));
+        } catch (IOException e) {
+            logger.warn("Could not load the traffic profile " + path, e);
+        }
+        trafficProfile.activate();
+        trafficProfileSaver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Portofino traffic profile saver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        trafficProfileSaver.scheduleWithFixedDelay(
+                this::saveTrafficProfile, TRAFFIC_PROFILE_SAVE_INTERVAL_MINUTES, TRAFFIC_PROFILE_SAVE_INTERVAL_MINUTES,
+                TimeUnit.MINUTES);
     }
 
-    protected void preloadClasses(FileObject directory) {
+    protected void saveTrafficProfile() {
         try {
-            for(FileObject file : directory.getChildren()) {
-                logger.debug("visit {}", file);
-                if(file.getType() == FileType.FOLDER) {
-                    if(!file.equals(directory) && !file.equals(directory.getParent())) {
-                        preloadClasses(file);
-                    }
-                } else {
-                    String extension = file.getName().getExtension();
-                    String className = codeBase.getRoot().getName().getRelativeName(file.getName());
-                    if(!StringUtils.isEmpty(extension)) {
-                        className = className.substring(0, className.length() - extension.length() - 1);
-                    }
-                    logger.debug("Preloading " + className);
-                    try {
-                        codeBase.loadClass(className);
-                    } catch(Throwable t) {
-                        logger.warn("Class preload failed for " + className, t);
-                    }
-                }
+            trafficProfile.save();
+        } catch (IOException e) {
+            logger.warn("Could not save the traffic profile " + trafficProfile.getFile(), e);
+        }
+    }
+
+    protected void startWarmUp(FileObject actionsDirectory) {
+        boolean preloadActions = configuration.getBoolean(PortofinoProperties.GROOVY_PRELOAD_PAGES, false);
+        boolean preloadClasses = configuration.getBoolean(PortofinoProperties.GROOVY_PRELOAD_CLASSES, false);
+        Set<String> actionPaths = null;
+        if(trafficProfile != null && trafficProfile.getFile().exists()) {
+            logger.info("Preloading the actions used by recent traffic, recorded in {}", trafficProfile.getFile());
+            actionPaths = trafficProfile.getPaths();
+            preloadActions = true;
+        }
+        if(!preloadActions && !preloadClasses) {
+            warmUp.skip();
+            return;
+        }
+        ResourceResolver resourceResolver = null;
+        if(preloadActions) {
+            try {
+                resourceResolver = PortofinoApplicationRoot.getRootFactory().createRoot().getResourceResolver();
+            } catch (Exception e) {
+                logger.warn("Could not preload actions", e);
+                preloadActions = false;
             }
-        } catch (FileSystemException e) {
-            logger.warn("Could not preload classes under " + directory, e);
         }
+        int threads = configuration.getInt(
+                PortofinoProperties.WARMUP_THREADS, Runtime.getRuntime().availableProcessors());
+        warmUp.start(
+                threads, preloadClasses ? codeBase : null, preloadActions ? actionsDirectory : null,
+                resourceResolver, actionPaths);
     }
 
     @PreDestroy
     public void destroy() {
+        warmUp.cancel();
+        if(trafficProfile != null) {
+            trafficProfileSaver.shutdownNow();
+            trafficProfile.deactivate();
+            saveTrafficProfile();
+        }
         logger.info("Destroying Shiro environment...");
         environmentLoader.destroyEnvironment(servletContext);
         status = ModuleStatus.DESTROYED;
@@ -263,6 +292,7 @@ public class ResourceActionsModule implements Module, ApplicationContextAware {
         @Override
         public void handleReset(CacheResetEvent e) {
             ActionLogic.clearConfigurationCache();
+            SecurityLogic.clearPermissionsCache();
         }
     }
 
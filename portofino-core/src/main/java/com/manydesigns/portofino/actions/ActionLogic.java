@@ -27,6 +27,7 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.manydesigns.elements.ElementsThreadLocals;
 import com.manydesigns.portofino.resourceactions.*;
+import com.manydesigns.portofino.security.SecurityLogic;
 import org.apache.commons.configuration2.Configuration;
 import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemException;
@@ -97,6 +98,7 @@ public class ActionLogic {
             marshaller.marshal(actionDescriptor, outputStream);
             actionDescriptorCache.invalidate(file);
         }
+        SecurityLogic.clearPermissionsCache();
         return file;
     }
 
@@ -116,6 +118,7 @@ public class ActionLogic {
         refreshCheckFrequency =
                 portofinoConfiguration.getInt(CONFIGURATION_CACHE_CHECK_FREQUENCY, 5);
         initConfigurationCache(maxSize, refreshCheckFrequency);
+        SecurityLogic.initPermissionsCache(portofinoConfiguration);
     }
 
     protected static class FileCacheEntry<T> {
@@ -144,6 +144,7 @@ public abstract class AbstractResourceAction extends AbstractResourceWithParamet
             action = new ActionDescriptor();
             action.init();
         }
+        TrafficProfile.recordActionAccess(resourceAction.getLocation());
         ActionInstance actionInstance = new ActionInstance(
                 parentActionInstance, resourceAction.getLocation(), action, resourceAction.getClass());
         actionInstance.setActionBean(resourceAction);
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2005-2020 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.portofino.resourceactions;
+
+import org.apache.commons.vfs2.FileName;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records which actions are used by the application's traffic, in a local file that survives restarts, so that
+ * the {@link WarmUp} can prepare only those actions at the next startup.<br>
+ * The profile maps the path of each action, relative to the actions directory, to the last time it was accessed;
+ * accesses older than the configured maximum age are forgotten when the profile is loaded. The last access time
+ * is recorded with a granularity of a minute, so that recording costs a map lookup on most requests.
+ *
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class TrafficProfile {
+    public static final String copyright =
+            "Copyright (C) 2005-2020 ManyDesigns srl";
+
+    protected static final long RECORD_GRANULARITY = TimeUnit.MINUTES.toMillis(1);
+
+    private static final Logger logger = LoggerFactory.getLogger(TrafficProfile.class);
+
+    protected static volatile TrafficProfile active;
+
+    protected final File file;
+    protected final FileName actionsDirectory;
+    protected final ConcurrentMap<String, Long> lastAccesses = new ConcurrentHashMap<>();
+    protected volatile boolean modified = false;
+
+    public TrafficProfile(File file, FileObject actionsDirectory) {
+        this.file = file;
+        this.actionsDirectory = actionsDirectory.getName();
+    }
+
+    /**
+     * Loads the profile from its file, if it exists, forgetting the accesses older than the given age.
+     */
+    public void load(long maxAgeMillis) throws IOException {
+        lastAccesses.clear();
+        if(!file.isFile()) {
+            return;
+        }
+        Properties properties = new Properties();
+        try(InputStream inputStream = new FileInputStream(file)) {
+            properties.load(inputStream);
+        }
+        long oldest = System.currentTimeMillis() - maxAgeMillis;
+        for(String path : properties.stringPropertyNames()) {
+            try {
+                long lastAccess = Long.parseLong(properties.getProperty(path));
+                if(lastAccess >= oldest) {
+                    lastAccesses.put(path, lastAccess);
+                }
+            } catch (NumberFormatException e) {
+                logger.debug("Invalid entry in traffic profile: {}", path);
+            }
+        }
+        modified = lastAccesses.size() != properties.size();
+    }
+
+    /**
+     * Writes the profile to its file, if it has changed since it was loaded or last saved.
+     */
+    public synchronized void save() throws IOException {
+        if(!modified) {
+            return;
+        }
+        modified = false;
+        Properties properties = new Properties();
+        lastAccesses.forEach((path, lastAccess) -> properties.setProperty(path, String.valueOf(lastAccess)));
+        File parent = file.getAbsoluteFile().getParentFile();
+        if(!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create " + parent);
+        }
+        File temp = new File(parent, file.getName() + ".tmp");
+        try(OutputStream outputStream = new FileOutputStream(temp)) {
+            properties.store(outputStream, "Actions used by recent traffic");
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public void recordAccess(FileObject actionLocation) {
+        FileName name = actionLocation.getName();
+        if(!actionsDirectory.isDescendent(name)) {
+            return;
+        }
+        String path;
+        try {
+            path = actionsDirectory.getRelativeName(name);
+        } catch (FileSystemException e) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Long lastAccess = lastAccesses.get(path);
+        if(lastAccess == null || now - lastAccess > RECORD_GRANULARITY) {
+            lastAccesses.put(path, now);
+            modified = true;
+        }
+    }
+
+    /**
+     * The paths of the recently accessed actions, relative to the actions directory.
+     */
+    public Set<String> getPaths() {
+        return Collections.unmodifiableSet(new HashSet<>(lastAccesses.keySet()));
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Makes this the profile where the accesses to actions are recorded.
+     */
+    public void activate() {
+        active = this;
+    }
+
+    public void deactivate() {
+        if(active == this) {
+            active = null;
+        }
+    }
+
+    /**
+     * Records an access to the given action in the active profile, if any.
+     */
+    public static void recordActionAccess(FileObject actionLocation) {
+        TrafficProfile profile = active;
+        if(profile != null && actionLocation != null) {
+            profile.recordAccess(actionLocation);
+        }
+    }
+}
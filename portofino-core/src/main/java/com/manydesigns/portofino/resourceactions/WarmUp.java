@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2005-2020 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.portofino.resourceactions;
+
+import com.manydesigns.portofino.actions.ActionLogic;
+import com.manydesigns.portofino.code.CodeBase;
+import com.manydesigns.portofino.dispatcher.ResourceResolver;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Prepares the code base classes and the resource actions of the application in the background at startup, so that
+ * the first requests don't pay for compiling and loading them.<br>
+ * Work is spread over a bounded pool of threads, in an order that respects dependencies: classes compiled from Java
+ * come before Groovy ones, which may refer to them; all classes come before the actions, and each action comes
+ * after its parent. Actions can be restricted to the ones used by recent traffic, as recorded in a
+ * {@link TrafficProfile}.<br>
+ * Progress is logged and published by {@link #getStatus()}; {@link #isReady()} tells whether warm-up is complete,
+ * e.g. for a readiness health check.
+ *
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class WarmUp {
+    public static final String copyright =
+            "Copyright (C) 2005-2020 ManyDesigns srl";
+
+    protected static final int PROGRESS_STEPS = 10;
+
+    private static final Logger logger = LoggerFactory.getLogger(WarmUp.class);
+
+    protected final CompletableFuture<Void> completion = new CompletableFuture<>();
+    protected final AtomicInteger total = new AtomicInteger();
+    protected final AtomicInteger completed = new AtomicInteger();
+    protected final AtomicInteger failed = new AtomicInteger();
+    protected volatile ExecutorService executor;
+    protected volatile long startTime;
+
+    /**
+     * Starts warming up in the background.
+     * @param threads the maximum number of threads to use.
+     * @param codeBase the code base whose classes to load, or null to skip classes.
+     * @param actionsDirectory the root of the actions to prepare, or null to skip actions.
+     * @param resourceResolver the resolver of the actions.
+     * @param actionPaths if not null, the paths of the actions to prepare, relative to the actions directory.
+     */
+    public synchronized void start(
+            int threads, CodeBase codeBase, FileObject actionsDirectory, ResourceResolver resourceResolver,
+            Set<String> actionPaths) {
+        if(executor != null) {
+            throw new IllegalStateException("Warm-up already started");
+        }
+        startTime = System.currentTimeMillis();
+        executor = Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactory() {
+            protected final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Portofino warm-up " + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            List<FileObject> javaFiles = new ArrayList<>();
+            List<FileObject> groovyFiles = new ArrayList<>();
+            if(codeBase != null) {
+                collectClassFiles(codeBase.getRoot(), javaFiles, groovyFiles);
+            }
+            List<FileObject> actions = new ArrayList<>();
+            if(actionsDirectory != null) {
+                collectActions(actionsDirectory, actionsDirectory, actionPaths, actions);
+            }
+            total.set(javaFiles.size() + groovyFiles.size() + actions.size());
+            logger.info("Warming up {} classes and {} actions on {} threads",
+                    javaFiles.size() + groovyFiles.size(), actions.size(), threads);
+            CompletableFuture<Void> javaClasses = loadClasses(codeBase, javaFiles, CompletableFuture.completedFuture(null));
+            CompletableFuture<Void> groovyClasses = loadClasses(codeBase, groovyFiles, javaClasses);
+            prepareActions(actionsDirectory, resourceResolver, actions, groovyClasses)
+                    .whenComplete((result, error) -> finish());
+        } catch (Exception e) {
+            logger.warn("Could not warm up", e);
+            finish();
+        }
+    }
+
+    protected void collectClassFiles(FileObject directory, List<FileObject> javaFiles, List<FileObject> groovyFiles)
+            throws FileSystemException {
+        for(FileObject file : directory.getChildren()) {
+            if(file.getType() == FileType.FOLDER) {
+                if(!file.equals(directory) && !file.equals(directory.getParent())) {
+                    collectClassFiles(file, javaFiles, groovyFiles);
+                }
+            } else {
+                String extension = file.getName().getExtension();
+                if("groovy".equals(extension)) {
+                    groovyFiles.add(file);
+                } else if("java".equals(extension) || "class".equals(extension)) {
+                    javaFiles.add(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects the action directories in breadth-first order, so that parents always come before their children.
+     */
+    protected void collectActions(
+            FileObject actionsDirectory, FileObject directory, Set<String> actionPaths, List<FileObject> actions)
+            throws FileSystemException {
+        Deque<FileObject> queue = new ArrayDeque<>();
+        queue.add(directory);
+        while (!queue.isEmpty()) {
+            FileObject current = queue.poll();
+            for(FileObject child : current.getChildren()) {
+                if(child.getType() == FileType.FOLDER && !child.equals(current) && !child.equals(current.getParent())) {
+                    if(actionPaths == null ||
+                       actionPaths.contains(actionsDirectory.getName().getRelativeName(child.getName()))) {
+                        actions.add(child);
+                    }
+                    queue.add(child);
+                }
+            }
+        }
+    }
+
+    protected CompletableFuture<Void> loadClasses(
+            CodeBase codeBase, List<FileObject> files, CompletableFuture<Void> after) {
+        CompletableFuture<?>[] futures = new CompletableFuture[files.size()];
+        for(int i = 0; i < futures.length; i++) {
+            FileObject file = files.get(i);
+            futures[i] = after.thenRunAsync(() -> loadClass(codeBase, file), executor);
+        }
+        return CompletableFuture.allOf(futures);
+    }
+
+    protected void loadClass(CodeBase codeBase, FileObject file) {
+        String className = null;
+        try {
+            className = codeBase.getRoot().getName().getRelativeName(file.getName());
+            String extension = file.getName().getExtension();
+            className = className.substring(0, className.length() - extension.length() - 1).replace('/', '.');
+            logger.debug("Preloading {}", className);
+            codeBase.loadClass(className);
+            progress(true);
+        } catch (Throwable t) {
+            logger.warn("Class preload failed for " + (className != null ? className : file.getName().getPath()), t);
+            progress(false);
+        }
+    }
+
+    protected CompletableFuture<Void> prepareActions(
+            FileObject actionsDirectory, ResourceResolver resourceResolver, List<FileObject> actions,
+            CompletableFuture<Void> after) {
+        Map<FileObject, CompletableFuture<Void>> futures = new HashMap<>();
+        for(FileObject action : actions) {
+            CompletableFuture<Void> parent;
+            try {
+                parent = futures.getOrDefault(action.getParent(), after);
+            } catch (FileSystemException e) {
+                parent = after;
+            }
+            futures.put(action, parent.thenRunAsync(() -> prepareAction(action, resourceResolver), executor));
+        }
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0]));
+    }
+
+    protected void prepareAction(FileObject action, ResourceResolver resourceResolver) {
+        logger.debug("Preloading action {}", action);
+        try {
+            Class<?> actionClass = resourceResolver.resolve(action, Class.class);
+            if(actionClass != null) {
+                actionClass.getConstructor().newInstance();
+            }
+            try {
+                ActionLogic.getActionDescriptor(action);
+            } catch (ActionNotActiveException e) {
+                logger.debug("No valid action descriptor in " + action, e);
+            }
+            progress(true);
+        } catch (Throwable t) {
+            logger.warn("ResourceAction preload failed for actionDescriptor " + action.getName().getPath(), t);
+            progress(false);
+        }
+    }
+
+    protected void progress(boolean success) {
+        if(!success) {
+            failed.incrementAndGet();
+        }
+        int done = completed.incrementAndGet();
+        int totalCount = total.get();
+        if(totalCount > PROGRESS_STEPS && done % (totalCount / PROGRESS_STEPS) == 0 && done < totalCount) {
+            logger.info("Warm-up {}% complete ({} of {})", done * 100 / totalCount, done, totalCount);
+        }
+    }
+
+    protected void finish() {
+        ExecutorService executor = this.executor;
+        if(executor != null) {
+            executor.shutdown();
+        }
+        if(completion.complete(null)) {
+            logger.info("Warm-up completed in {} ms, {} of {} items failed",
+                    System.currentTimeMillis() - startTime, failed.get(), total.get());
+        }
+    }
+
+    /**
+     * Marks the warm-up as complete without doing anything, e.g. when it's disabled.
+     */
+    public void skip() {
+        completion.complete(null);
+    }
+
+    /**
+     * Stops the warm-up, e.g. when the application shuts down. The pending work is abandoned.
+     */
+    public void cancel() {
+        ExecutorService executor = this.executor;
+        if(executor != null) {
+            executor.shutdownNow();
+        }
+        completion.complete(null);
+    }
+
+    public boolean isReady() {
+        return completion.isDone();
+    }
+
+    /**
+     * Returns a future that completes when the warm-up is done.
+     */
+    public CompletionStage<Void> getCompletion() {
+        return completion;
+    }
+
+    /**
+     * Returns the progress of the warm-up: whether it's ready and the total, completed and failed items.
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("ready", isReady());
+        status.put("total", total.get());
+        status.put("completed", completed.get());
+        status.put("failed", failed.get());
+        return status;
+    }
+}
@@ -33,6 +33,7 @@ import com.manydesigns.portofino.actions.ActionLogic;
 import com.manydesigns.portofino.resourceactions.ActionContext;
 import com.manydesigns.portofino.resourceactions.ActionInstance;
 import com.manydesigns.portofino.resourceactions.ResourceAction;
+import com.manydesigns.portofino.resourceactions.WarmUp;
 import com.manydesigns.portofino.security.AccessLevel;
 import com.manydesigns.portofino.security.RequiresPermissions;
 import com.manydesigns.portofino.shiro.SecurityUtilsBean;
@@ -57,6 +58,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.context.support.WebApplicationContextUtils;
 
 public class PortofinoRoot extends AbstractResourceAction {
@@ -72,6 +74,9 @@ public class PortofinoRoot extends AbstractResourceAction {
 
     protected ResourceResolver resourceResolver;
 
+    @Autowired(required = false)
+    protected WarmUp warmUp;
+
     protected static final ConcurrentMap<String, FileObject> children = new ConcurrentHashMap<>();
 
     protected PortofinoRoot(FileObject location, ResourceResolver resourceResolver) {
@@ -179,6 +184,24 @@ public class PortofinoRoot extends AbstractResourceAction {
         return description;
     }
 
+    /**
+     * Tells whether the application has completed its warm-up, for use in readiness health checks.
+     * @since 5.2
+     * @return the progress of the warm-up as JSON, with status 200 if it's complete, 503 otherwise.
+     */
+    @Path(":ready")
+    @Produces(MediaType.APPLICATION_JSON)
+    @GET
+    @RequiresPermissions(level = AccessLevel.NONE)
+    public Response getReadiness() {
+        if(warmUp == null) {
+            return Response.ok(Collections.singletonMap("ready", true)).build();
+        }
+        Map<String, Object> status = warmUp.getStatus();
+        return Response.status(warmUp.isReady() ? Response.Status.OK : Response.Status.SERVICE_UNAVAILABLE)
+                .entity(status).build();
+    }
+
     @Override
     @Path(":accessible")
     @GET
@@ -20,8 +20,12 @@
 
 package com.manydesigns.portofino.rest.messagebodywriters;
 
+import com.manydesigns.elements.Element;
 import com.manydesigns.elements.forms.Form;
+import com.manydesigns.elements.forms.TableForm;
 import com.manydesigns.elements.util.FormUtil;
+import org.json.JSONException;
+import org.json.JSONWriter;
 
 import javax.ws.rs.ConstrainedTo;
 import javax.ws.rs.RuntimeType;
@@ -30,12 +34,19 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.ext.MessageBodyWriter;
 import javax.ws.rs.ext.Provider;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
 
 /**
+ * Writes forms and table forms as JSON, streaming it to the response as it's generated rather than building it in
+ * memory first. The output is the same as {@link FormUtil#writeToJson(Form)} and
+ * {@link FormUtil#writeToJson(TableForm)}, encoded with the platform charset.
+ *
  * @author Angelo Lupo          - angelo.lupo@manydesigns.com
  * @author Giampiero Granatella - giampiero.granatella@manydesigns.com
  * @author Emanuele Poggi       - emanuele.poggi@manydesigns.com
@@ -43,27 +54,47 @@ import java.lang.reflect.Type;
  */
 @Provider
 @ConstrainedTo(RuntimeType.SERVER)
-public class FormMessageBodyWriter implements MessageBodyWriter<Form> {
+public class FormMessageBodyWriter implements MessageBodyWriter<Element> {
 
     public static final String copyright =
             "Copyright (C) 2005-2020 ManyDesigns srl";
 
+    public static final int BUFFER_SIZE = 4096;
+
     @Override
     public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
-        return Form.class.isAssignableFrom(type) && mediaType.isCompatible(MediaType.APPLICATION_JSON_TYPE);
+        return (Form.class.isAssignableFrom(type) || TableForm.class.isAssignableFrom(type)) &&
+               mediaType.isCompatible(MediaType.APPLICATION_JSON_TYPE);
     }
 
     @Override
-    public long getSize(Form form, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+    public long getSize(Element form, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
         return -1;
     }
 
     @Override
     public void writeTo(
-            Form form, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+            Element form, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
             final MultivaluedMap<String, Object> httpHeaders, final OutputStream entityStream)
             throws IOException, WebApplicationException {
-        String json = FormUtil.writeToJson(form);
-        entityStream.write(json.getBytes());
+        //The stream belongs to the container, it must be flushed but not closed
+        Writer writer = new BufferedWriter(new OutputStreamWriter(entityStream), BUFFER_SIZE);
+        JSONWriter js = new JSONWriter(writer);
+        try {
+            if(form instanceof TableForm) {
+                FormUtil.writeToJson((TableForm) form, js);
+            } else {
+                js.object();
+                FormUtil.writeToJson((Form) form, js);
+                js.endObject();
+            }
+        } catch (JSONException e) {
+            //JSONWriter wraps the errors of the stream, e.g. when the client disconnects
+            if(e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+        writer.flush();
     }
 }
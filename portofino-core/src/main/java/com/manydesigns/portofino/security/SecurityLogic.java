@@ -20,6 +20,8 @@
 
 package com.manydesigns.portofino.security;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.manydesigns.elements.ElementsThreadLocals;
 import com.manydesigns.portofino.resourceactions.ActionInstance;
 import com.manydesigns.portofino.actions.ActionDescriptor;
@@ -39,6 +41,8 @@ import javax.servlet.ServletRequest;
 import javax.servlet.http.HttpServletRequest;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -68,6 +72,43 @@ public class SecurityLogic {
 
     public static final Logger logger = LoggerFactory.getLogger(SecurityLogic.class);
 
+    //**************************************************************************
+    // Actual permissions cache
+    //**************************************************************************
+
+    public static final String PERMISSIONS_CACHE_SIZE = "permissions.cache.size";
+
+    /**
+     * Actual permissions keyed by the chain of action descriptors (compared by identity) from the root to an action.
+     * Every prefix of a chain is cached as well, so nested actions share the results computed for their ancestors.
+     * Since reloading an action.xml file produces a new ActionDescriptor, stale entries are never hit; they are only
+     * retained until evicted or until the cache is cleared.
+     */
+    protected static volatile Cache<List<ActionDescriptor>, Permissions> actualPermissionsCache =
+            CacheBuilder.newBuilder().maximumSize(1000).build();
+
+    /**
+     * Group permissions of anonymous users, keyed by the names of the "all" and "anonymous" groups.
+     */
+    protected static volatile Cache<List<String>, GroupPermission> anonymousPermissionsCache =
+            CacheBuilder.newBuilder().maximumSize(10).build();
+
+    public static void initPermissionsCache(Configuration portofinoConfiguration) {
+        int maxSize = portofinoConfiguration.getInt(PERMISSIONS_CACHE_SIZE, 1000);
+        actualPermissionsCache = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+        anonymousPermissionsCache.invalidateAll();
+    }
+
+    /**
+     * Clears the actual permissions computed so far. Called when an action descriptor is saved or when security code
+     * is reloaded.
+     */
+    public static void clearPermissionsCache() {
+        logger.debug("Clearing the permissions cache");
+        actualPermissionsCache.invalidateAll();
+        anonymousPermissionsCache.invalidateAll();
+    }
+
     public static boolean hasPermissions(Configuration conf, ActionInstance instance, Subject subject, Method handler) {
         logger.debug("Checking action permissions");
         Class<?> theClass = instance.getActionClass();
@@ -86,14 +127,36 @@ public class SecurityLogic {
         return hasPermissions(conf, configuration, subject, accessLevel, permissions);
     }
 
+    /**
+     * Computes the permissions that are actually in effect for the given action, taking into account those of its
+     * ancestors. The result is cached and shared, so it must not be modified.
+     */
     public static Permissions calculateActualPermissions(ActionInstance instance) {
-        List<ActionDescriptor> actionDescriptors = new ArrayList<>();
-        while (instance != null) {
-            actionDescriptors.add(0, instance.getActionDescriptor());
-            instance = instance.getParent();
+        int depth = 0;
+        for(ActionInstance current = instance; current != null; current = current.getParent()) {
+            depth++;
+        }
+        ActionDescriptor[] actionDescriptors = new ActionDescriptor[depth];
+        for(ActionInstance current = instance; current != null; current = current.getParent()) {
+            actionDescriptors[--depth] = current.getActionDescriptor();
         }
+        return getActualPermissions(Arrays.asList(actionDescriptors));
+    }
 
-        return calculateActualPermissions(new Permissions(), actionDescriptors);
+    protected static Permissions getActualPermissions(List<ActionDescriptor> actionDescriptors) {
+        if(actionDescriptors.isEmpty()) {
+            return new Permissions();
+        }
+        Cache<List<ActionDescriptor>, Permissions> cache = actualPermissionsCache;
+        Permissions permissions = cache.getIfPresent(actionDescriptors);
+        if(permissions == null) {
+            int last = actionDescriptors.size() - 1;
+            Permissions parentPermissions = getActualPermissions(actionDescriptors.subList(0, last));
+            permissions = calculateActualPermissions(
+                    parentPermissions, Collections.singletonList(actionDescriptors.get(last)));
+            cache.put(new ArrayList<>(actionDescriptors), permissions);
+        }
+        return permissions;
     }
 
     public static Permissions calculateActualPermissions(Permissions basePermissions, List<ActionDescriptor> actionDescriptors) {
@@ -187,10 +250,13 @@ public class SecurityLogic {
     public static boolean hasAnonymousPermissions
             (Configuration conf, Permissions configuration, AccessLevel level, String... permissions) {
         ActionPermission actionPermission = new ActionPermission(configuration, level, permissions);
-        List<String> groups = new ArrayList<String>();
-        groups.add(getAllGroup(conf));
-        groups.add(getAnonymousGroup(conf));
-        return new GroupPermission(groups).implies(actionPermission);
+        List<String> groups = Arrays.asList(getAllGroup(conf), getAnonymousGroup(conf));
+        GroupPermission groupPermission = anonymousPermissionsCache.getIfPresent(groups);
+        if(groupPermission == null) {
+            groupPermission = new GroupPermission(Collections.unmodifiableList(groups));
+            anonymousPermissionsCache.put(groups, groupPermission);
+        }
+        return groupPermission.implies(actionPermission);
     }
 
     public static boolean isAdministrator(ServletRequest request) {
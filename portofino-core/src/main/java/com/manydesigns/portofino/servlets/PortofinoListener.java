@@ -276,6 +276,7 @@ public class PortofinoListener extends DispatcherInitializer
     }
 
     public void contextDestroyed(ServletContextEvent servletContextEvent) {
+        super.contextDestroyed(servletContextEvent);
         MDC.clear();
     }
 
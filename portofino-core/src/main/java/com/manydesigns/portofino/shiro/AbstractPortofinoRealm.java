@@ -40,6 +40,7 @@ import org.apache.shiro.authz.AuthorizationException;
 import org.apache.shiro.authz.AuthorizationInfo;
 import org.apache.shiro.authz.Permission;
 import org.apache.shiro.authz.SimpleAuthorizationInfo;
+import org.apache.shiro.cache.Cache;
 import org.apache.shiro.codec.Base64;
 import org.apache.shiro.crypto.hash.HashService;
 import org.apache.shiro.crypto.hash.format.HashFormat;
@@ -53,6 +54,7 @@ import javax.crypto.spec.SecretKeySpec;
 import java.io.*;
 import java.security.Key;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Default implementation of PortofinoRealm. Provides convenient implementations of the interface methods.
@@ -67,6 +69,15 @@ public abstract class AbstractPortofinoRealm extends AuthorizingRealm implements
 
     public static final String JWT_EXPIRATION_PROPERTY = "jwt.expiration";
     public static final String JWT_SECRET_PROPERTY = "jwt.secret";
+    /**
+     * Seconds after which cached authorization information (i.e. the groups of a user) is reloaded.
+     * 0, the default, disables caching. The realm evicts a user when it verifies them, changes their password or
+     * registers them; applications that enable the cache and edit users and groups by other means (e.g. with CRUD
+     * pages on the users and groups tables) should call {@link #clearAuthorizationCache(Object)} after saving, or
+     * accept that the changes take effect within the configured time.
+     */
+    public static final String AUTHORIZATION_CACHE_TTL_PROPERTY = "security.authorization.cache.ttl";
+    public static final String AUTHORIZATION_CACHE_SIZE_PROPERTY = "security.authorization.cache.size";
 
     @Autowired
     protected Configuration portofinoConfiguration;
@@ -171,6 +182,62 @@ public abstract class AbstractPortofinoRealm extends AuthorizingRealm implements
     // Authorization
     //--------------------------------------------------------------------------
 
+    @Override
+    protected void onInit() {
+        int ttl = 0;
+        int maxSize = 1000;
+        if(portofinoConfiguration != null) {
+            ttl = portofinoConfiguration.getInt(AUTHORIZATION_CACHE_TTL_PROPERTY, ttl);
+            maxSize = portofinoConfiguration.getInt(AUTHORIZATION_CACHE_SIZE_PROPERTY, maxSize);
+        }
+        if(ttl > 0) {
+            setAuthorizationCache(new ExpiringCache<>(ttl, TimeUnit.SECONDS, maxSize));
+            setAuthorizationCachingEnabled(true);
+        } else {
+            setAuthorizationCachingEnabled(false);
+        }
+        super.onInit();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Authorization information is cached by user id, so that it can be found again for the same user regardless
+     * of the principal objects used to represent them (e.g. when they're freshly deserialized from a web token).</p>
+     */
+    @Override
+    protected Object getAuthorizationCacheKey(PrincipalCollection principals) {
+        Object principal = principals.getPrimaryPrincipal();
+        return principal != null ? getAuthorizationCacheKey(principal) : principals;
+    }
+
+    protected Object getAuthorizationCacheKey(Object principal) {
+        if(principal instanceof Serializable) try {
+            Serializable userId = getUserId((Serializable) principal);
+            if(userId != null) {
+                return userId;
+            }
+        } catch (RuntimeException e) {
+            //Fall back to the principal itself
+        }
+        return principal;
+    }
+
+    @Override
+    public void clearAuthorizationCache(Object principal) {
+        Cache<Object, AuthorizationInfo> cache = getAuthorizationCache();
+        if(cache != null && principal != null) {
+            cache.remove(getAuthorizationCacheKey(principal));
+        }
+    }
+
+    @Override
+    public void clearAuthorizationCache() {
+        Cache<Object, AuthorizationInfo> cache = getAuthorizationCache();
+        if(cache != null) {
+            cache.clear();
+        }
+    }
+
     /**
      * {@inheritDoc}
      * <p>This default implementation handles built-in groups (all, anonymous, registered, etc.), delegating
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2005-2020 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.portofino.shiro;
+
+import com.google.common.cache.CacheBuilder;
+import org.apache.shiro.cache.Cache;
+import org.apache.shiro.cache.CacheException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shiro cache whose entries expire after a fixed time since they were written, backed by a Guava cache.
+ *
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class ExpiringCache<K, V> implements Cache<K, V> {
+    public static final String copyright =
+            "Copyright (C) 2005-2020 ManyDesigns srl";
+
+    protected final com.google.common.cache.Cache<K, V> cache;
+
+    public ExpiringCache(long timeToLive, TimeUnit unit, long maximumSize) {
+        cache = CacheBuilder.newBuilder().expireAfterWrite(timeToLive, unit).maximumSize(maximumSize).build();
+    }
+
+    @Override
+    public V get(K key) throws CacheException {
+        return key != null ? cache.getIfPresent(key) : null;
+    }
+
+    @Override
+    public V put(K key, V value) throws CacheException {
+        V previous = cache.getIfPresent(key);
+        cache.put(key, value);
+        return previous;
+    }
+
+    @Override
+    public V remove(K key) throws CacheException {
+        return cache.asMap().remove(key);
+    }
+
+    @Override
+    public void clear() throws CacheException {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public int size() {
+        return (int) cache.size();
+    }
+
+    @Override
+    public Set<K> keys() {
+        return new HashSet<>(cache.asMap().keySet());
+    }
+
+    @Override
+    public Collection<V> values() {
+        return new ArrayList<>(cache.asMap().values());
+    }
+}
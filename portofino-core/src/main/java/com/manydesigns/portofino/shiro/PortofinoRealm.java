@@ -176,5 +176,17 @@ public interface PortofinoRealm extends Realm, Authorizer, CacheManagerAware {
 
     Set<String> getGroups(Object principal);
 
+    /**
+     * Discards the cached authorization information (such as the groups) of a user. To be called when the groups of
+     * the user change.
+     * @param principal the user's primary principal.
+     */
+    default void clearAuthorizationCache(Object principal) {}
+
+    /**
+     * Discards the cached authorization information of all users, e.g. after changes to the groups.
+     */
+    default void clearAuthorizationCache() {}
+
     String generateWebToken(Object principal);
 }
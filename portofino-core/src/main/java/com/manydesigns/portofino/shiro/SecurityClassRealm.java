@@ -22,6 +22,7 @@ package com.manydesigns.portofino.shiro;
 
 import com.manydesigns.elements.reflection.ClassAccessor;
 import com.manydesigns.portofino.code.CodeBase;
+import com.manydesigns.portofino.security.SecurityLogic;
 import org.apache.shiro.authc.AuthenticationException;
 import org.apache.shiro.authc.AuthenticationInfo;
 import org.apache.shiro.authc.AuthenticationToken;
@@ -40,6 +41,7 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.lang.reflect.InvocationTargetException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * Realm implementation that delegates to another class, written in Groovy and dynamically reloaded.
@@ -71,6 +73,9 @@ public class SecurityClassRealm implements PortofinoRealm, Initializable, Destro
 
     protected CacheManager cacheManager;
 
+    private static final AtomicReferenceFieldUpdater<SecurityClassRealm, PortofinoRealm> SECURITY_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(SecurityClassRealm.class, PortofinoRealm.class, "security");
+
     //--------------------------------------------------------------------------
     // Constructors
     //--------------------------------------------------------------------------
@@ -93,7 +98,11 @@ public class SecurityClassRealm implements PortofinoRealm, Initializable, Destro
         }
     }
 
-    private synchronized PortofinoRealm ensureDelegate() {
+    /**
+     * Returns the current delegate, replacing it if its class has been reloaded. It does not take any locks, so that
+     * concurrent security checks don't contend for the realm.
+     */
+    private PortofinoRealm ensureDelegate() {
         if(destroyed) {
             throw new IllegalStateException("This realm has been destroyed.");
         }
@@ -106,21 +115,27 @@ public class SecurityClassRealm implements PortofinoRealm, Initializable, Destro
 
     private PortofinoRealm doEnsureDelegate() throws Exception {
         Class<?> scriptClass = codeBase.loadClass(className);
-        if(scriptClass.isInstance(security)) { //Class did not change
-            return security;
+        PortofinoRealm current = security;
+        if(scriptClass.isInstance(current)) { //Class did not change
+            return current;
         } else {
             logger.info("Refreshing Portofino Realm Delegate instance (Security.groovy)");
-            if(security != null) {
-                logger.debug("Script class changed: from " + security.getClass() + " to " + scriptClass);
+            if(current != null) {
+                logger.debug("Script class changed: from " + current.getClass() + " to " + scriptClass);
             }
             Object securityTemp = scriptClass.getConstructor().newInstance();
             if(securityTemp instanceof PortofinoRealm) {
                 PortofinoRealm realm = (PortofinoRealm) securityTemp;
                 configureDelegate(realm);
-                PortofinoRealm oldSecurity = security;
-                security = realm;
-                LifecycleUtils.destroy(oldSecurity);
-                return realm;
+                if(SECURITY_UPDATER.compareAndSet(this, current, realm)) {
+                    LifecycleUtils.destroy(current);
+                    SecurityLogic.clearPermissionsCache();
+                    return realm;
+                } else {
+                    logger.debug("Another thread has refreshed the delegate in the meantime");
+                    LifecycleUtils.destroy(realm);
+                    return doEnsureDelegate();
+                }
             } else {
                  throw new ClassCastException(
                          "Security object is not an instance of " + PortofinoRealm.class + ": " + securityTemp +
@@ -142,12 +157,16 @@ public class SecurityClassRealm implements PortofinoRealm, Initializable, Destro
     
     @Override
     public void verifyUser(Serializable user) {
-        ensureDelegate().verifyUser(user);
+        PortofinoRealm delegate = ensureDelegate();
+        delegate.verifyUser(user);
+        delegate.clearAuthorizationCache(user);
     }
 
     @Override
     public void changePassword(Serializable user, String oldPassword, String newPassword) {
-        ensureDelegate().changePassword(user, oldPassword, newPassword);
+        PortofinoRealm delegate = ensureDelegate();
+        delegate.changePassword(user, oldPassword, newPassword);
+        delegate.clearAuthorizationCache(user);
     }
 
     @Override
@@ -182,7 +201,10 @@ public class SecurityClassRealm implements PortofinoRealm, Initializable, Destro
 
     @Override
     public String saveSelfRegisteredUser(Object user) {
-        return ensureDelegate().saveSelfRegisteredUser(user);
+        PortofinoRealm delegate = ensureDelegate();
+        String token = delegate.saveSelfRegisteredUser(user);
+        delegate.clearAuthorizationCache(user);
+        return token;
     }
 
     @Override
@@ -215,6 +237,16 @@ public class SecurityClassRealm implements PortofinoRealm, Initializable, Destro
         return ensureDelegate().getGroups(principal);
     }
 
+    @Override
+    public void clearAuthorizationCache(Object principal) {
+        ensureDelegate().clearAuthorizationCache(principal);
+    }
+
+    @Override
+    public void clearAuthorizationCache() {
+        ensureDelegate().clearAuthorizationCache();
+    }
+
     @Override
     public String generateWebToken(Object principal) {
         return ensureDelegate().generateWebToken(principal);
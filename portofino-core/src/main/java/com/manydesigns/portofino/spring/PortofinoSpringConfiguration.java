@@ -1,8 +1,11 @@
 package com.manydesigns.portofino.spring;
 
 import com.manydesigns.elements.blobs.BlobManager;
+import com.manydesigns.elements.blobs.BlobMetadataIndex;
+import com.manydesigns.elements.blobs.DeduplicatingBlobManager;
 import com.manydesigns.elements.blobs.HierarchicalBlobManager;
 import com.manydesigns.elements.blobs.SimpleBlobManager;
+import com.manydesigns.elements.servlet.ElementsFilter;
 import com.manydesigns.portofino.PortofinoProperties;
 import com.manydesigns.portofino.cache.CacheResetListenerRegistry;
 import com.manydesigns.portofino.code.CodeBase;
@@ -20,6 +23,7 @@ import org.springframework.context.annotation.Bean;
 
 import javax.servlet.ServletContext;
 import java.io.File;
+import java.io.IOException;
 
 @org.springframework.context.annotation.Configuration
 public class PortofinoSpringConfiguration {
@@ -74,17 +78,36 @@ public class PortofinoSpringConfiguration {
             appBlobsDir = new File(applicationDirectory.getName().getPath(), "blobs");
         }
         logger.info("Blobs directory: " + appBlobsDir.getAbsolutePath());
+        if(servletContext != null && servletContext.getAttribute(ElementsFilter.UPLOAD_DIRECTORY_ATTRIBUTE) == null) {
+            //Spool uploads on the same file system as the blobs, so that they can be moved rather than copied
+            servletContext.setAttribute(ElementsFilter.UPLOAD_DIRECTORY_ATTRIBUTE, new File(appBlobsDir, "uploads"));
+        }
 
         String metaFilenamePattern = "blob-{0}.properties";
         String dataFilenamePattern = "blob-{0}.data";
         File[] blobs = appBlobsDir.listFiles((dir, name) -> name.startsWith("blob-") && name.endsWith(".properties"));
+        SimpleBlobManager blobManager;
         if(blobs == null || blobs.length == 0) { //Null if the directory does not exist yet
-            logger.info("Using hierarchical blob manager");
-            return new HierarchicalBlobManager(appBlobsDir, metaFilenamePattern, dataFilenamePattern);
+            if(configuration.getBoolean(PortofinoProperties.BLOBS_DEDUPLICATE, false)) {
+                logger.info("Using deduplicating blob manager");
+                blobManager = new DeduplicatingBlobManager(appBlobsDir, metaFilenamePattern, dataFilenamePattern);
+            } else {
+                logger.info("Using hierarchical blob manager");
+                blobManager = new HierarchicalBlobManager(appBlobsDir, metaFilenamePattern, dataFilenamePattern);
+            }
         } else {
             logger.warn("Blobs found directly under the blobs directory: using old style (pre-4.1.1) flat file blob manager");
-            return new SimpleBlobManager(appBlobsDir, metaFilenamePattern, dataFilenamePattern);
+            blobManager = new SimpleBlobManager(appBlobsDir, metaFilenamePattern, dataFilenamePattern);
+        }
+        if(configuration.getBoolean(PortofinoProperties.BLOBS_METADATA_INDEX, false)) {
+            File indexFile = new File(appBlobsDir, BlobMetadataIndex.DEFAULT_FILE_NAME);
+            try {
+                blobManager.setMetadataIndex(BlobMetadataIndex.open(indexFile));
+            } catch (IOException e) {
+                logger.warn("Could not open the blob metadata index " + indexFile + ", reading metadata from files", e);
+            }
         }
+        return blobManager;
     }
 
     @Bean
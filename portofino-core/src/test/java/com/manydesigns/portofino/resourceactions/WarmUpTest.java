@@ -0,0 +1,119 @@
+package com.manydesigns.portofino.resourceactions;
+
+import com.manydesigns.portofino.dispatcher.ResourceResolver;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.VFS;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+public class WarmUpTest {
+
+    protected File directory;
+    protected FileObject actionsDirectory;
+
+    @BeforeMethod
+    public void createActions() throws Exception {
+        directory = Files.createTempDirectory("portofino-warmup").toFile();
+        for(String path : Arrays.asList("a/a1/a11", "a/a2", "b/b1", "c")) {
+            assertTrue(new File(directory, "actions/" + path).mkdirs());
+        }
+        actionsDirectory = VFS.getManager().toFileObject(new File(directory, "actions"));
+    }
+
+    @AfterMethod
+    public void deleteActions() throws Exception {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void testParentsAreWarmedUpBeforeChildren() throws Exception {
+        RecordingResolver resolver = new RecordingResolver();
+        WarmUp warmUp = new WarmUp();
+        assertFalse(warmUp.isReady());
+        warmUp.start(4, null, actionsDirectory, resolver, null);
+        warmUp.getCompletion().toCompletableFuture().get(30, TimeUnit.SECONDS);
+        assertTrue(warmUp.isReady());
+        assertEquals(warmUp.getStatus().get("completed"), 7);
+        assertEquals(warmUp.getStatus().get("failed"), 0);
+
+        List<String> order = resolver.resolved;
+        assertEquals(new HashSet<>(order), new HashSet<>(Arrays.asList(
+                "a", "a/a1", "a/a1/a11", "a/a2", "b", "b/b1", "c")));
+        for(String path : order) {
+            int slash = path.lastIndexOf('/');
+            if(slash > 0) {
+                assertTrue(order.indexOf(path.substring(0, slash)) < order.indexOf(path), order.toString());
+            }
+        }
+    }
+
+    @Test
+    public void testOnlyProfiledActionsAreWarmedUp() throws Exception {
+        TrafficProfile profile = new TrafficProfile(new File(directory, "profile.properties"), actionsDirectory);
+        profile.recordAccess(actionsDirectory.resolveFile("a/a1"));
+        profile.recordAccess(actionsDirectory.resolveFile("c"));
+        profile.recordAccess(actionsDirectory);
+        profile.save();
+
+        TrafficProfile loaded = new TrafficProfile(profile.getFile(), actionsDirectory);
+        loaded.load(TimeUnit.DAYS.toMillis(1));
+        assertEquals(loaded.getPaths(), new HashSet<>(Arrays.asList("a/a1", "c")));
+        loaded.load(-1);
+        assertTrue(loaded.getPaths().isEmpty());
+
+        RecordingResolver resolver = new RecordingResolver();
+        WarmUp warmUp = new WarmUp();
+        warmUp.start(2, null, actionsDirectory, resolver, profile.getPaths());
+        warmUp.getCompletion().toCompletableFuture().get(30, TimeUnit.SECONDS);
+        assertEquals(new HashSet<>(resolver.resolved), profile.getPaths());
+    }
+
+    public static class Action {}
+
+    protected class RecordingResolver implements ResourceResolver {
+
+        protected final List<String> resolved = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public <T> T resolve(FileObject location, Class<T> type) throws Exception {
+            Thread.sleep(10);
+            resolved.add(actionsDirectory.getName().getRelativeName(location.getName()));
+            return type.cast(Action.class);
+        }
+
+        @Override
+        public boolean supports(Class<?> type) {
+            return true;
+        }
+
+        @Override
+        public boolean supports(String extension) {
+            return true;
+        }
+
+        @Override
+        public FileObject resolve(FileObject location) throws FileSystemException {
+            return location;
+        }
+
+        @Override
+        public FileObject resolve(FileObject location, String name) throws FileSystemException {
+            return location.resolveFile(name);
+        }
+
+        @Override
+        public <T> T resolve(FileObject location, String name, Class<T> type) throws Exception {
+            return resolve(resolve(location, name), type);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.manydesigns.portofino.rest.messagebodywriters;
+
+import com.manydesigns.elements.Element;
+import com.manydesigns.elements.Mode;
+import com.manydesigns.elements.forms.Form;
+import com.manydesigns.elements.forms.FormBuilder;
+import com.manydesigns.elements.forms.TableForm;
+import com.manydesigns.elements.forms.TableFormBuilder;
+import com.manydesigns.elements.test.ElementsTestSupport;
+import com.manydesigns.elements.util.FormUtil;
+import org.apache.commons.io.output.NullOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.SkipException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.core.MediaType;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+public class FormMessageBodyWriterTest extends ElementsTestSupport {
+
+    private static final Logger logger = LoggerFactory.getLogger(FormMessageBodyWriterTest.class);
+
+    protected final FormMessageBodyWriter writer = new FormMessageBodyWriter();
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        super.setUp();
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    @Test
+    public void testOutputIsUnchanged() throws IOException {
+        Form form = new FormBuilder(Bean.class).configMode(Mode.VIEW).build();
+        form.readFromObject(new Bean(1));
+        assertTrue(writer.isWriteable(Form.class, Form.class, null, MediaType.APPLICATION_JSON_TYPE));
+        assertEquals(write(form), FormUtil.writeToJson(form).getBytes());
+
+        TableForm tableForm = tableForm(10);
+        assertTrue(writer.isWriteable(TableForm.class, TableForm.class, null, MediaType.APPLICATION_JSON_TYPE));
+        assertFalse(writer.isWriteable(TableForm.class, TableForm.class, null, MediaType.TEXT_HTML_TYPE));
+        String json = FormUtil.writeToJson(tableForm);
+        assertTrue(json.startsWith("[{\"" + FormUtil.JSON_ROW_KEY + "\":\"0\","), json);
+        assertEquals(write(tableForm), json.getBytes());
+    }
+
+    /**
+     * Compares writing a large table form to a String and then to the response, as the writer used to do,
+     * with streaming it. Skipped unless run with e.g. -Dform.writer.benchmark.rows=100000.
+     */
+    @Test
+    public void benchmark() throws IOException {
+        Integer rows = Integer.getInteger("form.writer.benchmark.rows");
+        if(rows == null) {
+            throw new SkipException("Benchmark; run with -Dform.writer.benchmark.rows=<number of rows>");
+        }
+        TableForm tableForm = tableForm(rows);
+        long[] inMemory = null;
+        long[] streamed = null;
+        for(int i = 0; i < 3; i++) {
+            inMemory = measure(() -> NullOutputStream.NULL_OUTPUT_STREAM.write(
+                    FormUtil.writeToJson(tableForm).getBytes()));
+            streamed = measure(() -> writer.writeTo(
+                    tableForm, TableForm.class, TableForm.class, null, MediaType.APPLICATION_JSON_TYPE, null,
+                    NullOutputStream.NULL_OUTPUT_STREAM));
+            logger.info("{} rows: in memory {}ms, {} bytes allocated; streamed {}ms, {} bytes allocated",
+                    rows, inMemory[0], inMemory[1], streamed[0], streamed[1]);
+        }
+        if(streamed[1] >= 0) {
+            //Streaming saves at least the copies of the whole document as a String and as a byte array
+            assertTrue(streamed[1] < inMemory[1], "Streamed: " + streamed[1] + ", in memory: " + inMemory[1]);
+        }
+    }
+
+    protected byte[] write(Element form) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeTo(form, form.getClass(), form.getClass(), null, MediaType.APPLICATION_JSON_TYPE, null, out);
+        return out.toByteArray();
+    }
+
+    protected TableForm tableForm(int rows) {
+        TableForm tableForm = new TableFormBuilder(Bean.class).configNRows(rows).configMode(Mode.VIEW).build();
+        List<Bean> beans = new ArrayList<>(rows);
+        for(int i = 0; i < rows; i++) {
+            beans.add(new Bean(i));
+        }
+        tableForm.readFromObject(beans);
+        return tableForm;
+    }
+
+    /**
+     * @return the elapsed milliseconds and the bytes allocated by the current thread, if the JVM can tell.
+     */
+    protected static long[] measure(IOAction action) throws IOException {
+        long allocated = allocatedBytes();
+        long start = System.nanoTime();
+        action.run();
+        long elapsed = (System.nanoTime() - start) / 1000000;
+        return new long[] { elapsed, allocatedBytes() - allocated };
+    }
+
+    protected static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if(threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    protected interface IOAction {
+        void run() throws IOException;
+    }
+
+    public static class Bean {
+        public Integer id;
+        public String name;
+        public String description;
+        public BigDecimal amount;
+        public Date date;
+        public Boolean active;
+
+        public Bean(int id) {
+            this.id = id;
+            this.name = "Name " + id;
+            this.description = "\"Quoted\" description, with accents: àèìòù €, and a\nnew line";
+            this.amount = new BigDecimal(id).movePointLeft(2);
+            this.date = new Date(1500000000000L + id * 1000L);
+            this.active = id % 2 == 0;
+        }
+    }
+}
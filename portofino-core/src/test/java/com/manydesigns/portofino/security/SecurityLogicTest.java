@@ -0,0 +1,62 @@
+package com.manydesigns.portofino.security;
+
+import com.manydesigns.portofino.actions.ActionDescriptor;
+import com.manydesigns.portofino.actions.Group;
+import com.manydesigns.portofino.actions.Permissions;
+import com.manydesigns.portofino.resourceactions.ActionInstance;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class SecurityLogicTest {
+
+    @BeforeMethod
+    public void clearCache() {
+        SecurityLogic.clearPermissionsCache();
+    }
+
+    @Test
+    public void testActualPermissionsAreInheritedAndCached() {
+        ActionInstance root = new ActionInstance(null, null, descriptor("all", "VIEW", "registered", "EDIT"), null);
+        ActionInstance child = new ActionInstance(root, null, descriptor("all", "DENY"), null);
+        ActionInstance grandChild = new ActionInstance(child, null, descriptor("all", "EDIT", "anonymous", "VIEW"), null);
+
+        Permissions permissions = SecurityLogic.calculateActualPermissions(grandChild);
+        assertEquals(permissions.getActualLevels().get("all"), AccessLevel.DENY);
+        assertEquals(permissions.getActualLevels().get("registered"), AccessLevel.EDIT);
+        assertEquals(permissions.getActualLevels().get("anonymous"), AccessLevel.VIEW);
+
+        assertSame(SecurityLogic.calculateActualPermissions(grandChild), permissions);
+        //The ancestors' results have been computed and cached along the way
+        Permissions childPermissions = SecurityLogic.calculateActualPermissions(child);
+        assertSame(SecurityLogic.calculateActualPermissions(
+                new ActionInstance(root, null, child.getActionDescriptor(), null)), childPermissions);
+
+        SecurityLogic.clearPermissionsCache();
+        Permissions recalculated = SecurityLogic.calculateActualPermissions(grandChild);
+        assertNotSame(recalculated, permissions);
+        assertEquals(recalculated.getActualLevels(), permissions.getActualLevels());
+    }
+
+    @Test
+    public void testReloadedDescriptorsAreNotConfused() {
+        ActionInstance root = new ActionInstance(null, null, descriptor("all", "VIEW"), null);
+        assertEquals(SecurityLogic.calculateActualPermissions(root).getActualLevels().get("all"), AccessLevel.VIEW);
+        ActionInstance reloaded = new ActionInstance(null, null, descriptor("all", "NONE"), null);
+        assertEquals(SecurityLogic.calculateActualPermissions(reloaded).getActualLevels().get("all"), AccessLevel.NONE);
+    }
+
+    protected ActionDescriptor descriptor(String... groupsAndLevels) {
+        ActionDescriptor actionDescriptor = new ActionDescriptor();
+        for(int i = 0; i < groupsAndLevels.length; i += 2) {
+            Group group = new Group();
+            group.setName(groupsAndLevels[i]);
+            group.setAccessLevel(groupsAndLevels[i + 1]);
+            actionDescriptor.getPermissions().getGroups().add(group);
+        }
+        actionDescriptor.init();
+        return actionDescriptor;
+    }
+
+}
@@ -0,0 +1,118 @@
+package com.manydesigns.portofino.shiro;
+
+import org.apache.commons.configuration2.PropertiesConfiguration;
+import org.apache.shiro.authc.AuthenticationInfo;
+import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.subject.SimplePrincipalCollection;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.Serializable;
+import java.util.*;
+
+import static org.testng.Assert.*;
+
+public class AbstractPortofinoRealmTest {
+
+    protected TestRealm realm;
+
+    @BeforeMethod
+    public void setup() {
+        realm = new TestRealm();
+        realm.portofinoConfiguration = new PropertiesConfiguration();
+        realm.portofinoConfiguration.setProperty(AbstractPortofinoRealm.AUTHORIZATION_CACHE_TTL_PROPERTY, 300);
+        realm.init();
+    }
+
+    @Test
+    public void testAuthorizationInfoIsCachedByUserId() {
+        realm.groups.put("1", "editors");
+        assertTrue(realm.hasRole(principals("1", "first login"), "editors"));
+        assertTrue(realm.hasRole(principals("1", "second login"), "editors"));
+        assertFalse(realm.hasRole(principals("2", "other user"), "editors"));
+        assertEquals(realm.loads, 2);
+    }
+
+    @Test
+    public void testAuthorizationInfoIsEvictedExplicitly() {
+        realm.groups.put("1", "editors");
+        assertTrue(realm.hasRole(principals("1", "user"), "editors"));
+        realm.groups.put("1", "viewers");
+        assertTrue(realm.hasRole(principals("1", "user"), "editors"));
+
+        realm.clearAuthorizationCache(user("1", "user"));
+        assertFalse(realm.hasRole(principals("1", "user"), "editors"));
+        assertTrue(realm.hasRole(principals("1", "user"), "viewers"));
+
+        realm.groups.put("1", "editors");
+        realm.clearAuthorizationCache();
+        assertTrue(realm.hasRole(principals("1", "user"), "editors"));
+        assertEquals(realm.loads, 3);
+    }
+
+    @Test
+    public void testCachingIsOffByDefault() {
+        realm = new TestRealm();
+        realm.portofinoConfiguration = new PropertiesConfiguration();
+        realm.init();
+        realm.groups.put("1", "editors");
+        assertTrue(realm.hasRole(principals("1", "user"), "editors"));
+        assertTrue(realm.hasRole(principals("1", "user"), "editors"));
+        assertEquals(realm.loads, 2);
+    }
+
+    protected HashMap<String, String> user(String id, String name) {
+        HashMap<String, String> user = new HashMap<>();
+        user.put("id", id);
+        user.put("name", name);
+        return user;
+    }
+
+    protected SimplePrincipalCollection principals(String id, String name) {
+        return new SimplePrincipalCollection(user(id, name), "test");
+    }
+
+    public static class TestRealm extends AbstractPortofinoRealm {
+
+        protected final Map<String, String> groups = new HashMap<>();
+        protected int loads = 0;
+
+        @Override
+        protected Collection<String> loadAuthorizationInfo(Serializable principal) {
+            loads++;
+            String group = groups.get(getUserId(principal));
+            return group != null ? Collections.singleton(group) : Collections.emptySet();
+        }
+
+        @Override
+        protected AuthenticationInfo doGetAuthenticationInfo(AuthenticationToken token) {
+            return null;
+        }
+
+        @Override
+        public String encryptPassword(String password) {
+            return password;
+        }
+
+        @Override
+        public Map<Serializable, String> getUsers() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public Serializable getUserId(Serializable user) {
+            return ((Map) user).get("id").toString();
+        }
+
+        @Override
+        public String getUsername(Serializable user) {
+            return (String) ((Map) user).get("name");
+        }
+
+        @Override
+        public String getEmail(Serializable user) {
+            return null;
+        }
+    }
+
+}
@@ -27,9 +27,12 @@ import org.apache.commons.configuration2.Configuration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /*
 * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
@@ -41,6 +44,22 @@ public class CrudModule implements Module {
     public static final String copyright =
             "Copyright (C) 2005-2020 ManyDesigns srl";
 
+    /**
+     * Whether CRUD searches count the matching records on a separate session, concurrently with loading the
+     * current page (default false). The count does not see the changes not yet committed by the request.
+     */
+    public static final String SEARCH_CONCURRENT_COUNT = "portofino.crud.search.concurrentCount";
+    /**
+     * The maximum number of threads counting search results concurrently (default: available processors).
+     */
+    public static final String SEARCH_THREADS = "portofino.crud.search.threads";
+    public static final String SEARCH_EXECUTOR = "crudSearchExecutor";
+    /**
+     * Whether CRUD searches only fetch the properties that the search results display, rather than whole objects
+     * (default true).
+     */
+    public static final String SEARCH_PROJECTIONS = "portofino.crud.search.projections";
+
     //**************************************************************************
     // Fields
     //**************************************************************************
@@ -52,6 +71,7 @@ public class CrudModule implements Module {
     public ActionRegistry actionRegistry;
 
     protected ModuleStatus status = ModuleStatus.CREATED;
+    protected ThreadPoolExecutor searchExecutor;
 
     //**************************************************************************
     // Logging
@@ -77,8 +97,27 @@ public class CrudModule implements Module {
         status = ModuleStatus.STARTED;
     }
 
+    @Bean(name = SEARCH_EXECUTOR)
+    public synchronized ExecutorService getSearchExecutor() {
+        if(searchExecutor == null) {
+            int threads = configuration.getInt(SEARCH_THREADS, Runtime.getRuntime().availableProcessors());
+            AtomicInteger count = new AtomicInteger();
+            searchExecutor = new ThreadPoolExecutor(
+                    threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                        Thread thread = new Thread(runnable, "Portofino CRUD search " + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            searchExecutor.allowCoreThreadTimeOut(true);
+        }
+        return searchExecutor;
+    }
+
     @PreDestroy
     public void destroy() {
+        if(searchExecutor != null) {
+            searchExecutor.shutdown();
+        }
         status = ModuleStatus.DESTROYED;
     }
 
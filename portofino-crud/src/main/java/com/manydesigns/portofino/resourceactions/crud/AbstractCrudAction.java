@@ -71,6 +71,7 @@ import org.joda.time.DateTime;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONStringer;
+import org.json.JSONWriter;
 import org.jsoup.Jsoup;
 import org.jsoup.safety.Whitelist;
 import org.slf4j.Logger;
@@ -84,15 +85,19 @@ import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStreamWriter;
 import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -284,27 +289,35 @@ public abstract class AbstractCrudAction<T extends Serializable> extends Abstrac
         executeSearch();
         final long totalRecords = getTotalSearchRecords();
 
-        JSONStringer js = new JSONStringer();
-        js.object()
-                .key("recordsReturned")
-                .value(objects.size())
-                .key("totalRecords")
-                .value(totalRecords)
-                .key("startIndex")
-                .value(firstResult == null ? 0 : firstResult)
-                .key("records")
-                .array();
-        for (TableForm.Row row : tableForm.getRows()) {
-            js.object()
-                    .key("__rowKey")
-                    .value(row.getKey());
-            FormUtil.fieldsToJson(js, row);
-            js.endObject();
-        }
-        js.endArray();
-        js.endObject();
-        String jsonText = js.toString();
-        Response.ResponseBuilder builder = Response.ok(jsonText).type(MediaType.APPLICATION_JSON_TYPE).encoding("UTF-8");
+        final int recordsReturned = objects.size();
+        final int startIndex = firstResult == null ? 0 : firstResult;
+        //The records are written to the response as they're serialized, rather than built as a String first
+        StreamingOutput streamingOutput = output -> {
+            //The stream belongs to the container, it must be flushed but not closed
+            Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            JSONWriter js = new JSONWriter(writer);
+            try {
+                js.object()
+                        .key("recordsReturned")
+                        .value(recordsReturned)
+                        .key("totalRecords")
+                        .value(totalRecords)
+                        .key("startIndex")
+                        .value(startIndex)
+                        .key("records");
+                FormUtil.writeToJson(tableForm, js);
+                js.endObject();
+            } catch (JSONException e) {
+                //JSONWriter wraps the errors of the stream, e.g. when the client disconnects
+                if(e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw e;
+            }
+            writer.flush();
+        };
+        Response.ResponseBuilder builder =
+                Response.ok(streamingOutput).type(MediaType.APPLICATION_JSON_TYPE).encoding("UTF-8");
         Integer rowsPerPage = getCrudConfiguration().getRowsPerPage();
         if(rowsPerPage != null && totalRecords > rowsPerPage) {
             int firstResult = getFirstResult() != null ? getFirstResult() : 1;
@@ -895,7 +908,18 @@ public abstract class AbstractCrudAction<T extends Serializable> extends Abstrac
     }
 
     protected TableFormBuilder createTableFormBuilder() {
-        return new TableFormBuilder(classAccessor);
+        return new TableFormBuilder(classAccessor).configFormPlanKey(getFormPlanKey());
+    }
+
+    /**
+     * Returns the key of the plans used to build the forms of this action. The class accessor is created anew for
+     * each request, so by default plans last a single request; subclasses whose accessor only changes with their
+     * configuration can return a longer-lived key.
+     * @return the key, or null to use the class accessor.
+     * @see com.manydesigns.elements.fields.helpers.FieldsManager#getFormPlan(Object, Mode)
+     */
+    protected Object getFormPlanKey() {
+        return null;
     }
 
     /**
@@ -980,7 +1004,7 @@ public abstract class AbstractCrudAction<T extends Serializable> extends Abstrac
     }
 
     protected FormBuilder createFormBuilder() {
-        return new FormBuilder(classAccessor);
+        return new FormBuilder(classAccessor).configFormPlanKey(getFormPlanKey());
     }
 
     /**
@@ -21,19 +21,31 @@
 package com.manydesigns.portofino.resourceactions.crud;
 
 import com.manydesigns.elements.ElementsThreadLocals;
+import com.manydesigns.elements.Mode;
 import com.manydesigns.elements.annotations.Insertable;
 import com.manydesigns.elements.annotations.Updatable;
+import com.manydesigns.elements.fields.DatabaseBlobField;
+import com.manydesigns.elements.fields.Field;
+import com.manydesigns.elements.forms.FieldSet;
+import com.manydesigns.elements.forms.Form;
+import com.manydesigns.elements.forms.FormBuilder;
+import com.manydesigns.elements.forms.TableForm;
+import com.manydesigns.elements.forms.TableFormBuilder;
 import com.manydesigns.elements.messages.RequestMessages;
 import com.manydesigns.elements.reflection.ClassAccessor;
 import com.manydesigns.elements.reflection.PropertyAccessor;
+import com.manydesigns.elements.text.AbstractOgnlFormat;
 import com.manydesigns.elements.text.QueryStringWithParameters;
+import com.manydesigns.elements.text.TextFormat;
 import com.manydesigns.portofino.model.database.Database;
 import com.manydesigns.portofino.model.database.DatabaseLogic;
 import com.manydesigns.portofino.model.database.ForeignKey;
 import com.manydesigns.portofino.model.database.Table;
+import com.manydesigns.portofino.modules.CrudModule;
 import com.manydesigns.portofino.persistence.Persistence;
 import com.manydesigns.portofino.persistence.QueryUtils;
 import com.manydesigns.portofino.persistence.TableCriteria;
+import com.manydesigns.portofino.persistence.hibernate.HibernateDatabaseSetup;
 import com.manydesigns.portofino.resourceactions.ActionInstance;
 import com.manydesigns.portofino.resourceactions.ResourceActionName;
 import com.manydesigns.portofino.resourceactions.annotations.ConfigurationClass;
@@ -54,16 +66,24 @@ import net.sf.jsqlparser.statement.select.SelectExpressionItem;
 import org.apache.commons.lang.StringUtils;
 import org.hibernate.Session;
 import org.hibernate.exception.ConstraintViolationException;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 
 import java.io.Serializable;
 import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
@@ -83,6 +103,8 @@ public class CrudAction<T extends Serializable> extends AbstractCrudAction<T> {
     public static final String copyright =
             "Copyright (C) 2005-2020 ManyDesigns srl";
 
+    protected static final Pattern PROPERTY_NAME_PATTERN = Pattern.compile("[A-Za-z_$][A-Za-z0-9_$]*");
+
     public static final String[][] CRUD_CONFIGURATION_FIELDS =
                 {{"name", "database", "query", "searchTitle", "createTitle", "readTitle", "editTitle", "variable",
                   "largeResultSet", "rowsPerPage", "columns"}};
@@ -98,7 +120,12 @@ public class CrudAction<T extends Serializable> extends AbstractCrudAction<T> {
     @Autowired
     public Persistence persistence;
 
+    @Autowired(required = false)
+    @Qualifier(CrudModule.SEARCH_EXECUTOR)
+    public ExecutorService searchExecutor;
+
     protected long totalSearchRecords = -1;
+    protected CompletableFuture<Long> totalSearchRecordsFuture;
 
     //**************************************************************************
     // Logging
@@ -109,6 +136,18 @@ public class CrudAction<T extends Serializable> extends AbstractCrudAction<T> {
 
     @Override
     public long getTotalSearchRecords() {
+        if(totalSearchRecords < 0 && totalSearchRecordsFuture != null) {
+            try {
+                totalSearchRecords = totalSearchRecordsFuture.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                logger.warn("Could not count search records concurrently, counting them again", e.getCause());
+            } finally {
+                totalSearchRecordsFuture = null;
+            }
+        }
         if(totalSearchRecords < 0) {
             calculateTotalSearchRecords();
         }
@@ -116,6 +155,32 @@ public class CrudAction<T extends Serializable> extends AbstractCrudAction<T> {
     }
 
     protected long calculateTotalSearchRecords() {
+        return totalSearchRecords = countSearchRecords(session, createCountQuery());
+    }
+
+    /**
+     * Starts counting the search records on a separate session, so that the count query runs concurrently with the
+     * one loading the current page. The count is collected by {@link #getTotalSearchRecords()}.
+     */
+    protected void startCountingSearchRecords() {
+        HibernateDatabaseSetup setup = persistence.getDatabaseSetup(getCrudConfiguration().getDatabase());
+        QueryStringWithParameters countQuery = createCountQuery();
+        totalSearchRecordsFuture = CompletableFuture.supplyAsync(ElementsThreadLocals.propagateSupplier(() -> {
+            Session countSession = setup.createSession();
+            try {
+                return countSearchRecords(countSession, countQuery);
+            } finally {
+                countSession.close();
+            }
+        }), searchExecutor);
+    }
+
+    protected boolean isCountingSearchRecordsConcurrently() {
+        return searchExecutor != null && portofinoConfiguration != null &&
+               portofinoConfiguration.getBoolean(CrudModule.SEARCH_CONCURRENT_COUNT, false);
+    }
+
+    protected QueryStringWithParameters createCountQuery() {
         TableCriteria criteria = new TableCriteria(baseTable);
         if(searchForm != null) {
             searchForm.configureCriteria(criteria);
@@ -131,8 +196,12 @@ public class CrudAction<T extends Serializable> extends AbstractCrudAction<T> {
             throw new Error(e);
         }
         //TODO gestire count non disponibile (totalRecordsQueryString == null)
-        List<Object> result = QueryUtils.runHqlQuery(session, totalRecordsQueryString, query.getParameters());
-        return totalSearchRecords = ((Number) result.get(0)).longValue();
+        return new QueryStringWithParameters(totalRecordsQueryString, query.getParameters());
+    }
+
+    protected long countSearchRecords(Session session, QueryStringWithParameters countQuery) {
+        List<Object> result = QueryUtils.runHqlQuery(session, countQuery.getQueryString(), countQuery.getParameters());
+        return ((Number) result.get(0)).longValue();
     }
 
     protected String generateCountQuery(String queryString) throws JSQLParserException {
@@ -222,6 +291,29 @@ public class CrudAction<T extends Serializable> extends AbstractCrudAction<T> {
         return new ModelSelectionProviderSupport(this, persistence);
     }
 
+    /**
+     * The class accessor only depends on the table and on the configuration, which is initialized again, and
+     * discards its plans, when either changes.
+     */
+    @Override
+    protected Object getFormPlanKey() {
+        return crudConfiguration;
+    }
+
+    @Override
+    protected Form buildForm(FormBuilder formBuilder) {
+        Form form = super.buildForm(formBuilder);
+        //Let Hibernate create the LOBs of uploaded blobs, so that they're streamed in a way the driver supports
+        for(FieldSet fieldSet : form) {
+            for(Field field : fieldSet.fields()) {
+                if(field instanceof DatabaseBlobField) {
+                    ((DatabaseBlobField) field).setLobFactory(session.getLobHelper()::createBlob);
+                }
+            }
+        }
+        return form;
+    }
+
     @Override
     protected boolean saveConfiguration(Object configuration) {
         CrudConfiguration crudConfiguration = (CrudConfiguration) configuration;
@@ -302,6 +394,13 @@ public class CrudAction<T extends Serializable> extends AbstractCrudAction<T> {
 
     @SuppressWarnings({"rawtypes", "unchecked"})
     public List<T> loadObjects() {
+        if(totalSearchRecords < 0 && totalSearchRecordsFuture == null && isCountingSearchRecordsConcurrently()) {
+            try {
+                startCountingSearchRecords();
+            } catch (RuntimeException e) {
+                logger.warn("Could not count search records concurrently", e);
+            }
+        }
         try {
             TableCriteria criteria = new TableCriteria(baseTable);
             if(searchForm != null) {
@@ -315,7 +414,18 @@ public class CrudAction<T extends Serializable> extends AbstractCrudAction<T> {
                     logger.error("Can't order by " + sortProperty + ", property accessor not found", e);
                 }
             }
-            objects = (List) QueryUtils.getObjects(session, getBaseQuery(), criteria, this, firstResult, maxResults);
+            String[] properties = isLoadingSearchProjections() ? getSearchResultProperties() : null;
+            List<Object[]> rows = null;
+            if(properties != null) {
+                rows = QueryUtils.getProjection(
+                        session, getBaseQuery(), criteria, this, properties, firstResult, maxResults);
+            }
+            if(rows != null) {
+                objects = createSearchResults(properties, rows);
+            } else {
+                objects = (List) QueryUtils.getObjects(
+                        session, getBaseQuery(), criteria, this, firstResult, maxResults);
+            }
         } catch (ClassCastException e) {
             objects = new ArrayList<>();
             logger.warn("Incorrect Field Type", e);
@@ -324,6 +434,108 @@ public class CrudAction<T extends Serializable> extends AbstractCrudAction<T> {
         return objects;
     }
 
+    protected boolean isLoadingSearchProjections() {
+        return portofinoConfiguration == null ||
+               portofinoConfiguration.getBoolean(CrudModule.SEARCH_PROJECTIONS, true);
+    }
+
+    /**
+     * Computes the properties that the search results need: those displayed by the table form, those used by its
+     * links and row keys, and those of the selection providers. To find them, the table form is built with no rows.
+     * @return the names of the properties, or null if the search results need whole objects, because the table form
+     * uses something else than the columns of the base table.
+     */
+    protected String[] getSearchResultProperties() {
+        TableFormBuilder tableFormBuilder = createTableFormBuilder();
+        configureTableFormBuilder(tableFormBuilder, Mode.VIEW, 0);
+        TableForm tableForm = buildTableForm(tableFormBuilder);
+
+        Set<String> properties = new LinkedHashSet<>();
+        for (PropertyAccessor property : classAccessor.getKeyProperties()) {
+            properties.add(property.getName());
+        }
+        if(!addTextFormatProperties(properties, tableForm.getKeyGenerator())) {
+            return null;
+        }
+        for (TableForm.Column column : tableForm.getColumns()) {
+            properties.add(column.getPropertyAccessor().getName());
+            if(!addTextFormatProperties(properties, column.getHrefTextFormat()) ||
+               !addTextFormatProperties(properties, column.getTitleTextFormat())) {
+                return null;
+            }
+        }
+        if(selectionProviderSupport != null) {
+            for (CrudSelectionProvider current : selectionProviderSupport.getCrudSelectionProviders()) {
+                if(current.getSelectionProvider() != null) {
+                    properties.addAll(Arrays.asList(current.getFieldNames()));
+                }
+            }
+        }
+        for (String property : properties) {
+            try {
+                classAccessor.getProperty(property);
+            } catch (NoSuchFieldException e) {
+                logger.debug("Search results use {}, which is not a property, loading whole objects", property);
+                return null;
+            }
+            if(DatabaseLogic.findColumnByPropertyName(baseTable, property) == null) {
+                logger.debug("Search results use {}, which is not a column, loading whole objects", property);
+                return null;
+            }
+        }
+        return properties.toArray(new String[0]);
+    }
+
+    /**
+     * Adds to the given set the properties that a text format reads from the objects it formats.
+     * @return false if the format reads anything else than properties, true otherwise.
+     */
+    protected boolean addTextFormatProperties(Set<String> properties, @Nullable TextFormat textFormat) {
+        if(textFormat == null) {
+            return true;
+        }
+        if(!(textFormat instanceof AbstractOgnlFormat)) {
+            return false;
+        }
+        for (String expression : ((AbstractOgnlFormat) textFormat).getOgnlExpressions()) {
+            expression = expression.trim();
+            if(!PROPERTY_NAME_PATTERN.matcher(expression).matches()) {
+                logger.debug("Search results use the expression {}, loading whole objects", expression);
+                return false;
+            }
+            properties.add(expression);
+        }
+        return true;
+    }
+
+    /**
+     * Creates the search results from the values of their properties. The results are new objects, not associated
+     * with the session, and only the given properties are set.
+     * @param propertyNames the names of the properties.
+     * @param rows the values of the properties, in the same order as their names, for each result.
+     * @return the search results.
+     */
+    @SuppressWarnings("unchecked")
+    protected List<T> createSearchResults(String[] propertyNames, List<Object[]> rows) {
+        PropertyAccessor[] properties = new PropertyAccessor[propertyNames.length];
+        for (int i = 0; i < propertyNames.length; i++) {
+            try {
+                properties[i] = classAccessor.getProperty(propertyNames[i]);
+            } catch (NoSuchFieldException e) {
+                throw new IllegalArgumentException("Not a property: " + propertyNames[i], e);
+            }
+        }
+        List<T> results = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            T result = (T) classAccessor.newInstance();
+            for (int i = 0; i < properties.length; i++) {
+                properties[i].set(result, row[i]);
+            }
+            results.add(result);
+        }
+        return results;
+    }
+
     /**
      * Computes the query underlying the CRUD action. By default, it returns configuration.query i.e. the HQL query
      * stored in configuration.xml. However, you can override this method to insert your own logic, for example to
@@ -24,7 +24,9 @@ import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
 import com.manydesigns.elements.ElementsThreadLocals;
 import com.manydesigns.elements.annotations.ShortName;
+import com.manydesigns.elements.ognl.OgnlUtils;
 import com.manydesigns.elements.options.*;
+import com.manydesigns.elements.reflection.PropertyAccessor;
 import com.manydesigns.elements.text.OgnlSqlFormat;
 import com.manydesigns.elements.text.OgnlTextFormat;
 import com.manydesigns.elements.text.QueryStringWithParameters;
@@ -32,6 +34,7 @@ import com.manydesigns.elements.text.TextFormat;
 import com.manydesigns.portofino.resourceactions.crud.configuration.database.SelectionProviderReference;
 import com.manydesigns.portofino.persistence.Persistence;
 import com.manydesigns.portofino.persistence.QueryUtils;
+import com.manydesigns.portofino.persistence.TableCriteria;
 import com.manydesigns.portofino.logic.SelectionProviderLogic;
 import com.manydesigns.portofino.model.database.*;
 import com.manydesigns.portofino.resourceactions.crud.configuration.CrudProperty;
@@ -62,6 +65,11 @@ public class ModelSelectionProviderSupport implements SelectionProviderSupport {
     public static final Logger logger =
             LoggerFactory.getLogger(ModelSelectionProviderSupport.class);
 
+    /**
+     * The maximum number of values looked up with a single query, to keep the IN lists within the database limits.
+     */
+    public static final int LOOKUP_BATCH_SIZE = 500;
+
     protected final CrudAction crudAction;
     protected final Persistence persistence;
     protected List<CrudSelectionProvider> crudSelectionProviders;
@@ -303,45 +311,83 @@ public class ModelSelectionProviderSupport implements SelectionProviderSupport {
                     "refers to an entity that does not exist ({})", name, hql);
             return null;
         }
-        return new MemoizingOptionProvider(() -> {
-            String entityName = table.getActualEntityName();
-            Session session = persistence.getSession(databaseName);
-            QueryStringWithParameters queryWithParameters = QueryUtils.mergeQuery(hql, null, this);
+        String entityName = table.getActualEntityName();
+        OptionProvider optionProvider = new OptionProvider() {
+            @Override
+            public List<Option> getOptions() {
+                Session session = persistence.getSession(databaseName);
+                QueryStringWithParameters queryWithParameters =
+                        QueryUtils.mergeQuery(hql, null, ModelSelectionProviderSupport.this);
+
+                Collection<Object> objects = getFromQueryCache(selectionProvider, queryWithParameters);
+                if (objects == null) {
+                    String queryString = queryWithParameters.getQueryString();
+                    Object[] parameters = queryWithParameters.getParameters();
+                    logger.debug("Query not in cache: {}", queryString);
+                    try {
+                        objects = QueryUtils.runHqlQuery(session, queryString, parameters);
+                    } catch (Exception e) {
+                        logger.error("Exception in populating selection provider " + name, e);
+                        return null;
+                    }
+                    putInQueryCache(selectionProvider, queryWithParameters, objects);
+                }
 
-            Collection<Object> objects = getFromQueryCache(selectionProvider, queryWithParameters);
-            if (objects == null) {
-                String queryString = queryWithParameters.getQueryString();
-                Object[] parameters = queryWithParameters.getParameters();
-                logger.debug("Query not in cache: {}", queryString);
+                Stream<Option> optionStream = toOptions(objects);
+                if (selectionProvider instanceof ForeignKey) {
+                    optionStream = optionStream.sorted(DefaultSelectionProvider.OPTION_COMPARATOR_BY_LABEL);
+                }
+                return optionStream.collect(Collectors.toList());
+            }
+
+            @Override
+            public List<Option> lookupOptions(Collection<?> values) {
+                TableAccessor tableAccessor = persistence.getTableAccessor(databaseName, entityName);
+                if(tableAccessor.getKeyProperties().length != 1) {
+                    return null;
+                }
+                PropertyAccessor keyProperty = tableAccessor.getKeyProperties()[0];
+                Session session = persistence.getSession(databaseName);
+                List<Object> objects = new ArrayList<>(values.size());
+                List<Object> keys = new ArrayList<>(values.size());
+                for (Object value : values) {
+                    keys.add(OgnlUtils.convertValue(value, keyProperty.getType()));
+                }
                 try {
-                    objects = QueryUtils.runHqlQuery(session, queryString, parameters);
+                    for (int i = 0; i < keys.size(); i += LOOKUP_BATCH_SIZE) {
+                        List<Object> batch = keys.subList(i, Math.min(i + LOOKUP_BATCH_SIZE, keys.size()));
+                        TableCriteria criteria = new TableCriteria(table);
+                        criteria.in(keyProperty, batch.toArray());
+                        QueryStringWithParameters queryWithParameters =
+                                QueryUtils.mergeQuery(hql, criteria, ModelSelectionProviderSupport.this);
+                        objects.addAll(QueryUtils.runHqlQuery(
+                                session, queryWithParameters.getQueryString(), queryWithParameters.getParameters()));
+                    }
                 } catch (Exception e) {
-                    logger.error("Exception in populating selection provider " + name, e);
+                    logger.warn("Could not look up the options of selection provider " + name, e);
                     return null;
                 }
-                putInQueryCache(selectionProvider, queryWithParameters, objects);
+                return toOptions(objects).collect(Collectors.toList());
             }
 
-            TableAccessor tableAccessor =
-                    persistence.getTableAccessor(databaseName, entityName);
-            ShortName shortNameAnnotation =
-                    tableAccessor.getAnnotation(ShortName.class);
-            TextFormat[] textFormats = null;
-            //L'ordinamento e' usato solo in caso di chiave singola
-            if (shortNameAnnotation != null && tableAccessor.getKeyProperties().length == 1) {
-                textFormats = new TextFormat[]{
-                        OgnlTextFormat.create(shortNameAnnotation.value())
-                };
-            }
-            final TextFormat[] actualTextFormats = textFormats;
-            Stream<OptionProvider.Option> optionStream =
-                    objects.stream().map(o -> SelectionProviderLogic.getOption(
-                            name, tableAccessor.getKeyProperties(), actualTextFormats, o));
-            if (selectionProvider instanceof ForeignKey) {
-                optionStream = optionStream.sorted(DefaultSelectionProvider.OPTION_COMPARATOR_BY_LABEL);
+            protected Stream<Option> toOptions(Collection<Object> objects) {
+                TableAccessor tableAccessor =
+                        persistence.getTableAccessor(databaseName, entityName);
+                ShortName shortNameAnnotation =
+                        tableAccessor.getAnnotation(ShortName.class);
+                TextFormat[] textFormats = null;
+                //L'ordinamento e' usato solo in caso di chiave singola
+                if (shortNameAnnotation != null && tableAccessor.getKeyProperties().length == 1) {
+                    textFormats = new TextFormat[]{
+                            OgnlTextFormat.create(shortNameAnnotation.value())
+                    };
+                }
+                final TextFormat[] actualTextFormats = textFormats;
+                return objects.stream().map(o -> SelectionProviderLogic.getOption(
+                        name, tableAccessor.getKeyProperties(), actualTextFormats, o));
             }
-            return optionStream.collect(Collectors.toList());
-        });
+        };
+        return new MemoizingOptionProvider(optionProvider);
     }
 
     @NotNull
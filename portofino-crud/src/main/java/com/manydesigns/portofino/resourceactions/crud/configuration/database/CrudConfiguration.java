@@ -23,6 +23,7 @@ package com.manydesigns.portofino.resourceactions.crud.configuration.database;
 import com.manydesigns.elements.annotations.Enabled;
 import com.manydesigns.elements.annotations.Multiline;
 import com.manydesigns.elements.annotations.Required;
+import com.manydesigns.elements.fields.helpers.FieldsManager;
 import com.manydesigns.portofino.model.database.Database;
 import com.manydesigns.portofino.model.database.DatabaseLogic;
 import com.manydesigns.portofino.model.database.Table;
@@ -112,6 +113,8 @@ public class CrudConfiguration extends com.manydesigns.portofino.resourceactions
                 ref.init(actualTable);
             }
         }
+        //Forms are built from the table and the properties resolved above
+        FieldsManager.getManager().discardFormPlans(this);
     }
 
     //**************************************************************************
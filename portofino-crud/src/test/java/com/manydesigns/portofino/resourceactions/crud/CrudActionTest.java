@@ -24,12 +24,17 @@ import com.manydesigns.elements.ElementsThreadLocals;
 import com.manydesigns.elements.Mode;
 import com.manydesigns.elements.annotations.FileBlob;
 import com.manydesigns.elements.annotations.Required;
+import com.manydesigns.elements.annotations.ShortName;
 import com.manydesigns.elements.blobs.Blob;
 import com.manydesigns.elements.blobs.HierarchicalBlobManager;
 import com.manydesigns.elements.fields.AbstractBlobField;
 import com.manydesigns.elements.fields.Field;
 import com.manydesigns.elements.fields.FileBlobField;
+import com.manydesigns.elements.options.OptionProvider;
 import com.manydesigns.elements.reflection.ClassAccessor;
+import com.manydesigns.elements.reflection.MutableClassAccessor;
+import com.manydesigns.elements.reflection.MutablePropertyAccessor;
+import com.manydesigns.elements.reflection.PropertyAccessor;
 import com.manydesigns.elements.servlet.MutableHttpServletRequest;
 import com.manydesigns.portofino.PortofinoProperties;
 import com.manydesigns.portofino.actions.ActionDescriptor;
@@ -38,7 +43,10 @@ import com.manydesigns.portofino.model.Annotation;
 import com.manydesigns.portofino.model.Property;
 import com.manydesigns.portofino.model.database.Column;
 import com.manydesigns.portofino.model.database.DatabaseLogic;
+import com.manydesigns.portofino.model.database.DatabaseSelectionProvider;
+import com.manydesigns.portofino.model.database.ForeignKey;
 import com.manydesigns.portofino.model.database.IncrementGenerator;
+import com.manydesigns.portofino.model.database.Reference;
 import com.manydesigns.portofino.model.database.Table;
 import com.manydesigns.portofino.model.database.platforms.DatabasePlatformsRegistry;
 import com.manydesigns.portofino.persistence.Persistence;
@@ -46,7 +54,9 @@ import com.manydesigns.portofino.resourceactions.ActionContext;
 import com.manydesigns.portofino.resourceactions.ActionInstance;
 import com.manydesigns.portofino.resourceactions.crud.configuration.CrudProperty;
 import com.manydesigns.portofino.resourceactions.crud.configuration.database.CrudConfiguration;
+import com.manydesigns.portofino.resourceactions.crud.configuration.database.SelectionProviderReference;
 import org.apache.commons.configuration2.Configuration;
+import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.configuration2.PropertiesConfiguration;
 import org.apache.commons.fileupload.disk.DiskFileItem;
 import org.apache.commons.io.IOUtils;
@@ -57,18 +67,32 @@ import org.glassfish.jersey.test.JerseyTest;
 import org.h2.tools.RunScript;
 import org.hibernate.Session;
 import org.hibernate.jdbc.Work;
+import org.hibernate.stat.Statistics;
 import org.jetbrains.annotations.NotNull;
+import org.json.JSONArray;
+import org.json.JSONObject;
 import org.testng.annotations.*;
 
 import javax.ws.rs.core.Application;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static org.testng.Assert.*;
 
@@ -139,6 +163,305 @@ public class CrudActionTest extends JerseyTest {
         //testTable.getPrimaryKey().getPrimaryKeyColumns().get(0).setGenerator(new SequenceGenerator());
     }
 
+    public void testSearchIsStreamed() throws Exception {
+        CrudConfiguration configuration = createSearchConfiguration("from category order by catid", "catid");
+        configuration.setRowsPerPage(2);
+        CrudAction crudAction = setupSearch(new SearchCrudAction(), configuration);
+
+        Response response = crudAction.jsonSearchData();
+        assertTrue(response.getEntity() instanceof StreamingOutput);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ((StreamingOutput) response.getEntity()).write(out);
+        JSONObject json = new JSONObject(new String(out.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(json.getInt("recordsReturned"), 2);
+        assertEquals(json.getInt("totalRecords"), 5);
+        assertEquals(json.getInt("startIndex"), 0);
+        JSONArray records = json.getJSONArray("records");
+        assertEquals(records.length(), 2);
+        assertEquals(records.getJSONObject(0).getJSONObject("catid").getString("value"), "BIRDS");
+        assertNotNull(response.getHeaderString("Link"));
+    }
+
+    public void testSearchLoadsProjections() throws Exception {
+        SearchCrudAction crudAction = new SearchCrudAction();
+        crudAction.readLinkExpression = "/products/%{name}/%{productid}";
+        setupSearch(crudAction, "from product", "productid");
+
+        //productid is the key and a column, name is used by the link, category by the selection provider
+        String[] properties = crudAction.getSearchResultProperties();
+        assertNotNull(properties);
+        assertEquals(new HashSet<>(Arrays.asList(properties)), new HashSet<>(Arrays.asList("productid", "name", "category")));
+
+        List<?> objects = crudAction.loadObjects();
+        assertEquals(objects.size(), 16);
+        for(Object object : objects) {
+            Map product = (Map) object;
+            assertNotNull(product.get("productid"));
+            assertNotNull(product.get("name"));
+            assertNotNull(product.get("category"));
+            assertNull(product.get("descn"));
+        }
+
+        JSONObject record = searchRecords(crudAction).getJSONObject(0);
+        Map first = (Map) objects.get(0);
+        assertEquals(record.getJSONObject("productid").getString("href"),
+                "/products/" + first.get("name") + "/" + first.get("productid"));
+        assertFalse(record.has("descn"));
+    }
+
+    public void testSearchLoadsWholeObjectsWithExpressions() throws Exception {
+        SearchCrudAction crudAction = new SearchCrudAction();
+        crudAction.readLinkExpression = "/products/%{productid.toLowerCase()}";
+        setupSearch(crudAction, "from product", "productid");
+
+        assertNull(crudAction.getSearchResultProperties());
+        assertLoadsWholeObjects(crudAction);
+        JSONObject record = searchRecords(crudAction).getJSONObject(0);
+        assertTrue(record.getJSONObject("productid").getString("href").matches("/products/[a-z0-9-]+"));
+    }
+
+    public void testSearchLoadsWholeObjectsWithNonColumnProperties() throws Exception {
+        SearchCrudAction crudAction = new SearchCrudAction() {
+            @NotNull
+            @Override
+            protected ClassAccessor filterAccordingToPermissions(ClassAccessor classAccessor) {
+                //A property computed in Java rather than read from the database
+                MutableClassAccessor accessor = new MutableClassAccessor();
+                accessor.setName(classAccessor.getName());
+                accessor.setType(classAccessor.getType());
+                for(PropertyAccessor property : classAccessor.getProperties()) {
+                    if(ArrayUtils.contains(classAccessor.getKeyProperties(), property)) {
+                        accessor.addKeyProperty(property);
+                    } else {
+                        accessor.addProperty(property);
+                    }
+                }
+                accessor.addProperty(new MutablePropertyAccessor("label", String.class));
+                return accessor;
+            }
+        };
+        crudAction.readLinkExpression = "/products/%{productid}/%{label}";
+        setupSearch(crudAction, "from product", "productid");
+
+        assertNull(crudAction.getSearchResultProperties());
+        assertLoadsWholeObjects(crudAction);
+    }
+
+    public void testSearchLooksUpSelectOptions() throws Exception {
+        setupCategoryShortName();
+        CrudConfiguration configuration =
+                createSearchConfiguration("from product order by productid", "productid", "category");
+        configuration.setRowsPerPage(5);
+        CrudAction crudAction = setupSearch(new SearchCrudAction(), configuration);
+
+        Statistics statistics = startCountingQueries();
+        JSONArray records = searchRecords(crudAction);
+        String[] categories = { "BIRDS", "BIRDS", "FISH", "FISH", "FISH" };
+        String[] labels = { "Birds", "Birds", "Fish", "Fish", "Fish" };
+        assertEquals(records.length(), categories.length);
+        for(int i = 0; i < categories.length; i++) {
+            JSONObject category = records.getJSONObject(i).getJSONObject("category");
+            assertEquals(category.getString("value"), categories[i]);
+            assertEquals(category.getString("displayValue"), labels[i]);
+        }
+        //A single query looks up the categories of the page, none loads all of them
+        assertEquals(countQueries(statistics, "from category where"), 1);
+        assertEquals(countQueries(statistics, "from category"), 1);
+    }
+
+    public void testSearchLooksUpFilteredSelectOptions() throws Exception {
+        Table productTable = DatabaseLogic.findTableByName(persistence.getModel(), "jpetstore", "PUBLIC", "PRODUCT");
+        DatabaseSelectionProvider selectionProvider = new DatabaseSelectionProvider(productTable);
+        selectionProvider.setName("categories_but_fish");
+        selectionProvider.setToDatabase("jpetstore");
+        selectionProvider.setHql("from category where catid <> 'FISH' order by name");
+        Reference reference = new Reference(selectionProvider);
+        reference.setFromColumn("CATEGORY");
+        reference.setToColumn("CATID");
+        selectionProvider.getReferences().add(reference);
+        productTable.getSelectionProviders().add(selectionProvider);
+        setupCategoryShortName();
+
+        CrudConfiguration configuration =
+                createSearchConfiguration("from product order by productid", "productid", "category");
+        configuration.setRowsPerPage(5);
+        SelectionProviderReference selectionProviderReference = new SelectionProviderReference();
+        selectionProviderReference.setSelectionProviderName("categories_but_fish");
+        configuration.getSelectionProviders().add(selectionProviderReference);
+        CrudAction crudAction = setupSearch(new SearchCrudAction(), configuration);
+
+        Statistics statistics = startCountingQueries();
+        JSONArray records = searchRecords(crudAction);
+        assertEquals(records.length(), 5);
+        for(int i = 0; i < 2; i++) {
+            JSONObject category = records.getJSONObject(i).getJSONObject("category");
+            assertEquals(category.getString("value"), "BIRDS");
+            assertEquals(category.getString("displayValue"), "Birds");
+        }
+        //The query of the selection provider excludes FISH, so the products in that category have no value
+        for(int i = 2; i < 5; i++) {
+            JSONObject category = records.getJSONObject(i).getJSONObject("category");
+            assertTrue(category.isNull("value"));
+            assertFalse(category.has("displayValue"));
+        }
+        assertEquals(countQueries(statistics, "from category"), 1);
+        for(String query : statistics.getQueries()) {
+            if(query.toLowerCase().startsWith("from category")) {
+                assertTrue(query.matches("(?i)from category where .*catid <> 'FISH'.* in .* order by name"), query);
+            }
+        }
+    }
+
+    public void testLookupOptionsInBatches() {
+        setupCategoryShortName();
+        OptionProvider optionProvider = createOptionProvider("PRODUCT", "CATEGORY");
+        List<Object> values = new ArrayList<>();
+        for(int i = 0; i < 2 * ModelSelectionProviderSupport.LOOKUP_BATCH_SIZE; i++) {
+            values.add("MISSING-" + i);
+        }
+        values.add("FISH");
+        values.add("BIRDS");
+
+        Statistics statistics = startCountingQueries();
+        List<OptionProvider.Option> options = optionProvider.lookupOptions(values);
+        assertNotNull(options);
+        assertEquals(countQueries(statistics, "from category"), 3);
+        assertEquals(options.size(), 2);
+        Map<Object, String> labels = new HashMap<>();
+        for(OptionProvider.Option option : options) {
+            labels.put(option.getValues()[0], option.getLabels()[0]);
+        }
+        assertEquals(labels.get("FISH"), "Fish");
+        assertEquals(labels.get("BIRDS"), "Birds");
+    }
+
+    public void testLookupOptionsConvertsValues() {
+        OptionProvider optionProvider = createOptionProvider("ITEM", "SUPPLIER");
+        List<OptionProvider.Option> options = optionProvider.lookupOptions(Arrays.asList("1", "2", "3"));
+        assertNotNull(options);
+        assertEquals(options.size(), 2);
+        Set<Object> values = new HashSet<>();
+        for(OptionProvider.Option option : options) {
+            values.add(option.getValues()[0]);
+        }
+        //The key of the supplier table is mapped to BigInteger
+        assertEquals(values, new HashSet<>(Arrays.asList(BigInteger.ONE, BigInteger.valueOf(2))));
+    }
+
+    protected OptionProvider createOptionProvider(String tableName, String columnName) {
+        Table table = DatabaseLogic.findTableByName(persistence.getModel(), "jpetstore", "PUBLIC", tableName);
+        for(ForeignKey foreignKey : table.getForeignKeys()) {
+            if(foreignKey.getReferences().get(0).getFromColumn().equals(columnName)) {
+                return new ModelSelectionProviderSupport(null, persistence).createHQLOptionProvider(
+                        foreignKey, foreignKey.getName(), "jpetstore", foreignKey.getHql());
+            }
+        }
+        throw new IllegalArgumentException("No foreign key on " + tableName + "." + columnName);
+    }
+
+    protected void setupCategoryShortName() {
+        Table categoryTable = DatabaseLogic.findTableByName(persistence.getModel(), "jpetstore", "PUBLIC", "CATEGORY");
+        Annotation annotation = new Annotation(categoryTable, ShortName.class.getName());
+        annotation.getProperties().add(new Property("value", "%{name}"));
+        categoryTable.getAnnotations().add(annotation);
+        persistence.initModel();
+    }
+
+    protected void assertLoadsWholeObjects(CrudAction crudAction) {
+        List<?> objects = crudAction.loadObjects();
+        assertEquals(objects.size(), 16);
+        Session session = persistence.getSession("jpetstore");
+        for(Object object : objects) {
+            assertNotNull(((Map) object).get("descn"));
+            assertTrue(session.contains("product", object));
+        }
+    }
+
+    protected Statistics startCountingQueries() {
+        Statistics statistics = persistence.getSession("jpetstore").getSessionFactory().getStatistics();
+        statistics.clear();
+        statistics.setStatisticsEnabled(true);
+        return statistics;
+    }
+
+    protected long countQueries(Statistics statistics, String prefix) {
+        long count = 0;
+        for(String query : statistics.getQueries()) {
+            if(query.toLowerCase().startsWith(prefix)) {
+                count += statistics.getQueryStatistics(query).getExecutionCount();
+            }
+        }
+        return count;
+    }
+
+    protected JSONArray searchRecords(CrudAction crudAction) throws IOException {
+        Response response = crudAction.jsonSearchData();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ((StreamingOutput) response.getEntity()).write(out);
+        return new JSONObject(new String(out.toByteArray(), StandardCharsets.UTF_8)).getJSONArray("records");
+    }
+
+    protected CrudConfiguration createSearchConfiguration(String query, String... summaryProperties) {
+        CrudConfiguration configuration = new CrudConfiguration();
+        configuration.setDatabase("jpetstore");
+        configuration.setQuery(query);
+        for(String name : summaryProperties) {
+            CrudProperty property = new CrudProperty();
+            property.setName(name);
+            property.setEnabled(true);
+            property.setInSummary(true);
+            configuration.getProperties().add(property);
+        }
+        return configuration;
+    }
+
+    protected CrudAction setupSearch(CrudAction crudAction, String query, String... summaryProperties) {
+        return setupSearch(crudAction, createSearchConfiguration(query, summaryProperties));
+    }
+
+    protected CrudAction setupSearch(CrudAction crudAction, CrudConfiguration configuration) {
+        MutableHttpServletRequest req = new MutableHttpServletRequest();
+        ElementsThreadLocals.setHttpServletRequest(req);
+        req.getServletContext().setInitParameter("portofino.api.root", "http://fake");
+        configuration.persistence = persistence;
+        configuration.init();
+
+        ActionInstance actionInstance = new ActionInstance(null, null, new ActionDescriptor(), CrudAction.class);
+        actionInstance.setConfiguration(configuration);
+        ActionContext actionContext = new ActionContext();
+        actionContext.setRequest(req);
+        actionContext.setActionPath("");
+        actionContext.setServletContext(req.getServletContext());
+        crudAction.persistence = persistence;
+        crudAction.blobManager = new HierarchicalBlobManager(
+                new File(System.getProperty("java.io.tmpdir")), "blob-{0}.properties", "blob-{0}.data");
+        crudAction.setContext(actionContext);
+        crudAction.setActionInstance(actionInstance);
+        crudAction.init();
+        return crudAction;
+    }
+
+    protected static class SearchCrudAction extends CrudAction {
+
+        protected String readLinkExpression;
+
+        @NotNull
+        @Override
+        protected ClassAccessor filterAccordingToPermissions(ClassAccessor classAccessor) {
+            return classAccessor; //Let's ignore Shiro
+        }
+
+        @Override
+        protected String getUrlEncoding() {
+            return PortofinoProperties.URL_ENCODING_DEFAULT;
+        }
+
+        @Override
+        protected String getReadLinkExpression() {
+            return readLinkExpression != null ? readLinkExpression : super.getReadLinkExpression();
+        }
+    }
+
     public void testBlobs() throws Exception {
         MutableHttpServletRequest req = new MutableHttpServletRequest();
         ElementsThreadLocals.setMultipart(req);
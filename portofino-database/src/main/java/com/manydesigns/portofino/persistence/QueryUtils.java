@@ -434,6 +434,99 @@ public class QueryUtils {
         return runHqlQuery(session, result.getQueryString(), result.getParameters(), firstResult, maxResults);
     }
 
+    /**
+     * Runs a query like {@link #getObjects(Session, String, TableCriteria, Object, Integer, Integer)}, but only
+     * fetches the given properties of the entity of the criteria, rather than whole entities that the session would
+     * have to keep and check for changes. The query must select that entity, either implicitly
+     * (<code>from Entity e ...</code>) or by its alias (<code>select e from Entity e ...</code>).
+     * @param session the session
+     * @param queryString the query
+     * @param criteria the search criteria to merge with the query.
+     * @param rootObject the rootFactory object passed to the ognl evaluator (can be null).
+     * @param propertyNames the names of the properties to fetch.
+     * @param firstResult index of the first result to return
+     * @param maxResults maximum number of results to return
+     * @return at most <code>maxResults</code> results from the query, each an array with the values of the
+     * properties in the same order as their names; or null, if the query selects something else than the entity.
+     */
+    public static @Nullable List<Object[]> getProjection(
+            Session session,
+            String queryString,
+            TableCriteria criteria,
+            @Nullable Object rootObject,
+            String[] propertyNames,
+            @Nullable Integer firstResult,
+            @Nullable Integer maxResults) {
+        QueryStringWithParameters result = mergeQuery(queryString, criteria, rootObject);
+        String projectionQueryString;
+        try {
+            projectionQueryString = getProjectionQueryString(
+                    result.getQueryString(), criteria.getTable().getActualEntityName(), propertyNames);
+        } catch (JSQLParserException e) {
+            throw new RuntimeException("Couldn't project query", e);
+        }
+        if(projectionQueryString == null) {
+            logger.debug("Query {} does not select the entity {}, it cannot be projected",
+                    result.getQueryString(), criteria.getTable().getActualEntityName());
+            return null;
+        }
+
+        List<Object> rows = runHqlQuery(
+                session, projectionQueryString, result.getParameters(), firstResult, maxResults);
+        List<Object[]> projection = new ArrayList<>(rows.size());
+        for(Object row : rows) {
+            //With a single property, Hibernate returns its values rather than arrays
+            projection.add(propertyNames.length == 1 ? new Object[] { row } : (Object[]) row);
+        }
+        return projection;
+    }
+
+    /**
+     * Replaces the select clause of a HQL query with the given properties of an entity.
+     * @param queryString the query.
+     * @param entityName the name of the entity.
+     * @param propertyNames the names of the properties to select.
+     * @return the projected query, or null if the query selects something else than the entity, or it selects
+     * distinct results (which a different select clause could change).
+     */
+    protected static @Nullable String getProjectionQueryString(
+            String queryString, String entityName, String[] propertyNames) throws JSQLParserException {
+        PlainSelect parsedQuery = parseQuery(new CCJSqlParserManager(), queryString);
+        if(parsedQuery.getDistinct() != null || parsedQuery.getSelectItems().size() != 1) {
+            return null;
+        }
+        SelectItem selectItem = parsedQuery.getSelectItems().get(0);
+        if(!(selectItem instanceof SelectExpressionItem) ||
+           !(((SelectExpressionItem) selectItem).getExpression() instanceof net.sf.jsqlparser.schema.Column)) {
+            return null;
+        }
+        String selected = ((SelectExpressionItem) selectItem).getExpression().toString();
+        Alias mainEntityAlias = getEntityAlias(entityName, parsedQuery);
+        boolean implicit = FAKE_SELECT_PREFIX.trim().equalsIgnoreCase("select " + selected);
+        if(implicit) {
+            //Without a select clause, a query with joins returns all the joined entities
+            if(parsedQuery.getJoins() != null && !parsedQuery.getJoins().isEmpty() && mainEntityAlias == null) {
+                return null;
+            }
+        } else if(mainEntityAlias == null || !mainEntityAlias.getName().equals(selected)) {
+            return null;
+        }
+
+        net.sf.jsqlparser.schema.Table mainEntityTable;
+        if(mainEntityAlias != null) {
+            mainEntityTable = new net.sf.jsqlparser.schema.Table(null, mainEntityAlias.getName());
+        } else {
+            mainEntityTable = new net.sf.jsqlparser.schema.Table();
+        }
+        List<SelectItem> selectItems = new ArrayList<>(propertyNames.length);
+        for(String propertyName : propertyNames) {
+            selectItems.add(new SelectExpressionItem(
+                    new net.sf.jsqlparser.schema.Column(mainEntityTable, propertyName)));
+        }
+        parsedQuery.setSelectItems(selectItems);
+        return parsedQuery.toString();
+    }
+
     /**
      * Merges a HQL query string with a {@link TableCriteria} object representing a search. The query string
      * is processed with an {@link OgnlSqlFormat}, so it can access values from the OGNL context, as well as
@@ -644,6 +644,10 @@ public class SessionFactoryBuilder {
                 annotation.addMemberValue("type", new StringMemberValue(StringBooleanType.class.getName(), constPool));
                 fieldAnnotations.addAnnotation(annotation);
             }
+        } else if(java.sql.Blob.class.isAssignableFrom(column.getActualJavaType())) {
+            //Loading the entity only fetches the LOB locator; the contents are streamed when they are read
+            annotation = new Annotation(Lob.class.getName(), constPool);
+            fieldAnnotations.addAnnotation(annotation);
         } else if(DateTime.class.isAssignableFrom(column.getActualJavaType())) {
             annotation = new Annotation(org.hibernate.annotations.Type.class.getName(), constPool);
             annotation.addMemberValue("type", new StringMemberValue(PersistentDateTime.class.getName(), constPool));
@@ -2,6 +2,8 @@ package com.manydesigns.portofino.database;
 
 import com.manydesigns.elements.ElementsProperties;
 import com.manydesigns.elements.ElementsThreadLocals;
+import com.manydesigns.elements.blobs.Blob;
+import com.manydesigns.elements.fields.DatabaseBlobField;
 import com.manydesigns.elements.fields.DateField;
 import com.manydesigns.elements.forms.Form;
 import com.manydesigns.elements.forms.FormBuilder;
@@ -18,6 +20,7 @@ import com.manydesigns.portofino.persistence.QueryUtils;
 import com.manydesigns.portofino.persistence.TableCriteria;
 import com.manydesigns.portofino.reflection.TableAccessor;
 import org.apache.commons.configuration2.Configuration;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.configuration2.PropertiesConfiguration;
 import org.apache.commons.vfs2.AllFileSelector;
 import org.apache.commons.vfs2.FileObject;
@@ -29,10 +32,13 @@ import org.hibernate.jdbc.Work;
 import org.testng.annotations.*;
 
 import javax.persistence.criteria.CriteriaQuery;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.time.LocalDate;
@@ -197,6 +203,29 @@ public class PersistenceTest {
         return category;
     }
 
+    public void testProjection() throws NoSuchFieldException {
+        Table table = DatabaseLogic.findTableByName(
+                persistence.getModel(), "jpetstore", "PUBLIC", "CATEGORY");
+        TableAccessor tableAccessor = new TableAccessor(table);
+        TableCriteria criteria = new TableCriteria(table);
+        criteria.eq(tableAccessor.getProperty("catid"), "FISH");
+        Session session = persistence.getSession("jpetstore");
+
+        List<Object[]> rows = QueryUtils.getProjection(
+                session, "from category c", criteria, null, new String[] { "catid", "name" }, null, null);
+        assertEquals(1, rows.size());
+        assertEquals("FISH", rows.get(0)[0]);
+        assertEquals("Fish", rows.get(0)[1]);
+
+        rows = QueryUtils.getProjection(
+                session, "select c from category c", criteria, null, new String[] { "catid" }, null, null);
+        assertEquals(1, rows.size());
+        assertEquals("FISH", rows.get(0)[0]);
+
+        assertNull(QueryUtils.getProjection(
+                session, "select c.name from category c", criteria, null, new String[] { "catid" }, null, null));
+    }
+
     public void testSearchAndUpdateCategorie() {
         Table table = DatabaseLogic.findTableByName(
                 persistence.getModel(), "jpetstore", "PUBLIC", "CATEGORY");
@@ -586,6 +615,42 @@ public class PersistenceTest {
         assertEquals(LocalDate.of(2010, 9, 27), get(domanda,"data"));
     }
 
+    public void testBlobMappedAsLob() throws Exception {
+        Table table = DatabaseLogic.findTableByName(persistence.getModel(), "hibernatetest", "PUBLIC", "TEST_BLOB");
+        assertNotNull(table);
+        Column column = DatabaseLogic.findColumnByName(table, "CONTENTS");
+        assertNotNull(column);
+        assertEquals(byte[].class, column.getActualJavaType());
+        column.setJavaType(java.sql.Blob.class.getName());
+        persistence.initModel();
+
+        Session session = persistence.getSession("hibernatetest");
+        Form form = new FormBuilder(persistence.getTableAccessor("hibernatetest", "test_blob"))
+                .configFields("contents").build();
+        DatabaseBlobField field = (DatabaseBlobField) form.findFieldByPropertyName("contents");
+        field.setLobFactory(session.getLobHelper()::createBlob);
+        byte[] contents = "some test data".getBytes(StandardCharsets.UTF_8);
+        Blob upload = new Blob(null);
+        upload.setInputStream(new ByteArrayInputStream(contents));
+        upload.setSize(contents.length);
+        field.setValue(upload);
+        Map<String, Object> data = new HashMap<>();
+        data.put("id", 1L);
+        Object entity = makeEntity("hibernatetest.public.TestBlob", data);
+        field.writeToObject(entity);
+        session.save("test_blob", entity);
+        session.flush();
+        session.clear();
+
+        entity = session.get("test_blob", 1L);
+        assertTrue(get(entity, "contents") instanceof java.sql.Blob);
+        field.readFromObject(entity);
+        assertEquals(contents.length, field.getValue().getSize());
+        try(InputStream inputStream = field.getValue().getInputStream()) {
+            assertEquals("some test data", IOUtils.toString(inputStream, StandardCharsets.UTF_8));
+        }
+    }
+
     public void testTableWithSpaces() {
         persistence.getSession("hibernatetest").createQuery("from test_spaces").list();
     }
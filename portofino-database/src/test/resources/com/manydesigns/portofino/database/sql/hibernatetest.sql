@@ -205,3 +205,8 @@ DROP TABLE IF EXISTS public.test_spaces; --it looks like Liquibase doesn't find
 CREATE TABLE public.test_spaces(
     "id spaces" bigint not null primary key,
     "some other column with spaces" character varying (123));
+
+DROP TABLE IF EXISTS public.test_blob;
+CREATE TABLE public.test_blob(
+    id bigint not null primary key,
+    contents blob);
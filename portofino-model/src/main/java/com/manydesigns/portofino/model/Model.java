@@ -22,10 +22,10 @@ package com.manydesigns.portofino.model;
 
 import com.manydesigns.portofino.model.database.Database;
 import org.apache.commons.configuration2.Configuration;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import javax.xml.bind.annotation.*;
-import java.util.LinkedList;
 import java.util.List;
 
 /*
@@ -44,7 +44,8 @@ public class Model {
     // Fields
     //**************************************************************************
 
-    protected final LinkedList<Database> databases;
+    protected final ModelObjectList<Database> databases;
+    protected final NameIndex<Database> databasesByName = new NameIndex<>(Database::getDatabaseName);
 
     public static final Logger logger = LoggerFactory.getLogger(Model.class);
 
@@ -53,7 +54,7 @@ public class Model {
     //**************************************************************************
 
     public Model() {
-        this.databases = new LinkedList<>();
+        this.databases = new ModelObjectList<>();
     }
 
     //**************************************************************************
@@ -61,6 +62,7 @@ public class Model {
     //**************************************************************************
 
     public void init(Configuration configuration) {
+        databasesByName.index(databases);
         for (Database database : databases) {
             init(database, configuration);
         }
@@ -72,6 +74,14 @@ public class Model {
         new LinkVisitor(this, configuration).visit(rootObject);
     }
 
+    //**************************************************************************
+    // Search
+    //**************************************************************************
+
+    public @Nullable Database findDatabaseByName(String databaseName) {
+        return databasesByName.find(databases, databaseName);
+    }
+
     //**************************************************************************
     // Getters/setter
     //**************************************************************************
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2005-2020 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.portofino.model;
+
+import java.util.ArrayList;
+
+/**
+ * List of model objects that keeps track of its modifications, so that {@link NameIndex}es built over it can tell
+ * when they have become stale.
+ *
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class ModelObjectList<T> extends ArrayList<T> {
+    public static final String copyright =
+            "Copyright (C) 2005-2020 ManyDesigns srl";
+
+    /**
+     * ArrayList does not count replacements as structural modifications, so we count them separately.
+     */
+    protected int replacements;
+
+    @Override
+    public T set(int index, T element) {
+        replacements++;
+        return super.set(index, element);
+    }
+
+    public int modificationCount() {
+        return modCount + replacements;
+    }
+}
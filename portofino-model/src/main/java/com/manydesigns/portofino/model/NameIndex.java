@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2005-2020 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.portofino.model;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Name-keyed hash index over a list of model objects, supporting both case-sensitive and case-insensitive lookups.
+ * Indexes are rebuilt by the model objects owning the list while the model is initialized; in between, an index
+ * rebuilds itself when the list is modified or when a hit no longer matches the requested name. Objects renamed
+ * without re-initializing the model may thus not be found under their new name, as it already happens for the other
+ * "actual" properties computed at init time.
+ *
+ * When more than one object has the same name, the first one in list order wins, as with a linear search.
+ *
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class NameIndex<T> {
+    public static final String copyright =
+            "Copyright (C) 2005-2020 ManyDesigns srl";
+
+    protected final Function<? super T, String> nameFunction;
+    protected volatile Snapshot<T> snapshot = new Snapshot<>();
+
+    public NameIndex(Function<? super T, String> nameFunction) {
+        this.nameFunction = nameFunction;
+    }
+
+    public void clear() {
+        snapshot = new Snapshot<>();
+    }
+
+    public void index(ModelObjectList<? extends T> objects) {
+        snapshot = new Snapshot<>(objects, nameFunction);
+    }
+
+    public @Nullable T find(ModelObjectList<? extends T> objects, String name) {
+        if(name == null) {
+            return null;
+        }
+        Snapshot<T> current = ensureIndexed(objects);
+        T candidate = current.byName.get(name);
+        if(candidate != null && !name.equals(nameFunction.apply(candidate))) {
+            index(objects);
+            candidate = snapshot.byName.get(name);
+        }
+        return candidate;
+    }
+
+    public @Nullable T findIgnoreCase(ModelObjectList<? extends T> objects, String name) {
+        if(name == null) {
+            return null;
+        }
+        Snapshot<T> current = ensureIndexed(objects);
+        String key = normalize(name);
+        T candidate = current.byNameIgnoreCase.get(key);
+        if(candidate != null && !name.equalsIgnoreCase(nameFunction.apply(candidate))) {
+            index(objects);
+            candidate = snapshot.byNameIgnoreCase.get(key);
+        }
+        return candidate;
+    }
+
+    protected Snapshot<T> ensureIndexed(ModelObjectList<? extends T> objects) {
+        Snapshot<T> current = snapshot;
+        if(current.modificationCount != objects.modificationCount()) {
+            current = new Snapshot<>(objects, nameFunction);
+            snapshot = current;
+        }
+        return current;
+    }
+
+    protected static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Immutable state of the index, published as a whole so that concurrent readers never see a partial rebuild.
+     */
+    protected static class Snapshot<T> {
+        protected final int modificationCount;
+        protected final Map<String, T> byName;
+        protected final Map<String, T> byNameIgnoreCase;
+
+        protected Snapshot() {
+            modificationCount = -1;
+            byName = Collections.emptyMap();
+            byNameIgnoreCase = Collections.emptyMap();
+        }
+
+        protected Snapshot(ModelObjectList<? extends T> objects, Function<? super T, String> nameFunction) {
+            modificationCount = objects.modificationCount();
+            byName = new HashMap<>(objects.size() * 2);
+            byNameIgnoreCase = new HashMap<>(objects.size() * 2);
+            for(T object : objects) {
+                String name = nameFunction.apply(object);
+                if(name != null) {
+                    byName.putIfAbsent(name, object);
+                    byNameIgnoreCase.putIfAbsent(normalize(name), object);
+                }
+            }
+        }
+    }
+}
@@ -22,7 +22,9 @@ package com.manydesigns.portofino.model.database;
 
 import com.manydesigns.portofino.model.Model;
 import com.manydesigns.portofino.model.ModelObject;
+import com.manydesigns.portofino.model.ModelObjectList;
 import com.manydesigns.portofino.model.ModelObjectVisitor;
+import com.manydesigns.portofino.model.NameIndex;
 import org.apache.commons.configuration2.Configuration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,6 +34,8 @@ import javax.xml.bind.annotation.*;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /*
 * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
@@ -50,7 +54,7 @@ public class Database implements ModelObject {
     // Fields
     //**************************************************************************
 
-    protected final List<Schema> schemas;
+    protected final ModelObjectList<Schema> schemas;
 
     protected String databaseName;
 
@@ -60,6 +64,13 @@ public class Database implements ModelObject {
 
     protected ConnectionProvider connectionProvider;
 
+    //**************************************************************************
+    // Fields for wire-up
+    //**************************************************************************
+
+    protected final NameIndex<Schema> schemasByName = new NameIndex<>(Schema::getSchemaName);
+    protected final Map<String, Table> tablesByEntityName = new ConcurrentHashMap<>();
+
     
     //**************************************************************************
     // Logging
@@ -71,7 +82,7 @@ public class Database implements ModelObject {
     // Constructors
     //**************************************************************************
     public Database() {
-        this.schemas = new ArrayList<>();
+        this.schemas = new ModelObjectList<>();
     }
 
     //**************************************************************************
@@ -84,7 +95,10 @@ public class Database implements ModelObject {
         return databaseName;
     }
 
-    public void reset() {}
+    public void reset() {
+        schemasByName.clear();
+        tablesByEntityName.clear();
+    }
 
     public void init(Model model, Configuration configuration) {
         if(databaseName == null) {
@@ -93,6 +107,7 @@ public class Database implements ModelObject {
         if(databaseName.contains("/") || databaseName.contains("\\")) {
             throw new IllegalStateException("Database name contains slashes or backslashes: " + databaseName);
         }
+        schemasByName.index(schemas);
     }
 
     public void link(Model model, Configuration configuration) {}
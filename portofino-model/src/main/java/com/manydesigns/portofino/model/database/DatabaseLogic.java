@@ -105,10 +105,9 @@ public class DatabaseLogic {
     //**************************************************************************
 
     public static @Nullable Database findDatabaseByName(Model model, String databaseName) {
-        for (Database database : model.getDatabases()) {
-            if (database.getDatabaseName().equals(databaseName)) {
-                return database;
-            }
+        Database database = model.findDatabaseByName(databaseName);
+        if (database != null) {
+            return database;
         }
         logger.debug("Database not found: {}", databaseName);
         return null;
@@ -116,10 +115,9 @@ public class DatabaseLogic {
 
     public static @Nullable Schema findSchemaByName(
             Database database, String schemaName) {
-        for (Schema schema : database.getSchemas()) {
-            if (schema.getSchemaName().equals(schemaName)) {
-                return schema;
-            }
+        Schema schema = database.schemasByName.find(database.schemas, schemaName);
+        if (schema != null) {
+            return schema;
         }
         logger.debug("Schema not found: {}", schemaName);
         return null;
@@ -127,10 +125,9 @@ public class DatabaseLogic {
 
     public static @Nullable Schema findSchemaByNameIgnoreCase(
             Database database, String schemaName) {
-        for (Schema schema : database.getSchemas()) {
-            if (schema.getSchemaName().equalsIgnoreCase(schemaName)) {
-                return schema;
-            }
+        Schema schema = database.schemasByName.findIgnoreCase(database.schemas, schemaName);
+        if (schema != null) {
+            return schema;
         }
         logger.debug("Schema not found: {}", schemaName);
         return null;
@@ -156,20 +153,18 @@ public class DatabaseLogic {
     }
 
     public static @Nullable Table findTableByName(Schema schema, String tableName) {
-        for (Table table : schema.getTables()) {
-            if (table.getTableName().equals(tableName)) {
-                return table;
-            }
+        Table table = schema.tablesByName.find(schema.tables, tableName);
+        if (table != null) {
+            return table;
         }
         logger.debug("Table {} not found in {}", tableName, schema);
         return null;
     }
 
     public static @Nullable Table findTableByNameIgnoreCase(Schema schema, String tableName) {
-        for (Table table : schema.getTables()) {
-            if (table.getTableName().equalsIgnoreCase(tableName)) {
-                return table;
-            }
+        Table table = schema.tablesByName.findIgnoreCase(schema.tables, tableName);
+        if (table != null) {
+            return table;
         }
         logger.debug("Table {} not found in {}", tableName, schema);
         return null;
@@ -177,10 +172,9 @@ public class DatabaseLogic {
 
     public static @Nullable Column findColumnByName(
             Table table, String columnName) {
-        for (Column column : table.getColumns()) {
-            if (column.getColumnName().equals(columnName)) {
-                return column;
-            }
+        Column column = table.columnsByName.find(table.columns, columnName);
+        if (column != null) {
+            return column;
         }
         logger.debug("Column {} not found in {}", columnName, table);
         return null;
@@ -188,20 +182,18 @@ public class DatabaseLogic {
 
     public static @Nullable Column findColumnByNameIgnoreCase(
             Table table, String columnName) {
-        for (Column column : table.getColumns()) {
-            if (column.getColumnName().equalsIgnoreCase(columnName)) {
-                return column;
-            }
+        Column column = table.columnsByName.findIgnoreCase(table.columns, columnName);
+        if (column != null) {
+            return column;
         }
         logger.debug("Column {} not found in {}", columnName, table);
         return null;
     }
 
     public static Column findColumnByPropertyName(Table table, String propertyName) {
-        for (Column column : table.getColumns()) {
-            if (column.getActualPropertyName().equals(propertyName)) {
-                return column;
-            }
+        Column column = table.columnsByPropertyName.find(table.columns, propertyName);
+        if (column != null) {
+            return column;
         }
         logger.debug("Property {} not found in {}", propertyName, table);
         return null;
@@ -211,10 +203,9 @@ public class DatabaseLogic {
             Model model, String databaseName, String schemaName, String tableName, String columnName) {
         Table table = findTableByName(model, databaseName, schemaName, tableName);
         if (table != null) {
-            for (Column column : table.getColumns()) {
-                if (column.getColumnName().equals(columnName)) {
-                    return column;
-                }
+            Column column = table.columnsByName.find(table.columns, columnName);
+            if (column != null) {
+                return column;
             }
         }
         logger.debug("Column not found: {}", columnName);
@@ -236,51 +227,60 @@ public class DatabaseLogic {
     }
 
     public static Table findTableByEntityName(Database database, String entityName) {
-        for(Schema schema : database.getSchemas()) {
-            for(Table table : schema.getTables()) {
-                if(entityName.equals(table.getActualEntityName())) {
-                    return table;
-                }
-            }
+        //Entity names are only assigned by Table.init, which also registers them with the database
+        Table table = database.tablesByEntityName.get(entityName);
+        if(table == null) {
+            return null;
         }
-        return null;
+        if(entityName.equals(table.getActualEntityName()) && isInDatabase(table, database)) {
+            return table;
+        } else {
+            //The table has been removed or reset since it was registered
+            database.tablesByEntityName.remove(entityName, table);
+            return null;
+        }
+    }
+
+    protected static boolean isInDatabase(Table table, Database database) {
+        Schema schema = table.getSchema();
+        return schema != null && schema.getDatabase() == database &&
+               findSchemaByName(database, schema.getSchemaName()) == schema &&
+               findTableByName(schema, table.getTableName()) == table;
     }
 
     public static ForeignKey findForeignKeyByName(Table table, String fkName) {
-        for (ForeignKey current : table.foreignKeys) {
-            if (current.getName().equals(fkName)) {
-                return current;
-            }
+        ForeignKey foreignKey = table.foreignKeysByName.find(table.foreignKeys, fkName);
+        if (foreignKey != null) {
+            return foreignKey;
         }
         logger.debug("Foreign key not found: {}", fkName);
         return null;
     }
 
     public static ForeignKey findForeignKeyByNameIgnoreCase(Table table, String fkName) {
-        for (ForeignKey current : table.foreignKeys) {
-            if (current.getName().equalsIgnoreCase(fkName)) {
-                return current;
-            }
+        ForeignKey foreignKey = table.foreignKeysByName.findIgnoreCase(table.foreignKeys, fkName);
+        if (foreignKey != null) {
+            return foreignKey;
         }
         logger.debug("Foreign key not found: {}", fkName);
         return null;
     }
 
     public static ModelSelectionProvider findSelectionProviderByName(Table table, String selectionProviderName) {
-        for (ModelSelectionProvider current : table.selectionProviders) {
-            if (current.getName().equalsIgnoreCase(selectionProviderName)) {
-                return current;
-            }
+        ModelSelectionProvider selectionProvider =
+                table.selectionProvidersByName.findIgnoreCase(table.selectionProviders, selectionProviderName);
+        if (selectionProvider != null) {
+            return selectionProvider;
         }
         logger.debug("Selection provider not found: {}", selectionProviderName);
         return null;
     }
 
     public static ForeignKey findOneToManyRelationshipByName(Table table, String relationshipName) {
-        for (ForeignKey current : table.getOneToManyRelationships()) {
-            if (current.getName().equalsIgnoreCase(relationshipName)) {
-                return current;
-            }
+        ForeignKey relationship = table.oneToManyRelationshipsByName.findIgnoreCase(
+                table.oneToManyRelationships, relationshipName);
+        if (relationship != null) {
+            return relationship;
         }
         Table.logger.debug("One to many relationship not found: {}", relationshipName);
         return null;
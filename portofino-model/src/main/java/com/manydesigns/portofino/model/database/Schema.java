@@ -50,7 +50,7 @@ public class Schema implements ModelObject, Annotated {
     //**************************************************************************
 
     protected Database database;
-    protected final List<Table> tables = new ArrayList<>();
+    protected final ModelObjectList<Table> tables = new ModelObjectList<>();
     @Deprecated
     protected final List<Table> immediateTables;
 
@@ -61,6 +61,12 @@ public class Schema implements ModelObject, Annotated {
     protected Configuration configuration;
     protected String key;
     protected final List<Annotation> annotations = new ArrayList<>();
+
+    //**************************************************************************
+    // Fields for wire-up
+    //**************************************************************************
+
+    protected final NameIndex<Table> tablesByName = new NameIndex<>(Table::getTableName);
     
     //**************************************************************************
     // Logging
@@ -100,12 +106,15 @@ public class Schema implements ModelObject, Annotated {
                 name);
     }
 
-    public void reset() {}
+    public void reset() {
+        tablesByName.clear();
+    }
 
     public void init(Model model, Configuration configuration) {
         assert database != null;
         assert schemaName != null;
         this.configuration = configuration;
+        tablesByName.index(tables);
         key = "portofino.database." + getDatabase().getDatabaseName() + ".schemas." + schemaName;
         if(actualSchemaName == null) {
             actualSchemaName = configuration.getString(key);
@@ -210,10 +219,9 @@ public class Schema implements ModelObject, Annotated {
     public Table findTableByQualifiedName(String qualifiedTableName) {
         int lastDot = qualifiedTableName.lastIndexOf(".");
         String tableName = qualifiedTableName.substring(lastDot + 1);
-        for (Table table : tables) {
-            if (table.getTableName().equalsIgnoreCase(tableName)) {
-                return table;
-            }
+        Table table = tablesByName.findIgnoreCase(tables, tableName);
+        if (table != null) {
+            return table;
         }
         logger.debug("Table not found: {}", qualifiedTableName);
         return null;
@@ -225,10 +233,9 @@ public class Schema implements ModelObject, Annotated {
         String columnName = qualifiedColumnName.substring(lastDot + 1);
         Table table = findTableByQualifiedName(qualifiedTableName);
         if (table != null) {
-            for (Column column : table.getColumns()) {
-                if (column.getColumnName().equalsIgnoreCase(columnName)) {
-                    return column;
-                }
+            Column column = DatabaseLogic.findColumnByNameIgnoreCase(table, columnName);
+            if (column != null) {
+                return column;
             }
         }
         logger.debug("Column not found: {}", qualifiedColumnName);
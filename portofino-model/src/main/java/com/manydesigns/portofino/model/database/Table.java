@@ -52,10 +52,10 @@ public class Table implements ModelObject, Annotated {
     // Fields
     //**************************************************************************
 
-    protected final List<Column> columns;
-    protected final List<ForeignKey> foreignKeys;
+    protected final ModelObjectList<Column> columns;
+    protected final ModelObjectList<ForeignKey> foreignKeys;
     protected final List<Annotation> annotations;
-    protected final List<ModelSelectionProvider> selectionProviders;
+    protected final ModelObjectList<ModelSelectionProvider> selectionProviders;
 
     protected Schema schema;
     protected String tableName;
@@ -71,10 +71,17 @@ public class Table implements ModelObject, Annotated {
     // Fields for wire-up
     //**************************************************************************
 
-    protected final List<ForeignKey> oneToManyRelationships;
+    protected final ModelObjectList<ForeignKey> oneToManyRelationships;
     protected Class actualJavaClass;
     protected String actualEntityName;
 
+    protected final NameIndex<Column> columnsByName = new NameIndex<>(Column::getColumnName);
+    protected final NameIndex<Column> columnsByPropertyName = new NameIndex<>(Column::getActualPropertyName);
+    protected final NameIndex<ForeignKey> foreignKeysByName = new NameIndex<>(ForeignKey::getName);
+    protected final NameIndex<ForeignKey> oneToManyRelationshipsByName = new NameIndex<>(ForeignKey::getName);
+    protected final NameIndex<ModelSelectionProvider> selectionProvidersByName =
+            new NameIndex<>(ModelSelectionProvider::getName);
+
     //**************************************************************************
     // Logging
     //**************************************************************************
@@ -85,11 +92,11 @@ public class Table implements ModelObject, Annotated {
     // Constructors and init
     //**************************************************************************
     public Table() {
-        columns = new ArrayList<>();
-        foreignKeys = new ArrayList<>();
-        oneToManyRelationships = new ArrayList<>();
+        columns = new ModelObjectList<>();
+        foreignKeys = new ModelObjectList<>();
+        oneToManyRelationships = new ModelObjectList<>();
         annotations = new ArrayList<>();
-        selectionProviders = new ArrayList<>();
+        selectionProviders = new ModelObjectList<>();
     }
 
     public Table(Schema schema) {
@@ -117,12 +124,21 @@ public class Table implements ModelObject, Annotated {
         actualEntityName = null;
         actualJavaClass = null;
         oneToManyRelationships.clear();
+        columnsByName.clear();
+        columnsByPropertyName.clear();
+        foreignKeysByName.clear();
+        oneToManyRelationshipsByName.clear();
+        selectionProvidersByName.clear();
     }
 
     public void init(Model model, Configuration configuration) {
         assert schema != null;
         assert tableName != null;
-        
+
+        columnsByName.index(columns);
+        foreignKeysByName.index(foreignKeys);
+        selectionProvidersByName.index(selectionProviders);
+
         // wire up javaClass
         actualJavaClass = ReflectionUtil.loadClass(javaClass);
 
@@ -143,9 +159,13 @@ public class Table implements ModelObject, Annotated {
         }
 
         actualEntityName = calculatedEntityName;
+        database.tablesByEntityName.put(actualEntityName, this);
     }
 
-    public void link(Model model, Configuration configuration) {}
+    public void link(Model model, Configuration configuration) {
+        // Property names are only known after the columns have been initialized
+        columnsByPropertyName.index(columns);
+    }
 
     public void visitChildren(ModelObjectVisitor visitor) {
         for (Column column : columns) {
@@ -173,8 +173,8 @@ public class Type {
                 return Short.class;
             case Types.TINYINT:
                 return Byte.class;
-            case Types.BINARY:
             case Types.BLOB:
+            case Types.BINARY:
             case Types.LONGVARBINARY:
             case Types.VARBINARY:
                 return byte[].class;
@@ -238,6 +238,9 @@ public class Type {
                 }
             } else if(defaultJavaType == Timestamp.class) {
                 return new Class[] { Timestamp.class, DateTime.class, java.sql.Date.class, LocalDateTime.class, ZonedDateTime.class, Instant.class };
+            } else if(jdbcType == Types.BLOB) {
+                //java.sql.Blob is mapped as a LOB, so that the contents are only read when needed
+                return new Class[] { byte[].class, java.sql.Blob.class };
             } else if(defaultJavaType == java.sql.Date.class) {
                 return new Class[] { java.sql.Date.class, DateTime.class, LocalDate.class, Timestamp.class }; //TODO Joda LocalDate as well?
             } else {